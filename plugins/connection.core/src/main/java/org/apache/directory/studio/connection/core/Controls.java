@@ -26,12 +26,25 @@ import org.apache.directory.api.asn1.util.Asn1Buffer;
 import org.apache.directory.api.ldap.codec.api.ControlFactory;
 import org.apache.directory.api.ldap.codec.api.LdapApiService;
 import org.apache.directory.api.ldap.codec.api.LdapApiServiceFactory;
+import org.apache.directory.api.ldap.extras.controls.SynchronizationModeEnum;
+import org.apache.directory.api.ldap.extras.controls.syncrepl.syncRequest.SyncRequestValue;
+import org.apache.directory.api.ldap.extras.controls.syncrepl.syncRequest.SyncRequestValueImpl;
+import org.apache.directory.api.ldap.extras.controls.transaction.TransactionSpecification;
+import org.apache.directory.api.ldap.extras.controls.transaction.TransactionSpecificationImpl;
+import org.apache.directory.api.ldap.extras.controls.vlv.VirtualListViewRequest;
+import org.apache.directory.api.ldap.extras.controls.vlv.VirtualListViewRequestImpl;
+import org.apache.directory.api.ldap.extras.controls.vlv.VirtualListViewResponse;
+import org.apache.directory.api.ldap.extras.controls.vlv.VirtualListViewResultCode;
+import org.apache.directory.api.ldap.extras.extended.startTransaction.StartTransactionRequest;
 import org.apache.directory.api.ldap.model.message.Control;
 import org.apache.directory.api.ldap.model.message.controls.ManageDsaIT;
 import org.apache.directory.api.ldap.model.message.controls.ManageDsaITImpl;
 import org.apache.directory.api.ldap.model.message.controls.OpaqueControl;
 import org.apache.directory.api.ldap.model.message.controls.PagedResults;
 import org.apache.directory.api.ldap.model.message.controls.PagedResultsImpl;
+import org.apache.directory.api.ldap.model.message.controls.SortKey;
+import org.apache.directory.api.ldap.model.message.controls.SortRequest;
+import org.apache.directory.api.ldap.model.message.controls.SortRequestImpl;
 import org.apache.directory.api.ldap.model.message.controls.Subentries;
 import org.apache.directory.api.ldap.model.message.controls.SubentriesImpl;
 
@@ -53,6 +66,12 @@ public class Controls
 
     public static final Control TREEDELETE_CONTROL = new OpaqueControl( "1.2.840.113556.1.4.805", false );
 
+    public static final String SORT_REQUEST_CONTROL_OID = SortRequest.OID;
+
+    public static final String VLV_REQUEST_CONTROL_OID = VirtualListViewRequest.OID;
+
+    public static final String START_TRANSACTION_EXTENSION_OID = StartTransactionRequest.EXTENSION_OID;
+
 
     public static final PagedResults newPagedResultsControl( int size )
     {
@@ -71,6 +90,107 @@ public class Controls
     }
 
 
+    /**
+     * Creates a critical server side sort control to sort by the given attribute type.
+     *
+     * @param attributeType the attribute type
+     *
+     * @return the server side sort control
+     */
+    public static final SortRequest newSortRequestControl( String attributeType )
+    {
+        SortRequest control = new SortRequestImpl();
+        control.setCritical( true );
+        control.addSortKey( new SortKey( attributeType ) );
+        return control;
+    }
+
+
+    /**
+     * Creates a critical virtual list view control to fetch a window of entries.
+     *
+     * @param beforeCount the number of entries before the target entry
+     * @param afterCount the number of entries after the target entry
+     * @param offset the position of the target entry, starting with 1
+     * @param contentCount the estimated number of entries, 0 if unknown
+     * @param contextId the context identifier from the previous response, may be null
+     *
+     * @return the virtual list view control
+     */
+    public static final Control newVirtualListViewRequestControl( int beforeCount, int afterCount, int offset,
+        int contentCount, byte[] contextId )
+    {
+        VirtualListViewRequest control = new VirtualListViewRequestImpl();
+        control.setCritical( true );
+        control.setBeforeCount( beforeCount );
+        control.setAfterCount( afterCount );
+        control.setOffset( offset );
+        control.setContentCount( contentCount );
+        control.setContextId( contextId );
+        return control;
+    }
+
+
+    /**
+     * Creates a critical transaction specification control to send an update within a transaction.
+     *
+     * @param transactionId the transaction identifier returned by the start transaction request
+     *
+     * @return the transaction specification control
+     */
+    public static final Control newTransactionSpecificationControl( byte[] transactionId )
+    {
+        TransactionSpecification control = new TransactionSpecificationImpl();
+        control.setCritical( true );
+        control.setIdentifier( transactionId );
+        return control;
+    }
+
+
+    /**
+     * Creates a critical RFC 4533 sync request control for a refreshAndPersist search.
+     *
+     * @param cookie the cookie of the previous synchronization, null to start a new one
+     *
+     * @return the sync request control
+     */
+    public static final Control newSyncRequestControl( byte[] cookie )
+    {
+        SyncRequestValue control = new SyncRequestValueImpl();
+        control.setCritical( true );
+        control.setMode( SynchronizationModeEnum.REFRESH_AND_PERSIST );
+        control.setCookie( cookie );
+        return control;
+    }
+
+
+    /**
+     * Gets the window of the virtual list view response control contained
+     * in the given response controls.
+     *
+     * @param responseControls the response controls
+     *
+     * @return the window, null if there is no successful virtual list view response
+     */
+    public static final VirtualListViewWindow getVirtualListViewWindow( Iterable<Control> responseControls )
+    {
+        for ( Control control : responseControls )
+        {
+            if ( control instanceof VirtualListViewResponse )
+            {
+                VirtualListViewResponse response = ( VirtualListViewResponse ) control;
+                if ( response.getVirtualListViewResult() != VirtualListViewResultCode.SUCCESS )
+                {
+                    return null;
+                }
+                return new VirtualListViewWindow( response.getTargetPosition(), response.getContentCount(),
+                    response.getContextId() );
+            }
+        }
+        return null;
+    }
+
+
     public static Control create( String oid, boolean isCritical, byte[] value )
     {
         try
@@ -99,4 +219,58 @@ public class Controls
         byte[] bytes = buffer.getBytes().array();
         return bytes;
     }
+
+
+    /**
+     * The position of a window of entries fetched with the virtual list view control.
+     */
+    public static class VirtualListViewWindow
+    {
+        private int targetPosition;
+
+        private int contentCount;
+
+        private byte[] contextId;
+
+
+        private VirtualListViewWindow( int targetPosition, int contentCount, byte[] contextId )
+        {
+            this.targetPosition = targetPosition;
+            this.contentCount = contentCount;
+            this.contextId = contextId;
+        }
+
+
+        /**
+         * Gets the position of the target entry, starting with 1.
+         *
+         * @return the position of the target entry
+         */
+        public int getTargetPosition()
+        {
+            return targetPosition;
+        }
+
+
+        /**
+         * Gets the estimated number of entries.
+         *
+         * @return the estimated number of entries
+         */
+        public int getContentCount()
+        {
+            return contentCount;
+        }
+
+
+        /**
+         * Gets the context identifier to pass with the next request.
+         *
+         * @return the context identifier, may be null
+         */
+        public byte[] getContextId()
+        {
+            return contextId;
+        }
+    }
 }
@@ -21,6 +21,7 @@ package org.apache.directory.studio.connection.core.io;
 
 
 import java.util.Collection;
+import java.util.List;
 
 import javax.naming.directory.SearchControls;
 import javax.net.ssl.SSLSession;
@@ -164,6 +165,43 @@ public interface ConnectionWrapper
         final ReferralsInfo referralsInfo );
 
 
+    /**
+     * Creates several entries. The add requests are pipelined: up to
+     * maxOutstanding requests are sent before the oldest response is
+     * awaited, so the directory processes them concurrently. None of the
+     * entries may be an ancestor of another one. Referrals are not followed.
+     * 
+     * @param entries the entries to create
+     * @param controls the controls, sent with each request
+     * @param maxOutstanding the maximum number of requests awaiting a response
+     * @param monitor the progress monitor, connection errors are reported to it
+     * 
+     * @return the exception of each entry in the order of the entries, null if the entry was created;
+     *         entries without a response fail with the connection error or the cancellation
+     */
+    StudioLdapException[] createEntries( final List<Entry> entries, final Control[] controls,
+        final int maxOutstanding, final StudioProgressMonitor monitor );
+
+
+    /**
+     * Modifies several entries. The modify requests are pipelined: up to
+     * maxOutstanding requests are sent before the oldest response is
+     * awaited, so the directory processes them concurrently. Each entry
+     * may only be contained once. Referrals are not followed.
+     * 
+     * @param dns the Dns of the entries to modify
+     * @param modifications the modifications of each entry
+     * @param controls the controls, sent with each request
+     * @param maxOutstanding the maximum number of requests awaiting a response
+     * @param monitor the progress monitor, connection errors are reported to it
+     * 
+     * @return the exception of each entry in the order of the Dns, null if the entry was modified;
+     *         entries without a response fail with the connection error or the cancellation
+     */
+    StudioLdapException[] modifyEntries( final List<Dn> dns, final List<Collection<Modification>> modifications,
+        final Control[] controls, final int maxOutstanding, final StudioProgressMonitor monitor );
+
+
     /**
      * Deletes an entry.
      * 
@@ -176,6 +214,46 @@ public interface ConnectionWrapper
         final ReferralsInfo referralsInfo );
 
 
+    /**
+     * Deletes several entries. The delete requests are pipelined: up to
+     * maxOutstanding requests are sent before the oldest response is
+     * awaited, so the directory processes them concurrently. None of the
+     * entries may be an ancestor of another one. Referrals are not followed.
+     * 
+     * @param dns the Dns of the entries to delete
+     * @param controls the controls, sent with each request
+     * @param maxOutstanding the maximum number of requests awaiting a response
+     * @param monitor the progress monitor, connection errors are reported to it
+     * 
+     * @return the exception of each entry in the order of the Dns, null if the entry was deleted;
+     *         entries without a response fail with the connection error or the cancellation
+     */
+    StudioLdapException[] deleteEntries( final List<Dn> dns, final Control[] controls, final int maxOutstanding,
+        final StudioProgressMonitor monitor );
+
+
     ExtendedResponse extended( ExtendedRequest request, final StudioProgressMonitor monitor );
 
+
+    /**
+     * Starts a transaction (RFC 5805). Updates are sent within the transaction
+     * with the transaction specification control of the returned identifier.
+     * 
+     * @param monitor the progress monitor
+     * 
+     * @return the transaction identifier, null if the transaction could not be started
+     */
+    byte[] startTransaction( final StudioProgressMonitor monitor );
+
+
+    /**
+     * Ends a transaction (RFC 5805). If the commit fails none of the updates of the
+     * transaction is applied and the error is reported to the monitor.
+     * 
+     * @param transactionId the transaction identifier
+     * @param commit true to commit the transaction, false to abort it
+     * @param monitor the progress monitor
+     */
+    void endTransaction( final byte[] transactionId, final boolean commit, final StudioProgressMonitor monitor );
+
 }
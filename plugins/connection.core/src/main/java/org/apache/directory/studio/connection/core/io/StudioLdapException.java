@@ -26,8 +26,10 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.directory.api.ldap.model.exception.LdapContextNotEmptyException;
 import org.apache.directory.api.ldap.model.exception.LdapEntryAlreadyExistsException;
+import org.apache.directory.api.ldap.model.exception.LdapNoSuchObjectException;
 import org.apache.directory.api.ldap.model.exception.LdapOperationException;
 import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.studio.connection.core.io.api.CancelException;
 
 
 public class StudioLdapException extends Exception
@@ -71,4 +73,16 @@ public class StudioLdapException extends Exception
         return ExceptionUtils.indexOfThrowable( exception, LdapContextNotEmptyException.class ) > -1;
     }
 
+
+    public static boolean isNoSuchObjectException( Exception exception )
+    {
+        return ExceptionUtils.indexOfThrowable( exception, LdapNoSuchObjectException.class ) > -1;
+    }
+
+
+    public static boolean isCancelException( Exception exception )
+    {
+        return ExceptionUtils.indexOfThrowable( exception, CancelException.class ) > -1;
+    }
+
 }
@@ -21,10 +21,13 @@ package org.apache.directory.studio.connection.core.io.api;
 
 
 import java.security.KeyStore;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
 
 import javax.naming.directory.SearchControls;
@@ -37,6 +40,10 @@ import javax.security.auth.login.AppConfigurationEntry.LoginModuleControlFlag;
 import javax.security.auth.login.Configuration;
 
 import org.apache.directory.api.ldap.codec.api.DefaultConfigurableBinaryAttributeDetector;
+import org.apache.directory.api.ldap.extras.extended.endTransaction.EndTransactionRequest;
+import org.apache.directory.api.ldap.extras.extended.endTransaction.EndTransactionRequestImpl;
+import org.apache.directory.api.ldap.extras.extended.startTransaction.StartTransactionRequestImpl;
+import org.apache.directory.api.ldap.extras.extended.startTransaction.StartTransactionResponse;
 import org.apache.directory.api.ldap.model.cursor.SearchCursor;
 import org.apache.directory.api.ldap.model.entry.Entry;
 import org.apache.directory.api.ldap.model.entry.Modification;
@@ -77,6 +84,7 @@ import org.apache.directory.ldap.client.api.SaslCramMd5Request;
 import org.apache.directory.ldap.client.api.SaslDigestMd5Request;
 import org.apache.directory.ldap.client.api.SaslGssApiRequest;
 import org.apache.directory.ldap.client.api.exception.InvalidConnectionException;
+import org.apache.directory.ldap.client.api.future.ResponseFuture;
 import org.apache.directory.studio.common.core.jobs.StudioProgressMonitor;
 import org.apache.directory.studio.connection.core.Connection;
 import org.apache.directory.studio.connection.core.Connection.AliasDereferencingMethod;
@@ -1015,6 +1023,313 @@ public class DirectoryApiConnectionWrapper implements ConnectionWrapper
     }
 
 
+    /**
+     * {@inheritDoc}
+     */
+    public StudioLdapException[] createEntries( final List<Entry> entries, final Control[] controls,
+        final int maxOutstanding, final StudioProgressMonitor monitor )
+    {
+        return runPipelined( entries.size(), maxOutstanding, new PipelinedRequests()
+        {
+            public ResponseFuture<?> send( int i ) throws LdapException
+            {
+                AddRequest request = new AddRequestImpl();
+                request.setEntry( entries.get( i ) );
+                if ( controls != null )
+                {
+                    request.addAllControls( controls );
+                }
+                return ldapConnection.addAsync( request );
+            }
+
+
+            public void log( int i, StudioLdapException exception )
+            {
+                for ( ILdapLogger logger : getLdapLoggers() )
+                {
+                    logger.logChangetypeAdd( connection, entries.get( i ), controls, exception );
+                }
+            }
+        }, monitor );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public StudioLdapException[] modifyEntries( final List<Dn> dns, final List<Collection<Modification>> modifications,
+        final Control[] controls, final int maxOutstanding, final StudioProgressMonitor monitor )
+    {
+        return runPipelined( dns.size(), maxOutstanding, new PipelinedRequests()
+        {
+            public ResponseFuture<?> send( int i ) throws LdapException
+            {
+                ModifyRequest request = new ModifyRequestImpl();
+                request.setName( dns.get( i ) );
+                for ( Modification modification : modifications.get( i ) )
+                {
+                    request.addModification( modification );
+                }
+                if ( controls != null )
+                {
+                    request.addAllControls( controls );
+                }
+                return ldapConnection.modifyAsync( request );
+            }
+
+
+            public void log( int i, StudioLdapException exception )
+            {
+                for ( ILdapLogger logger : getLdapLoggers() )
+                {
+                    logger.logChangetypeModify( connection, dns.get( i ), modifications.get( i ), controls,
+                        exception );
+                }
+            }
+        }, monitor );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public StudioLdapException[] deleteEntries( final List<Dn> dns, final Control[] controls,
+        final int maxOutstanding, final StudioProgressMonitor monitor )
+    {
+        return runPipelined( dns.size(), maxOutstanding, new PipelinedRequests()
+        {
+            public ResponseFuture<?> send( int i ) throws LdapException
+            {
+                DeleteRequest request = new DeleteRequestImpl();
+                request.setName( dns.get( i ) );
+                if ( controls != null )
+                {
+                    request.addAllControls( controls );
+                }
+                return ldapConnection.deleteAsync( request );
+            }
+
+
+            public void log( int i, StudioLdapException exception )
+            {
+                for ( ILdapLogger logger : getLdapLoggers() )
+                {
+                    logger.logChangetypeDelete( connection, dns.get( i ), controls, exception );
+                }
+            }
+        }, monitor );
+    }
+
+
+    /**
+     * The requests sent by {@link DirectoryApiConnectionWrapper#runPipelined}.
+     */
+    private interface PipelinedRequests
+    {
+        /**
+         * Sends the i-th request.
+         * 
+         * @param i the index of the request
+         * 
+         * @return the future of the response
+         * 
+         * @throws LdapException if the request could not be sent
+         */
+        ResponseFuture<?> send( int i ) throws LdapException;
+
+
+        /**
+         * Logs the result of the i-th request.
+         * 
+         * @param i the index of the request
+         * @param exception the exception, null if the request succeeded
+         */
+        void log( int i, StudioLdapException exception );
+    }
+
+
+    /**
+     * Sends the requests pipelined: up to maxOutstanding requests are sent
+     * before the oldest response is awaited. Referrals are not followed.
+     * Requests whose response doesn't arrive in time, or that are still
+     * outstanding when the connection fails or the monitor is canceled, are
+     * abandoned. If the connection fails it is reconnected once and only the
+     * requests without a response are sent again.
+     * 
+     * @param count the number of requests
+     * @param maxOutstanding the maximum number of requests awaiting a response
+     * @param requests the requests
+     * @param monitor the progress monitor, connection errors are reported to it
+     * 
+     * @return the exception of each request, null if the request succeeded; requests
+     *         that were not sent or not answered fail with the connection error
+     */
+    private StudioLdapException[] runPipelined( final int count, final int maxOutstanding,
+        final PipelinedRequests requests, final StudioProgressMonitor monitor )
+    {
+        final StudioLdapException[] exceptions = new StudioLdapException[count];
+        final boolean[] completed = new boolean[count];
+        if ( connection.isReadOnly() )
+        {
+            Exception readOnlyException = new Exception( NLS.bind( Messages.error__connection_is_readonly,
+                connection.getName() ) );
+            monitor.reportError( readOnlyException );
+            fail( exceptions, completed, readOnlyException );
+            return exceptions;
+        }
+
+        InnerRunnable runnable = new InnerRunnable()
+        {
+            public void run()
+            {
+                long timeout = connection.getTimeoutMillis() < 0 ? 30000L : connection.getTimeoutMillis();
+                ArrayDeque<Integer> outstanding = new ArrayDeque<>();
+                ResponseFuture<?>[] futures = new ResponseFuture<?>[count];
+                int next = 0;
+                try
+                {
+                    while ( true )
+                    {
+                        if ( monitor.isCanceled() )
+                        {
+                            throw new CancelException();
+                        }
+
+                        // fill the pipeline, skipping the requests answered before a reconnection
+                        while ( next < count && outstanding.size() < Math.max( 1, maxOutstanding ) )
+                        {
+                            if ( !completed[next] )
+                            {
+                                futures[next] = requests.send( next );
+                                outstanding.add( next );
+                            }
+                            next++;
+                        }
+                        if ( outstanding.isEmpty() )
+                        {
+                            break;
+                        }
+
+                        // await the oldest response
+                        int i = outstanding.peek();
+                        Exception requestException = null;
+                        try
+                        {
+                            Object response = timeout > 0
+                                ? futures[i].get( timeout, TimeUnit.MILLISECONDS )
+                                : futures[i].get();
+                            if ( response == null )
+                            {
+                                throw new LdapException( Messages.DirectoryApiConnectionWrapper_NoConnection );
+                            }
+                            checkResponse( ( ResultResponse ) response );
+                        }
+                        catch ( InterruptedException e )
+                        {
+                            throw e;
+                        }
+                        catch ( TimeoutException e )
+                        {
+                            // the server may still apply the request
+                            abandon( futures[i] );
+                            requestException = e;
+                        }
+                        catch ( Exception e )
+                        {
+                            requestException = e;
+                        }
+                        outstanding.poll();
+                        futures[i] = null;
+                        completed[i] = true;
+                        exceptions[i] = toStudioLdapException( requestException );
+                        requests.log( i, exceptions[i] );
+                    }
+                }
+                catch ( Exception e )
+                {
+                    exception = toStudioLdapException( e );
+                }
+                finally
+                {
+                    // the outcome of these requests is unknown
+                    for ( int i : outstanding )
+                    {
+                        abandon( futures[i] );
+                    }
+                }
+            }
+        };
+
+        // a child monitor, errors reported before by the caller don't discard these results
+        StudioProgressMonitor pipelineMonitor = new StudioProgressMonitor( monitor );
+        try
+        {
+            checkConnectionAndRunAndMonitor( runnable, pipelineMonitor );
+        }
+        catch ( Exception e )
+        {
+            pipelineMonitor.reportError( e );
+        }
+
+        if ( runnable.isCanceled() )
+        {
+            monitor.setCanceled( true );
+        }
+        Exception failure = runnable.getException();
+        if ( monitor.isCanceled() )
+        {
+            // the requests without a response fail with the cancellation, not the closed connection
+            failure = new CancelException();
+        }
+        else if ( failure == null && pipelineMonitor.errorsReported() )
+        {
+            failure = pipelineMonitor.getException();
+        }
+        if ( failure != null )
+        {
+            monitor.reportError( failure );
+            fail( exceptions, completed, failure );
+        }
+        return exceptions;
+    }
+
+
+    /**
+     * Sets the given exception for the requests that didn't complete, all of them share one instance.
+     */
+    private static void fail( StudioLdapException[] exceptions, boolean[] completed, Exception exception )
+    {
+        StudioLdapException failure = exception instanceof StudioLdapException ? ( StudioLdapException ) exception
+            : new StudioLdapException( exception );
+        for ( int i = 0; i < exceptions.length; i++ )
+        {
+            if ( !completed[i] )
+            {
+                exceptions[i] = failure;
+            }
+        }
+    }
+
+
+    /**
+     * Abandons the request of the given future, errors are ignored.
+     */
+    private void abandon( ResponseFuture<?> future )
+    {
+        if ( future != null && ldapConnection != null )
+        {
+            try
+            {
+                ldapConnection.abandon( future.getMessageId() );
+            }
+            catch ( Exception e )
+            {
+                // the connection is closed anyway
+            }
+        }
+    }
+
+
     @Override
     public ExtendedResponse extended( ExtendedRequest request, StudioProgressMonitor monitor )
     {
@@ -1073,6 +1388,34 @@ public class DirectoryApiConnectionWrapper implements ConnectionWrapper
         return outerResponse[0];
     }
 
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public byte[] startTransaction( StudioProgressMonitor monitor )
+    {
+        ExtendedResponse response = extended( new StartTransactionRequestImpl(), monitor );
+        if ( monitor.errorsReported() || !( response instanceof StartTransactionResponse ) )
+        {
+            return null;
+        }
+        return ( ( StartTransactionResponse ) response ).getTransactionId();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void endTransaction( byte[] transactionId, boolean commit, StudioProgressMonitor monitor )
+    {
+        EndTransactionRequest request = new EndTransactionRequestImpl();
+        request.setTransactionId( transactionId );
+        request.setCommit( commit );
+        extended( request, monitor );
+    }
+
     /**
      * Inner runnable used in connection wrapper operations.
      *
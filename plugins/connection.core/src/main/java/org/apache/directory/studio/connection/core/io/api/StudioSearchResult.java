@@ -21,6 +21,7 @@ package org.apache.directory.studio.connection.core.io.api;
 
 
 import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.message.Control;
 import org.apache.directory.api.ldap.model.message.SearchResultEntry;
 import org.apache.directory.api.ldap.model.name.Dn;
 import org.apache.directory.api.ldap.model.url.LdapUrl;
@@ -84,6 +85,19 @@ public class StudioSearchResult
     }
 
 
+    /**
+     * Gets the control of the search result entry with the given OID.
+     * 
+     * @param oid the OID of the control
+     * 
+     * @return the control, null if the search result entry has no such control
+     */
+    public Control getControl( String oid )
+    {
+        return searchResultEntry.getControl( oid );
+    }
+
+
     /**
      * Gets the connection.
      * 
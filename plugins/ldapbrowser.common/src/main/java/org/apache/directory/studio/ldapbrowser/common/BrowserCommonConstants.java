@@ -92,6 +92,7 @@ public final class BrowserCommonConstants
     public static final String PREFERENCE_BROWSER_ENABLE_FOLDING = "browserEnableFolding"; //$NON-NLS-1$
     public static final String PREFERENCE_BROWSER_FOLDING_SIZE = "browserFoldingSize"; //$NON-NLS-1$
     public static final String PREFERENCE_BROWSER_EXPAND_BASE_ENTRIES = "browserExpandBaseEntries"; //$NON-NLS-1$
+    public static final String PREFERENCE_BROWSER_PREFETCH_CHILDREN = "browserPrefetchChildren"; //$NON-NLS-1$
     public static final String PREFERENCE_BROWSER_ENTRY_LABEL = "browserEntryLabel"; //$NON-NLS-1$
     public static final String PREFERENCE_BROWSER_ENTRY_ABBREVIATE = "browserEntryAbbreviate"; //$NON-NLS-1$
     public static final String PREFERENCE_BROWSER_ENTRY_ABBREVIATE_MAX_LENGTH = "browserentryAbbreviateMaxLength"; //$NON-NLS-1$
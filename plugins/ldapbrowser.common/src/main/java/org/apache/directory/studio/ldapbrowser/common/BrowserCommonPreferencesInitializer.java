@@ -107,6 +107,7 @@ public class BrowserCommonPreferencesInitializer extends AbstractPreferenceIniti
 
         // Browser
         store.setDefault( BrowserCommonConstants.PREFERENCE_BROWSER_EXPAND_BASE_ENTRIES, false );
+        store.setDefault( BrowserCommonConstants.PREFERENCE_BROWSER_PREFETCH_CHILDREN, false );
         store.setDefault( BrowserCommonConstants.PREFERENCE_BROWSER_ENABLE_FOLDING, true );
         store.setDefault( BrowserCommonConstants.PREFERENCE_BROWSER_FOLDING_SIZE, 100 );
         store.setDefault( BrowserCommonConstants.PREFERENCE_BROWSER_ENTRY_LABEL, BrowserCommonConstants.SHOW_RDN );
@@ -78,8 +78,16 @@ public class BrowserPreferencePage extends PreferencePage implements IWorkbenchP
 
     private Button expandBaseEntriesButton;;
 
+    private Button prefetchChildrenButton;
+
     private Button checkForChildrenButton;
 
+    private Button persistentDitCacheButton;
+
+    private Button smartRefreshButton;
+
+    private Button virtualListViewButton;
+
 
     /**
      * Creates a new instance of BrowserPreferencePage.
@@ -252,11 +260,26 @@ public class BrowserPreferencePage extends PreferencePage implements IWorkbenchP
             .getString( "BrowserPreferencePage.ExpandBaseEntries" ), 1 ); //$NON-NLS-1$
         expandBaseEntriesButton.setSelection( getPreferenceStore().getBoolean(
             BrowserCommonConstants.PREFERENCE_BROWSER_EXPAND_BASE_ENTRIES ) );
+        prefetchChildrenButton = BaseWidgetUtils.createCheckbox( composite, Messages
+            .getString( "BrowserPreferencePage.PrefetchChildren" ), 1 ); //$NON-NLS-1$
+        prefetchChildrenButton.setSelection( getPreferenceStore().getBoolean(
+            BrowserCommonConstants.PREFERENCE_BROWSER_PREFETCH_CHILDREN ) );
         Preferences coreStore = BrowserCorePlugin.getDefault().getPluginPreferences();
         checkForChildrenButton = BaseWidgetUtils.createCheckbox( composite, Messages
             .getString( "BrowserPreferencePage.CheckForChildren" ), 1 ); //$NON-NLS-1$
         checkForChildrenButton
             .setSelection( coreStore.getBoolean( BrowserCoreConstants.PREFERENCE_CHECK_FOR_CHILDREN ) );
+        persistentDitCacheButton = BaseWidgetUtils.createCheckbox( composite, Messages
+            .getString( "BrowserPreferencePage.PersistentDitCache" ), 1 ); //$NON-NLS-1$
+        persistentDitCacheButton.setSelection( coreStore
+            .getBoolean( BrowserCoreConstants.PREFERENCE_PERSISTENT_DIT_CACHE ) );
+        smartRefreshButton = BaseWidgetUtils.createCheckbox( composite, Messages
+            .getString( "BrowserPreferencePage.SmartRefresh" ), 1 ); //$NON-NLS-1$
+        smartRefreshButton.setSelection( coreStore.getBoolean( BrowserCoreConstants.PREFERENCE_SMART_REFRESH ) );
+        virtualListViewButton = BaseWidgetUtils.createCheckbox( composite, Messages
+            .getString( "BrowserPreferencePage.VirtualListView" ), 1 ); //$NON-NLS-1$
+        virtualListViewButton.setSelection( coreStore
+            .getBoolean( BrowserCoreConstants.PREFERENCE_VIRTUAL_LIST_VIEW ) );
 
         updateEnabled();
 
@@ -282,10 +305,16 @@ public class BrowserPreferencePage extends PreferencePage implements IWorkbenchP
     {
         Preferences coreStore = BrowserCorePlugin.getDefault().getPluginPreferences();
         coreStore.setValue( BrowserCoreConstants.PREFERENCE_CHECK_FOR_CHILDREN, checkForChildrenButton.getSelection() );
+        coreStore.setValue( BrowserCoreConstants.PREFERENCE_PERSISTENT_DIT_CACHE,
+            persistentDitCacheButton.getSelection() );
+        coreStore.setValue( BrowserCoreConstants.PREFERENCE_SMART_REFRESH, smartRefreshButton.getSelection() );
+        coreStore.setValue( BrowserCoreConstants.PREFERENCE_VIRTUAL_LIST_VIEW, virtualListViewButton.getSelection() );
         BrowserCorePlugin.getDefault().savePluginPreferences();
 
         getPreferenceStore().setValue( BrowserCommonConstants.PREFERENCE_BROWSER_EXPAND_BASE_ENTRIES,
             expandBaseEntriesButton.getSelection() );
+        getPreferenceStore().setValue( BrowserCommonConstants.PREFERENCE_BROWSER_PREFETCH_CHILDREN,
+            prefetchChildrenButton.getSelection() );
 
         getPreferenceStore().setValue( BrowserCommonConstants.PREFERENCE_BROWSER_ENABLE_FOLDING,
             enableFoldingButton.getSelection() );
@@ -345,9 +374,17 @@ public class BrowserPreferencePage extends PreferencePage implements IWorkbenchP
 
         expandBaseEntriesButton.setSelection( getPreferenceStore().getDefaultBoolean(
             BrowserCommonConstants.PREFERENCE_BROWSER_EXPAND_BASE_ENTRIES ) );
+        prefetchChildrenButton.setSelection( getPreferenceStore().getDefaultBoolean(
+            BrowserCommonConstants.PREFERENCE_BROWSER_PREFETCH_CHILDREN ) );
         Preferences coreStore = BrowserCorePlugin.getDefault().getPluginPreferences();
         checkForChildrenButton.setSelection( coreStore
             .getDefaultBoolean( BrowserCoreConstants.PREFERENCE_CHECK_FOR_CHILDREN ) );
+        persistentDitCacheButton.setSelection( coreStore
+            .getDefaultBoolean( BrowserCoreConstants.PREFERENCE_PERSISTENT_DIT_CACHE ) );
+        smartRefreshButton.setSelection( coreStore
+            .getDefaultBoolean( BrowserCoreConstants.PREFERENCE_SMART_REFRESH ) );
+        virtualListViewButton.setSelection( coreStore
+            .getDefaultBoolean( BrowserCoreConstants.PREFERENCE_VIRTUAL_LIST_VIEW ) );
 
         updateEnabled();
 
@@ -29,7 +29,9 @@ import java.util.List;
 import java.util.Map;
 
 import org.apache.directory.studio.connection.core.jobs.OpenConnectionsRunnable;
+import org.apache.directory.studio.connection.core.jobs.StudioConnectionBulkRunnableWithProgress;
 import org.apache.directory.studio.connection.core.jobs.StudioConnectionRunnableWithProgress;
+import org.apache.directory.studio.ldapbrowser.core.jobs.FetchVirtualChildrenRunnable;
 import org.apache.directory.studio.ldapbrowser.core.jobs.InitializeChildrenRunnable;
 import org.apache.directory.studio.ldapbrowser.core.jobs.SearchRunnable;
 import org.apache.directory.studio.ldapbrowser.core.jobs.StudioBrowserJob;
@@ -219,7 +221,7 @@ public class BrowserContentProvider implements ITreeContentProvider
                     return null;
                 }
             }
-            else if ( parentEntry.getChildrenCount() <= preferences.getFoldingSize() || !preferences.isUseFolding() )
+            else if ( getChildrenCount( parentEntry ) <= preferences.getFoldingSize() || !preferences.isUseFolding() )
             {
                 return parentEntry;
             }
@@ -304,7 +306,15 @@ public class BrowserContentProvider implements ITreeContentProvider
         {
             BrowserEntryPage entryPage = ( BrowserEntryPage ) parent;
             Object[] objects = entryPage.getChildren();
-            if ( objects == null )
+            if ( objects == null && entryPage.getEntry().getVirtualChildren() != null )
+            {
+                // fetch the entries of the page when it becomes visible
+                new StudioBrowserJob( new FetchVirtualChildrenRunnable( entryPage.getEntry(), entryPage.getFirst(),
+                    entryPage.getLast() ) ).execute();
+                return new String[]
+                    { Messages.getString( "BrowserContentProvider.FetchingEntries" ) }; //$NON-NLS-1$
+            }
+            else if ( objects == null )
             {
                 return new String[]
                     { Messages.getString( "BrowserContentProvider.FetchingEntries" ) }; //$NON-NLS-1$
@@ -373,11 +383,11 @@ public class BrowserContentProvider implements ITreeContentProvider
 
             if ( !parentEntry.isChildrenInitialized() )
             {
-                new StudioBrowserJob( new InitializeChildrenRunnable( false, parentEntry ) ).execute();
+                new StudioBrowserJob( createInitializeChildrenRunnable( parentEntry ) ).execute();
                 return new String[]
                     { Messages.getString( "BrowserContentProvider.FetchingEntries" ) }; //$NON-NLS-1$
             }
-            else if ( parentEntry.getChildrenCount() <= preferences.getFoldingSize() || !preferences.isUseFolding() )
+            else if ( getChildrenCount( parentEntry ) <= preferences.getFoldingSize() || !preferences.isUseFolding() )
             {
                 if ( entryToEntryPagesMap.containsKey( parentEntry ) )
                 {
@@ -576,6 +586,27 @@ public class BrowserContentProvider implements ITreeContentProvider
     }
 
 
+    /**
+     * Creates the runnable to initialize the children of the given entry. If the
+     * virtual list view is applicable only the first page is fetched, the others
+     * are fetched when expanded.
+     *
+     * @param entry the entry
+     * @return the runnable to initialize the children
+     */
+    StudioConnectionBulkRunnableWithProgress createInitializeChildrenRunnable( IEntry entry )
+    {
+        if ( preferences.isUseFolding() && FetchVirtualChildrenRunnable.isApplicable( entry ) )
+        {
+            return new FetchVirtualChildrenRunnable( entry, 0, preferences.getFoldingSize() - 1 );
+        }
+        else
+        {
+            return new InitializeChildrenRunnable( false, entry );
+        }
+    }
+
+
     private IQuickSearch getQuickSearchForEntry( IEntry parentEntry )
     {
         IQuickSearch quickSearch = parentEntry.getBrowserConnection().getQuickSearch();
@@ -592,17 +623,18 @@ public class BrowserContentProvider implements ITreeContentProvider
     private BrowserEntryPage[] getEntryPages( final IEntry parentEntry )
     {
         BrowserEntryPage[] entryPages;
+        int childrenCount = getChildrenCount( parentEntry );
         if ( !entryToEntryPagesMap.containsKey( parentEntry ) )
         {
-            entryPages = getEntryPages( parentEntry, 0, parentEntry.getChildrenCount() - 1 );
+            entryPages = getEntryPages( parentEntry, 0, childrenCount - 1 );
             entryToEntryPagesMap.put( parentEntry, entryPages );
         }
         else
         {
             entryPages = entryToEntryPagesMap.get( parentEntry );
-            if ( parentEntry.getChildrenCount() - 1 != entryPages[entryPages.length - 1].getLast() )
+            if ( childrenCount - 1 != entryPages[entryPages.length - 1].getLast() )
             {
-                entryPages = getEntryPages( parentEntry, 0, parentEntry.getChildrenCount() - 1 );
+                entryPages = getEntryPages( parentEntry, 0, childrenCount - 1 );
                 entryToEntryPagesMap.put( parentEntry, entryPages );
             }
         }
@@ -610,6 +642,24 @@ public class BrowserContentProvider implements ITreeContentProvider
     }
 
 
+    /**
+     * Gets the number of children of the given entry. For children fetched
+     * using the virtual list view that is the number reported by the
+     * server, including the children that aren't fetched yet.
+     *
+     * @param entry the entry
+     * @return the number of children
+     */
+    private int getChildrenCount( IEntry entry )
+    {
+        if ( entry.getVirtualChildren() != null )
+        {
+            return entry.getVirtualChildren().getContentCount();
+        }
+        return entry.getChildrenCount();
+    }
+
+
     /**
      * Creates and returns the entry pages for the given entry. The number of pages
      * depends on the number of entries and the paging size. 
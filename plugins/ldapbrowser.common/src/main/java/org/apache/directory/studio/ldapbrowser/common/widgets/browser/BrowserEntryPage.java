@@ -24,6 +24,7 @@ package org.apache.directory.studio.ldapbrowser.common.widgets.browser;
 import java.util.Arrays;
 
 import org.apache.directory.studio.ldapbrowser.core.model.IEntry;
+import org.apache.directory.studio.ldapbrowser.core.model.VirtualChildren;
 
 
 /**
@@ -84,7 +85,7 @@ public class BrowserEntryPage
      * Gets the children, either the sub pages or 
      * the entries contained in this page.
      *
-     * @return the children
+     * @return the children, null if the entries of this page aren't fetched yet
      */
     public Object[] getChildren()
     {
@@ -92,6 +93,12 @@ public class BrowserEntryPage
         {
             return subpages;
         }
+        else if ( entry.getVirtualChildren() != null )
+        {
+            // already sorted by the server
+            VirtualChildren virtualChildren = entry.getVirtualChildren();
+            return virtualChildren.getChildren( first, last );
+        }
         else
         {
             // 1. get children
@@ -89,9 +89,11 @@ public class BrowserLabelProvider extends LabelProvider implements IFontProvider
 
             StringBuffer append = new StringBuffer();
 
-            if ( entry.isChildrenInitialized() && ( entry.getChildrenCount() > 0 ) || entry.getChildrenFilter() != null )
+            int childrenCount = entry.getVirtualChildren() != null ? entry.getVirtualChildren().getContentCount()
+                : entry.getChildrenCount();
+            if ( entry.isChildrenInitialized() && ( childrenCount > 0 ) || entry.getChildrenFilter() != null )
             {
-                append.append( " (" ).append( entry.getChildrenCount() ); //$NON-NLS-1$
+                append.append( " (" ).append( childrenCount ); //$NON-NLS-1$
                 if ( entry.hasMoreChildren() )
                 {
                     append.append( "+" ); //$NON-NLS-1$
@@ -334,6 +334,19 @@ public class BrowserPreferences implements IPropertyChangeListener, Preferences.
     }
 
 
+    /**
+     * Returns true if the children of visible entries should be
+     * fetched in background before they are expanded.
+     *
+     * @return true if the children of visible entries should be prefetched
+     */
+    public boolean isPrefetchChildren()
+    {
+        return BrowserCommonActivator.getDefault().getPreferenceStore().getBoolean(
+            BrowserCommonConstants.PREFERENCE_BROWSER_PREFETCH_CHILDREN );
+    }
+
+
     /**
      * Returns true if the browser should check for children
      * while browsing the directory.
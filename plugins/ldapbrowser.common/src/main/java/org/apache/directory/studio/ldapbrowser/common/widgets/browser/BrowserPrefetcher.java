@@ -0,0 +1,342 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+
+package org.apache.directory.studio.ldapbrowser.common.widgets.browser;
+
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import org.apache.directory.studio.connection.core.Connection;
+import org.apache.directory.studio.ldapbrowser.core.jobs.StudioBrowserJob;
+import org.apache.directory.studio.ldapbrowser.core.model.IContinuation;
+import org.apache.directory.studio.ldapbrowser.core.model.IEntry;
+import org.apache.directory.studio.ldapbrowser.core.model.IRootDSE;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jface.viewers.TreeViewer;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.Rectangle;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.Tree;
+import org.eclipse.swt.widgets.TreeItem;
+
+
+/**
+ * The BrowserPrefetcher fetches the children of entries that became visible
+ * in the browser tree, so they are available when the user expands the entry.
+ * The prefetches run as low priority system jobs, the number of prefetches
+ * per second is limited. Prefetches that didn't start yet are canceled when
+ * their entry is scrolled out of view.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class BrowserPrefetcher implements Listener
+{
+
+    /** The delay in ms after a change of the tree before the visible entries are checked */
+    private static final int SCAN_DELAY = 300;
+
+    /** The maximum number of prefetches started per second */
+    private static final int MAX_PREFETCHES_PER_SECOND = 4;
+
+    /** The maximum number of visible tree items to check */
+    private static final int MAX_VISIBLE_ITEMS = 200;
+
+    /**
+     * The tree events that change the visible entries, together with the selection of the
+     * vertical scroll bar. Paint events are not used, they are fired for every redraw.
+     */
+    static final int[] TREE_EVENTS =
+        { SWT.Expand, SWT.Collapse, SWT.Resize };
+
+    /** The tree viewer */
+    private TreeViewer viewer;
+
+    /** The preferences */
+    private BrowserPreferences preferences;
+
+    /** The scheduled or running prefetch jobs */
+    private Map<IEntry, Job> prefetchJobs = new HashMap<IEntry, Job>();
+
+    /** The entries already prefetched, they are not prefetched again */
+    private Set<IEntry> prefetchedEntries = Collections.newSetFromMap( new WeakHashMap<IEntry, Boolean>() );
+
+    /** The start of the current one second interval */
+    private long intervalStart;
+
+    /** The number of prefetches started in the current interval */
+    private int prefetchesInInterval;
+
+    /** The flag indicating that a scan is scheduled */
+    private boolean scanScheduled;
+
+    /** The runnable that checks the visible entries */
+    private Runnable scanRunnable = new Runnable()
+    {
+        public void run()
+        {
+            scanScheduled = false;
+            scan();
+        }
+    };
+
+
+    /**
+     * Creates a new instance of BrowserPrefetcher.
+     *
+     * @param viewer the tree viewer
+     * @param preferences the preferences
+     */
+    public BrowserPrefetcher( TreeViewer viewer, BrowserPreferences preferences )
+    {
+        this.viewer = viewer;
+        this.preferences = preferences;
+
+        Tree tree = viewer.getTree();
+        for ( int eventType : TREE_EVENTS )
+        {
+            tree.addListener( eventType, this );
+        }
+        if ( tree.getVerticalBar() != null )
+        {
+            tree.getVerticalBar().addListener( SWT.Selection, this );
+        }
+    }
+
+
+    /**
+     * Disposes this prefetcher, scheduled prefetches are canceled.
+     */
+    public void dispose()
+    {
+        Tree tree = viewer.getTree();
+        if ( !tree.isDisposed() )
+        {
+            for ( int eventType : TREE_EVENTS )
+            {
+                tree.removeListener( eventType, this );
+            }
+            if ( tree.getVerticalBar() != null )
+            {
+                tree.getVerticalBar().removeListener( SWT.Selection, this );
+            }
+            tree.getDisplay().timerExec( -1, scanRunnable );
+        }
+
+        cancelPrefetches( Collections.<IEntry> emptySet() );
+        prefetchedEntries.clear();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void handleEvent( Event event )
+    {
+        scheduleScan( SCAN_DELAY );
+    }
+
+
+    private void scheduleScan( int delay )
+    {
+        Tree tree = viewer.getTree();
+        if ( !scanScheduled && !tree.isDisposed() && preferences.isPrefetchChildren() )
+        {
+            scanScheduled = true;
+            tree.getDisplay().timerExec( delay, scanRunnable );
+        }
+    }
+
+
+    /**
+     * Checks the visible entries, cancels the prefetches of entries that
+     * aren't visible anymore and starts the prefetches of new visible entries.
+     */
+    private void scan()
+    {
+        if ( viewer.getTree().isDisposed() || !( viewer.getContentProvider() instanceof BrowserContentProvider ) )
+        {
+            return;
+        }
+        if ( !preferences.isPrefetchChildren() )
+        {
+            cancelPrefetches( Collections.<IEntry> emptySet() );
+            return;
+        }
+
+        Set<IEntry> visibleEntries = getVisibleEntries();
+        cancelPrefetches( visibleEntries );
+
+        long now = System.currentTimeMillis();
+        if ( now - intervalStart >= 1000 )
+        {
+            intervalStart = now;
+            prefetchesInInterval = 0;
+        }
+
+        BrowserContentProvider contentProvider = ( BrowserContentProvider ) viewer.getContentProvider();
+        for ( IEntry entry : visibleEntries )
+        {
+            if ( !prefetchedEntries.contains( entry ) && isPrefetchable( entry ) )
+            {
+                if ( prefetchesInInterval >= MAX_PREFETCHES_PER_SECOND )
+                {
+                    // continue in the next interval
+                    scheduleScan( ( int ) ( intervalStart + 1000 - now ) );
+                    return;
+                }
+
+                StudioBrowserJob job = new StudioBrowserJob( contentProvider
+                    .createInitializeChildrenRunnable( entry ) );
+                job.setSystem( true );
+                job.setPriority( Job.DECORATE );
+                job.schedule();
+                prefetchJobs.put( entry, job );
+                prefetchedEntries.add( entry );
+                prefetchesInInterval++;
+            }
+        }
+    }
+
+
+    /**
+     * Cancels the prefetches of entries that aren't visible anymore. Running
+     * prefetches are not canceled, they are cheaper to complete than to abort.
+     *
+     * @param visibleEntries the visible entries
+     */
+    private void cancelPrefetches( Set<IEntry> visibleEntries )
+    {
+        for ( Iterator<Map.Entry<IEntry, Job>> it = prefetchJobs.entrySet().iterator(); it.hasNext(); )
+        {
+            Map.Entry<IEntry, Job> prefetchJob = it.next();
+            Job job = prefetchJob.getValue();
+            if ( job.getState() == Job.NONE )
+            {
+                // done
+                it.remove();
+            }
+            else if ( job.getState() != Job.RUNNING && !visibleEntries.contains( prefetchJob.getKey() )
+                && job.cancel() )
+            {
+                // may be prefetched again when visible again
+                prefetchedEntries.remove( prefetchJob.getKey() );
+                it.remove();
+            }
+        }
+    }
+
+
+    /**
+     * Checks if the children of the entry should be prefetched. Only the
+     * children of entries that may have children and whose connection is
+     * already opened are prefetched.
+     *
+     * @param entry the entry
+     *
+     * @return true if the children of the entry should be prefetched
+     */
+    static boolean isPrefetchable( IEntry entry )
+    {
+        if ( entry.isChildrenInitialized() || !entry.hasChildren() || entry instanceof IRootDSE
+            || entry instanceof IContinuation || entry.getBrowserConnection() == null )
+        {
+            return false;
+        }
+
+        Connection connection = entry.getBrowserConnection().getConnection();
+        return connection != null && connection.getConnectionWrapper().isConnected();
+    }
+
+
+    /**
+     * Gets the collapsed entries whose tree items are currently visible.
+     *
+     * @return the visible entries, in display order
+     */
+    private Set<IEntry> getVisibleEntries()
+    {
+        Set<IEntry> entries = new LinkedHashSet<IEntry>();
+        Tree tree = viewer.getTree();
+        Rectangle clientArea = tree.getClientArea();
+        TreeItem item = tree.getTopItem();
+        for ( int i = 0; item != null && i < MAX_VISIBLE_ITEMS; i++ )
+        {
+            if ( item.getBounds().y > clientArea.y + clientArea.height )
+            {
+                break;
+            }
+            if ( item.getData() instanceof IEntry && !item.getExpanded() )
+            {
+                entries.add( ( IEntry ) item.getData() );
+            }
+            item = getNextVisibleItem( item );
+        }
+        return entries;
+    }
+
+
+    /**
+     * Gets the tree item that is displayed below the given tree item.
+     *
+     * @param item the tree item
+     *
+     * @return the next visible tree item, null if the given item is the last one
+     */
+    private static TreeItem getNextVisibleItem( TreeItem item )
+    {
+        if ( item.getExpanded() && item.getItemCount() > 0 )
+        {
+            return item.getItem( 0 );
+        }
+
+        while ( item != null )
+        {
+            TreeItem parentItem = item.getParentItem();
+            if ( parentItem != null )
+            {
+                int index = parentItem.indexOf( item );
+                if ( index + 1 < parentItem.getItemCount() )
+                {
+                    return parentItem.getItem( index + 1 );
+                }
+            }
+            else
+            {
+                Tree tree = item.getParent();
+                int index = tree.indexOf( item );
+                if ( index + 1 < tree.getItemCount() )
+                {
+                    return tree.getItem( index + 1 );
+                }
+            }
+            item = parentItem;
+        }
+
+        return null;
+    }
+
+}
@@ -33,13 +33,17 @@ import org.apache.directory.studio.ldapbrowser.common.BrowserCommonActivator;
 import org.apache.directory.studio.ldapbrowser.common.BrowserCommonConstants;
 import org.apache.directory.studio.ldapbrowser.common.actions.BrowserSelectionUtils;
 import org.apache.directory.studio.ldapbrowser.common.widgets.ListContentProposalProvider;
+import org.apache.directory.studio.ldapbrowser.core.events.EventRegistry;
+import org.apache.directory.studio.ldapbrowser.core.events.SearchUpdateEvent;
 import org.apache.directory.studio.ldapbrowser.core.jobs.SearchRunnable;
 import org.apache.directory.studio.ldapbrowser.core.jobs.StudioBrowserJob;
 import org.apache.directory.studio.ldapbrowser.core.model.IBrowserConnection;
 import org.apache.directory.studio.ldapbrowser.core.model.IEntry;
 import org.apache.directory.studio.ldapbrowser.core.model.IQuickSearch;
 import org.apache.directory.studio.ldapbrowser.core.model.ISearch;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.BrowserConnection;
 import org.apache.directory.studio.ldapbrowser.core.model.impl.QuickSearch;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.QuickSearchIndex;
 import org.apache.directory.studio.ldapbrowser.core.model.schema.SchemaUtils;
 import org.eclipse.jface.dialogs.IDialogSettings;
 import org.eclipse.jface.fieldassist.ComboContentAdapter;
@@ -335,6 +339,23 @@ public class BrowserQuickSearchWidget
         // set new quick search
         conn.setQuickSearch( quickSearch );
 
+        // show the matching cached entries immediately, the directory search refines them,
+        // the index is built in the background and used by the next quick search
+        if ( conn instanceof BrowserConnection )
+        {
+            QuickSearchIndex quickSearchIndex = ( ( BrowserConnection ) conn ).getQuickSearchIndex();
+            if ( quickSearchIndex.isBuilt() )
+            {
+                quickSearchIndex.search( quickSearch );
+                EventRegistry.fireSearchUpdated( new SearchUpdateEvent( quickSearch,
+                    SearchUpdateEvent.EventDetail.SEARCH_PERFORMED ), this );
+            }
+            else
+            {
+                quickSearchIndex.scheduleBuild();
+            }
+        }
+
         // execute quick search
         new StudioBrowserJob( new SearchRunnable( new ISearch[]
             { quickSearch } ) ).execute();
@@ -249,7 +249,11 @@ public class BrowserUniversalListener implements ConnectionUpdateListener, Entry
             return;
         }
 
-        if ( event instanceof ChildrenInitializedEvent )
+        // A ChildrenInitializedEvent that carries added or deleted children is
+        // fired by IEntry.updateChildren() for a bulk modification of the children,
+        // only refresh the tree to keep the expanded subtrees
+        if ( event instanceof ChildrenInitializedEvent
+            && !( ( ChildrenInitializedEvent ) event ).hasChildrenChanges() )
         {
             boolean expandedState = viewer.getExpandedState( event.getModifiedEntry() );
             viewer.collapseToLevel( event.getModifiedEntry(), TreeViewer.ALL_LEVELS );
@@ -64,6 +64,9 @@ public class BrowserWidget extends ViewFormWidget
     /** The tree viewer. */
     private TreeViewer viewer;
 
+    /** The prefetcher for the children of visible entries. */
+    private BrowserPrefetcher prefetcher;
+
 
     /**
      * Creates a new instance of BrowserWidget.
@@ -175,6 +178,9 @@ public class BrowserWidget extends ViewFormWidget
         viewer.setContentProvider( configuration.getContentProvider( this ) );
         viewer.setLabelProvider( configuration.getLabelProvider( viewer ) );
 
+        // prefetch the children of visible entries
+        prefetcher = new BrowserPrefetcher( viewer, configuration.getPreferences() );
+
         return tree;
     }
 
@@ -206,6 +212,9 @@ public class BrowserWidget extends ViewFormWidget
     {
         if ( this.viewer != null )
         {
+            this.prefetcher.dispose();
+            this.prefetcher = null;
+
             this.configuration.dispose();
             this.configuration = null;
 
@@ -90,6 +90,8 @@ public class BrowserParameterPage extends AbstractConnectionParameterPage
 
     private static final String X_FETCH_SUBENTRIES = "X-FETCH-SUBENTRIES"; //$NON-NLS-1$
 
+    private static final String X_LIVE_CACHE_SYNC = "X-LIVE-CACHE-SYNC"; //$NON-NLS-1$
+
     private static final String X_FETCH_OPERATIONAL_ATTRIBUTES = "X-FETCH-OPERATIONAL-ATTRIBUTES"; //$NON-NLS-1$
 
     private static final String X_PAGED_SEARCH = "X-PAGED-SEARCH"; //$NON-NLS-1$
@@ -122,6 +124,9 @@ public class BrowserParameterPage extends AbstractConnectionParameterPage
     /** The fetch subentries button. */
     private Button fetchSubentriesButton;
 
+    /** The live cache synchronization button. */
+    private Button liveCacheSyncButton;
+
     /** The paged search button. */
     private Button pagedSearchButton;
 
@@ -237,6 +242,18 @@ public class BrowserParameterPage extends AbstractConnectionParameterPage
     }
 
 
+    /**
+     * Returns true if the cache of expanded subtrees should
+     * be kept up to date.
+     * 
+     * @return true, if the cache should be synchronized
+     */
+    private boolean isLiveCacheSync()
+    {
+        return liveCacheSyncButton.getSelection();
+    }
+
+
     /**
      * Returns true if operational attributes should be fetched
      * while browsing.
@@ -375,6 +392,12 @@ public class BrowserParameterPage extends AbstractConnectionParameterPage
             .getString( "BrowserParameterPage.FetchSubentriesWhileBrowsingTooltip" ) ); //$NON-NLS-1$
         fetchSubentriesButton.setSelection( false );
 
+        // content synchronization or persistent search control
+        liveCacheSyncButton = BaseWidgetUtils.createCheckbox( groupComposite, Messages
+            .getString( "BrowserParameterPage.LiveCacheSync" ), 1 ); //$NON-NLS-1$
+        liveCacheSyncButton.setToolTipText( Messages.getString( "BrowserParameterPage.LiveCacheSyncTooltip" ) ); //$NON-NLS-1$
+        liveCacheSyncButton.setSelection( false );
+
         // paged search control
         Composite sprcComposite = BaseWidgetUtils.createColumnContainer( groupComposite, 4, 1 );
         pagedSearchButton = BaseWidgetUtils.createCheckbox( sprcComposite, Messages
@@ -494,6 +517,10 @@ public class BrowserParameterPage extends AbstractConnectionParameterPage
             .getExtendedBoolProperty( IBrowserConnection.CONNECTION_PARAMETER_FETCH_SUBENTRIES );
         fetchSubentriesButton.setSelection( fetchSubentries );
 
+        boolean liveCacheSync = parameter
+            .getExtendedBoolProperty( IBrowserConnection.CONNECTION_PARAMETER_LIVE_CACHE_SYNC );
+        liveCacheSyncButton.setSelection( liveCacheSync );
+
         boolean pagedSearch = parameter.getExtendedBoolProperty( IBrowserConnection.CONNECTION_PARAMETER_PAGED_SEARCH );
         pagedSearchButton.setSelection( pagedSearch );
         String pagedSearchSize = parameter
@@ -582,6 +609,14 @@ public class BrowserParameterPage extends AbstractConnectionParameterPage
             }
         } );
 
+        liveCacheSyncButton.addSelectionListener( new SelectionAdapter()
+        {
+            public void widgetSelected( SelectionEvent arg0 )
+            {
+                connectionPageModified();
+            }
+        } );
+
         pagedSearchButton.addSelectionListener( new SelectionAdapter()
         {
             public void widgetSelected( SelectionEvent e )
@@ -635,6 +670,8 @@ public class BrowserParameterPage extends AbstractConnectionParameterPage
         parameter.setExtendedBoolProperty( IBrowserConnection.CONNECTION_PARAMETER_MANAGE_DSA_IT, manageDsaIT() );
         parameter.setExtendedBoolProperty( IBrowserConnection.CONNECTION_PARAMETER_FETCH_SUBENTRIES,
             isFetchSubentries() );
+        parameter.setExtendedBoolProperty( IBrowserConnection.CONNECTION_PARAMETER_LIVE_CACHE_SYNC,
+            isLiveCacheSync() );
         parameter.setExtendedBoolProperty( IBrowserConnection.CONNECTION_PARAMETER_PAGED_SEARCH, isPagedSearch() );
         parameter.setExtendedIntProperty( IBrowserConnection.CONNECTION_PARAMETER_PAGED_SEARCH_SIZE,
             getPagedSearchSize() );
@@ -675,6 +712,8 @@ public class BrowserParameterPage extends AbstractConnectionParameterPage
             .getExtendedBoolProperty( IBrowserConnection.CONNECTION_PARAMETER_MANAGE_DSA_IT );
         boolean fetchSubentries = connectionParameter
             .getExtendedBoolProperty( IBrowserConnection.CONNECTION_PARAMETER_FETCH_SUBENTRIES );
+        boolean liveCacheSync = connectionParameter
+            .getExtendedBoolProperty( IBrowserConnection.CONNECTION_PARAMETER_LIVE_CACHE_SYNC );
         boolean pagedSearch = connectionParameter
             .getExtendedBoolProperty( IBrowserConnection.CONNECTION_PARAMETER_PAGED_SEARCH );
         int pagedSearchSize = connectionParameter
@@ -684,7 +723,8 @@ public class BrowserParameterPage extends AbstractConnectionParameterPage
 
         return isReconnectionRequired() || countLimit != getCountLimit() || timeLimit != getTimeLimit()
             || manageDsaIT != manageDsaIT() || fetchSubentries != isFetchSubentries() || pagedSearch != isPagedSearch()
-            || pagedSearchSize != getPagedSearchSize() || pagedSearchScrollMode != isPagedSearchScrollMode();
+            || pagedSearchSize != getPagedSearchSize() || pagedSearchScrollMode != isPagedSearchScrollMode()
+            || liveCacheSync != isLiveCacheSync();
     }
 
 
@@ -800,6 +840,14 @@ public class BrowserParameterPage extends AbstractConnectionParameterPage
             ldapUrl.getExtensions().add( new Extension( false, X_FETCH_SUBENTRIES, null ) );
         }
 
+        // live cache synchronization
+        boolean liveCacheSync = parameter
+            .getExtendedBoolProperty( IBrowserConnection.CONNECTION_PARAMETER_LIVE_CACHE_SYNC );
+        if ( liveCacheSync )
+        {
+            ldapUrl.getExtensions().add( new Extension( false, X_LIVE_CACHE_SYNC, null ) );
+        }
+
         // paged search
         boolean pagedSearch = parameter.getExtendedBoolProperty( IBrowserConnection.CONNECTION_PARAMETER_PAGED_SEARCH );
         if ( pagedSearch )
@@ -918,6 +966,11 @@ public class BrowserParameterPage extends AbstractConnectionParameterPage
         parameter.setExtendedBoolProperty( IBrowserConnection.CONNECTION_PARAMETER_FETCH_SUBENTRIES,
             fetchSubentries != null );
 
+        // live cache synchronization
+        Extension liveCacheSync = ldapUrl.getExtension( X_LIVE_CACHE_SYNC );
+        parameter.setExtendedBoolProperty( IBrowserConnection.CONNECTION_PARAMETER_LIVE_CACHE_SYNC,
+            liveCacheSync != null );
+
         // paged search
         Extension pagedSearch = ldapUrl.getExtension( X_PAGED_SEARCH );
         String pagedSearchSize = ldapUrl.getExtensionValue( X_PAGED_SEARCH_SIZE );
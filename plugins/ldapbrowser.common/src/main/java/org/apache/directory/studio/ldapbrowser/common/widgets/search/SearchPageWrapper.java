@@ -142,6 +142,9 @@ public class SearchPageWrapper extends AbstractWidget
     /** Style for invisible follow referrals manually*/
     public static final int REFERRALOPTIONS_FOLLOW_MANUAL_INVISIBLE = 1 << 26;
 
+    /** Style for visible search cache only field */
+    public static final int CACHEONLY_VISIBLE = 1 << 27;
+
     /** Style for invisible controls fields */
     public static final int CONTROLS_INVISIBLE = 1 << 30;
 
@@ -199,6 +202,9 @@ public class SearchPageWrapper extends AbstractWidget
     /** The referrals handling widget. */
     protected ReferralsHandlingWidget referralsHandlingWidget;
 
+    /** The search cache only button. */
+    protected Button cacheOnlyButton;
+
     /** The control group. */
     protected Group controlGroup;
 
@@ -527,6 +533,20 @@ public class SearchPageWrapper extends AbstractWidget
                 validate();
             }
         } );
+
+        if ( isActive( CACHEONLY_VISIBLE ) )
+        {
+            cacheOnlyButton = BaseWidgetUtils.createCheckbox( optionsComposite, Messages
+                .getString( "SearchPageWrapper.CacheOnly" ), 2 ); //$NON-NLS-1$
+            cacheOnlyButton.setToolTipText( Messages.getString( "SearchPageWrapper.CacheOnlyTooltip" ) ); //$NON-NLS-1$
+            cacheOnlyButton.addSelectionListener( new SelectionAdapter()
+            {
+                public void widgetSelected( SelectionEvent e )
+                {
+                    validate();
+                }
+            } );
+        }
     }
 
 
@@ -707,6 +727,10 @@ public class SearchPageWrapper extends AbstractWidget
             {
                 referralsHandlingWidget.setReferralsHandlingMethod( search.getReferralsHandlingMethod() );
             }
+            if ( cacheOnlyButton != null )
+            {
+                cacheOnlyButton.setSelection( search.getSearchParameter().isCacheOnly() );
+            }
             if ( subentriesControlButton != null )
             {
                 List<Control> searchControls = search.getControls();
@@ -863,6 +887,11 @@ public class SearchPageWrapper extends AbstractWidget
                 searchModified = true;
             }
         }
+        if ( cacheOnlyButton != null && cacheOnlyButton.getSelection() != search.getSearchParameter().isCacheOnly() )
+        {
+            search.getSearchParameter().setCacheOnly( cacheOnlyButton.getSelection() );
+            searchModified = true;
+        }
         if ( subentriesControlButton != null )
         {
             Set<Control> oldControls = new HashSet<>();
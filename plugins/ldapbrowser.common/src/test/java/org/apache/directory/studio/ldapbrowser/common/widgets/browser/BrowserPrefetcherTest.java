@@ -0,0 +1,115 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.studio.ldapbrowser.common.widgets.browser;
+
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.ldap.model.name.Rdn;
+import org.apache.directory.studio.connection.core.Connection;
+import org.apache.directory.studio.connection.core.ConnectionParameter;
+import org.apache.directory.studio.connection.core.event.ConnectionEventRegistry;
+import org.apache.directory.studio.ldapbrowser.core.model.IEntry;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.BaseDNEntry;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.BrowserConnection;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.DummyEntry;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.Entry;
+import org.eclipse.swt.SWT;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Tests the {@link BrowserPrefetcher}.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class BrowserPrefetcherTest
+{
+
+    private BrowserConnection connection;
+
+    private IEntry base;
+
+
+    @BeforeEach
+    public void setup() throws Exception
+    {
+        ConnectionEventRegistry.suspendEventFiringInCurrentThread();
+        connection = new BrowserConnection( new Connection( new ConnectionParameter() ) );
+        base = new BaseDNEntry( new Dn( "ou=system" ), connection );
+        connection.cacheEntry( base );
+    }
+
+
+    @AfterEach
+    public void tearDown()
+    {
+        ConnectionEventRegistry.resumeEventFiringInCurrentThread();
+    }
+
+
+    /**
+     * Tests that scans are only triggered by the events that change the visible
+     * entries, not by the paint events that are fired for every redraw.
+     */
+    @Test
+    public void testTreeEvents()
+    {
+        int[] events = BrowserPrefetcher.TREE_EVENTS.clone();
+        Arrays.sort( events );
+
+        assertTrue( Arrays.binarySearch( events, SWT.Expand ) >= 0 );
+        assertTrue( Arrays.binarySearch( events, SWT.Collapse ) >= 0 );
+        assertTrue( Arrays.binarySearch( events, SWT.Resize ) >= 0 );
+        assertFalse( Arrays.binarySearch( events, SWT.Paint ) >= 0 );
+    }
+
+
+    /**
+     * Tests that entries without children, with initialized children or
+     * without browser connection are not prefetched.
+     */
+    @Test
+    public void testNotPrefetchable() throws Exception
+    {
+        IEntry leaf = new Entry( base, new Rdn( "uid=user1" ) );
+        connection.cacheEntry( leaf );
+        assertFalse( BrowserPrefetcher.isPrefetchable( leaf ) );
+
+        IEntry initialized = new Entry( base, new Rdn( "ou=users" ) );
+        connection.cacheEntry( initialized );
+        initialized.setHasChildrenHint( true );
+        initialized.setChildrenInitialized( true );
+        assertFalse( BrowserPrefetcher.isPrefetchable( initialized ) );
+
+        assertFalse( BrowserPrefetcher.isPrefetchable( connection.getRootDSE() ) );
+
+        IEntry dummy = new DummyEntry( new Dn( "ou=dummy" ), null );
+        dummy.setHasChildrenHint( true );
+        assertFalse( BrowserPrefetcher.isPrefetchable( dummy ) );
+    }
+
+}
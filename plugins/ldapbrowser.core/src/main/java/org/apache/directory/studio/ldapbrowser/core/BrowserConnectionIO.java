@@ -85,6 +85,7 @@ public class BrowserConnectionIO
     private static final String ALIASES_DEREFERENCING_METHOD_TAG = "aliasesDereferencingMethod"; //$NON-NLS-1$
     private static final String REFERRALS_HANDLING_METHOD_TAG = "referralsHandlingMethod"; //$NON-NLS-1$
     private static final String PAGED_SEARCH_SCROLL_MODE = "pagedSearchScrollMode"; //$NON-NLS-1$
+    private static final String CACHE_ONLY = "cacheOnly"; //$NON-NLS-1$
     private static final String CONTROLS_TAG = "controls"; //$NON-NLS-1$
     private static final String CONTROL_TAG = "control"; //$NON-NLS-1$
     private static final String OID_TAG = "oid"; //$NON-NLS-1$
@@ -343,6 +344,13 @@ public class BrowserConnectionIO
             searchParameter.setPagedSearchScrollMode( Boolean.valueOf( pagedSearchScrollModeAttribute.getValue() ) );
         }
 
+        // Cache only
+        Attribute cacheOnlyAttribute = searchParameterElement.attribute( CACHE_ONLY );
+        if ( cacheOnlyAttribute != null )
+        {
+            searchParameter.setCacheOnly( Boolean.valueOf( cacheOnlyAttribute.getValue() ) );
+        }
+
         // Controls
         Element controlsElement = searchParameterElement.element( CONTROLS_TAG );
         if ( controlsElement != null )
@@ -537,6 +545,12 @@ public class BrowserConnectionIO
         // Paged search scroll mode
         searchParameterElement.addAttribute( PAGED_SEARCH_SCROLL_MODE, "" + searchParameter.isPagedSearchScrollMode() );
 
+        // Cache only
+        if ( searchParameter.isCacheOnly() )
+        {
+            searchParameterElement.addAttribute( CACHE_ONLY, "true" ); //$NON-NLS-1$
+        }
+
         // Controls
         Element controlsElement = searchParameterElement.addElement( CONTROLS_TAG );
         for ( Control control : searchParameter.getControls() )
@@ -35,6 +35,7 @@ import org.apache.directory.studio.ldapbrowser.core.jobs.InitializeAttributesRun
 import org.apache.directory.studio.ldapbrowser.core.jobs.ReloadSchemaRunnable;
 import org.apache.directory.studio.ldapbrowser.core.model.IBrowserConnection;
 import org.apache.directory.studio.ldapbrowser.core.model.IRootDSE;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.BrowserConnection;
 import org.apache.directory.studio.ldapbrowser.core.model.schema.Schema;
 import org.apache.directory.studio.ldapbrowser.core.model.schema.SchemaUtils;
 
@@ -61,6 +62,10 @@ public class BrowserConnectionListener implements IConnectionListener
             try
             {
                 EventRegistry.suspendEventFiringInCurrentThread();
+                if ( browserConnection instanceof BrowserConnection )
+                {
+                    ( ( BrowserConnection ) browserConnection ).retainSchema();
+                }
                 openBrowserConnection( browserConnection, monitor );
                 setBinaryAttributes( browserConnection, monitor );
             }
@@ -90,7 +95,12 @@ public class BrowserConnectionListener implements IConnectionListener
             try
             {
                 EventRegistry.suspendEventFiringInCurrentThread();
+                BrowserCorePlugin.getDefault().getConnectionManager().saveDitCache( browserConnection );
                 browserConnection.clearCaches();
+                if ( browserConnection instanceof BrowserConnection )
+                {
+                    ( ( BrowserConnection ) browserConnection ).releaseSchema();
+                }
             }
             finally
             {
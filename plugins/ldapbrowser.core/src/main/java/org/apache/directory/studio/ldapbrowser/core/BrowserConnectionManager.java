@@ -31,7 +31,6 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
@@ -50,18 +49,25 @@ import org.apache.directory.studio.ldapbrowser.core.events.BookmarkUpdateEvent;
 import org.apache.directory.studio.ldapbrowser.core.events.BookmarkUpdateListener;
 import org.apache.directory.studio.ldapbrowser.core.events.BrowserConnectionUpdateEvent;
 import org.apache.directory.studio.ldapbrowser.core.events.BrowserConnectionUpdateListener;
+import org.apache.directory.studio.ldapbrowser.core.events.EntryAddedEvent;
+import org.apache.directory.studio.ldapbrowser.core.events.EntryDeletedEvent;
+import org.apache.directory.studio.ldapbrowser.core.events.EntryModificationEvent;
+import org.apache.directory.studio.ldapbrowser.core.events.EntryUpdateListener;
 import org.apache.directory.studio.ldapbrowser.core.events.EventRegistry;
 import org.apache.directory.studio.ldapbrowser.core.events.SearchUpdateEvent;
 import org.apache.directory.studio.ldapbrowser.core.events.SearchUpdateListener;
 import org.apache.directory.studio.ldapbrowser.core.model.BookmarkParameter;
 import org.apache.directory.studio.ldapbrowser.core.model.IBookmark;
 import org.apache.directory.studio.ldapbrowser.core.model.IBrowserConnection;
+import org.apache.directory.studio.ldapbrowser.core.model.IEntry;
 import org.apache.directory.studio.ldapbrowser.core.model.ISearch;
 import org.apache.directory.studio.ldapbrowser.core.model.SearchParameter;
 import org.apache.directory.studio.ldapbrowser.core.model.impl.Bookmark;
 import org.apache.directory.studio.ldapbrowser.core.model.impl.BrowserConnection;
 import org.apache.directory.studio.ldapbrowser.core.model.impl.Search;
 import org.apache.directory.studio.ldapbrowser.core.model.schema.Schema;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
 
 
 /**
@@ -70,7 +76,7 @@ import org.apache.directory.studio.ldapbrowser.core.model.schema.Schema;
  * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
  */
 public class BrowserConnectionManager implements ConnectionUpdateListener, BrowserConnectionUpdateListener,
-    SearchUpdateListener, BookmarkUpdateListener
+    SearchUpdateListener, BookmarkUpdateListener, EntryUpdateListener
 {
 
     /** The list of connections. */
@@ -93,6 +99,7 @@ public class BrowserConnectionManager implements ConnectionUpdateListener, Brows
         EventRegistry.addSearchUpdateListener( this, BrowserCorePlugin.getDefault().getEventRunner() );
         EventRegistry.addBookmarkUpdateListener( this, BrowserCorePlugin.getDefault().getEventRunner() );
         EventRegistry.addBrowserConnectionUpdateListener( this, BrowserCorePlugin.getDefault().getEventRunner() );
+        EventRegistry.addEntryUpdateListener( this, BrowserCorePlugin.getDefault().getEventRunner() );
     }
 
 
@@ -105,12 +112,42 @@ public class BrowserConnectionManager implements ConnectionUpdateListener, Brows
      *      the Schema Cache filename for the corresponding browser connection
      */
     public static final String getSchemaCacheFileName( String id )
+    {
+        return BrowserCorePlugin.getDefault().getStateLocation().append(
+            "schema-" + Utils.getFilenameString( id ) + ".schema" ).toOSString(); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+
+    /**
+     * Gets the filename of the LDIF Schema Cache used by previous versions.
+     *
+     * @param id
+     *      the id of the connection
+     * @return
+     *      the filename of the LDIF Schema Cache
+     */
+    private static final String getLdifSchemaCacheFileName( String id )
     {
         return BrowserCorePlugin.getDefault().getStateLocation().append(
             "schema-" + Utils.getFilenameString( id ) + ".ldif" ).toOSString(); //$NON-NLS-1$ //$NON-NLS-2$
     }
 
 
+    /**
+     * Gets the DIT Cache filename for the corresponding browser connection.
+     *
+     * @param id
+     *      the id of the connection
+     * @return
+     *      the DIT Cache filename for the corresponding browser connection
+     */
+    public static final String getDitCacheFileName( String id )
+    {
+        return BrowserCorePlugin.getDefault().getStateLocation().append(
+            "dit-" + Utils.getFilenameString( id ) + ".cache" ).toOSString(); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+
     /**
      * Gets the filename of the Connection Store.
      *
@@ -217,14 +254,32 @@ public class BrowserConnectionManager implements ConnectionUpdateListener, Brows
     public void connectionRemoved( Connection connection )
     {
         // update connection list
-        connectionMap.remove( connection.getId() );
+        IBrowserConnection browserConnection = connectionMap.remove( connection.getId() );
+
+        // release the shared schema
+        if ( browserConnection != null )
+        {
+            browserConnection.setSchema( Schema.DEFAULT_SCHEMA );
+        }
 
-        // remove schema file
+        // remove schema files
         File schemaFile = new File( getSchemaCacheFileName( connection.getId() ) );
         if ( schemaFile.exists() )
         {
             schemaFile.delete();
         }
+        File ldifSchemaFile = new File( getLdifSchemaCacheFileName( connection.getId() ) );
+        if ( ldifSchemaFile.exists() )
+        {
+            ldifSchemaFile.delete();
+        }
+
+        // remove DIT cache file
+        File ditCacheFile = new File( getDitCacheFileName( connection.getId() ) );
+        if ( ditCacheFile.exists() )
+        {
+            ditCacheFile.delete();
+        }
 
         // make persistent
         saveBrowserConnections();
@@ -319,6 +374,36 @@ public class BrowserConnectionManager implements ConnectionUpdateListener, Brows
         {
             saveBrowserConnections();
         }
+        else if ( searchUpdateEvent.getDetail() == SearchUpdateEvent.EventDetail.SEARCH_PERFORMED
+            && searchUpdateEvent.getSearch().getBrowserConnection() instanceof BrowserConnection )
+        {
+            ( ( BrowserConnection ) searchUpdateEvent.getSearch().getBrowserConnection() ).getQuickSearchIndex()
+                .searchPerformed( searchUpdateEvent.getSearch() );
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void entryUpdated( EntryModificationEvent event )
+    {
+        if ( event.getConnection() instanceof BrowserConnection )
+        {
+            ( ( BrowserConnection ) event.getConnection() ).getQuickSearchIndex().entryUpdated( event );
+        }
+
+        // the windows of children fetched with the virtual list view are positional,
+        // they become invalid if a child is added or deleted and are fetched again
+        if ( event instanceof EntryAddedEvent || event instanceof EntryDeletedEvent )
+        {
+            IEntry parent = event.getModifiedEntry().getParententry();
+            if ( parent != null && parent.getVirtualChildren() != null )
+            {
+                parent.setVirtualChildren( null );
+                parent.setChildrenInitialized( false );
+            }
+        }
     }
 
 
@@ -415,16 +500,158 @@ public class BrowserConnectionManager implements ConnectionUpdateListener, Brows
             return;
         }
 
+        // To avoid a corrupt file, save to a temp file first
+        String filename = getSchemaCacheFileName( browserConnection.getConnection().getId() );
+        File tempFile = new File( filename + "-temp" ); //$NON-NLS-1$
         try
         {
-            String filename = getSchemaCacheFileName( browserConnection.getConnection().getId() );
-            FileWriter writer = new FileWriter( filename );
-            browserConnection.getSchema().saveToLdif( writer );
-            writer.close();
+            FileOutputStream out = new FileOutputStream( tempFile );
+            try
+            {
+                browserConnection.getSchema().saveToSnapshot( out );
+            }
+            finally
+            {
+                out.close();
+            }
         }
         catch ( Exception e )
         {
-            e.printStackTrace();
+            BrowserCorePlugin.getDefault().getLog().log(
+                new Status( IStatus.ERROR, BrowserCoreConstants.PLUGIN_ID,
+                    BrowserCoreMessages.error__saving_schema_cache + e.getMessage(), e ) );
+            tempFile.delete();
+            return;
+        }
+
+        File file = new File( filename );
+        if ( file.exists() )
+        {
+            file.delete();
+        }
+        if ( !tempFile.renameTo( file ) )
+        {
+            BrowserCorePlugin.getDefault().getLog().log(
+                new Status( IStatus.ERROR, BrowserCoreConstants.PLUGIN_ID,
+                    BrowserCoreMessages.error__saving_schema_cache + file.getAbsolutePath() ) );
+            tempFile.delete();
+            return;
+        }
+
+        // the LDIF schema cache of previous versions is replaced by the snapshot
+        File ldifFile = new File( getLdifSchemaCacheFileName( browserConnection.getConnection().getId() ) );
+        if ( ldifFile.exists() )
+        {
+            ldifFile.delete();
+        }
+    }
+
+
+    /**
+     * Loads the cached Schema of the Connection. The binary snapshot is
+     * preferred, the LDIF schema cache of previous versions is used
+     * as fallback.
+     *
+     * @param id
+     *      the id of the Connection
+     * @return
+     *      the cached Schema, the default schema if none is cached
+     */
+    private Schema loadSchema( String id )
+    {
+        File schemaFile = new File( getSchemaCacheFileName( id ) );
+        if ( schemaFile.exists() )
+        {
+            try
+            {
+                FileInputStream in = new FileInputStream( schemaFile );
+                try
+                {
+                    Schema schema = new Schema();
+                    schema.loadFromSnapshot( in );
+                    return schema;
+                }
+                finally
+                {
+                    in.close();
+                }
+            }
+            catch ( IOException e )
+            {
+                // corrupt or outdated snapshot, try the LDIF schema cache
+            }
+        }
+
+        File ldifSchemaFile = new File( getLdifSchemaCacheFileName( id ) );
+        if ( ldifSchemaFile.exists() )
+        {
+            try
+            {
+                FileReader reader = new FileReader( ldifSchemaFile );
+                try
+                {
+                    Schema schema = new Schema();
+                    schema.loadFromLdif( reader );
+                    return schema;
+                }
+                finally
+                {
+                    reader.close();
+                }
+            }
+            catch ( IOException e )
+            {
+            }
+        }
+
+        return Schema.DEFAULT_SCHEMA;
+    }
+
+
+    /**
+     * Saves the DIT cache of the browser connection, if the persistent
+     * DIT cache is enabled.
+     *
+     * @param browserConnection
+     *      the browser connection
+     */
+    public void saveDitCache( IBrowserConnection browserConnection )
+    {
+        if ( !( browserConnection instanceof BrowserConnection )
+            || !BrowserCorePlugin.getDefault().getPluginPreferences().getBoolean(
+                BrowserCoreConstants.PREFERENCE_PERSISTENT_DIT_CACHE ) )
+        {
+            return;
+        }
+
+        // To avoid a corrupt file, save to a temp file first
+        String filename = getDitCacheFileName( browserConnection.getConnection().getId() );
+        File tempFile = new File( filename + "-temp" ); //$NON-NLS-1$
+        try
+        {
+            ( ( BrowserConnection ) browserConnection ).getPersistentDitCache().save(
+                new FileOutputStream( tempFile ) );
+        }
+        catch ( IOException e )
+        {
+            BrowserCorePlugin.getDefault().getLog().log(
+                new Status( IStatus.ERROR, BrowserCoreConstants.PLUGIN_ID,
+                    BrowserCoreMessages.error__saving_dit_cache + e.getMessage(), e ) );
+            tempFile.delete();
+            return;
+        }
+
+        File file = new File( filename );
+        if ( file.exists() )
+        {
+            file.delete();
+        }
+        if ( !tempFile.renameTo( file ) )
+        {
+            BrowserCorePlugin.getDefault().getLog().log(
+                new Status( IStatus.ERROR, BrowserCoreConstants.PLUGIN_ID,
+                    BrowserCoreMessages.error__saving_dit_cache + file.getAbsolutePath() ) );
+            tempFile.delete();
         }
     }
 
@@ -441,17 +668,8 @@ public class BrowserConnectionManager implements ConnectionUpdateListener, Brows
             BrowserConnection browserConnection = new BrowserConnection( connection );
             connectionMap.put( connection.getId(), browserConnection );
 
-            try
-            {
-                String schemaFilename = getSchemaCacheFileName( connection.getId() );
-                FileReader reader = new FileReader( schemaFilename );
-                Schema schema = new Schema();
-                schema.loadFromLdif( reader );
-                browserConnection.setSchema( schema );
-            }
-            catch ( Exception e )
-            {
-            }
+            browserConnection.setSchema( BrowserCorePlugin.getDefault().getSchemaRegistry().getSchema(
+                loadSchema( connection.getId() ) ) );
         }
 
         // java.beans.XMLDecoder
@@ -59,6 +59,12 @@ public final class BrowserCoreConstants
 
     public static final String PREFERENCE_CHECK_FOR_CHILDREN = "checkForChildren"; //$NON-NLS-1$
 
+    public static final String PREFERENCE_PERSISTENT_DIT_CACHE = "persistentDitCache"; //$NON-NLS-1$
+
+    public static final String PREFERENCE_SMART_REFRESH = "smartRefresh"; //$NON-NLS-1$
+
+    public static final String PREFERENCE_VIRTUAL_LIST_VIEW = "virtualListView"; //$NON-NLS-1$
+
     public static final String PREFERENCE_FORMAT_CSV_ATTRIBUTEDELIMITER = "formatCsvAttributeDelimiter"; //$NON-NLS-1$
 
     public static final String PREFERENCE_FORMAT_CSV_VALUEDELIMITER = "formatCsvValueDelimiter"; //$NON-NLS-1$
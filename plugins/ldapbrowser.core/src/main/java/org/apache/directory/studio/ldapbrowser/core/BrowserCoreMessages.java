@@ -51,6 +51,10 @@ public class BrowserCoreMessages extends NLS
 
     public static String copy_n_of_s;
 
+    public static String error__saving_dit_cache;
+
+    public static String error__saving_schema_cache;
+
     public static String event__added_att_to_dn;
 
     public static String event__deleted_att_from_dn;
@@ -161,6 +165,8 @@ public class BrowserCoreMessages extends NLS
 
     public static String model__error_loading_schema;
 
+    public static String model__error_parsing_schema_definition;
+
     public static String model__no_such_entry;
 
     public static String model__error_logging_modification;
@@ -230,6 +236,7 @@ public class BrowserCoreMessages extends NLS
     public static String jobs__copy_entries_error_1;
 
     public static String jobs__copy_entries_error_n;
+    public static String jobs__copy_entries_parent_missing;
 
     public static String jobs__create_entry_name_1;
 
@@ -297,6 +304,30 @@ public class BrowserCoreMessages extends NLS
 
     public static String jobs__export_ldif_error;
 
+    public static String jobs__diff_name;
+
+    public static String jobs__diff_task;
+
+    public static String jobs__diff_error;
+
+    public static String jobs__diff_progress;
+
+    public static String jobs__profile_name;
+
+    public static String jobs__profile_task;
+
+    public static String jobs__profile_error;
+
+    public static String jobs__profile_progress;
+
+    public static String jobs__live_cache_sync_name;
+
+    public static String jobs__live_cache_sync_error;
+
+    public static String jobs__quick_search_index_name;
+
+    public static String jobs__quick_search_index_error;
+
     public static String jobs__export_dsml_name;
 
     public static String jobs__export_dsml_task;
@@ -349,6 +380,8 @@ public class BrowserCoreMessages extends NLS
 
     public static String jobs__init_entries_error_n;
 
+    public static String jobs__init_entries_error_vlv;
+
     public static String jobs__modify_value_name;
 
     public static String jobs__modify_value_task;
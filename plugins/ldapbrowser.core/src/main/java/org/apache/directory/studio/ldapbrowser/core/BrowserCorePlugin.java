@@ -26,6 +26,8 @@ import java.util.PropertyResourceBundle;
 
 import org.apache.directory.studio.connection.core.event.CoreEventRunner;
 import org.apache.directory.studio.connection.core.event.EventRunner;
+import org.apache.directory.studio.ldapbrowser.core.model.IBrowserConnection;
+import org.apache.directory.studio.ldapbrowser.core.model.schema.SchemaRegistry;
 import org.eclipse.core.runtime.FileLocator;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Plugin;
@@ -47,6 +49,9 @@ public class BrowserCorePlugin extends Plugin
     /** The preferences */
     private BrowserCorePreferences preferences;
 
+    /** The registry of the schemas shared between connections */
+    private SchemaRegistry schemaRegistry;
+
     /** The event runner. */
     private EventRunner eventRunner;
 
@@ -62,6 +67,7 @@ public class BrowserCorePlugin extends Plugin
         super();
         plugin = this;
         this.preferences = new BrowserCorePreferences();
+        this.schemaRegistry = new SchemaRegistry();
     }
 
 
@@ -89,6 +95,19 @@ public class BrowserCorePlugin extends Plugin
      */
     public void stop( BundleContext context ) throws Exception
     {
+        if ( connectionManager != null )
+        {
+            // save the DIT caches of the connections that are still open
+            for ( IBrowserConnection browserConnection : connectionManager.getBrowserConnections() )
+            {
+                if ( browserConnection.getConnection() != null
+                    && browserConnection.getConnection().getConnectionWrapper().isConnected() )
+                {
+                    connectionManager.saveDitCache( browserConnection );
+                }
+            }
+        }
+
         super.stop( context );
 
         if ( eventRunner != null )
@@ -141,6 +160,17 @@ public class BrowserCorePlugin extends Plugin
     }
 
 
+    /**
+     * Gets the registry of the schemas shared between connections.
+     *
+     * @return the schema registry
+     */
+    public SchemaRegistry getSchemaRegistry()
+    {
+        return schemaRegistry;
+    }
+
+
     /**
      * Gets the event runner.
      *
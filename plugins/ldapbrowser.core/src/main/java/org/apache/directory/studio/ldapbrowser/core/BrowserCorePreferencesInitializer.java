@@ -42,6 +42,9 @@ public class BrowserCorePreferencesInitializer extends AbstractPreferenceInitial
         Preferences store = BrowserCorePlugin.getDefault().getPluginPreferences();
 
         store.setDefault( BrowserCoreConstants.PREFERENCE_CHECK_FOR_CHILDREN, true );
+        store.setDefault( BrowserCoreConstants.PREFERENCE_PERSISTENT_DIT_CACHE, false );
+        store.setDefault( BrowserCoreConstants.PREFERENCE_SMART_REFRESH, false );
+        store.setDefault( BrowserCoreConstants.PREFERENCE_VIRTUAL_LIST_VIEW, false );
 
         store.setDefault( BrowserCoreConstants.PREFERENCE_FORMAT_CSV_ATTRIBUTEDELIMITER, "," ); //$NON-NLS-1$
         store.setDefault( BrowserCoreConstants.PREFERENCE_FORMAT_CSV_VALUEDELIMITER, "|" ); //$NON-NLS-1$
@@ -21,6 +21,9 @@
 package org.apache.directory.studio.ldapbrowser.core.events;
 
 
+import java.util.Collection;
+import java.util.Collections;
+
 import org.apache.directory.studio.ldapbrowser.core.BrowserCoreMessages;
 import org.apache.directory.studio.ldapbrowser.core.model.IEntry;
 
@@ -28,21 +31,79 @@ import org.apache.directory.studio.ldapbrowser.core.model.IEntry;
 /**
  * A ChildrenInitializedEvent indicates that the children
  * of an {@link IEntry} were newly initialized from the underlying 
- * directory.
+ * directory or that the children were changed in bulk.
  *
  * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
  */
 public class ChildrenInitializedEvent extends EntryModificationEvent
 {
 
+    /** The added children. */
+    private Collection<IEntry> addedChildren;
+
+    /** The deleted children. */
+    private Collection<IEntry> deletedChildren;
+
+
     /**
      * Creates a new instance of ChildrenInitializedEvent.
-     * 
+     *
      * @param initializedEntry the initialized entry
      */
     public ChildrenInitializedEvent( IEntry initializedEntry )
+    {
+        this( initializedEntry, Collections.<IEntry> emptyList(), Collections.<IEntry> emptyList() );
+    }
+
+
+    /**
+     * Creates a new instance of ChildrenInitializedEvent that carries
+     * the children changes of a bulk modification.
+     *
+     * @param initializedEntry the initialized entry
+     * @param addedChildren the added children
+     * @param deletedChildren the deleted children
+     */
+    public ChildrenInitializedEvent( IEntry initializedEntry, Collection<IEntry> addedChildren,
+        Collection<IEntry> deletedChildren )
     {
         super( initializedEntry.getBrowserConnection(), initializedEntry );
+        this.addedChildren = Collections.unmodifiableCollection( addedChildren );
+        this.deletedChildren = Collections.unmodifiableCollection( deletedChildren );
+    }
+
+
+    /**
+     * Gets the added children.
+     *
+     * @return the added children, empty if the event doesn't carry children changes
+     */
+    public Collection<IEntry> getAddedChildren()
+    {
+        return addedChildren;
+    }
+
+
+    /**
+     * Gets the deleted children.
+     *
+     * @return the deleted children, empty if the event doesn't carry children changes
+     */
+    public Collection<IEntry> getDeletedChildren()
+    {
+        return deletedChildren;
+    }
+
+
+    /**
+     * Checks if the event carries added or deleted children. Such an event
+     * reports changes to already initialized children.
+     *
+     * @return true if there are added or deleted children
+     */
+    public boolean hasChildrenChanges()
+    {
+        return !addedChildren.isEmpty() || !deletedChildren.isEmpty();
     }
 
 
@@ -24,10 +24,17 @@ package org.apache.directory.studio.ldapbrowser.core.jobs;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.naming.directory.SearchControls;
 
+import org.apache.commons.lang3.ArrayUtils;
 import org.apache.directory.api.ldap.model.constants.SchemaConstants;
 import org.apache.directory.api.ldap.model.entry.Entry;
 import org.apache.directory.api.ldap.model.entry.Modification;
@@ -35,6 +42,7 @@ import org.apache.directory.api.ldap.model.exception.LdapEntryAlreadyExistsExcep
 import org.apache.directory.api.ldap.model.exception.LdapException;
 import org.apache.directory.api.ldap.model.message.Control;
 import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.message.controls.PagedResults;
 import org.apache.directory.api.ldap.model.name.Ava;
 import org.apache.directory.api.ldap.model.name.Dn;
 import org.apache.directory.api.ldap.model.name.Rdn;
@@ -60,12 +68,17 @@ import org.apache.directory.studio.ldapbrowser.core.utils.ModelConverter;
  * Runnable to copy entries asynchronously.
  * 
  * TODO: implement overwrite strategy
- * TODO: implement remember selection
  *
  * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
  */
 public class CopyEntriesRunnable implements StudioConnectionBulkRunnableWithProgress
 {
+    /** The maximum number of add requests awaiting a response. */
+    private static final int MAX_OUTSTANDING_CREATES = 16;
+
+    /** The maximum number of source entries read ahead before they are created on the target. */
+    private static final int COPY_BATCH_SIZE = 1000;
+
     /** The parent entry. */
     private IEntry parent;
 
@@ -200,10 +213,16 @@ public class CopyEntriesRunnable implements StudioConnectionBulkRunnableWithProg
      * Copy entry. If scope is SearchControls.SUBTREE_SCOPE the entry is copied
      * recursively.
      * 
-     * @param browserConnection the browser connection
-     * @param dnToCopy the Dn to copy
-     * @param parentDn the parent Dn
-     * @param newRdn the new Rdn, if null the Rdn of dnToCopy is used
+     * The descendants of the entry are read with one streaming search, page by
+     * page if paged search is enabled. They are created on the target in batches
+     * of {@link #COPY_BATCH_SIZE} entries, each batch ordered by depth so that
+     * parents are created before their children. The entries of one depth are
+     * created with pipelined requests, if some of them already exist the copy
+     * strategy is asked for once all entries of the depth were sent.
+     * 
+     * @param entryToCopy the entry to copy
+     * @param parent the target parent entry
+     * @param newRdn the new Rdn, if null the Rdn of entryToCopy is used
      * @param scope the copy scope
      * @param numberOfCopiedEntries the number of copied entries
      * @param dialog the dialog to ask for the copy strategy, if null the user won't be
@@ -238,8 +257,8 @@ public class CopyEntriesRunnable implements StudioConnectionBulkRunnableWithProg
                 { SchemaConstants.ALL_USER_ATTRIBUTES, SchemaConstants.SUBTREE_SPECIFICATION_AT } );
         }
 
-        StudioSearchResultEnumeration result = entryToCopy
-            .getBrowserConnection()
+        IBrowserConnection sourceBrowserConnection = entryToCopy.getBrowserConnection();
+        StudioSearchResultEnumeration result = sourceBrowserConnection
             .getConnection()
             .getConnectionWrapper()
             .search( entryToCopy.getDn().getName(), ISearch.FILTER_TRUE, searchControls,
@@ -251,184 +270,509 @@ public class CopyEntriesRunnable implements StudioConnectionBulkRunnableWithProg
         {
             parentDn = entryToCopy.getDn().getParent();
         }
-        numberOfCopiedEntries = copyEntryRecursive( entryToCopy.getBrowserConnection(), result,
-            parent.getBrowserConnection(), parentDn, newRdn, scope, numberOfCopiedEntries, dialog, dummyMonitor,
-            monitor );
 
-        return numberOfCopiedEntries;
+        CopyPipeline pipeline = new CopyPipeline( parent.getBrowserConnection(), entryToCopy.getDn(), parentDn,
+            newRdn, numberOfCopiedEntries, dialog, dummyMonitor, monitor );
+        try
+        {
+            // copy the entry itself
+            List<Entry> entries = new ArrayList<>();
+            while ( result != null && result.hasMore() )
+            {
+                entries.add( result.next().getEntry() );
+            }
+            pipeline.copy( entries );
+
+            // copy the children or the whole subtree
+            if ( ( scope == SearchControls.ONELEVEL_SCOPE || scope == SearchControls.SUBTREE_SCOPE )
+                && !monitor.isCanceled() && !monitor.errorsReported() && pipeline.isCopied( entryToCopy.getDn() ) )
+            {
+                copyDescendants( sourceBrowserConnection, entryToCopy.getDn(), scope, pipeline, monitor );
+            }
+        }
+        catch ( Exception e )
+        {
+            monitor.reportError( e );
+        }
+
+        return pipeline.getNumberOfCopiedEntries();
     }
 
 
     /**
-     * Copy the entries. If scope is SearchControls.SUBTREE_SCOPE the entries are copied
-     * recursively.
+     * Reads the descendants of the given entry with one search, page by page if
+     * paged search is enabled, and feeds them in batches to the pipeline.
      * 
      * @param sourceBrowserConnection the source browser connection
-     * @param entries the source entries to copy
-     * @param targetBrowserConnection the target browser connection
-     * @param parentDn the target parent Dn
-     * @param newRdn the new Rdn, if null the original Rdn of each entry is used
-     * @param scope the copy scope
-     * @param numberOfCopiedEntries the number of copied entries
-     * @param dialog the dialog to ask for the copy strategy, if null the user won't be
-     *        asked instead the NameAlreadyBoundException it reported to the monitor
-     * @param dummyMonitor the dummy monitor, used for I/O that causes exceptions that 
-     *        should be handled
+     * @param dn the Dn of the entry whose descendants are copied
+     * @param scope the copy scope, SearchControls.ONELEVEL_SCOPE or SearchControls.SUBTREE_SCOPE
+     * @param pipeline the pipeline that creates the entries on the target
      * @param monitor the real monitor
      * 
-     * @return the number of copied entries
+     * @throws LdapException if reading or creating the entries failed
      */
-    static int copyEntryRecursive( IBrowserConnection sourceBrowserConnection, StudioSearchResultEnumeration entries,
-        IBrowserConnection targetBrowserConnection, Dn parentDn, Rdn forceNewRdn, int scope,
-        int numberOfCopiedEntries, EntryExistsCopyStrategyDialog dialog, StudioProgressMonitor dummyMonitor,
-        StudioProgressMonitor monitor )
+    private static void copyDescendants( IBrowserConnection sourceBrowserConnection, Dn dn, int scope,
+        CopyPipeline pipeline, StudioProgressMonitor monitor ) throws LdapException
     {
-        try
+        SearchControls searchControls = new SearchControls();
+        searchControls.setCountLimit( 0 );
+        searchControls.setReturningAttributes( new String[]
+            { SchemaConstants.ALL_USER_ATTRIBUTES, SchemaConstants.REF_AT } );
+        searchControls.setSearchScope( scope );
+        PagedResults pagedResults = null;
+        Control[] controls = null;
+        if ( sourceBrowserConnection.isPagedSearch() )
         {
-            while ( !monitor.isCanceled() && entries.hasMore() )
+            pagedResults = Controls.newPagedResultsControl( sourceBrowserConnection.getPagedSearchSize() );
+            controls = new Control[]
+                { pagedResults };
+        }
+
+        List<Entry> batch = new ArrayList<>();
+        byte[] cookie;
+        do
+        {
+            StudioSearchResultEnumeration descendants = sourceBrowserConnection
+                .getConnection()
+                .getConnectionWrapper()
+                .search( dn.getName(), ISearch.FILTER_TRUE, searchControls,
+                    AliasDereferencingMethod.NEVER, ReferralHandlingMethod.IGNORE, controls, monitor, null );
+            if ( descendants == null )
+            {
+                return;
+            }
+
+            cookie = null;
+            try
             {
-                // get next entry to copy
-                Entry entry = entries.next().getEntry();
-                Dn oldLdapDn = entry.getDn();
-                Rdn oldRdn = oldLdapDn.getRdn();
-
-                // compose new Dn
-                Rdn newRdn = oldLdapDn.getRdn();
-                if ( forceNewRdn != null )
+                while ( !monitor.isCanceled() && !monitor.errorsReported() && descendants.hasMore() )
                 {
-                    newRdn = forceNewRdn;
+                    Entry entry = descendants.next().getEntry();
+                    if ( !entry.getDn().equals( dn ) )
+                    {
+                        batch.add( entry );
+                    }
+                    if ( batch.size() >= COPY_BATCH_SIZE )
+                    {
+                        batch = pipeline.copy( batch );
+                    }
                 }
-                Dn newLdapDn = parentDn.add( newRdn );
-                entry.setDn( newLdapDn );
-
-                // apply new Rdn to the attributes
-                applyNewRdn( entry, oldRdn, newRdn );
 
-                // ManageDsaIT control
-                Control[] controls = null;
-                if ( entry.hasObjectClass( SchemaConstants.REFERRAL_OC ) )
+                // search again: pass the response control cookie to the request control
+                for ( Control responseControl : descendants.getResponseControls() )
                 {
-                    controls = new Control[]
-                        { Controls.MANAGEDSAIT_CONTROL };
+                    if ( pagedResults != null && responseControl instanceof PagedResults )
+                    {
+                        cookie = ( ( PagedResults ) responseControl ).getCookie();
+                        pagedResults.setCookie( cookie );
+                    }
                 }
+            }
+            finally
+            {
+                descendants.close();
+            }
+        }
+        while ( ArrayUtils.isNotEmpty( cookie ) && !monitor.isCanceled() && !monitor.errorsReported() );
+
+        // entries whose parent was not returned by the search can't be copied
+        batch = pipeline.copy( batch );
+        if ( !batch.isEmpty() && !monitor.isCanceled() && !monitor.errorsReported() )
+        {
+            monitor.reportError( BrowserCoreMessages.bind( BrowserCoreMessages.jobs__copy_entries_parent_missing,
+                new String[]
+                    { Integer.toString( batch.size() ), batch.get( 0 ).getDn().getName() } ) );
+        }
+    }
+
+
+    /**
+     * Creates the entries read from the source on the target and keeps track
+     * of the target Dn of each copied entry.
+     */
+    private static class CopyPipeline
+    {
+        /** The maximum number of remembered target Dns, the target Dn of older entries is looked up again. */
+        private static final int MAX_TARGET_DNS = 10000;
+
+        /** The comparator that orders entries by the depth of their Dn. */
+        private static final Comparator<Entry> DEPTH_COMPARATOR = new Comparator<Entry>()
+        {
+            public int compare( Entry e1, Entry e2 )
+            {
+                return Integer.compare( e1.getDn().size(), e2.getDn().size() );
+            }
+        };
+
+        /** The target browser connection. */
+        private IBrowserConnection targetBrowserConnection;
+
+        /** The Dn of the entry to copy. */
+        private Dn baseDn;
+
+        /** The new Rdn of the entry to copy, may be null. */
+        private Rdn forceNewRdn;
+
+        /** The target Dn of the recently used copied source entries, in access order. */
+        private Map<Dn, Dn> targetDns;
+
+        /** The target Dn of the entry to copy, of its parent and of the renamed entries. */
+        private Map<Dn, Dn> renamedDns;
+
+        /** The number of copied entries. */
+        private int numberOfCopiedEntries;
 
-                // create entry
-                targetBrowserConnection.getConnection().getConnectionWrapper()
-                    .createEntry( entry, controls, dummyMonitor, null );
+        /** The dialog to ask for the copy strategy, may be null. */
+        private EntryExistsCopyStrategyDialog dialog;
 
-                while ( dummyMonitor.errorsReported() )
+        /** The copy strategy the user asked to remember. */
+        private EntryExistsCopyStrategy rememberedStrategy;
+
+        /** The dummy monitor, used for I/O that causes exceptions that should be handled. */
+        private StudioProgressMonitor dummyMonitor;
+
+        /** The real monitor. */
+        private StudioProgressMonitor monitor;
+
+
+        private CopyPipeline( IBrowserConnection targetBrowserConnection, Dn baseDn, Dn parentDn, Rdn forceNewRdn,
+            int numberOfCopiedEntries, EntryExistsCopyStrategyDialog dialog, StudioProgressMonitor dummyMonitor,
+            StudioProgressMonitor monitor )
+        {
+            this.targetBrowserConnection = targetBrowserConnection;
+            this.baseDn = baseDn;
+            this.forceNewRdn = forceNewRdn;
+            this.numberOfCopiedEntries = numberOfCopiedEntries;
+            this.dialog = dialog;
+            this.dummyMonitor = dummyMonitor;
+            this.monitor = monitor;
+
+            // the entry to copy is created below the target parent
+            this.targetDns = new LinkedHashMap<Dn, Dn>( 16, 0.75f, true )
+            {
+                private static final long serialVersionUID = 1L;
+
+
+                @Override
+                protected boolean removeEldestEntry( Map.Entry<Dn, Dn> eldest )
                 {
-                    if ( dialog != null
-                        && StudioLdapException.isEntryAlreadyExistsException( dummyMonitor.getException() ) )
-                    {
-                        // open dialog
-                        dialog.setExistingEntry( targetBrowserConnection, newLdapDn );
-                        dialog.open();
-                        EntryExistsCopyStrategy strategy = dialog.getStrategy();
+                    return size() > MAX_TARGET_DNS;
+                }
+            };
+            this.renamedDns = new HashMap<>();
+            this.renamedDns.put( baseDn.getParent(), parentDn );
+        }
+
+
+        private int getNumberOfCopiedEntries()
+        {
+            return numberOfCopiedEntries;
+        }
 
-                        if ( strategy != null )
-                        {
-                            dummyMonitor.reset();
 
-                            switch ( strategy )
-                            {
-                                case BREAK:
-                                    monitor.setCanceled( true );
-                                    break;
+        private boolean isCopied( Dn sourceDn ) throws LdapException
+        {
+            return getTargetDn( sourceDn ) != null;
+        }
 
-                                case IGNORE_AND_CONTINUE:
-                                    break;
 
-                                case OVERWRITE_AND_CONTINUE:
-                                    // create modifications
-                                    Collection<Modification> modifications = ModelConverter
-                                        .toReplaceModifications( entry );
+        /**
+         * Gets the target Dn of a copied source entry. If the entry is no longer
+         * remembered its target Dn is derived from the target Dn of its parent,
+         * the entry is copied if that target entry exists.
+         * 
+         * @param sourceDn the source Dn
+         * 
+         * @return the target Dn, null if the entry was not copied yet
+         * 
+         * @throws LdapException if the target Dn could not be composed
+         */
+        private Dn getTargetDn( Dn sourceDn ) throws LdapException
+        {
+            Dn targetDn = targetDns.get( sourceDn );
+            if ( targetDn == null )
+            {
+                targetDn = renamedDns.get( sourceDn );
+            }
+            if ( targetDn == null && sourceDn.isDescendantOf( baseDn ) && !sourceDn.equals( baseDn ) )
+            {
+                Dn targetParentDn = getTargetDn( sourceDn.getParent() );
+                if ( targetParentDn != null && exists( targetParentDn.add( sourceDn.getRdn() ) ) )
+                {
+                    targetDn = targetParentDn.add( sourceDn.getRdn() );
+                    targetDns.put( sourceDn, targetDn );
+                }
+            }
+            return targetDn;
+        }
 
-                                    // modify entry
-                                    targetBrowserConnection
-                                        .getConnection()
-                                        .getConnectionWrapper()
-                                        .modifyEntry( newLdapDn, modifications, null, dummyMonitor, null );
 
-                                    // force reload of attributes
-                                    IEntry newEntry = targetBrowserConnection.getEntryFromCache( newLdapDn );
-                                    if ( newEntry != null )
-                                    {
-                                        newEntry.setAttributesInitialized( false );
-                                    }
+        /**
+         * Checks if the given entry exists on the target, search errors are ignored.
+         * 
+         * @param dn the Dn
+         * 
+         * @return true if the entry exists
+         * 
+         * @throws LdapException if the search result could not be closed
+         */
+        private boolean exists( Dn dn ) throws LdapException
+        {
+            SearchControls searchControls = new SearchControls();
+            searchControls.setSearchScope( SearchControls.OBJECT_SCOPE );
+            searchControls.setReturningAttributes( ISearch.NO_ATTRIBUTES );
+            StudioSearchResultEnumeration result = targetBrowserConnection
+                .getConnection()
+                .getConnectionWrapper()
+                .search( dn.getName(), ISearch.FILTER_TRUE, searchControls, AliasDereferencingMethod.NEVER,
+                    ReferralHandlingMethod.IGNORE, new Control[]
+                        { Controls.MANAGEDSAIT_CONTROL }, new StudioProgressMonitor( monitor ), null );
+            if ( result == null )
+            {
+                return false;
+            }
 
-                                    break;
+            try
+            {
+                return result.hasMore();
+            }
+            catch ( LdapException e )
+            {
+                return false;
+            }
+            finally
+            {
+                result.close();
+            }
+        }
 
-                                case RENAME_AND_CONTINUE:
-                                    Rdn renamedRdn = dialog.getRdn();
 
-                                    // apply renamed Rdn to the attributes
-                                    applyNewRdn( entry, newRdn, renamedRdn );
+        /**
+         * Copies the given entries, parents before children. Entries whose
+         * parent was not copied yet are returned to be copied with the next batch.
+         * 
+         * @param entries the source entries
+         * 
+         * @return the entries that could not be copied yet
+         * 
+         * @throws LdapException if preparing or creating an entry failed
+         */
+        private List<Entry> copy( List<Entry> entries ) throws LdapException
+        {
+            Collections.sort( entries, DEPTH_COMPARATOR );
 
-                                    // compose new Dn
-                                    newLdapDn = parentDn.add( renamedRdn );
-                                    entry.setDn( newLdapDn );
+            List<Entry> pending = new ArrayList<>();
+            int i = 0;
+            while ( i < entries.size() && !monitor.isCanceled() && !monitor.errorsReported() )
+            {
+                int depth = entries.get( i ).getDn().size();
+                List<Entry> level = new ArrayList<>();
+                List<Dn> levelSourceDns = new ArrayList<>();
+                List<Entry> referrals = new ArrayList<>();
+                List<Dn> referralSourceDns = new ArrayList<>();
+                for ( ; i < entries.size() && entries.get( i ).getDn().size() == depth; i++ )
+                {
+                    Entry entry = entries.get( i );
+                    Dn sourceDn = entry.getDn();
+                    Dn targetParentDn = getTargetDn( sourceDn.getParent() );
+                    if ( targetParentDn == null )
+                    {
+                        pending.add( entry );
+                        continue;
+                    }
 
-                                    // create entry
-                                    targetBrowserConnection.getConnection().getConnectionWrapper()
-                                        .createEntry( entry, null, dummyMonitor, null );
+                    // compose new Dn and apply new Rdn to the attributes
+                    Rdn oldRdn = sourceDn.getRdn();
+                    Rdn newRdn = forceNewRdn != null && sourceDn.equals( baseDn ) ? forceNewRdn : oldRdn;
+                    entry.setDn( targetParentDn.add( newRdn ) );
+                    applyNewRdn( entry, oldRdn, newRdn );
 
-                                    break;
-                            }
-                        }
-                        else
-                        {
-                            monitor.reportError( dummyMonitor.getException() );
-                            break;
-                        }
+                    if ( entry.hasObjectClass( SchemaConstants.REFERRAL_OC ) )
+                    {
+                        referrals.add( entry );
+                        referralSourceDns.add( sourceDn );
                     }
                     else
                     {
-                        monitor.reportError( dummyMonitor.getException() );
-                        break;
+                        level.add( entry );
+                        levelSourceDns.add( sourceDn );
                     }
                 }
 
-                if ( !monitor.isCanceled() && !monitor.errorsReported() )
+                createLevel( level, levelSourceDns, null );
+                createLevel( referrals, referralSourceDns, new Control[]
+                    { Controls.MANAGEDSAIT_CONTROL } );
+            }
+
+            return pending;
+        }
+
+
+        /**
+         * Creates entries of the same depth with pipelined requests and
+         * asks for the copy strategy of the entries that already exist.
+         * 
+         * @param entries the entries, with the target Dn
+         * @param sourceDns the source Dn of each entry
+         * @param controls the controls
+         * 
+         * @throws LdapException if an entry could not be renamed
+         */
+        private void createLevel( List<Entry> entries, List<Dn> sourceDns, Control[] controls )
+            throws LdapException
+        {
+            if ( entries.isEmpty() || monitor.isCanceled() || monitor.errorsReported() )
+            {
+                return;
+            }
+
+            // the entries without a response share the connection error, it is reported once below
+            StudioProgressMonitor createMonitor = new StudioProgressMonitor( monitor );
+            StudioLdapException[] exceptions = targetBrowserConnection.getConnection().getConnectionWrapper()
+                .createEntries( entries, controls, MAX_OUTSTANDING_CREATES, createMonitor );
+
+            List<Integer> existing = new ArrayList<>();
+            StudioLdapException reported = null;
+            for ( int i = 0; i < exceptions.length; i++ )
+            {
+                if ( exceptions[i] == null )
+                {
+                    copied( sourceDns.get( i ), entries.get( i ).getDn() );
+                }
+                else if ( dialog != null && StudioLdapException.isEntryAlreadyExistsException( exceptions[i] ) )
                 {
-                    numberOfCopiedEntries++;
+                    existing.add( i );
+                }
+                else if ( exceptions[i] != reported && !StudioLdapException.isCancelException( exceptions[i] ) )
+                {
+                    reported = exceptions[i];
+                    monitor.reportError( exceptions[i] );
+                }
+            }
+
+            for ( Iterator<Integer> it = existing.iterator(); it.hasNext() && !monitor.isCanceled()
+                && !monitor.errorsReported(); )
+            {
+                int i = it.next();
+                handleExistingEntry( entries.get( i ), sourceDns.get( i ), controls, exceptions[i] );
+            }
+        }
 
-                    monitor.reportProgress( BrowserCoreMessages.bind( BrowserCoreMessages.model__copied_n_entries,
-                        new String[]
-                            { Integer.toString( numberOfCopiedEntries ) } ) ); //$NON-NLS-1$
 
-                    // copy recursively
-                    if ( scope == SearchControls.ONELEVEL_SCOPE || scope == SearchControls.SUBTREE_SCOPE )
+        /**
+         * Applies the copy strategy selected by the user to an entry that already exists.
+         * 
+         * @param entry the entry, with the target Dn
+         * @param sourceDn the source Dn
+         * @param controls the controls
+         * @param exception the entry already exists exception
+         * 
+         * @throws LdapException if the entry could not be renamed
+         */
+        private void handleExistingEntry( Entry entry, Dn sourceDn, Control[] controls, Exception exception )
+            throws LdapException
+        {
+            while ( true )
+            {
+                Dn newLdapDn = entry.getDn();
+                EntryExistsCopyStrategy strategy = rememberedStrategy;
+                if ( strategy == null )
+                {
+                    // open dialog
+                    dialog.setExistingEntry( targetBrowserConnection, newLdapDn );
+                    dialog.open();
+                    strategy = dialog.getStrategy();
+                    if ( strategy != null && strategy != EntryExistsCopyStrategy.RENAME_AND_CONTINUE
+                        && dialog.isRememberSelection() )
                     {
-                        SearchControls searchControls = new SearchControls();
-                        searchControls.setCountLimit( 0 );
-                        searchControls.setReturningAttributes( new String[]
-                            { SchemaConstants.ALL_USER_ATTRIBUTES, SchemaConstants.REF_AT } );
-                        searchControls.setSearchScope( SearchControls.ONELEVEL_SCOPE );
-                        StudioSearchResultEnumeration childEntries = sourceBrowserConnection
-                            .getConnection()
-                            .getConnectionWrapper()
-                            .search( oldLdapDn.getName(), ISearch.FILTER_TRUE, searchControls,
-                                AliasDereferencingMethod.NEVER, ReferralHandlingMethod.IGNORE, null, monitor, null );
-
-                        if ( scope == SearchControls.ONELEVEL_SCOPE )
+                        rememberedStrategy = strategy;
+                    }
+                }
+
+                if ( strategy == null )
+                {
+                    monitor.reportError( exception );
+                    return;
+                }
+
+                dummyMonitor.reset();
+                switch ( strategy )
+                {
+                    case BREAK:
+                        monitor.setCanceled( true );
+                        return;
+
+                    case IGNORE_AND_CONTINUE:
+                        copied( sourceDn, newLdapDn );
+                        return;
+
+                    case OVERWRITE_AND_CONTINUE:
+                        // create modifications
+                        Collection<Modification> modifications = ModelConverter.toReplaceModifications( entry );
+
+                        // modify entry
+                        targetBrowserConnection.getConnection().getConnectionWrapper()
+                            .modifyEntry( newLdapDn, modifications, null, dummyMonitor, null );
+
+                        // force reload of attributes
+                        IEntry newEntry = targetBrowserConnection.getEntryFromCache( newLdapDn );
+                        if ( newEntry != null )
                         {
-                            scope = SearchControls.OBJECT_SCOPE;
+                            newEntry.setAttributesInitialized( false );
                         }
 
-                        numberOfCopiedEntries = copyEntryRecursive( sourceBrowserConnection, childEntries,
-                            targetBrowserConnection, newLdapDn, null, scope, numberOfCopiedEntries, dialog,
-                            dummyMonitor, monitor );
-                    }
+                        break;
+
+                    case RENAME_AND_CONTINUE:
+                        Rdn renamedRdn = dialog.getRdn();
+
+                        // apply renamed Rdn to the attributes
+                        applyNewRdn( entry, newLdapDn.getRdn(), renamedRdn );
+
+                        // compose new Dn
+                        newLdapDn = newLdapDn.getParent().add( renamedRdn );
+                        entry.setDn( newLdapDn );
+
+                        // create entry
+                        targetBrowserConnection.getConnection().getConnectionWrapper()
+                            .createEntry( entry, controls, dummyMonitor, null );
+
+                        break;
+                }
+
+                if ( !dummyMonitor.errorsReported() )
+                {
+                    copied( sourceDn, newLdapDn );
+                    return;
+                }
+
+                exception = dummyMonitor.getException();
+                if ( !StudioLdapException.isEntryAlreadyExistsException( exception ) )
+                {
+                    monitor.reportError( exception );
+                    return;
                 }
             }
         }
-        catch ( Exception e )
+
+
+        private void copied( Dn sourceDn, Dn targetDn )
         {
-            monitor.reportError( e );
-        }
+            // the target Dn of an entry that was not renamed can be derived from its parent
+            if ( sourceDn.equals( baseDn ) || !sourceDn.getRdn().equals( targetDn.getRdn() ) )
+            {
+                renamedDns.put( sourceDn, targetDn );
+            }
+            else
+            {
+                targetDns.put( sourceDn, targetDn );
+            }
+            numberOfCopiedEntries++;
 
-        return numberOfCopiedEntries;
+            monitor.reportProgress( BrowserCoreMessages.bind( BrowserCoreMessages.model__copied_n_entries,
+                new String[]
+                    { Integer.toString( numberOfCopiedEntries ) } ) ); //$NON-NLS-1$
+        }
     }
 
 
@@ -22,16 +22,15 @@ package org.apache.directory.studio.ldapbrowser.core.jobs;
 
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
-import javax.naming.directory.SearchControls;
-
+import org.apache.directory.api.ldap.model.exception.LdapInvalidDnException;
 import org.apache.directory.api.ldap.model.message.Control;
+import org.apache.directory.api.ldap.model.message.SearchScope;
 import org.apache.directory.api.ldap.model.name.Dn;
 import org.apache.directory.studio.common.core.jobs.StudioProgressMonitor;
 import org.apache.directory.studio.connection.core.Connection;
@@ -40,7 +39,6 @@ import org.apache.directory.studio.connection.core.Connection.AliasDereferencing
 import org.apache.directory.studio.connection.core.Connection.ReferralHandlingMethod;
 import org.apache.directory.studio.connection.core.StudioControl;
 import org.apache.directory.studio.connection.core.io.StudioLdapException;
-import org.apache.directory.studio.connection.core.io.api.StudioSearchResultEnumeration;
 import org.apache.directory.studio.connection.core.jobs.StudioConnectionBulkRunnableWithProgress;
 import org.apache.directory.studio.ldapbrowser.core.BrowserCoreMessages;
 import org.apache.directory.studio.ldapbrowser.core.events.BulkModificationEvent;
@@ -50,7 +48,11 @@ import org.apache.directory.studio.ldapbrowser.core.model.IBrowserConnection;
 import org.apache.directory.studio.ldapbrowser.core.model.IEntry;
 import org.apache.directory.studio.ldapbrowser.core.model.ISearch;
 import org.apache.directory.studio.ldapbrowser.core.model.ISearchResult;
+import org.apache.directory.studio.ldapbrowser.core.model.SearchParameter;
 import org.apache.directory.studio.ldapbrowser.core.utils.JNDIUtils;
+import org.apache.directory.studio.ldifparser.model.LdifEnumeration;
+import org.apache.directory.studio.ldifparser.model.container.LdifContainer;
+import org.apache.directory.studio.ldifparser.model.container.LdifContentRecord;
 
 
 /**
@@ -59,8 +61,9 @@ import org.apache.directory.studio.ldapbrowser.core.utils.JNDIUtils;
  * Deletes the entry recursively in a optimistic way:
  * <ol>
  * <li>Delete the entry
- * <li>If that fails with error code 66 then perform a one-level search
- *     and start from 1. for each entry. 
+ * <li>If that fails with error code 66 then perform a subtree search
+ *     and delete the found entries leaf first, with pipelined requests
+ *     for entries of the same depth, then start from 1.
  * </ol>
  *
  * TODO: delete subentries?
@@ -69,6 +72,12 @@ import org.apache.directory.studio.ldapbrowser.core.utils.JNDIUtils;
  */
 public class DeleteEntriesRunnable implements StudioConnectionBulkRunnableWithProgress
 {
+    /** The maximum number of delete requests awaiting a response. */
+    private static final int MAX_OUTSTANDING_DELETES = 16;
+
+    /** The number of entries deleted in one pipelined batch. */
+    private static final int DELETE_BATCH_SIZE = 1000;
+
     /** The entries to delete. */
     private Collection<IEntry> entriesToDelete;
 
@@ -184,32 +193,6 @@ public class DeleteEntriesRunnable implements StudioConnectionBulkRunnableWithPr
                     entryToDelete.getParententry().setChildrenInitialized( false );
                     entryToDelete.getParententry().deleteChild( entryToDelete );
 
-                    // delete from searches
-                    List<ISearch> searches = browserConnection.getSearchManager().getSearches();
-                    for ( ISearch search : searches )
-                    {
-                        if ( search.getSearchResults() != null )
-                        {
-                            ISearchResult[] searchResults = search.getSearchResults();
-                            List<ISearchResult> searchResultList = new ArrayList<ISearchResult>();
-                            searchResultList.addAll( Arrays.asList( searchResults ) );
-                            for ( Iterator<ISearchResult> it = searchResultList.iterator(); it.hasNext(); )
-                            {
-                                ISearchResult result = it.next();
-                                if ( entryToDelete.equals( result.getEntry() ) )
-                                {
-                                    it.remove();
-                                    searchesToUpdateSet.add( search );
-                                }
-                            }
-                            if ( searchesToUpdateSet.contains( search ) )
-                            {
-                                search.setSearchResults( searchResultList.toArray( new ISearchResult[searchResultList
-                                    .size()] ) );
-                            }
-                        }
-                    }
-
                     // delete from cache
                     browserConnection.uncacheEntryRecursive( entryToDelete );
                 }
@@ -221,6 +204,50 @@ public class DeleteEntriesRunnable implements StudioConnectionBulkRunnableWithPr
 
             monitor.worked( 1 );
         }
+
+        // delete from searches, all deleted entries are removed in one pass over each search
+        Set<IBrowserConnection> browserConnections = new HashSet<IBrowserConnection>();
+        for ( IEntry deletedEntry : deletedEntriesSet )
+        {
+            browserConnections.add( deletedEntry.getBrowserConnection() );
+        }
+        for ( IBrowserConnection browserConnection : browserConnections )
+        {
+            for ( ISearch search : browserConnection.getSearchManager().getSearches() )
+            {
+                removeDeletedEntries( search );
+            }
+        }
+    }
+
+
+    /**
+     * Removes the search results of the deleted entries from the given search.
+     *
+     * @param search the search
+     */
+    private void removeDeletedEntries( ISearch search )
+    {
+        ISearchResult[] searchResults = search.getSearchResults();
+        if ( searchResults == null )
+        {
+            return;
+        }
+
+        List<ISearchResult> searchResultList = new ArrayList<ISearchResult>( searchResults.length );
+        for ( ISearchResult result : searchResults )
+        {
+            if ( !deletedEntriesSet.contains( result.getEntry() ) )
+            {
+                searchResultList.add( result );
+            }
+        }
+
+        if ( searchResultList.size() < searchResults.length )
+        {
+            search.setSearchResults( searchResultList.toArray( new ISearchResult[searchResultList.size()] ) );
+            searchesToUpdateSet.add( search );
+        }
     }
 
 
@@ -247,8 +274,8 @@ public class DeleteEntriesRunnable implements StudioConnectionBulkRunnableWithPr
      * Deletes the entry recursively in a optimistic way:
      * <ol>
      * <li>Deletes the entry
-     * <li>If that fails then perform a one-level search and call the 
-     * method for each found entry
+     * <li>If that fails because the entry has children then delete the
+     * subtree leaf first, see {@link #deleteSubtreeLeafFirst}
      * </ol>
      * 
      * @param browserConnection the browser connection
@@ -278,78 +305,215 @@ public class DeleteEntriesRunnable implements StudioConnectionBulkRunnableWithPr
         }
         else if ( StudioLdapException.isContextNotEmptyException( dummyMonitor.getException() ) )
         {
-            // do not follow referrals or dereference aliases when deleting entries
-            AliasDereferencingMethod aliasDereferencingMethod = AliasDereferencingMethod.NEVER;
-            ReferralHandlingMethod referralsHandlingMethod = ReferralHandlingMethod.IGNORE;
+            numberOfDeletedEntries = deleteSubtreeLeafFirst( browserConnection, dn, numberOfDeletedEntries,
+                dummyMonitor, monitor );
+        }
+        else
+        {
+            Exception exception = dummyMonitor.getException();
+            // we have another exception
+            // report it to the dummy monitor if we are in the recursion
+            dummyMonitor.reportError( exception );
+            // also report it to the real monitor
+            monitor.reportError( exception );
+        }
 
-            // perform one-level search and delete recursively
-            int numberInBatch;
+        return numberOfDeletedEntries;
+    }
+
+
+    /**
+     * Deletes the descendants of an entry leaf first, then the entry itself:
+     * <ol>
+     * <li>Stream the Dns of the subtree with a subtree search and group them by depth
+     * <li>Delete the deepest entries first, entries of the same depth don't depend
+     *     on each other so their delete requests are pipelined
+     * <li>Entries that still have children are retried with the next subtree
+     *     search, once the descendants found so far are gone
+     * </ol>
+     * 
+     * @param browserConnection the browser connection
+     * @param dn the Dn to delete
+     * @param numberOfDeletedEntries the number of deleted entries
+     * @param dummyMonitor the dummy monitor
+     * @param monitor the progress monitor
+     * 
+     * @return the cumulative number of deleted entries
+     */
+    static int deleteSubtreeLeafFirst( IBrowserConnection browserConnection, Dn dn, int numberOfDeletedEntries,
+        StudioProgressMonitor dummyMonitor, StudioProgressMonitor monitor )
+    {
+        while ( !monitor.isCanceled() )
+        {
             dummyMonitor.reset();
-            do
+            List<List<String>> levels = searchSubtreeByDepth( browserConnection, dn, dummyMonitor );
+            if ( dummyMonitor.errorsReported() )
             {
-                numberInBatch = 0;
-
-                SearchControls searchControls = new SearchControls();
-                searchControls.setCountLimit( 1000 );
-                searchControls.setReturningAttributes( new String[0] );
-                searchControls.setSearchScope( SearchControls.ONELEVEL_SCOPE );
-                StudioSearchResultEnumeration result = browserConnection
-                    .getConnection()
-                    .getConnectionWrapper()
-                    .search( dn.getName(), ISearch.FILTER_TRUE, searchControls, aliasDereferencingMethod,
-                        referralsHandlingMethod, null, dummyMonitor, null );
-
-                try
-                {
-                    // delete all child entries
-                    while ( !dummyMonitor.isCanceled() && !dummyMonitor.errorsReported() && result.hasMore() )
-                    {
-                        Dn childDn = result.next().getDn();
+                monitor.reportError( dummyMonitor.getException() );
+                break;
+            }
 
-                        numberOfDeletedEntries = optimisticDeleteEntryRecursive( browserConnection, childDn, false,
-                            false, numberOfDeletedEntries, dummyMonitor, monitor );
-                        numberInBatch++;
-                    }
-                }
-                catch ( Exception e )
+            // delete the descendants, deepest first
+            int numberInRound = 0;
+            for ( int depth = levels.size() - 1; depth > 0 && !monitor.isCanceled()
+                && !dummyMonitor.errorsReported(); depth-- )
+            {
+                List<String> level = levels.set( depth, null );
+                for ( int start = 0; start < level.size() && !monitor.isCanceled()
+                    && !dummyMonitor.errorsReported(); start += DELETE_BATCH_SIZE )
                 {
-                    int ldapStatusCode = JNDIUtils.getLdapStatusCode( e );
-                    if ( ldapStatusCode == 3 || ldapStatusCode == 4 || ldapStatusCode == 11 )
+                    List<Dn> batch = new ArrayList<Dn>();
+                    try
                     {
-                        // continue with search
+                        for ( String childDn : level.subList( start,
+                            Math.min( level.size(), start + DELETE_BATCH_SIZE ) ) )
+                        {
+                            batch.add( new Dn( childDn ) );
+                        }
                     }
-                    else
+                    catch ( LdapInvalidDnException e )
                     {
                         dummyMonitor.reportError( e );
+                        monitor.reportError( e );
                         break;
                     }
+
+                    int numberInBatch = deleteEntries( browserConnection, batch, dummyMonitor, monitor );
+                    numberInRound += numberInBatch;
+                    numberOfDeletedEntries += numberInBatch;
+                    monitor.reportProgress( BrowserCoreMessages.bind( BrowserCoreMessages.model__deleted_n_entries,
+                        new String[]
+                            { "" + numberOfDeletedEntries } ) ); //$NON-NLS-1$
                 }
             }
-            while ( numberInBatch > 0 && !monitor.isCanceled() && !dummyMonitor.errorsReported() );
-
-            // try to delete the entry again 
-            if ( !dummyMonitor.errorsReported() )
+            if ( monitor.isCanceled() || dummyMonitor.errorsReported() )
             {
-                deleteEntry( browserConnection, dn, false, false, dummyMonitor );
+                break;
             }
+
+            // try to delete the entry again
+            deleteEntry( browserConnection, dn, false, false, dummyMonitor );
             if ( !dummyMonitor.errorsReported() )
             {
                 numberOfDeletedEntries++;
                 monitor.reportProgress( BrowserCoreMessages.bind( BrowserCoreMessages.model__deleted_n_entries,
                     new String[]
                         { "" + numberOfDeletedEntries } ) ); //$NON-NLS-1$
+                break;
+            }
+            else if ( numberInRound == 0
+                || !StudioLdapException.isContextNotEmptyException( dummyMonitor.getException() ) )
+            {
+                // no progress or another exception
+                monitor.reportError( dummyMonitor.getException() );
+                break;
             }
         }
-        else
+
+        return numberOfDeletedEntries;
+    }
+
+
+    /**
+     * Searches the Dns of the subtree, grouped by their depth below the base.
+     * 
+     * @param browserConnection the browser connection
+     * @param dn the base Dn of the subtree
+     * @param monitor the progress monitor
+     * 
+     * @return the Dns by their depth below the base, the base has depth 0
+     */
+    private static List<List<String>> searchSubtreeByDepth( IBrowserConnection browserConnection, Dn dn,
+        StudioProgressMonitor monitor )
+    {
+        // do not follow referrals or dereference aliases when deleting entries
+        SearchParameter searchParameter = new SearchParameter();
+        searchParameter.setSearchBase( dn );
+        searchParameter.setFilter( ISearch.FILTER_TRUE );
+        searchParameter.setScope( SearchScope.SUBTREE );
+        searchParameter.setReturningAttributes( ISearch.NO_ATTRIBUTES );
+        searchParameter.setCountLimit( 0 );
+        searchParameter.setTimeLimit( 0 );
+        searchParameter.setAliasesDereferencingMethod( AliasDereferencingMethod.NEVER );
+        searchParameter.setReferralsHandlingMethod( ReferralHandlingMethod.IGNORE );
+        if ( browserConnection.isPagedSearch() )
         {
-            Exception exception = dummyMonitor.getException();
-            // we have another exception
-            // report it to the dummy monitor if we are in the recursion
-            dummyMonitor.reportError( exception );
-            // also report it to the real monitor
-            monitor.reportError( exception );
+            searchParameter.getControls().add(
+                Controls.newPagedResultsControl( browserConnection.getPagedSearchSize() ) );
+        }
+
+        List<List<String>> levels = new ArrayList<List<String>>();
+        try
+        {
+            LdifEnumeration enumeration = ExportLdifRunnable.search( browserConnection, searchParameter, monitor );
+            while ( !monitor.isCanceled() && !monitor.errorsReported() && enumeration.hasNext() )
+            {
+                LdifContainer container = enumeration.next();
+                if ( container instanceof LdifContentRecord )
+                {
+                    String childDn = ( ( LdifContentRecord ) container ).getDnLine().getValueAsString();
+                    int depth = new Dn( childDn ).size() - dn.size();
+                    while ( levels.size() <= depth )
+                    {
+                        levels.add( new ArrayList<String>() );
+                    }
+                    levels.get( depth ).add( childDn );
+                }
+            }
+        }
+        catch ( Exception e )
+        {
+            int ldapStatusCode = JNDIUtils.getLdapStatusCode( e );
+            if ( ldapStatusCode == 3 || ldapStatusCode == 4 || ldapStatusCode == 11 )
+            {
+                // delete what was found, the rest is found with the next search
+            }
+            else
+            {
+                monitor.reportError( e );
+            }
         }
+        return levels;
+    }
+
 
+    /**
+     * Deletes entries that don't depend on each other, the delete requests are pipelined.
+     * Entries that still have children are skipped, they are retried later.
+     * 
+     * @param browserConnection the browser connection
+     * @param dns the Dns to delete
+     * @param dummyMonitor the dummy monitor
+     * @param monitor the progress monitor
+     * 
+     * @return the number of deleted entries
+     */
+    private static int deleteEntries( IBrowserConnection browserConnection, List<Dn> dns,
+        StudioProgressMonitor dummyMonitor, StudioProgressMonitor monitor )
+    {
+        StudioLdapException[] exceptions = browserConnection.getConnection().getConnectionWrapper()
+            .deleteEntries( dns, null, MAX_OUTSTANDING_DELETES, dummyMonitor );
+        int numberOfDeletedEntries = 0;
+        StudioLdapException reported = null;
+        for ( StudioLdapException exception : exceptions )
+        {
+            if ( exception == null )
+            {
+                numberOfDeletedEntries++;
+            }
+            else if ( StudioLdapException.isContextNotEmptyException( exception )
+                || StudioLdapException.isNoSuchObjectException( exception ) )
+            {
+                // retried with the next subtree search, or already deleted
+            }
+            else if ( exception != reported && !StudioLdapException.isCancelException( exception ) )
+            {
+                // the entries without a response share the connection error
+                reported = exception;
+                dummyMonitor.reportError( exception );
+                monitor.reportError( exception );
+            }
+        }
         return numberOfDeletedEntries;
     }
 
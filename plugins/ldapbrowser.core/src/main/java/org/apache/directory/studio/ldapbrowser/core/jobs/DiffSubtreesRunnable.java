@@ -0,0 +1,922 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+
+package org.apache.directory.studio.ldapbrowser.core.jobs;
+
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.directory.api.ldap.model.constants.SchemaConstants;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.exception.LdapInvalidDnException;
+import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.name.Ava;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.ldap.model.name.Rdn;
+import org.apache.directory.api.util.Strings;
+import org.apache.directory.studio.common.core.jobs.StudioProgressMonitor;
+import org.apache.directory.studio.connection.core.Connection;
+import org.apache.directory.studio.connection.core.Connection.AliasDereferencingMethod;
+import org.apache.directory.studio.connection.core.Connection.ReferralHandlingMethod;
+import org.apache.directory.studio.connection.core.Controls;
+import org.apache.directory.studio.connection.core.jobs.StudioConnectionRunnableWithProgress;
+import org.apache.directory.studio.ldapbrowser.core.BrowserCoreConstants;
+import org.apache.directory.studio.ldapbrowser.core.BrowserCoreMessages;
+import org.apache.directory.studio.ldapbrowser.core.BrowserCorePlugin;
+import org.apache.directory.studio.ldapbrowser.core.events.EventRegistry;
+import org.apache.directory.studio.ldapbrowser.core.model.IAttribute;
+import org.apache.directory.studio.ldapbrowser.core.model.IBrowserConnection;
+import org.apache.directory.studio.ldapbrowser.core.model.ISearch;
+import org.apache.directory.studio.ldapbrowser.core.model.IValue;
+import org.apache.directory.studio.ldapbrowser.core.model.SearchParameter;
+import org.apache.directory.studio.ldapbrowser.core.model.filter.LdapFilterEvaluator;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.Attribute;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.DummyEntry;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.Value;
+import org.apache.directory.studio.ldapbrowser.core.model.schema.Schema;
+import org.apache.directory.studio.ldapbrowser.core.utils.JNDIUtils;
+import org.apache.directory.studio.ldapbrowser.core.utils.ModelConverter;
+import org.apache.directory.studio.ldapbrowser.core.utils.Utils;
+import org.apache.directory.studio.ldifparser.LdifFormatParameters;
+import org.apache.directory.studio.ldifparser.model.LdifEnumeration;
+import org.apache.directory.studio.ldifparser.model.LdifFile;
+import org.apache.directory.studio.ldifparser.model.container.LdifChangeDeleteRecord;
+import org.apache.directory.studio.ldifparser.model.container.LdifContainer;
+import org.apache.directory.studio.ldifparser.model.container.LdifContentRecord;
+import org.apache.directory.studio.ldifparser.model.container.LdifRecord;
+import org.apache.directory.studio.ldifparser.model.lines.LdifAttrValLine;
+import org.apache.directory.studio.ldifparser.model.lines.LdifSepLine;
+import org.apache.directory.studio.ldifparser.model.lines.LdifVersionLine;
+import org.apache.directory.studio.ldifparser.parser.LdifParser;
+
+
+/**
+ * Runnable to compare the subtree of a source directory with the subtree
+ * of a target directory. The differences are written to an LDIF file
+ * with the change records that transform the target into the source.
+ *
+ * Each subtree is read with one (paged) subtree search. The entries are
+ * spooled to a temporary file, their normalized Dns relative to the base,
+ * reversed so that parents sort before their children, and their position
+ * in the file are sorted externally: in memory in runs of a bounded size
+ * that are written to temporary files and merged. Both sorted subtrees are
+ * then merge joined in one pass. Entries are compared attribute by attribute,
+ * values that are equal by the equality matching rule of the attribute
+ * type are not reported. Entries only in the source are added parent
+ * first, entries only in the target are deleted leaf first. If the Rdns
+ * of the base entries differ, the source Rdn is mapped to the target Rdn.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class DiffSubtreesRunnable implements StudioConnectionRunnableWithProgress
+{
+
+    /** The LDAP result code of a search for a non-existing base entry. */
+    private static final int NO_SUCH_OBJECT = 32;
+
+    /** The separator of the Rdns in the sort key, sorts before any other character. */
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    /** The source browser connection. */
+    private IBrowserConnection sourceBrowserConnection;
+
+    /** The Dn of the source subtree. */
+    private Dn sourceBase;
+
+    /** The target browser connection. */
+    private IBrowserConnection targetBrowserConnection;
+
+    /** The Dn of the target subtree. */
+    private Dn targetBase;
+
+    /** The filename of the LDIF change file. */
+    private String diffLdifFilename;
+
+    /** The number of compared entries. */
+    private int entryCount;
+
+    /** The number of written change records. */
+    private int changeCount;
+
+
+    /**
+     * Creates a new instance of DiffSubtreesRunnable.
+     *
+     * @param sourceBrowserConnection the source browser connection
+     * @param sourceBase the Dn of the source subtree
+     * @param targetBrowserConnection the target browser connection
+     * @param targetBase the Dn of the target subtree
+     * @param diffLdifFilename the filename of the LDIF change file
+     */
+    public DiffSubtreesRunnable( IBrowserConnection sourceBrowserConnection, Dn sourceBase,
+        IBrowserConnection targetBrowserConnection, Dn targetBase, String diffLdifFilename )
+    {
+        this.sourceBrowserConnection = sourceBrowserConnection;
+        this.sourceBase = sourceBase;
+        this.targetBrowserConnection = targetBrowserConnection;
+        this.targetBase = targetBase;
+        this.diffLdifFilename = diffLdifFilename;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public Connection[] getConnections()
+    {
+        return new Connection[]
+            { sourceBrowserConnection.getConnection(), targetBrowserConnection.getConnection() };
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getName()
+    {
+        return BrowserCoreMessages.jobs__diff_name;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public Object[] getLockedObjects()
+    {
+        return new Object[]
+            { targetBrowserConnection.getUrl() + "_" + DigestUtils.shaHex( diffLdifFilename ) }; //$NON-NLS-1$
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getErrorMessage()
+    {
+        return BrowserCoreMessages.jobs__diff_error;
+    }
+
+
+    /**
+     * Gets the number of compared entries.
+     *
+     * @return the number of compared entries
+     */
+    public int getEntryCount()
+    {
+        return entryCount;
+    }
+
+
+    /**
+     * Gets the number of written change records.
+     *
+     * @return the number of written change records
+     */
+    public int getChangeCount()
+    {
+        return changeCount;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void run( StudioProgressMonitor monitor )
+    {
+        monitor.beginTask( BrowserCoreMessages.jobs__diff_task, 2 );
+        monitor.reportProgress( " " ); //$NON-NLS-1$
+        monitor.worked( 1 );
+
+        entryCount = 0;
+        changeCount = 0;
+        SubtreeSpool sourceSpool = null;
+        SubtreeSpool targetSpool = null;
+        try
+        {
+            sourceSpool = spool( sourceBrowserConnection, sourceBase, monitor );
+            targetSpool = spool( targetBrowserConnection, targetBase, monitor );
+            if ( monitor.isCanceled() || monitor.errorsReported() )
+            {
+                return;
+            }
+
+            BufferedWriter bufferedWriter = new BufferedWriter( new FileWriter( diffLdifFilename ) );
+            try
+            {
+                if ( BrowserCorePlugin.getDefault().getPluginPreferences()
+                    .getBoolean( BrowserCoreConstants.PREFERENCE_LDIF_INCLUDE_VERSION_LINE ) )
+                {
+                    LdifFormatParameters ldifFormatParameters = Utils.getLdifFormatParameters();
+                    bufferedWriter.write( LdifVersionLine.create().toFormattedString( ldifFormatParameters ) );
+                    bufferedWriter.write( LdifSepLine.create().toFormattedString( ldifFormatParameters ) );
+                }
+
+                diff( sourceSpool, targetSpool, bufferedWriter, monitor );
+            }
+            finally
+            {
+                bufferedWriter.close();
+            }
+        }
+        catch ( Exception e )
+        {
+            monitor.reportError( e );
+        }
+        finally
+        {
+            if ( sourceSpool != null )
+            {
+                sourceSpool.close();
+            }
+            if ( targetSpool != null )
+            {
+                targetSpool.close();
+            }
+        }
+    }
+
+
+    /**
+     * Merge joins the sorted entries of the source and target subtrees.
+     *
+     * @param sourceSpool the entries of the source subtree
+     * @param targetSpool the entries of the target subtree
+     * @param writer the writer of the change file
+     * @param monitor the progress monitor
+     */
+    private void diff( SubtreeSpool sourceSpool, SubtreeSpool targetSpool, Writer writer,
+        StudioProgressMonitor monitor ) throws IOException, LdapException
+    {
+        // the target entries to delete, each one is a descendant of the one below
+        Deque<String[]> pendingDeletes = new ArrayDeque<String[]>();
+
+        Map.Entry<String, long[]> sourceEntry = sourceSpool.next();
+        Map.Entry<String, long[]> targetEntry = targetSpool.next();
+        while ( ( sourceEntry != null || targetEntry != null ) && !monitor.isCanceled() )
+        {
+            int compare = sourceEntry == null ? 1 : targetEntry == null ? -1 : sourceEntry.getKey().compareTo(
+                targetEntry.getKey() );
+            String key = compare <= 0 ? sourceEntry.getKey() : targetEntry.getKey();
+            writeDeletes( key, pendingDeletes, writer, monitor );
+
+            if ( compare == 0 )
+            {
+                LdifContentRecord sourceRecord = sourceSpool.read( sourceEntry.getValue() );
+                LdifContentRecord targetRecord = targetSpool.read( targetEntry.getValue() );
+                DummyEntry target = ModelConverter.ldifContentRecordToEntry( targetRecord, targetBrowserConnection );
+                DummyEntry source = createSourceEntry( sourceRecord, target, key.isEmpty() );
+                LdifFile diff = Utils.computeDiff( target, source );
+                if ( diff != null )
+                {
+                    for ( LdifRecord record : diff.getRecords() )
+                    {
+                        write( record, writer );
+                    }
+                }
+                reportProgress( monitor );
+            }
+            else if ( compare < 0 )
+            {
+                // parents sort before their children, so they are added first
+                LdifContentRecord sourceRecord = sourceSpool.read( sourceEntry.getValue() );
+                Dn targetDn = getTargetDn( new Dn( sourceRecord.getDnLine().getValueAsString() ) );
+                DummyEntry source = createSourceEntry( sourceRecord,
+                    new DummyEntry( targetDn, targetBrowserConnection ), key.isEmpty() );
+                write( ModelConverter.entryToLdifChangeAddRecord( source ), writer );
+                reportProgress( monitor );
+            }
+            else
+            {
+                // the children sort after their parent, they are deleted before it
+                LdifContentRecord targetRecord = targetSpool.read( targetEntry.getValue() );
+                pendingDeletes.push( new String[]
+                    { key, targetRecord.getDnLine().getValueAsString() } );
+            }
+
+            if ( compare <= 0 )
+            {
+                sourceEntry = sourceSpool.next();
+            }
+            if ( compare >= 0 )
+            {
+                targetEntry = targetSpool.next();
+            }
+        }
+
+        if ( !monitor.isCanceled() )
+        {
+            writeDeletes( null, pendingDeletes, writer, monitor );
+        }
+    }
+
+
+    /**
+     * Writes the delete records of the pending target entries that aren't
+     * ancestors of the given entry, leaves first.
+     *
+     * @param key the key of the next entry, null to write all pending deletes
+     * @param pendingDeletes the keys and Dns of the target entries to delete
+     * @param writer the writer of the change file
+     * @param monitor the progress monitor
+     */
+    private void writeDeletes( String key, Deque<String[]> pendingDeletes, Writer writer,
+        StudioProgressMonitor monitor ) throws IOException
+    {
+        while ( !pendingDeletes.isEmpty()
+            && ( key == null || !key.startsWith( pendingDeletes.peek()[0] + KEY_SEPARATOR ) ) )
+        {
+            LdifChangeDeleteRecord record = LdifChangeDeleteRecord.create( pendingDeletes.pop()[1] );
+            record.finish( LdifSepLine.create() );
+            write( record, writer );
+            reportProgress( monitor );
+        }
+    }
+
+
+    /**
+     * Gets the Dn in the target subtree that corresponds to the Dn in the source subtree.
+     *
+     * @param sourceDn the Dn in the source subtree
+     *
+     * @return the Dn in the target subtree
+     */
+    private Dn getTargetDn( Dn sourceDn ) throws LdapInvalidDnException
+    {
+        List<Rdn> rdns = sourceDn.getRdns();
+        Dn targetDn = targetBase;
+        for ( int i = sourceDn.size() - sourceBase.size() - 1; i >= 0; i-- )
+        {
+            targetDn = new Dn( rdns.get( i ), targetDn );
+        }
+        return targetDn;
+    }
+
+
+    /**
+     * Creates the source entry with the Dn of the target entry. Source values
+     * that are equal to a target value by the equality matching rule are
+     * replaced by the target value, so only real differences remain. For the
+     * base entries the values of the source Rdn are replaced by the values of
+     * the target Rdn, as the Rdn can't be changed by a modification.
+     *
+     * @param sourceRecord the source record
+     * @param targetEntry the target entry, may be empty
+     * @param isBase true if the entries are the base entries of the subtrees
+     *
+     * @return the source entry
+     */
+    private DummyEntry createSourceEntry( LdifContentRecord sourceRecord, DummyEntry targetEntry, boolean isBase )
+        throws LdapInvalidDnException
+    {
+        Schema schema = targetBrowserConnection.getSchema();
+        Map<String, Map<Object, IValue>> targetValues = new HashMap<String, Map<Object, IValue>>();
+        for ( IAttribute attribute : targetEntry.getAttributes() )
+        {
+            Map<Object, IValue> values = new HashMap<Object, IValue>();
+            for ( IValue value : attribute.getValues() )
+            {
+                values.put( normalize( attribute.getDescription(), value.getRawValue(), schema ), value );
+            }
+            targetValues.put( getKey( attribute.getDescription(), schema ), values );
+        }
+
+        // the values of the source Rdn that are replaced by the values of the target Rdn
+        Map<String, Set<Object>> sourceRdnValues = new HashMap<String, Set<Object>>();
+        boolean mapRdn = isBase && !sourceBase.isEmpty() && !targetBase.isEmpty()
+            && !Utils.getNormalizedOidString( new Dn( sourceBase.getRdn() ), schema ).equals(
+                Utils.getNormalizedOidString( new Dn( targetBase.getRdn() ), schema ) );
+        if ( mapRdn )
+        {
+            for ( Ava ava : sourceBase.getRdn() )
+            {
+                String key = getKey( ava.getType(), schema );
+                if ( !sourceRdnValues.containsKey( key ) )
+                {
+                    sourceRdnValues.put( key, new HashSet<Object>() );
+                }
+                sourceRdnValues.get( key ).add( normalize( ava.getType(), ava.getValue().getString(), schema ) );
+            }
+        }
+
+        DummyEntry sourceEntry = new DummyEntry( targetEntry.getDn(), targetBrowserConnection );
+        EventRegistry.suspendEventFiringInCurrentThread();
+        try
+        {
+            for ( LdifAttrValLine line : sourceRecord.getAttrVals() )
+            {
+                String description = line.getUnfoldedAttributeDescription();
+                Object rawValue = line.getValueAsObject();
+                Set<Object> rdnValues = sourceRdnValues.get( getKey( description, schema ) );
+                if ( rdnValues != null && rdnValues.contains( normalize( description, rawValue, schema ) ) )
+                {
+                    continue;
+                }
+                addValue( sourceEntry, description, rawValue, targetValues, schema );
+            }
+
+            if ( mapRdn )
+            {
+                for ( Ava ava : targetBase.getRdn() )
+                {
+                    addValue( sourceEntry, ava.getType(), ava.getValue().getString(), targetValues, schema );
+                }
+            }
+        }
+        finally
+        {
+            EventRegistry.resumeEventFiringInCurrentThread();
+        }
+
+        return sourceEntry;
+    }
+
+
+    /**
+     * Adds a value to the source entry, replaced by the equal target value if there is one.
+     * A value that the entry already has isn't added again.
+     */
+    private static void addValue( DummyEntry sourceEntry, String description, Object rawValue,
+        Map<String, Map<Object, IValue>> targetValues, Schema schema )
+    {
+        Object normalizedValue = normalize( description, rawValue, schema );
+        Map<Object, IValue> values = targetValues.get( getKey( description, schema ) );
+        IValue targetValue = values != null ? values.get( normalizedValue ) : null;
+        if ( targetValue != null )
+        {
+            description = targetValue.getAttribute().getDescription();
+            rawValue = targetValue.getRawValue();
+        }
+
+        IAttribute attribute = sourceEntry.getAttribute( description );
+        if ( attribute == null )
+        {
+            attribute = new Attribute( sourceEntry, description );
+            sourceEntry.addAttribute( attribute );
+        }
+        for ( IValue value : attribute.getValues() )
+        {
+            if ( normalize( description, value.getRawValue(), schema ).equals( normalizedValue ) )
+            {
+                return;
+            }
+        }
+        attribute.addValue( new Value( attribute, rawValue ) );
+    }
+
+
+    /**
+     * Reads all entries of a subtree with all user attributes and spools them
+     * to a temporary file, sorted by their relative Dn.
+     *
+     * @param browserConnection the browser connection
+     * @param base the Dn of the subtree
+     * @param monitor the progress monitor
+     *
+     * @return the spooled entries, empty if the base entry doesn't exist
+     */
+    private SubtreeSpool spool( IBrowserConnection browserConnection, Dn base, StudioProgressMonitor monitor )
+        throws IOException
+    {
+        SubtreeSpool spool = new SubtreeSpool();
+        try
+        {
+            StudioProgressMonitor searchMonitor = new StudioProgressMonitor( monitor );
+            SearchParameter searchParameter = createSearchParameter( browserConnection, base, SearchScope.SUBTREE );
+            searchParameter.setReturningAttributes( new String[]
+                { SchemaConstants.ALL_USER_ATTRIBUTES } );
+            if ( browserConnection.isPagedSearch() )
+            {
+                searchParameter.getControls().add(
+                    Controls.newPagedResultsControl( browserConnection.getPagedSearchSize() ) );
+            }
+
+            LdifFormatParameters ldifFormatParameters = Utils.getLdifFormatParameters();
+            LdifEnumeration enumeration = ExportLdifRunnable.search( browserConnection, searchParameter,
+                searchMonitor );
+            try
+            {
+                while ( !monitor.isCanceled() && !searchMonitor.errorsReported() && enumeration.hasNext() )
+                {
+                    LdifContainer container = enumeration.next();
+                    if ( container instanceof LdifContentRecord )
+                    {
+                        LdifContentRecord record = ( LdifContentRecord ) container;
+                        Dn dn = new Dn( record.getDnLine().getValueAsString() );
+                        spool.add( getSortKey( dn, base ), record.toFormattedString( ldifFormatParameters ) );
+                    }
+                }
+            }
+            catch ( LdapException e )
+            {
+                searchMonitor.reportError( e );
+            }
+
+            if ( searchMonitor.errorsReported() )
+            {
+                // a missing base entry is a difference, not an error
+                Exception exception = searchMonitor.getException();
+                if ( exception == null || JNDIUtils.getLdapStatusCode( exception ) != NO_SUCH_OBJECT )
+                {
+                    monitor.reportError( BrowserCoreMessages.jobs__diff_error, exception );
+                }
+            }
+
+            spool.finish();
+            return spool;
+        }
+        catch ( IOException e )
+        {
+            spool.close();
+            throw e;
+        }
+    }
+
+
+    /**
+     * Gets the sort key of an entry, that is its normalized Rdns relative to
+     * the base, from the base down to the entry. A parent sorts before its
+     * children and the descendants of an entry sort before its next sibling.
+     *
+     * @param dn the Dn of the entry
+     * @param base the Dn of the subtree
+     *
+     * @return the sort key, empty for the base entry
+     */
+    private String getSortKey( Dn dn, Dn base ) throws LdapInvalidDnException
+    {
+        List<Rdn> rdns = dn.getRdns();
+        StringBuilder sb = new StringBuilder();
+        for ( int i = dn.size() - base.size() - 1; i >= 0; i-- )
+        {
+            sb.append( KEY_SEPARATOR );
+            sb.append( Utils.getNormalizedOidString( new Dn( rdns.get( i ) ), targetBrowserConnection.getSchema() ) );
+        }
+        return sb.toString();
+    }
+
+
+    private static SearchParameter createSearchParameter( IBrowserConnection browserConnection, Dn dn,
+        SearchScope scope )
+    {
+        SearchParameter searchParameter = new SearchParameter();
+        searchParameter.setSearchBase( dn );
+        searchParameter.setFilter( ISearch.FILTER_TRUE );
+        searchParameter.setScope( scope );
+        searchParameter.setCountLimit( 0 );
+        searchParameter.setTimeLimit( 0 );
+        searchParameter.setAliasesDereferencingMethod( AliasDereferencingMethod.NEVER );
+        searchParameter.setReferralsHandlingMethod( ReferralHandlingMethod.IGNORE );
+        if ( browserConnection.isManageDsaIT() )
+        {
+            searchParameter.getControls().add( Controls.MANAGEDSAIT_CONTROL );
+        }
+        return searchParameter;
+    }
+
+
+    /**
+     * Gets the key of an attribute description, that is the OID of the
+     * attribute type and the lower-cased options.
+     */
+    private static String getKey( String description, Schema schema )
+    {
+        int index = description.indexOf( ';' );
+        String type = index > 0 ? description.substring( 0, index ) : description;
+        String options = index > 0 ? Strings.toLowerCase( description.substring( index ) ) : ""; //$NON-NLS-1$
+        return schema.getAttributeTypeDescription( type ).getOid() + options;
+    }
+
+
+    /**
+     * Normalizes a value according to the equality matching rule of the attribute type,
+     * binary values are compared byte by byte.
+     */
+    private static Object normalize( String description, Object rawValue, Schema schema )
+    {
+        if ( rawValue instanceof byte[] )
+        {
+            return ByteBuffer.wrap( ( byte[] ) rawValue );
+        }
+        int index = description.indexOf( ';' );
+        String type = index > 0 ? description.substring( 0, index ) : description;
+        return LdapFilterEvaluator.normalizeValue( type, String.valueOf( rawValue ), schema );
+    }
+
+
+    private void write( LdifRecord record, Writer writer ) throws IOException
+    {
+        writer.write( record.toFormattedString( Utils.getLdifFormatParameters() ) );
+        changeCount++;
+    }
+
+
+    private void reportProgress( StudioProgressMonitor monitor )
+    {
+        entryCount++;
+        monitor.reportProgress( BrowserCoreMessages.bind( BrowserCoreMessages.jobs__diff_progress, new String[]
+            { Integer.toString( entryCount ), Integer.toString( changeCount ) } ) );
+    }
+
+
+    /**
+     * The entries of a subtree, spooled to a temporary file. The index maps the
+     * sort key of each entry to the offset and length of its record. The index is
+     * sorted in memory in runs of {@link #RUN_SIZE} entries, full runs are written
+     * to temporary run files that are merged while the entries are read.
+     */
+    private static class SubtreeSpool
+    {
+        /** The maximum number of index entries held in memory. */
+        private static final int RUN_SIZE = 50000;
+
+        /** The comparator that orders runs by their current key. */
+        private static final Comparator<SpoolRun> RUN_COMPARATOR = new Comparator<SpoolRun>()
+        {
+            public int compare( SpoolRun r1, SpoolRun r2 )
+            {
+                return r1.key.compareTo( r2.key );
+            }
+        };
+
+        /** The temporary file. */
+        private File file;
+
+        /** The output stream while spooling. */
+        private OutputStream out;
+
+        /** The current size of the file. */
+        private long size;
+
+        /** The file, opened for reading after spooling. */
+        private RandomAccessFile in;
+
+        /** The offset and length of the records of the current run by sort key. */
+        private TreeMap<String, long[]> index = new TreeMap<String, long[]>();
+
+        /** The runs written to run files. */
+        private List<SpoolRun> runs = new ArrayList<SpoolRun>();
+
+        /** The index of a spool without run files, while reading. */
+        private Iterator<Map.Entry<String, long[]>> indexIterator;
+
+        /** The runs with remaining entries ordered by their current key, while reading. */
+        private PriorityQueue<SpoolRun> runQueue;
+
+
+        private SubtreeSpool() throws IOException
+        {
+            file = File.createTempFile( "diff", ".ldif" ); //$NON-NLS-1$ //$NON-NLS-2$
+            file.deleteOnExit();
+            out = new BufferedOutputStream( new FileOutputStream( file ) );
+        }
+
+
+        private void add( String key, String ldif ) throws IOException
+        {
+            byte[] bytes = Strings.getBytesUtf8( ldif );
+            out.write( bytes );
+            index.put( key, new long[]
+                { size, bytes.length } );
+            size += bytes.length;
+
+            if ( index.size() >= RUN_SIZE )
+            {
+                runs.add( new SpoolRun( index ) );
+                index.clear();
+            }
+        }
+
+
+        private void finish() throws IOException
+        {
+            out.close();
+            out = null;
+            in = new RandomAccessFile( file, "r" ); //$NON-NLS-1$
+
+            if ( runs.isEmpty() )
+            {
+                indexIterator = index.entrySet().iterator();
+            }
+            else
+            {
+                if ( !index.isEmpty() )
+                {
+                    runs.add( new SpoolRun( index ) );
+                    index.clear();
+                }
+                runQueue = new PriorityQueue<SpoolRun>( runs.size(), RUN_COMPARATOR );
+                for ( SpoolRun run : runs )
+                {
+                    if ( run.next() )
+                    {
+                        runQueue.add( run );
+                    }
+                }
+            }
+        }
+
+
+        /**
+         * Reads the next index entry in sort order.
+         *
+         * @return the sort key and the offset and length of the record, null after the last entry
+         */
+        private Map.Entry<String, long[]> next() throws IOException
+        {
+            if ( indexIterator != null )
+            {
+                return indexIterator.hasNext() ? indexIterator.next() : null;
+            }
+
+            SpoolRun run = runQueue.poll();
+            if ( run == null )
+            {
+                return null;
+            }
+            Map.Entry<String, long[]> entry = new AbstractMap.SimpleImmutableEntry<String, long[]>( run.key,
+                run.position );
+            if ( run.next() )
+            {
+                runQueue.add( run );
+            }
+            return entry;
+        }
+
+
+        private LdifContentRecord read( long[] position ) throws IOException
+        {
+            byte[] bytes = new byte[( int ) position[1]];
+            in.seek( position[0] );
+            in.readFully( bytes );
+            for ( LdifRecord record : new LdifParser().parse( Strings.utf8ToString( bytes ) ).getRecords() )
+            {
+                if ( record instanceof LdifContentRecord )
+                {
+                    return ( LdifContentRecord ) record;
+                }
+            }
+            throw new IOException( file.getAbsolutePath() );
+        }
+
+
+        private void close()
+        {
+            try
+            {
+                if ( out != null )
+                {
+                    out.close();
+                }
+                if ( in != null )
+                {
+                    in.close();
+                }
+            }
+            catch ( IOException e )
+            {
+                // the file is deleted anyway
+            }
+            file.delete();
+            for ( SpoolRun run : runs )
+            {
+                run.close();
+            }
+        }
+    }
+
+
+    /**
+     * A sorted run of index entries, written to a temporary file. Each entry
+     * consists of the length and UTF-8 bytes of the sort key, and the offset
+     * and length of the record.
+     */
+    private static class SpoolRun
+    {
+
+        /** The temporary file. */
+        private File file;
+
+        /** The input stream, while reading. */
+        private DataInputStream in;
+
+        /** The current sort key. */
+        private String key;
+
+        /** The offset and length of the current record. */
+        private long[] position;
+
+
+        private SpoolRun( TreeMap<String, long[]> index ) throws IOException
+        {
+            file = File.createTempFile( "diff", ".run" ); //$NON-NLS-1$ //$NON-NLS-2$
+            file.deleteOnExit();
+            try ( DataOutputStream out = new DataOutputStream( new BufferedOutputStream(
+                new FileOutputStream( file ) ) ) )
+            {
+                for ( Map.Entry<String, long[]> entry : index.entrySet() )
+                {
+                    byte[] bytes = Strings.getBytesUtf8( entry.getKey() );
+                    out.writeInt( bytes.length );
+                    out.write( bytes );
+                    out.writeLong( entry.getValue()[0] );
+                    out.writeLong( entry.getValue()[1] );
+                }
+            }
+        }
+
+
+        /**
+         * Reads the next index entry of this run.
+         *
+         * @return false after the last entry
+         */
+        private boolean next() throws IOException
+        {
+            if ( in == null )
+            {
+                in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) );
+            }
+
+            int length;
+            try
+            {
+                length = in.readInt();
+            }
+            catch ( EOFException e )
+            {
+                close();
+                return false;
+            }
+            byte[] bytes = new byte[length];
+            in.readFully( bytes );
+            key = Strings.utf8ToString( bytes );
+            position = new long[]
+                { in.readLong(), in.readLong() };
+            return true;
+        }
+
+
+        private void close()
+        {
+            try
+            {
+                if ( in != null )
+                {
+                    in.close();
+                }
+            }
+            catch ( IOException e )
+            {
+                // the file is deleted anyway
+            }
+            file.delete();
+        }
+    }
+
+}
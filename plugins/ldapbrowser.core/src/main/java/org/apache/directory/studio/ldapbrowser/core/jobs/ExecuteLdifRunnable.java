@@ -58,6 +58,9 @@ public class ExecuteLdifRunnable implements StudioConnectionBulkRunnableWithProg
     /** The continue on error flag. */
     private boolean continueOnError;
 
+    /** The maximum number of records applied in one transaction. */
+    private int transactionSize;
+
 
     /**
      * Creates a new instance of ExecuteLdifJob.
@@ -65,14 +68,31 @@ public class ExecuteLdifRunnable implements StudioConnectionBulkRunnableWithProg
      * @param browserConnection the browser connection
      * @param ldif the LDIF to execute
      * @param continueOnError the continue on error flag
+     * @param transactionSize the maximum number of records applied in one transaction,
+     *        1 to execute without transactions
      */
     public ExecuteLdifRunnable( IBrowserConnection browserConnection, String ldif, boolean updateIfEntryExists,
-        boolean continueOnError )
+        boolean continueOnError, int transactionSize )
     {
         this.browserConnection = browserConnection;
         this.ldif = ldif;
         this.continueOnError = continueOnError;
         this.updateIfEntryExists = updateIfEntryExists;
+        this.transactionSize = transactionSize;
+    }
+
+
+    /**
+     * Creates a new instance of ExecuteLdifJob.
+     * 
+     * @param browserConnection the browser connection
+     * @param ldif the LDIF to execute
+     * @param continueOnError the continue on error flag
+     */
+    public ExecuteLdifRunnable( IBrowserConnection browserConnection, String ldif, boolean updateIfEntryExists,
+        boolean continueOnError )
+    {
+        this( browserConnection, ldif, updateIfEntryExists, continueOnError, 1 );
     }
 
 
@@ -120,12 +140,31 @@ public class ExecuteLdifRunnable implements StudioConnectionBulkRunnableWithProg
      */
     public void run( StudioProgressMonitor monitor )
     {
-        executeLdif( browserConnection, ldif, updateIfEntryExists, continueOnError, monitor );
+        executeLdif( browserConnection, ldif, updateIfEntryExists, continueOnError, transactionSize, monitor );
     }
 
 
     public static void executeLdif( IBrowserConnection browserConnection, String ldif, boolean updateIfEntryExists,
         boolean continueOnError, StudioProgressMonitor monitor )
+    {
+        executeLdif( browserConnection, ldif, updateIfEntryExists, continueOnError, 1, monitor );
+    }
+
+
+    /**
+     * Executes the LDIF, in transactions of up to transactionSize records
+     * if the server supports transactions.
+     * 
+     * @param browserConnection the browser connection
+     * @param ldif the LDIF to execute
+     * @param updateIfEntryExists the update if entry exists flag
+     * @param continueOnError the continue on error flag
+     * @param transactionSize the maximum number of records applied in one transaction,
+     *        1 to execute without transactions
+     * @param monitor the progress monitor
+     */
+    public static void executeLdif( IBrowserConnection browserConnection, String ldif, boolean updateIfEntryExists,
+        boolean continueOnError, int transactionSize, StudioProgressMonitor monitor )
     {
         monitor.beginTask( BrowserCoreMessages.jobs__execute_ldif_task, 2 );
         monitor.reportProgress( " " ); //$NON-NLS-1$
@@ -155,7 +194,7 @@ public class ExecuteLdifRunnable implements StudioConnectionBulkRunnableWithProg
             };
 
             ImportLdifRunnable.importLdif( browserConnection, enumeration, logWriter, updateIfEntryExists,
-                continueOnError, monitor );
+                continueOnError, 1, transactionSize, null, monitor );
 
             logWriter.close();
             ldifReader.close();
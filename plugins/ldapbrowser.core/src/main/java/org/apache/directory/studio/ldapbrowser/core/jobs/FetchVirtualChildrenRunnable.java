@@ -0,0 +1,332 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+
+package org.apache.directory.studio.ldapbrowser.core.jobs;
+
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.util.Strings;
+import org.apache.directory.studio.common.core.jobs.StudioProgressMonitor;
+import org.apache.directory.studio.connection.core.Connection;
+import org.apache.directory.studio.connection.core.Connection.AliasDereferencingMethod;
+import org.apache.directory.studio.connection.core.Controls;
+import org.apache.directory.studio.connection.core.Controls.VirtualListViewWindow;
+import org.apache.directory.studio.connection.core.io.api.StudioSearchResultEnumeration;
+import org.apache.directory.studio.connection.core.jobs.StudioConnectionBulkRunnableWithProgress;
+import org.apache.directory.studio.ldapbrowser.core.BrowserCoreConstants;
+import org.apache.directory.studio.ldapbrowser.core.BrowserCoreMessages;
+import org.apache.directory.studio.ldapbrowser.core.BrowserCorePlugin;
+import org.apache.directory.studio.ldapbrowser.core.events.ChildrenInitializedEvent;
+import org.apache.directory.studio.ldapbrowser.core.events.EventRegistry;
+import org.apache.directory.studio.ldapbrowser.core.model.IBrowserConnection;
+import org.apache.directory.studio.ldapbrowser.core.model.IContinuation;
+import org.apache.directory.studio.ldapbrowser.core.model.IEntry;
+import org.apache.directory.studio.ldapbrowser.core.model.IRootDSE;
+import org.apache.directory.studio.ldapbrowser.core.model.ISearch;
+import org.apache.directory.studio.ldapbrowser.core.model.ISearchResult;
+import org.apache.directory.studio.ldapbrowser.core.model.SearchParameter;
+import org.apache.directory.studio.ldapbrowser.core.model.VirtualChildren;
+
+
+/**
+ * Runnable to fetch a window of the child entries of an entry, using the
+ * server side sort and virtual list view controls. Only the children
+ * of the window are transferred, the other children are fetched when
+ * their window becomes visible.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class FetchVirtualChildrenRunnable implements StudioConnectionBulkRunnableWithProgress
+{
+
+    /** The parent entry */
+    private IEntry parent;
+
+    /** The position of the first child to fetch */
+    private int first;
+
+    /** The position of the last child to fetch */
+    private int last;
+
+
+    /**
+     * Creates a new instance of FetchVirtualChildrenRunnable.
+     *
+     * @param parent the parent entry
+     * @param first the position of the first child to fetch, starting with 0
+     * @param last the position of the last child to fetch
+     */
+    public FetchVirtualChildrenRunnable( IEntry parent, int first, int last )
+    {
+        this.parent = parent;
+        this.first = first;
+        this.last = last;
+    }
+
+
+    /**
+     * Checks if the virtual list view is enabled and applicable for the
+     * parent. It requires that the directory supports the server side sort
+     * and virtual list view controls. It is not applicable for filtered
+     * children and if sub-entries, aliases or referrals are fetched with
+     * additional searches.
+     *
+     * @param parent the parent
+     *
+     * @return true if the virtual list view is applicable
+     */
+    public static boolean isApplicable( IEntry parent )
+    {
+        if ( !BrowserCorePlugin.getDefault().getPluginPreferences().getBoolean(
+            BrowserCoreConstants.PREFERENCE_VIRTUAL_LIST_VIEW ) )
+        {
+            return false;
+        }
+
+        IBrowserConnection browserConnection = parent.getBrowserConnection();
+        if ( browserConnection == null || parent instanceof IRootDSE || parent instanceof IContinuation )
+        {
+            return false;
+        }
+
+        IRootDSE rootDSE = browserConnection.getRootDSE();
+        return parent.getChildrenFilter() == null && !browserConnection.isFetchSubentries()
+            && !parent.isFetchSubentries() && !parent.isFetchAliases() && !parent.isFetchReferrals()
+            && rootDSE != null && rootDSE.isControlSupported( Controls.SORT_REQUEST_CONTROL_OID )
+            && rootDSE.isControlSupported( Controls.VLV_REQUEST_CONTROL_OID );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public Connection[] getConnections()
+    {
+        return new Connection[]
+            { parent.getBrowserConnection().getConnection() };
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getName()
+    {
+        return BrowserCoreMessages.jobs__init_entries_title_subonly;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public Object[] getLockedObjects()
+    {
+        return new Object[]
+            { parent };
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getErrorMessage()
+    {
+        return BrowserCoreMessages.jobs__init_entries_error_1;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void run( StudioProgressMonitor monitor )
+    {
+        monitor.beginTask( " ", 3 ); //$NON-NLS-1$
+        monitor.reportProgress( " " ); //$NON-NLS-1$
+        monitor.setTaskName( BrowserCoreMessages.bind( BrowserCoreMessages.jobs__init_entries_task, new String[]
+            { parent.getDn().getName() } ) );
+        monitor.worked( 1 );
+        monitor.reportProgress( BrowserCoreMessages.bind( BrowserCoreMessages.jobs__init_entries_progress_sub,
+            new String[]
+            { parent.getDn().getName() } ) );
+
+        VirtualChildren virtualChildren = parent.getVirtualChildren();
+        if ( virtualChildren != null && virtualChildren.isFetched( first, last ) )
+        {
+            // already fetched by a previous request
+            return;
+        }
+
+        if ( virtualChildren == null )
+        {
+            Set<String> rdnTypes = fetchRdnTypes( parent, last - first + 1, monitor );
+            if ( monitor.errorsReported() )
+            {
+                return;
+            }
+            else if ( rdnTypes.isEmpty() )
+            {
+                // no children at all
+                InitializeChildrenRunnable.clearCaches( parent, false );
+                parent.setChildrenInitialized( true );
+                parent.setHasChildrenHint( false );
+                return;
+            }
+            else if ( rdnTypes.size() > 1 )
+            {
+                // children sorted by one attribute wouldn't be ordered by their Rdn, fetch all children
+                new InitializeChildrenRunnable( false, parent ).run( monitor );
+                return;
+            }
+            virtualChildren = new VirtualChildren( rdnTypes.iterator().next(), last - first + 1 );
+        }
+        monitor.worked( 1 );
+
+        // fetch the window
+        ISearch search = InitializeChildrenRunnable.createSearch( parent, null, false, false, false );
+        search.getSearchParameter().setCountLimit( 0 );
+        search.getSearchParameter().getControls().add(
+            Controls.newSortRequestControl( virtualChildren.getSortAttribute() ) );
+        search.getSearchParameter().getControls().add(
+            Controls.newVirtualListViewRequestControl( 0, last - first, first + 1,
+                virtualChildren.getContentCount(), virtualChildren.getContextId() ) );
+        SearchRunnable.searchAndUpdateModel( parent.getBrowserConnection(), search, monitor );
+        if ( monitor.errorsReported() )
+        {
+            return;
+        }
+
+        VirtualListViewWindow window = Controls.getVirtualListViewWindow( search.getResponseControls() );
+        if ( window == null )
+        {
+            monitor.reportError( BrowserCoreMessages.bind( BrowserCoreMessages.jobs__init_entries_error_vlv,
+                new String[]
+                { parent.getDn().getName() } ) );
+            return;
+        }
+
+        List<IEntry> children = new ArrayList<IEntry>();
+        ISearchResult[] srs = search.getSearchResults();
+        if ( srs != null )
+        {
+            for ( ISearchResult sr : srs )
+            {
+                children.add( sr.getEntry() );
+            }
+        }
+        virtualChildren.setWindow( window.getContentCount(), window.getContextId(),
+            window.getTargetPosition() - 1, children );
+
+        parent.setVirtualChildren( virtualChildren );
+        parent.setChildrenInitialized( true );
+        parent.setHasMoreChildren( false );
+        parent.setHasChildrenHint( window.getContentCount() > 0 );
+        monitor.worked( 1 );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void runNotification( StudioProgressMonitor monitor )
+    {
+        if ( parent.getBrowserConnection() != null && parent.isChildrenInitialized() )
+        {
+            EventRegistry.fireEntryUpdated( new ChildrenInitializedEvent( parent ), this );
+        }
+    }
+
+
+    /**
+     * Fetches the Rdn types of the first children of the parent. The
+     * children are sorted by the Rdn type, that only gives the order
+     * shown in the tree if all children use the same Rdn type.
+     *
+     * @param parent the parent
+     * @param sampleSize the maximum number of children to fetch
+     * @param monitor the progress monitor
+     *
+     * @return the lower-cased Rdn types of the fetched children, empty if there are no children
+     */
+    private static Set<String> fetchRdnTypes( IEntry parent, int sampleSize, StudioProgressMonitor monitor )
+    {
+        IBrowserConnection browserConnection = parent.getBrowserConnection();
+        SearchParameter searchParameter = new SearchParameter();
+        searchParameter.setSearchBase( parent.getDn() );
+        searchParameter.setFilter( ISearch.FILTER_TRUE );
+        searchParameter.setReturningAttributes( ISearch.NO_ATTRIBUTES );
+        searchParameter.setScope( SearchScope.ONELEVEL );
+        searchParameter.setCountLimit( sampleSize );
+        searchParameter.setTimeLimit( 0 );
+        searchParameter.setAliasesDereferencingMethod( AliasDereferencingMethod.NEVER );
+        searchParameter.setReferralsHandlingMethod( browserConnection.getReferralsHandlingMethod() );
+        if ( browserConnection.isManageDsaIT() )
+        {
+            searchParameter.getControls().add( Controls.MANAGEDSAIT_CONTROL );
+        }
+
+        Set<String> rdnTypes = new LinkedHashSet<String>();
+        StudioSearchResultEnumeration enumeration = SearchRunnable.search( browserConnection, searchParameter,
+            monitor );
+        if ( enumeration == null )
+        {
+            return rdnTypes;
+        }
+
+        try
+        {
+            // don't ask for more than the sample size, the server reports the exceeded size limit then
+            int count = 0;
+            while ( count < sampleSize && !monitor.isCanceled() && enumeration.hasMore() )
+            {
+                Dn dn = enumeration.next().getDn();
+                count++;
+                if ( dn != null && dn.getRdn() != null && dn.getRdn().getType() != null )
+                {
+                    rdnTypes.add( Strings.toLowerCase( dn.getRdn().getType() ) );
+                }
+            }
+        }
+        catch ( LdapException e )
+        {
+            monitor.reportError( e );
+        }
+        finally
+        {
+            try
+            {
+                enumeration.close();
+            }
+            catch ( LdapException e )
+            {
+                // ignore, the result is complete
+            }
+        }
+
+        return rdnTypes;
+    }
+
+}
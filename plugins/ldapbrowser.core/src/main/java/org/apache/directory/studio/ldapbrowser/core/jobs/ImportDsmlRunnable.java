@@ -24,10 +24,15 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.naming.directory.SearchControls;
 
@@ -62,6 +67,7 @@ import org.apache.directory.api.ldap.model.message.MessageTypeEnum;
 import org.apache.directory.api.ldap.model.message.ModifyDnRequest;
 import org.apache.directory.api.ldap.model.message.ModifyRequest;
 import org.apache.directory.api.ldap.model.message.Request;
+import org.apache.directory.api.ldap.model.message.Response;
 import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
 import org.apache.directory.api.ldap.model.message.SearchRequest;
 import org.apache.directory.api.ldap.model.name.Dn;
@@ -70,6 +76,7 @@ import org.apache.directory.studio.connection.core.Connection;
 import org.apache.directory.studio.connection.core.Connection.AliasDereferencingMethod;
 import org.apache.directory.studio.connection.core.Connection.ReferralHandlingMethod;
 import org.apache.directory.studio.connection.core.io.LdapRuntimeException;
+import org.apache.directory.studio.connection.core.io.StudioLdapException;
 import org.apache.directory.studio.connection.core.io.api.StudioSearchResultEnumeration;
 import org.apache.directory.studio.connection.core.jobs.StudioConnectionBulkRunnableWithProgress;
 import org.apache.directory.studio.ldapbrowser.core.BrowserCoreMessages;
@@ -78,6 +85,10 @@ import org.apache.directory.studio.ldapbrowser.core.events.EventRegistry;
 import org.apache.directory.studio.ldapbrowser.core.model.IBrowserConnection;
 import org.apache.directory.studio.ldapbrowser.core.model.IEntry;
 import org.apache.directory.studio.ldapbrowser.core.model.SearchParameter;
+import org.dom4j.DocumentHelper;
+import org.dom4j.Element;
+import org.dom4j.io.OutputFormat;
+import org.dom4j.io.XMLWriter;
 
 
 /**
@@ -87,6 +98,12 @@ import org.apache.directory.studio.ldapbrowser.core.model.SearchParameter;
  */
 public class ImportDsmlRunnable implements StudioConnectionBulkRunnableWithProgress
 {
+    /** The default number of add requests awaiting a response when add requests are pipelined. */
+    public static final int DEFAULT_PIPELINE_SIZE = 16;
+
+    /** The maximum number of add requests collected before they are sent. */
+    private static final int MAX_PENDING_ADD_REQUESTS = 1000;
+
     /** The connection to use */
     private IBrowserConnection browserConnection;
 
@@ -96,6 +113,21 @@ public class ImportDsmlRunnable implements StudioConnectionBulkRunnableWithProgr
     /** The Save file to use */
     private File responseFile;
 
+    /** The flag to process each request as soon as it is parsed */
+    private boolean streaming;
+
+    /** The maximum number of add requests awaiting a response */
+    private int pipelineSize;
+
+    /** The collected add requests */
+    private List<AddRequest> pendingAddRequests = new ArrayList<AddRequest>();
+
+    /** The Dns of the collected add requests */
+    private Set<Dn> pendingDns = new HashSet<Dn>();
+
+    /** The number of failed requests */
+    private int errorsCount;
+
     /** 
      * LDAP Codec used by DSML parser
      * @TODO by Alex - this should be removed completely
@@ -112,14 +144,39 @@ public class ImportDsmlRunnable implements StudioConnectionBulkRunnableWithProgr
      *          The DSML file to read from
      * @param saveFile
      *          The Save file to use
-     * @param continueOnError
-     *          The ContinueOnError flag
+     * @param streaming
+     *          true to process each request as soon as it is parsed and to write the
+     *          responses immediately, instead of reading the whole batch request first
+     * @param pipelineSize
+     *          The maximum number of add requests awaiting a response, 1 to process
+     *          request by request
      */
-    public ImportDsmlRunnable( IBrowserConnection connection, File dsmlFile, File saveFile )
+    public ImportDsmlRunnable( IBrowserConnection connection, File dsmlFile, File saveFile, boolean streaming,
+        int pipelineSize )
     {
         this.browserConnection = connection;
         this.dsmlFile = dsmlFile;
         this.responseFile = saveFile;
+        this.streaming = streaming;
+        this.pipelineSize = pipelineSize;
+    }
+
+
+    /**
+     * Creates a new instance of ImportDsmlRunnable.
+     *
+     * @param connection
+     *          The connection to use
+     * @param dsmlFile
+     *          The DSML file to read from
+     * @param saveFile
+     *          The Save file to use
+     * @param continueOnError
+     *          The ContinueOnError flag
+     */
+    public ImportDsmlRunnable( IBrowserConnection connection, File dsmlFile, File saveFile )
+    {
+        this( connection, dsmlFile, saveFile, false, 1 );
     }
 
 
@@ -187,16 +244,11 @@ public class ImportDsmlRunnable implements StudioConnectionBulkRunnableWithProgr
         monitor.reportProgress( " " ); //$NON-NLS-1$
         monitor.worked( 1 );
 
+        InputStream dsmlInputStream = null;
+        DsmlResponseWriter responseWriter = null;
         try
         {
-            // Parsing the file
-            Dsmlv2Grammar grammar = new Dsmlv2Grammar();
-            Dsmlv2Parser parser = new Dsmlv2Parser( grammar );
-            parser.setInput( new FileInputStream( dsmlFile ), "UTF-8" ); //$NON-NLS-1$
-            parser.parseAllRequests();
-
-            // Getting the batch request
-            BatchRequestDsml batchRequest = parser.getBatchRequest();
+            errorsCount = 0;
 
             // Creating a DSML batch response (only if needed)
             BatchResponseDsml batchResponseDsml = null;
@@ -205,31 +257,63 @@ public class ImportDsmlRunnable implements StudioConnectionBulkRunnableWithProgr
                 batchResponseDsml = new BatchResponseDsml();
             }
 
-            // Setting the errors counter
-            int errorsCount = 0;
-
             // Creating a dummy monitor that will be used to check if something
             // went wrong when executing the request
             StudioProgressMonitor dummyMonitor = new StudioProgressMonitor( monitor );
 
-            // Processing each request
-            List<DsmlDecorator<? extends Request>> requests = batchRequest.getRequests();
-            for ( DsmlDecorator<? extends Request> request : requests )
+            dsmlInputStream = new FileInputStream( dsmlFile );
+            if ( streaming )
             {
-                // Processing the request
-                processRequest( request, batchResponseDsml, dummyMonitor );
-
-                // Verifying if any error has been reported
-                if ( dummyMonitor.errorsReported() )
+                // Parsing and processing one request after the other, the requests are
+                // not kept in the batch request and the responses are written immediately
+                Dsmlv2Parser parser = new Dsmlv2Parser( false );
+                parser.setInput( dsmlInputStream, "UTF-8" ); //$NON-NLS-1$
+                if ( responseFile != null )
                 {
-                    errorsCount++;
+                    responseWriter = new DsmlResponseWriter( responseFile );
                 }
 
-                dummyMonitor.reset();
+                DsmlDecorator<? extends Request> request = parser.getNextRequest();
+                while ( request != null && !monitor.isCanceled() )
+                {
+                    importRequest( request, batchResponseDsml, dummyMonitor );
+                    if ( responseWriter != null )
+                    {
+                        responseWriter.write( batchResponseDsml );
+                    }
+                    request = parser.getNextRequest();
+                }
             }
+            else
+            {
+                // Parsing the file
+                Dsmlv2Grammar grammar = new Dsmlv2Grammar();
+                Dsmlv2Parser parser = new Dsmlv2Parser( grammar );
+                parser.setInput( dsmlInputStream, "UTF-8" ); //$NON-NLS-1$
+                parser.parseAllRequests();
+
+                // Getting the batch request
+                BatchRequestDsml batchRequest = parser.getBatchRequest();
+
+                // Processing each request
+                List<DsmlDecorator<? extends Request>> requests = batchRequest.getRequests();
+                for ( DsmlDecorator<? extends Request> request : requests )
+                {
+                    if ( monitor.isCanceled() )
+                    {
+                        break;
+                    }
+                    importRequest( request, batchResponseDsml, dummyMonitor );
+                }
+            }
+            flushAddRequests( batchResponseDsml, dummyMonitor );
 
             // Writing the DSML response file to its final destination file.
-            if ( responseFile != null )
+            if ( responseWriter != null )
+            {
+                responseWriter.write( batchResponseDsml );
+            }
+            else if ( responseFile != null )
             {
                 FileOutputStream fos = new FileOutputStream( responseFile );
                 OutputStreamWriter osw = new OutputStreamWriter( fos, "UTF-8" ); //$NON-NLS-1$
@@ -252,6 +336,119 @@ public class ImportDsmlRunnable implements StudioConnectionBulkRunnableWithProgr
         {
             monitor.reportError( e );
         }
+        finally
+        {
+            try
+            {
+                if ( responseWriter != null )
+                {
+                    responseWriter.close();
+                }
+                if ( dsmlInputStream != null )
+                {
+                    dsmlInputStream.close();
+                }
+            }
+            catch ( IOException e )
+            {
+                monitor.reportError( e );
+            }
+        }
+    }
+
+
+    /**
+     * Imports a request. If add requests are pipelined, an add request without controls
+     * is collected, all other requests are processed after the collected add requests.
+     *
+     * @param request
+     *      the request
+     * @param batchResponseDsml
+     *      the DSML batch response (can be <code>null</code>)
+     * @param dummyMonitor
+     *      the monitor for the execution of the request
+     * @throws LdapURLEncodingException
+     * @throws LdapException
+     */
+    private void importRequest( DsmlDecorator<? extends Request> request, BatchResponseDsml batchResponseDsml,
+        StudioProgressMonitor dummyMonitor ) throws LdapURLEncodingException, LdapException
+    {
+        if ( pipelineSize > 1 && request.getDecorated().getType() == MessageTypeEnum.ADD_REQUEST
+            && request.getDecorated().getControls().isEmpty() )
+        {
+            // parents must be created before their children
+            Dn dn = ( ( AddRequest ) request ).getEntryDn();
+            if ( pendingDns.contains( dn ) || pendingDns.contains( dn.getParent() ) )
+            {
+                flushAddRequests( batchResponseDsml, dummyMonitor );
+            }
+
+            pendingAddRequests.add( ( AddRequest ) request );
+            pendingDns.add( dn );
+            if ( pendingAddRequests.size() >= MAX_PENDING_ADD_REQUESTS )
+            {
+                flushAddRequests( batchResponseDsml, dummyMonitor );
+            }
+            return;
+        }
+
+        flushAddRequests( batchResponseDsml, dummyMonitor );
+
+        // Processing the request
+        processRequest( request, batchResponseDsml, dummyMonitor );
+
+        // Verifying if any error has been reported
+        if ( dummyMonitor.errorsReported() )
+        {
+            errorsCount++;
+        }
+
+        dummyMonitor.reset();
+    }
+
+
+    /**
+     * Sends the collected add requests with pipelined requests
+     * and adds their responses in the order of the requests.
+     *
+     * @param batchResponseDsml
+     *      the DSML batch response (can be <code>null</code>)
+     * @param dummyMonitor
+     *      the monitor for the execution of the requests
+     */
+    private void flushAddRequests( BatchResponseDsml batchResponseDsml, StudioProgressMonitor dummyMonitor )
+    {
+        if ( pendingAddRequests.isEmpty() )
+        {
+            return;
+        }
+
+        List<Entry> entries = new ArrayList<Entry>();
+        for ( AddRequest request : pendingAddRequests )
+        {
+            entries.add( request.getEntry() );
+        }
+        pendingAddRequests.clear();
+        pendingDns.clear();
+
+        StudioLdapException[] exceptions = browserConnection.getConnection().getConnectionWrapper()
+            .createEntries( entries, null, pipelineSize, dummyMonitor );
+        for ( int i = 0; i < entries.size(); i++ )
+        {
+            StudioLdapException exception = exceptions[i];
+            if ( StudioLdapException.isCancelException( exception ) )
+            {
+                // not sent or not answered before the import was canceled
+                break;
+            }
+            if ( exception != null )
+            {
+                errorsCount++;
+            }
+            added( entries.get( i ), exception, batchResponseDsml );
+        }
+
+        dummyMonitor.reset();
     }
 
 
@@ -356,12 +553,28 @@ public class ImportDsmlRunnable implements StudioConnectionBulkRunnableWithProgr
             .getConnectionWrapper()
             .createEntry( entry, getControls( request ), monitor, null );
 
+        added( entry, monitor.errorsReported() ? monitor.getException() : null, batchResponseDsml );
+    }
+
+
+    /**
+     * Adds the response of an add request and updates the cache.
+     *
+     * @param entry
+     *      the entry of the add request
+     * @param exception
+     *      the exception, <code>null</code> if the entry was added
+     * @param batchResponseDsml
+     *      the DSML batch response (can be <code>null</code>)
+     */
+    private void added( Entry entry, Throwable exception, BatchResponseDsml batchResponseDsml )
+    {
         // Creating the response
         if ( batchResponseDsml != null )
         {
             AddResponseDsml addResponseDsml = new AddResponseDsml( codec );
             LdapResult ldapResult = addResponseDsml.getLdapResult();
-            setLdapResultValuesFromMonitor( ldapResult, monitor, MessageTypeEnum.ADD_REQUEST );
+            setLdapResultValues( ldapResult, exception, MessageTypeEnum.ADD_REQUEST );
             ldapResult.setMatchedDn( entry.getDn() );
             batchResponseDsml.addResponse( addResponseDsml );
         }
@@ -715,15 +928,28 @@ public class ImportDsmlRunnable implements StudioConnectionBulkRunnableWithProgr
     private void setLdapResultValuesFromMonitor( LdapResult ldapResult, StudioProgressMonitor monitor,
         MessageTypeEnum messageType )
     {
-        if ( !monitor.errorsReported() )
+        setLdapResultValues( ldapResult, monitor.errorsReported() ? monitor.getException() : null, messageType );
+    }
+
+
+    /**
+     * Sets the values of the LDAP Result corresponding to the given exception
+     *
+     * @param ldapResult
+     *      the LDAP Result
+     * @param t
+     *      the exception, <code>null</code> if the request succeeded
+     * @param messageType
+     *      the type of the request
+     */
+    private void setLdapResultValues( LdapResult ldapResult, Throwable t, MessageTypeEnum messageType )
+    {
+        if ( t == null )
         {
             ldapResult.setResultCode( ResultCodeEnum.SUCCESS );
         }
         else
         {
-            // Getting the exception
-            Throwable t = monitor.getException();
-
             // Setting the result code
             ldapResult.setResultCode( ResultCodeEnum.getBestEstimate( t, messageType ) );
 
@@ -734,4 +960,72 @@ public class ImportDsmlRunnable implements StudioConnectionBulkRunnableWithProgr
             }
         }
     }
+
+
+    /**
+     * Writes the responses of a DSML batch response to a file as soon as they are available,
+     * so that the responses of a large batch request are not kept in memory.
+     */
+    private static class DsmlResponseWriter
+    {
+        /** The DSML namespace URI */
+        private static final String DSML_NAMESPACE_URI = "urn:oasis:names:tc:DSML:2:0:core"; //$NON-NLS-1$
+
+        /** The writer of the response file */
+        private Writer writer;
+
+        /** The XML writer for the response elements */
+        private XMLWriter xmlWriter;
+
+        /** The batch response element the responses are temporarily added to */
+        private Element batchResponseElement;
+
+
+        private DsmlResponseWriter( File responseFile ) throws IOException
+        {
+            writer = new BufferedWriter(
+                new OutputStreamWriter( new FileOutputStream( responseFile ), "UTF-8" ) ); //$NON-NLS-1$
+            xmlWriter = new XMLWriter( writer, OutputFormat.createPrettyPrint() );
+            batchResponseElement = DocumentHelper.createDocument().addElement( "batchResponse", //$NON-NLS-1$
+                DSML_NAMESPACE_URI );
+
+            writer.write( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" ); //$NON-NLS-1$
+            writer.write( "<batchResponse xmlns=\"" + DSML_NAMESPACE_URI + "\"" //$NON-NLS-1$ //$NON-NLS-2$
+                + " xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\"" //$NON-NLS-1$
+                + " xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">" ); //$NON-NLS-1$
+        }
+
+
+        /**
+         * Writes and removes the responses of the given batch response.
+         *
+         * @param batchResponseDsml
+         *      the DSML batch response
+         * @throws IOException
+         */
+        private void write( BatchResponseDsml batchResponseDsml ) throws IOException
+        {
+            List<DsmlDecorator<? extends Response>> responses = batchResponseDsml.getResponses();
+            for ( DsmlDecorator<? extends Response> response : responses )
+            {
+                response.toDsml( batchResponseElement );
+            }
+            responses.clear();
+
+            List<?> elements = new ArrayList<Object>( batchResponseElement.elements() );
+            for ( Object element : elements )
+            {
+                xmlWriter.write( ( Element ) element );
+                batchResponseElement.remove( ( Element ) element );
+            }
+        }
+
+
+        private void close() throws IOException
+        {
+            xmlWriter.flush();
+            writer.write( "\n</batchResponse>\n" ); //$NON-NLS-1$
+            writer.close();
+        }
+    }
 }
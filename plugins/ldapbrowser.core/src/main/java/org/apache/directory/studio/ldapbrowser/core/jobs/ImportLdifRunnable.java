@@ -24,19 +24,34 @@ package org.apache.directory.studio.ldapbrowser.core.jobs;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
+import java.io.FilterReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import javax.naming.directory.SearchControls;
 
 import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.directory.api.ldap.model.constants.SchemaConstants;
 import org.apache.directory.api.ldap.model.entry.DefaultAttribute;
 import org.apache.directory.api.ldap.model.entry.DefaultModification;
 import org.apache.directory.api.ldap.model.entry.Entry;
@@ -46,18 +61,25 @@ import org.apache.directory.api.ldap.model.exception.LdapException;
 import org.apache.directory.api.ldap.model.exception.LdapInvalidDnException;
 import org.apache.directory.api.ldap.model.exception.LdapSchemaException;
 import org.apache.directory.api.ldap.model.message.Control;
+import org.apache.directory.api.ldap.model.name.Ava;
 import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.ldap.model.name.Rdn;
 import org.apache.directory.studio.common.core.jobs.StudioProgressMonitor;
 import org.apache.directory.studio.connection.core.Connection;
+import org.apache.directory.studio.connection.core.Connection.AliasDereferencingMethod;
+import org.apache.directory.studio.connection.core.Connection.ReferralHandlingMethod;
 import org.apache.directory.studio.connection.core.ConnectionCoreConstants;
 import org.apache.directory.studio.connection.core.Controls;
+import org.apache.directory.studio.connection.core.io.ConnectionWrapper;
 import org.apache.directory.studio.connection.core.io.StudioLdapException;
+import org.apache.directory.studio.connection.core.io.api.StudioSearchResultEnumeration;
 import org.apache.directory.studio.connection.core.jobs.StudioConnectionBulkRunnableWithProgress;
 import org.apache.directory.studio.ldapbrowser.core.BrowserCoreMessages;
 import org.apache.directory.studio.ldapbrowser.core.events.BulkModificationEvent;
 import org.apache.directory.studio.ldapbrowser.core.events.EventRegistry;
 import org.apache.directory.studio.ldapbrowser.core.model.IBrowserConnection;
 import org.apache.directory.studio.ldapbrowser.core.model.IEntry;
+import org.apache.directory.studio.ldapbrowser.core.utils.LdapFilterUtils;
 import org.apache.directory.studio.ldapbrowser.core.utils.ModelConverter;
 import org.apache.directory.studio.ldapbrowser.core.utils.Utils;
 import org.apache.directory.studio.ldifparser.LdifFormatParameters;
@@ -80,11 +102,22 @@ import org.apache.directory.studio.ldifparser.parser.LdifParser;
 
 /**
  * Runnable used to import an LDIF file.
+ * 
+ * While a file is imported the position after the last applied record is
+ * saved to a checkpoint file next to the LDIF file, see {@link #getCheckpointFile(File)}.
+ * If the import is interrupted it can be resumed from that position. The
+ * checkpoint file is deleted once the whole file was imported.
  *
  * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
  */
 public class ImportLdifRunnable implements StudioConnectionBulkRunnableWithProgress
 {
+    /** The default number of requests awaiting a response when add records are pipelined. */
+    public static final int DEFAULT_PIPELINE_SIZE = 16;
+
+    /** The default number of records applied in one transaction. */
+    public static final int DEFAULT_TRANSACTION_SIZE = 100;
+
     /** The browser connection. */
     private IBrowserConnection browserConnection;
 
@@ -100,24 +133,77 @@ public class ImportLdifRunnable implements StudioConnectionBulkRunnableWithProgr
     /** The continue on error flag. */
     private boolean continueOnError;
 
+    /** The maximum number of requests awaiting a response. */
+    private int pipelineSize;
+
+    /** The maximum number of records applied in one transaction. */
+    private int transactionSize;
+
+    /** The resume from checkpoint flag. */
+    private boolean resume;
+
 
     /**
      * Creates a new instance of ImportLdifRunnable.
      * 
      * @param browserConnection the browser connection
      * @param ldifFile the LDIF file
-     * @param logFile the log file
+     * @param logFile the log file, may be null
      * @param updateIfEntryExists the update if entry exists flag
      * @param continueOnError the continue on error flag
+     * @param pipelineSize the maximum number of requests awaiting a response, 1 to import record by record
+     * @param transactionSize the maximum number of records applied in one transaction,
+     *        1 to import without transactions
+     * @param resume true to continue after the last applied record of an interrupted import,
+     *        the log file is appended in that case
      */
     public ImportLdifRunnable( IBrowserConnection browserConnection, File ldifFile, File logFile,
-        boolean updateIfEntryExists, boolean continueOnError )
+        boolean updateIfEntryExists, boolean continueOnError, int pipelineSize, int transactionSize,
+        boolean resume )
     {
         this.browserConnection = browserConnection;
         this.ldifFile = ldifFile;
         this.logFile = logFile;
         this.continueOnError = continueOnError;
         this.updateIfEntryExists = updateIfEntryExists;
+        this.pipelineSize = pipelineSize;
+        this.transactionSize = transactionSize;
+        this.resume = resume;
+    }
+
+
+    /**
+     * Creates a new instance of ImportLdifRunnable.
+     * 
+     * @param browserConnection the browser connection
+     * @param ldifFile the LDIF file
+     * @param logFile the log file, may be null
+     * @param updateIfEntryExists the update if entry exists flag
+     * @param continueOnError the continue on error flag
+     * @param pipelineSize the maximum number of requests awaiting a response, 1 to import record by record
+     * @param resume true to continue after the last applied record of an interrupted import,
+     *        the log file is appended in that case
+     */
+    public ImportLdifRunnable( IBrowserConnection browserConnection, File ldifFile, File logFile,
+        boolean updateIfEntryExists, boolean continueOnError, int pipelineSize, boolean resume )
+    {
+        this( browserConnection, ldifFile, logFile, updateIfEntryExists, continueOnError, pipelineSize, 1, resume );
+    }
+
+
+    /**
+     * Creates a new instance of ImportLdifRunnable.
+     * 
+     * @param browserConnection the browser connection
+     * @param ldifFile the LDIF file
+     * @param logFile the log file
+     * @param updateIfEntryExists the update if entry exists flag
+     * @param continueOnError the continue on error flag
+     */
+    public ImportLdifRunnable( IBrowserConnection browserConnection, File ldifFile, File logFile,
+        boolean updateIfEntryExists, boolean continueOnError )
+    {
+        this( browserConnection, ldifFile, logFile, updateIfEntryExists, continueOnError, 1, false );
     }
 
 
@@ -186,14 +272,29 @@ public class ImportLdifRunnable implements StudioConnectionBulkRunnableWithProgr
 
         try
         {
+            File checkpointFile = getCheckpointFile( ldifFile );
+            long offset = resume ? LdifCheckpoint.read( checkpointFile, ldifFile ) : 0L;
+
+            // skip the records applied before the import was interrupted
             Reader ldifReader = new BufferedReader( new FileReader( this.ldifFile ) );
+            long skipped = 0L;
+            while ( skipped < offset )
+            {
+                long n = ldifReader.skip( offset - skipped );
+                if ( n <= 0 )
+                {
+                    break;
+                }
+                skipped += n;
+            }
+            LdifCheckpoint checkpoint = new LdifCheckpoint( checkpointFile, ldifFile, skipped, ldifReader );
             LdifParser parser = new LdifParser();
-            LdifEnumeration enumeration = parser.parse( ldifReader );
+            LdifEnumeration enumeration = parser.parse( checkpoint.getReader() );
 
             Writer logWriter;
             if ( this.logFile != null )
             {
-                logWriter = new BufferedWriter( new FileWriter( this.logFile ) );
+                logWriter = new BufferedWriter( new FileWriter( this.logFile, skipped > 0L ) );
             }
             else
             {
@@ -215,7 +316,8 @@ public class ImportLdifRunnable implements StudioConnectionBulkRunnableWithProgr
                 };
             }
 
-            importLdif( browserConnection, enumeration, logWriter, updateIfEntryExists, continueOnError, monitor );
+            importLdif( browserConnection, enumeration, logWriter, updateIfEntryExists, continueOnError, pipelineSize,
+                transactionSize, checkpoint, monitor );
 
             logWriter.close();
             ldifReader.close();
@@ -236,6 +338,32 @@ public class ImportLdifRunnable implements StudioConnectionBulkRunnableWithProgr
     }
 
 
+    /**
+     * Gets the checkpoint file of the given LDIF file.
+     * 
+     * @param ldifFile the LDIF file
+     * 
+     * @return the checkpoint file
+     */
+    public static File getCheckpointFile( File ldifFile )
+    {
+        return new File( ldifFile.getPath() + ".checkpoint" ); //$NON-NLS-1$
+    }
+
+
+    /**
+     * Checks if an interrupted import of the given LDIF file can be resumed.
+     * 
+     * @param ldifFile the LDIF file
+     * 
+     * @return true if a checkpoint of the unmodified LDIF file exists
+     */
+    public static boolean hasCheckpoint( File ldifFile )
+    {
+        return LdifCheckpoint.read( getCheckpointFile( ldifFile ), ldifFile ) > 0L;
+    }
+
+
     /**
      * Imports the LDIF enumeration
      * 
@@ -248,144 +376,999 @@ public class ImportLdifRunnable implements StudioConnectionBulkRunnableWithProgr
      */
     static void importLdif( IBrowserConnection browserConnection, LdifEnumeration enumeration, Writer logWriter,
         boolean updateIfEntryExists, boolean continueOnError, StudioProgressMonitor monitor )
+    {
+        importLdif( browserConnection, enumeration, logWriter, updateIfEntryExists, continueOnError, 1, 1, null,
+            monitor );
+    }
+
+
+    /**
+     * Imports the LDIF enumeration.
+     * 
+     * If the pipeline size is greater than 1, consecutive add records are
+     * collected and created with pipelined requests, up to pipelineSize
+     * requests await a response. An add record whose parent or own Dn is
+     * still pending is only collected after the pending records were sent,
+     * so parents are created before their children. All other records are
+     * applied one by one after the pending records, in file order.
+     * 
+     * If existing entries should be updated, add records are collected in
+     * any case. Before they are sent the existing entries among them are
+     * searched with one request per parent, so that existing entries are
+     * modified instead of failing to be created.
+     * 
+     * If the transaction size is greater than 1 and the server supports
+     * transactions (RFC 5805), the records are applied one by one in
+     * transactions of up to transactionSize records instead. If a record or
+     * the commit fails the transaction is aborted and its records are applied
+     * again in two smaller transactions, down to a single record that is
+     * applied without transaction so that its error can be logged.
+     * 
+     * @param browserConnection the browser connection
+     * @param enumeration the LDIF enumeration
+     * @param logWriter the log writer
+     * @param updateIfEntryExists the update if entry exists flag
+     * @param continueOnError the continue on error flag
+     * @param pipelineSize the maximum number of requests awaiting a response, 1 to import record by record
+     * @param transactionSize the maximum number of records applied in one transaction,
+     *        1 to import without transactions
+     * @param checkpoint the checkpoint to update with each applied record, may be null
+     * @param monitor the progress monitor
+     */
+    static void importLdif( IBrowserConnection browserConnection, LdifEnumeration enumeration, Writer logWriter,
+        boolean updateIfEntryExists, boolean continueOnError, int pipelineSize, int transactionSize,
+        LdifCheckpoint checkpoint, StudioProgressMonitor monitor )
     {
         if ( browserConnection == null )
         {
             return;
         }
 
-        StudioProgressMonitor dummyMonitor = new StudioProgressMonitor( monitor );
-        int importedCount = 0;
-        int errorCount = 0;
+        if ( transactionSize > 1 && !isTransactionSupported( browserConnection ) )
+        {
+            transactionSize = 1;
+        }
+
+        LdifImporter importer = new LdifImporter( browserConnection, logWriter, updateIfEntryExists,
+            continueOnError, pipelineSize, transactionSize, checkpoint, monitor );
+        boolean completed = false;
         try
         {
-            while ( !monitor.isCanceled() && enumeration.hasNext() )
+            while ( !importer.isStopped() && !monitor.isCanceled() && enumeration.hasNext() )
             {
                 LdifContainer container = enumeration.next();
 
                 if ( container instanceof LdifRecord )
                 {
                     LdifRecord record = ( LdifRecord ) container;
-                    try
+                    if ( !importer.enqueue( record ) && importer.flush() )
                     {
-                        dummyMonitor.reset();
-                        importLdifRecord( browserConnection, record, updateIfEntryExists, dummyMonitor );
-                        if ( dummyMonitor.errorsReported() )
+                        importer.importRecord( record );
+                    }
+                }
+                else if ( importer.flush() )
+                {
+                    logWriter.write( container.toRawString() );
+                }
+            }
+
+            if ( !importer.flush() )
+            {
+                return;
+            }
+            completed = !monitor.isCanceled();
+
+            if ( importer.getErrorCount() > 0 )
+            {
+                monitor.reportError( BrowserCoreMessages.bind( BrowserCoreMessages.ldif__n_errors_see_logfile,
+                    new String[]
+                        { "" + importer.getErrorCount() } ) ); //$NON-NLS-1$
+            }
+        }
+        catch ( Exception e )
+        {
+            monitor.reportError( e );
+        }
+        finally
+        {
+            if ( checkpoint != null )
+            {
+                if ( completed )
+                {
+                    checkpoint.delete();
+                }
+                else
+                {
+                    checkpoint.save();
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Checks if the Root DSE of the given connection advertises the start transaction extended operation.
+     * 
+     * @param browserConnection the browser connection
+     * 
+     * @return true if the server supports transactions
+     */
+    private static boolean isTransactionSupported( IBrowserConnection browserConnection )
+    {
+        return browserConnection.getRootDSE() != null
+            && browserConnection.getRootDSE().isExtensionSupported( Controls.START_TRANSACTION_EXTENSION_OID );
+    }
+
+
+    /**
+     * The position after the last applied record of an LDIF file, saved to a checkpoint file.
+     * The position is counted in characters because the LDIF parser reads decoded characters.
+     * The offsets of the parsed records are int and wrap around in files with more than 2^31
+     * characters, so the checkpoint counts the characters read by the parser in a long.
+     * To limit the I/O the checkpoint file is written after every {@link #RECORDS_PER_SAVE}
+     * records and when the import stops, so after a crash some records may be applied again.
+     */
+    static class LdifCheckpoint
+    {
+        /** The number of applied records after which the checkpoint file is written. */
+        private static final int RECORDS_PER_SAVE = 1000;
+
+        private static final String OFFSET = "offset"; //$NON-NLS-1$
+
+        private static final String LDIF_FILE_LENGTH = "ldifFileLength"; //$NON-NLS-1$
+
+        private static final String LDIF_FILE_LAST_MODIFIED = "ldifFileLastModified"; //$NON-NLS-1$
+
+        /** The checkpoint file. */
+        private File file;
+
+        /** The LDIF file. */
+        private File ldifFile;
+
+        /** The offset where the parser started reading. */
+        private long startOffset;
+
+        /** The offset after the last applied record. */
+        private long offset;
+
+        /** The number of records applied since the checkpoint file was written. */
+        private int unsavedRecords;
+
+        /** The reader of the parser, counts the read characters. */
+        private CountingReader reader;
+
+
+        /**
+         * Creates a new instance of LdifCheckpoint.
+         * 
+         * @param file the checkpoint file
+         * @param ldifFile the LDIF file
+         * @param startOffset the offset where the parser starts reading
+         * @param ldifReader the reader of the LDIF file, positioned at the start offset
+         */
+        LdifCheckpoint( File file, File ldifFile, long startOffset, Reader ldifReader )
+        {
+            this.file = file;
+            this.ldifFile = ldifFile;
+            this.startOffset = startOffset;
+            this.offset = startOffset;
+            this.reader = new CountingReader( ldifReader );
+        }
+
+
+        /**
+         * Gets the reader the parser must read from.
+         * 
+         * @return the reader
+         */
+        Reader getReader()
+        {
+            return reader;
+        }
+
+
+        /**
+         * Moves the checkpoint behind the given record.
+         * 
+         * @param record the applied record
+         */
+        void applied( LdifRecord record )
+        {
+            // the record ends shortly before the read position, the int end is the long end modulo 2^32
+            int end = record.getOffset() + record.getLength();
+            long read = reader.count;
+            offset = startOffset + read - ( ( ( int ) read - end ) & 0xFFFFFFFFL );
+            unsavedRecords++;
+            if ( unsavedRecords >= RECORDS_PER_SAVE )
+            {
+                save();
+            }
+        }
+
+
+        /**
+         * Writes the checkpoint file. Checkpoints are best effort, I/O errors are ignored.
+         */
+        void save()
+        {
+            unsavedRecords = 0;
+            if ( offset <= 0L )
+            {
+                return;
+            }
+
+            Properties properties = new Properties();
+            properties.setProperty( OFFSET, Long.toString( offset ) );
+            properties.setProperty( LDIF_FILE_LENGTH, Long.toString( ldifFile.length() ) );
+            properties.setProperty( LDIF_FILE_LAST_MODIFIED, Long.toString( ldifFile.lastModified() ) );
+            try
+            {
+                OutputStream out = new FileOutputStream( file );
+                try
+                {
+                    properties.store( out, null );
+                }
+                finally
+                {
+                    out.close();
+                }
+            }
+            catch ( IOException e )
+            {
+                // the import can't be resumed
+            }
+        }
+
+
+        /**
+         * Deletes the checkpoint file.
+         */
+        void delete()
+        {
+            if ( file.exists() )
+            {
+                file.delete();
+            }
+        }
+
+
+        /**
+         * Reads the offset from the checkpoint file.
+         * 
+         * @param file the checkpoint file
+         * @param ldifFile the LDIF file
+         * 
+         * @return the offset, 0 if there is no checkpoint or the LDIF file was modified
+         */
+        static long read( File file, File ldifFile )
+        {
+            if ( !file.isFile() )
+            {
+                return 0L;
+            }
+
+            Properties properties = new Properties();
+            try
+            {
+                InputStream in = new FileInputStream( file );
+                try
+                {
+                    properties.load( in );
+                }
+                finally
+                {
+                    in.close();
+                }
+
+                if ( Long.parseLong( properties.getProperty( LDIF_FILE_LENGTH ) ) != ldifFile.length()
+                    || Long.parseLong( properties.getProperty( LDIF_FILE_LAST_MODIFIED ) ) != ldifFile.lastModified() )
+                {
+                    return 0L;
+                }
+                return Long.parseLong( properties.getProperty( OFFSET ) );
+            }
+            catch ( IOException e )
+            {
+                return 0L;
+            }
+            catch ( NumberFormatException e )
+            {
+                return 0L;
+            }
+        }
+
+
+        /**
+         * A reader that counts the read characters.
+         */
+        private static class CountingReader extends FilterReader
+        {
+            /** The number of read characters. */
+            private long count;
+
+
+            private CountingReader( Reader in )
+            {
+                super( in );
+            }
+
+
+            /**
+             * {@inheritDoc}
+             */
+            public int read() throws IOException
+            {
+                int c = super.read();
+                if ( c > -1 )
+                {
+                    count++;
+                }
+                return c;
+            }
+
+
+            /**
+             * {@inheritDoc}
+             */
+            public int read( char[] cbuf, int off, int len ) throws IOException
+            {
+                int n = super.read( cbuf, off, len );
+                if ( n > 0 )
+                {
+                    count += n;
+                }
+                return n;
+            }
+
+
+            /**
+             * {@inheritDoc}
+             */
+            public long skip( long n ) throws IOException
+            {
+                long skipped = super.skip( n );
+                count += skipped;
+                return skipped;
+            }
+        }
+    }
+
+
+    /**
+     * Applies LDIF records to the directory, logs the results and updates the cache.
+     */
+    private static class LdifImporter
+    {
+        /** The maximum number of add records collected before they are sent. */
+        private static final int MAX_PENDING_RECORDS = 1000;
+
+        /** The maximum number of Rdns in the filter of a search for existing entries. */
+        private static final int MAX_EXISTENCE_FILTER_SIZE = 100;
+
+        /** The browser connection. */
+        private IBrowserConnection browserConnection;
+
+        /** The log writer. */
+        private Writer logWriter;
+
+        /** The update if entry exists flag. */
+        private boolean updateIfEntryExists;
+
+        /** The continue on error flag. */
+        private boolean continueOnError;
+
+        /** The maximum number of requests awaiting a response. */
+        private int pipelineSize;
+
+        /** The maximum number of records applied in one transaction. */
+        private int transactionSize;
+
+        /** The real monitor. */
+        private StudioProgressMonitor monitor;
+
+        /** The dummy monitor, used for I/O that causes exceptions that should be logged. */
+        private StudioProgressMonitor dummyMonitor;
+
+        /** The collected add records, or all records to apply in a transaction. */
+        private List<LdifRecord> pendingRecords = new ArrayList<LdifRecord>();
+
+        /** The entries of the collected add records. */
+        private List<Entry> pendingEntries = new ArrayList<Entry>();
+
+        /** The Dns of the collected add records. */
+        private Set<Dn> pendingDns = new HashSet<Dn>();
+
+        /** The number of imported records. */
+        private int importedCount;
+
+        /** The number of failed records. */
+        private int errorCount;
+
+        /** The flag indicating that the import stopped because of an error. */
+        private boolean stopped;
+
+        /** The checkpoint, may be null. */
+        private LdifCheckpoint checkpoint;
+
+
+        private LdifImporter( IBrowserConnection browserConnection, Writer logWriter, boolean updateIfEntryExists,
+            boolean continueOnError, int pipelineSize, int transactionSize, LdifCheckpoint checkpoint,
+            StudioProgressMonitor monitor )
+        {
+            this.browserConnection = browserConnection;
+            this.logWriter = logWriter;
+            this.updateIfEntryExists = updateIfEntryExists;
+            this.continueOnError = continueOnError;
+            this.pipelineSize = pipelineSize;
+            this.transactionSize = transactionSize;
+            this.checkpoint = checkpoint;
+            this.monitor = monitor;
+            this.dummyMonitor = new StudioProgressMonitor( monitor );
+        }
+
+
+        private int getErrorCount()
+        {
+            return errorCount;
+        }
+
+
+        private boolean isStopped()
+        {
+            return stopped;
+        }
+
+
+        /**
+         * Collects the record if it is a valid add record without controls,
+         * or any valid record if records are applied in transactions.
+         * 
+         * @param record the LDIF record
+         * 
+         * @return true if the record was collected or the import stopped, false if it must be imported
+         *         by {@link #importRecord}
+         */
+        private boolean enqueue( LdifRecord record )
+        {
+            if ( !record.isValid() )
+            {
+                return false;
+            }
+
+            if ( transactionSize > 1 )
+            {
+                pendingRecords.add( record );
+                if ( pendingRecords.size() >= transactionSize )
+                {
+                    flush();
+                }
+                return true;
+            }
+
+            if ( pipelineSize <= 1 && !updateIfEntryExists )
+            {
+                return false;
+            }
+
+            Entry entry;
+            try
+            {
+                if ( record instanceof LdifContentRecord )
+                {
+                    entry = ModelConverter.toLdapApiEntry( ModelConverter.ldifContentRecordToEntry(
+                        ( LdifContentRecord ) record, browserConnection ) );
+                }
+                else if ( record instanceof LdifChangeAddRecord && getControls( record ).length == 0 )
+                {
+                    entry = ModelConverter.toLdapApiEntry( ModelConverter.ldifChangeAddRecordToEntry(
+                        ( LdifChangeAddRecord ) record, browserConnection ) );
+                }
+                else
+                {
+                    return false;
+                }
+            }
+            catch ( LdapException e )
+            {
+                return false;
+            }
+
+            // parents must be created before their children
+            Dn dn = entry.getDn();
+            if ( ( pendingDns.contains( dn ) || pendingDns.contains( dn.getParent() ) ) && !flush() )
+            {
+                return true;
+            }
+
+            pendingRecords.add( record );
+            pendingEntries.add( entry );
+            pendingDns.add( dn );
+            if ( pendingRecords.size() >= MAX_PENDING_RECORDS )
+            {
+                flush();
+            }
+
+            return true;
+        }
+
+
+        /**
+         * Creates the entries of the collected add records, with pipelined requests
+         * if the pipeline size is greater than 1. If existing entries should be
+         * updated, the existing entries are modified instead. If records are
+         * applied in transactions, the collected records are applied in a transaction.
+         * If the import stops because of an error, the responses of the other
+         * pipelined requests are still logged, but no further request is sent.
+         * 
+         * @return false if the import must stop
+         */
+        private boolean flush()
+        {
+            if ( pendingRecords.isEmpty() )
+            {
+                return !stopped && !monitor.isCanceled();
+            }
+
+            if ( transactionSize > 1 )
+            {
+                List<LdifRecord> records = pendingRecords;
+                pendingRecords = new ArrayList<LdifRecord>();
+                return importTransaction( records );
+            }
+
+            List<LdifRecord> records = pendingRecords;
+            List<Entry> entries = pendingEntries;
+            pendingRecords = new ArrayList<LdifRecord>();
+            pendingEntries = new ArrayList<Entry>();
+            pendingDns.clear();
+
+            Set<Dn> existingDns = updateIfEntryExists ? findExistingEntries( entries ) : Collections.<Dn> emptySet();
+            Exception[] exceptions = null;
+            if ( pipelineSize > 1 )
+            {
+                exceptions = applyPipelined( entries, existingDns );
+            }
+
+            boolean proceed = true;
+            for ( int i = 0; i < records.size(); i++ )
+            {
+                Entry entry = entries.get( i );
+                Exception exception;
+                if ( exceptions != null )
+                {
+                    exception = exceptions[i];
+                    if ( StudioLdapException.isCancelException( exception ) )
+                    {
+                        // not sent or not answered before the import was canceled
+                        proceed = false;
+                        continue;
+                    }
+                }
+                else if ( !proceed || monitor.isCanceled() )
+                {
+                    return false;
+                }
+                else
+                {
+                    dummyMonitor.reset();
+                    if ( existingDns.contains( entry.getDn() ) )
+                    {
+                        browserConnection.getConnection().getConnectionWrapper().modifyEntry( entry.getDn(),
+                            ModelConverter.toReplaceModifications( entry ), null, dummyMonitor, null );
+                    }
+                    else
+                    {
+                        browserConnection.getConnection().getConnectionWrapper()
+                            .createEntry( entry, null, dummyMonitor, null );
+                    }
+                    exception = dummyMonitor.errorsReported() ? dummyMonitor.getException() : null;
+                }
+
+                if ( proceed && exception != null && updateIfEntryExists
+                    && StudioLdapException.isEntryAlreadyExistsException( exception ) )
+                {
+                    // creation failed with Error 68, now try to update the existing entry
+                    dummyMonitor.reset();
+                    Collection<Modification> modifications = ModelConverter.toReplaceModifications( entry );
+                    browserConnection.getConnection().getConnectionWrapper()
+                        .modifyEntry( entry.getDn(), modifications, null, dummyMonitor, null );
+                    exception = dummyMonitor.errorsReported() ? dummyMonitor.getException() : null;
+                }
+
+                if ( !imported( records.get( i ), exception ) )
+                {
+                    proceed = false;
+                }
+            }
+
+            return proceed;
+        }
+
+
+        /**
+         * Creates the new entries and modifies the existing entries with pipelined requests.
+         * 
+         * @param entries the entries
+         * @param existingDns the Dns of the existing entries
+         * 
+         * @return the exception of each entry, null if the entry was applied
+         */
+        private Exception[] applyPipelined( List<Entry> entries, Set<Dn> existingDns )
+        {
+            List<Entry> newEntries = new ArrayList<Entry>();
+            List<Integer> newIndexes = new ArrayList<Integer>();
+            List<Dn> existingEntryDns = new ArrayList<Dn>();
+            List<Collection<Modification>> modifications = new ArrayList<Collection<Modification>>();
+            List<Integer> existingIndexes = new ArrayList<Integer>();
+            for ( int i = 0; i < entries.size(); i++ )
+            {
+                Entry entry = entries.get( i );
+                if ( existingDns.contains( entry.getDn() ) )
+                {
+                    existingEntryDns.add( entry.getDn() );
+                    modifications.add( ModelConverter.toReplaceModifications( entry ) );
+                    existingIndexes.add( i );
+                }
+                else
+                {
+                    newEntries.add( entry );
+                    newIndexes.add( i );
+                }
+            }
+
+            Exception[] exceptions = new Exception[entries.size()];
+            if ( !newEntries.isEmpty() )
+            {
+                dummyMonitor.reset();
+                StudioLdapException[] createExceptions = browserConnection.getConnection().getConnectionWrapper()
+                    .createEntries( newEntries, null, pipelineSize, dummyMonitor );
+                setExceptions( exceptions, newIndexes, createExceptions );
+            }
+            if ( !existingEntryDns.isEmpty() )
+            {
+                dummyMonitor.reset();
+                StudioLdapException[] modifyExceptions = browserConnection.getConnection().getConnectionWrapper()
+                    .modifyEntries( existingEntryDns, modifications, null, pipelineSize, dummyMonitor );
+                setExceptions( exceptions, existingIndexes, modifyExceptions );
+            }
+
+            return exceptions;
+        }
+
+
+        private void setExceptions( Exception[] exceptions, List<Integer> indexes,
+            StudioLdapException[] pipelinedExceptions )
+        {
+            for ( int i = 0; i < indexes.size(); i++ )
+            {
+                exceptions[indexes.get( i )] = pipelinedExceptions[i];
+            }
+        }
+
+
+        /**
+         * Searches which of the given entries exist, with one-level searches below
+         * their parents that only return the Dns of the entries with the given Rdns.
+         * Search errors are ignored, an entry not found here is updated after its
+         * creation failed.
+         * 
+         * @param entries the entries
+         * 
+         * @return the Dns of the existing entries
+         */
+        private Set<Dn> findExistingEntries( List<Entry> entries )
+        {
+            Map<Dn, List<Rdn>> rdnsByParent = new LinkedHashMap<Dn, List<Rdn>>();
+            for ( Entry entry : entries )
+            {
+                Dn parentDn = entry.getDn().getParent();
+                List<Rdn> rdns = rdnsByParent.get( parentDn );
+                if ( rdns == null )
+                {
+                    rdns = new ArrayList<Rdn>();
+                    rdnsByParent.put( parentDn, rdns );
+                }
+                rdns.add( entry.getDn().getRdn() );
+            }
+
+            SearchControls searchControls = new SearchControls();
+            searchControls.setSearchScope( SearchControls.ONELEVEL_SCOPE );
+            searchControls.setReturningAttributes( new String[]
+                { SchemaConstants.NO_ATTRIBUTE } );
+            searchControls.setCountLimit( 0 );
+
+            Set<Dn> existingDns = new HashSet<Dn>();
+            for ( Map.Entry<Dn, List<Rdn>> entry : rdnsByParent.entrySet() )
+            {
+                List<Rdn> rdns = entry.getValue();
+                for ( int i = 0; i < rdns.size() && !monitor.isCanceled(); i += MAX_EXISTENCE_FILTER_SIZE )
+                {
+                    StringBuilder filter = new StringBuilder( "(|" ); //$NON-NLS-1$
+                    for ( Rdn rdn : rdns.subList( i, Math.min( i + MAX_EXISTENCE_FILTER_SIZE, rdns.size() ) ) )
+                    {
+                        filter.append( "(&" ); //$NON-NLS-1$
+                        for ( Ava ava : rdn )
                         {
-                            errorCount++;
-                            logModificationError( browserConnection, logWriter, record, dummyMonitor.getException(),
-                                monitor );
-
-                            if ( !continueOnError )
-                            {
-                                monitor.reportError( dummyMonitor.getException() );
-                                return;
-                            }
+                            filter.append( '(' ).append( ava.getType() ).append( '=' );
+                            filter.append( LdapFilterUtils.getEncodedValue( ava.getValue().getString() ) );
+                            filter.append( ')' );
                         }
-                        else
+                        filter.append( ')' );
+                    }
+                    filter.append( ')' );
+
+                    StudioProgressMonitor searchMonitor = new StudioProgressMonitor( monitor );
+                    StudioSearchResultEnumeration result = browserConnection.getConnection().getConnectionWrapper()
+                        .search( entry.getKey().getName(), filter.toString(), searchControls,
+                            AliasDereferencingMethod.NEVER, ReferralHandlingMethod.IGNORE, null, searchMonitor, null );
+                    try
+                    {
+                        while ( result != null && result.hasMore() )
                         {
-                            importedCount++;
-                            logModification( browserConnection, logWriter, record, monitor );
-
-                            // update cache and adjust attribute/children initialization flags
-                            Dn dn = new Dn( record.getDnLine().getValueAsString() );
-                            IEntry entry = browserConnection.getEntryFromCache( dn );
-                            Dn parentDn = dn.getParent();
-                            IEntry parentEntry = null;
-                            while ( parentEntry == null && parentDn != null )
-                            {
-                                parentEntry = browserConnection.getEntryFromCache( parentDn );
-                                parentDn = parentDn.getParent();
-                            }
-
-                            if ( record instanceof LdifChangeDeleteRecord )
-                            {
-                                if ( entry != null )
-                                {
-                                    entry.setAttributesInitialized( false );
-                                    browserConnection.uncacheEntryRecursive( entry );
-                                }
-                                if ( parentEntry != null )
-                                {
-                                    parentEntry.setChildrenInitialized( false );
-                                }
-                            }
-                            else if ( record instanceof LdifChangeModDnRecord )
-                            {
-                                if ( entry != null )
-                                {
-                                    entry.setAttributesInitialized( false );
-                                    browserConnection.uncacheEntryRecursive( entry );
-                                }
-                                if ( parentEntry != null )
-                                {
-                                    parentEntry.setChildrenInitialized( false );
-                                }
-                                LdifChangeModDnRecord modDnRecord = ( LdifChangeModDnRecord ) record;
-                                if ( modDnRecord.getNewsuperiorLine() != null )
-                                {
-                                    Dn newSuperiorDn = new Dn( modDnRecord.getNewsuperiorLine()
-                                        .getValueAsString() );
-                                    IEntry newSuperiorEntry = browserConnection.getEntryFromCache( newSuperiorDn );
-                                    if ( newSuperiorEntry != null )
-                                    {
-                                        newSuperiorEntry.setChildrenInitialized( false );
-                                    }
-                                }
-                            }
-                            else if ( record instanceof LdifChangeAddRecord || record instanceof LdifContentRecord )
-                            {
-                                if ( entry != null )
-                                {
-                                    entry.setAttributesInitialized( false );
-                                }
-                                if ( parentEntry != null )
-                                {
-                                    parentEntry.setChildrenInitialized( false );
-                                    parentEntry.setHasChildrenHint( true );
-                                }
-                            }
-                            else
-                            {
-                                if ( entry != null )
-                                {
-                                    entry.setAttributesInitialized( false );
-                                }
-                            }
+                            existingDns.add( result.next().getEntry().getDn() );
                         }
                     }
-                    catch ( Exception e )
+                    catch ( LdapException e )
+                    {
+                        // ignore, see above
+                    }
+                    finally
                     {
-                        logModificationError( browserConnection, logWriter, record, e, monitor );
-                        errorCount++;
+                        closeQuietly( result );
+                    }
+                }
+            }
 
-                        if ( !continueOnError )
-                        {
-                            monitor.reportError( e );
-                            return;
-                        }
+            return existingDns;
+        }
+
+
+        private void closeQuietly( StudioSearchResultEnumeration result )
+        {
+            if ( result != null )
+            {
+                try
+                {
+                    result.close();
+                }
+                catch ( LdapException e )
+                {
+                    // the search result was read
+                }
+            }
+        }
+
+
+        /**
+         * Applies the records in a transaction. If a record or the commit fails the
+         * transaction is aborted and both halves of the records are applied in separate
+         * transactions. A single record, or all records if no transaction can be started,
+         * are imported without transaction.
+         * 
+         * @param records the LDIF records
+         * 
+         * @return false if the import must stop
+         */
+        private boolean importTransaction( List<LdifRecord> records )
+        {
+            if ( monitor.isCanceled() )
+            {
+                return false;
+            }
+
+            ConnectionWrapper connectionWrapper = browserConnection.getConnection().getConnectionWrapper();
+            dummyMonitor.reset();
+            byte[] transactionId = records.size() > 1 ? connectionWrapper.startTransaction( dummyMonitor ) : null;
+            if ( transactionId == null )
+            {
+                for ( LdifRecord record : records )
+                {
+                    if ( monitor.isCanceled() || !importRecord( record ) )
+                    {
+                        return false;
                     }
+                }
+                return true;
+            }
 
-                    monitor.reportProgress( BrowserCoreMessages.bind(
-                        BrowserCoreMessages.ldif__imported_n_entries_m_errors, new String[]
-                            { "" + importedCount, "" + errorCount } ) ); //$NON-NLS-1$ //$NON-NLS-2$
+            Control transactionControl = Controls.newTransactionSpecificationControl( transactionId );
+            boolean failed = false;
+            for ( int i = 0; i < records.size() && !failed && !monitor.isCanceled(); i++ )
+            {
+                try
+                {
+                    dummyMonitor.reset();
+                    importLdifRecord( browserConnection, records.get( i ), updateIfEntryExists, transactionControl,
+                        dummyMonitor );
+                    failed = dummyMonitor.errorsReported();
                 }
-                else
+                catch ( Exception e )
                 {
-                    logWriter.write( container.toRawString() );
+                    failed = true;
                 }
             }
 
-            if ( errorCount > 0 )
+            boolean commit = !failed && !monitor.isCanceled();
+            dummyMonitor.reset();
+            connectionWrapper.endTransaction( transactionId, commit, dummyMonitor );
+            if ( commit && !dummyMonitor.errorsReported() )
             {
-                monitor.reportError( BrowserCoreMessages.bind( BrowserCoreMessages.ldif__n_errors_see_logfile,
-                    new String[]
-                        { "" + errorCount } ) ); //$NON-NLS-1$
+                for ( LdifRecord record : records )
+                {
+                    if ( !imported( record, null ) )
+                    {
+                        return false;
+                    }
+                }
+                return true;
             }
+
+            int half = records.size() / 2;
+            return importTransaction( records.subList( 0, half ) )
+                && importTransaction( records.subList( half, records.size() ) );
         }
-        catch ( Exception e )
+
+
+        /**
+         * Imports a single record.
+         * 
+         * @param record the LDIF record
+         * 
+         * @return false if the import must stop
+         */
+        private boolean importRecord( LdifRecord record )
         {
-            monitor.reportError( e );
+            Exception exception = null;
+            try
+            {
+                dummyMonitor.reset();
+                importLdifRecord( browserConnection, record, updateIfEntryExists, dummyMonitor );
+                if ( dummyMonitor.errorsReported() )
+                {
+                    exception = dummyMonitor.getException();
+                }
+            }
+            catch ( Exception e )
+            {
+                exception = e;
+            }
+
+            return imported( record, exception );
+        }
+
+
+        /**
+         * Logs the result of a record and updates the cache. After the import
+         * stopped because of an error, the results of records that were already
+         * sent are still logged.
+         * 
+         * @param record the LDIF record
+         * @param exception the exception, null if the record was imported
+         * 
+         * @return false if the import must stop
+         */
+        private boolean imported( LdifRecord record, Exception exception )
+        {
+            if ( exception == null )
+            {
+                importedCount++;
+                logModification( browserConnection, logWriter, record, monitor );
+
+                try
+                {
+                    updateCache( browserConnection, record );
+                }
+                catch ( Exception e )
+                {
+                    exception = e;
+                }
+            }
+
+            if ( exception != null )
+            {
+                logModificationError( browserConnection, logWriter, record, exception, monitor );
+                errorCount++;
+
+                if ( !continueOnError )
+                {
+                    if ( !stopped )
+                    {
+                        monitor.reportError( exception );
+                    }
+                    stopped = true;
+                    return false;
+                }
+            }
+
+            // the checkpoint must not move behind a failed record
+            if ( checkpoint != null && !stopped )
+            {
+                checkpoint.applied( record );
+            }
+
+            monitor.reportProgress( BrowserCoreMessages.bind(
+                BrowserCoreMessages.ldif__imported_n_entries_m_errors, new String[]
+                    { "" + importedCount, "" + errorCount } ) ); //$NON-NLS-1$ //$NON-NLS-2$
+
+            return true;
+        }
+    }
+
+
+    /**
+     * Updates the cache and adjusts attribute/children initialization flags
+     * after the given record was imported.
+     * 
+     * @param browserConnection the browser connection
+     * @param record the imported LDIF record
+     * 
+     * @throws LdapInvalidDnException if a Dn of the record is invalid
+     */
+    private static void updateCache( IBrowserConnection browserConnection, LdifRecord record )
+        throws LdapInvalidDnException
+    {
+        Dn dn = new Dn( record.getDnLine().getValueAsString() );
+        IEntry entry = browserConnection.getEntryFromCache( dn );
+        Dn parentDn = dn.getParent();
+        IEntry parentEntry = null;
+        while ( parentEntry == null && parentDn != null )
+        {
+            parentEntry = browserConnection.getEntryFromCache( parentDn );
+            parentDn = parentDn.getParent();
+        }
+
+        if ( record instanceof LdifChangeDeleteRecord )
+        {
+            if ( entry != null )
+            {
+                entry.setAttributesInitialized( false );
+                browserConnection.uncacheEntryRecursive( entry );
+            }
+            if ( parentEntry != null )
+            {
+                parentEntry.setChildrenInitialized( false );
+            }
+        }
+        else if ( record instanceof LdifChangeModDnRecord )
+        {
+            if ( entry != null )
+            {
+                entry.setAttributesInitialized( false );
+                browserConnection.uncacheEntryRecursive( entry );
+            }
+            if ( parentEntry != null )
+            {
+                parentEntry.setChildrenInitialized( false );
+            }
+            LdifChangeModDnRecord modDnRecord = ( LdifChangeModDnRecord ) record;
+            if ( modDnRecord.getNewsuperiorLine() != null )
+            {
+                Dn newSuperiorDn = new Dn( modDnRecord.getNewsuperiorLine().getValueAsString() );
+                IEntry newSuperiorEntry = browserConnection.getEntryFromCache( newSuperiorDn );
+                if ( newSuperiorEntry != null )
+                {
+                    newSuperiorEntry.setChildrenInitialized( false );
+                }
+            }
+        }
+        else if ( record instanceof LdifChangeAddRecord || record instanceof LdifContentRecord )
+        {
+            if ( entry != null )
+            {
+                entry.setAttributesInitialized( false );
+            }
+            if ( parentEntry != null )
+            {
+                parentEntry.setChildrenInitialized( false );
+                parentEntry.setHasChildrenHint( true );
+            }
+        }
+        else
+        {
+            if ( entry != null )
+            {
+                entry.setAttributesInitialized( false );
+            }
         }
     }
 
@@ -401,6 +1384,24 @@ public class ImportLdifRunnable implements StudioConnectionBulkRunnableWithProgr
      */
     static void importLdifRecord( IBrowserConnection browserConnection, LdifRecord record, boolean updateIfEntryExists,
         StudioProgressMonitor monitor ) throws LdapException
+    {
+        importLdifRecord( browserConnection, record, updateIfEntryExists, null, monitor );
+    }
+
+
+    /**
+     * Imports the LDIF record.
+     * 
+     * @param browserConnection the browser connection
+     * @param record the LDIF record
+     * @param updateIfEntryExists the update if entry exists flag
+     * @param transactionControl the transaction specification control, null to apply the record
+     *        without transaction
+     * @param monitor the progress monitor
+     * @throws LdapInvalidDnException
+     */
+    private static void importLdifRecord( IBrowserConnection browserConnection, LdifRecord record,
+        boolean updateIfEntryExists, Control transactionControl, StudioProgressMonitor monitor ) throws LdapException
     {
         if ( !record.isValid() )
         {
@@ -442,7 +1443,7 @@ public class ImportLdifRunnable implements StudioConnectionBulkRunnableWithProgr
 
             Entry entry = ModelConverter.toLdapApiEntry( dummyEntry );
             browserConnection.getConnection().getConnectionWrapper()
-                .createEntry( entry, getControls( record ), monitor, null );
+                .createEntry( entry, getControls( record, transactionControl ), monitor, null );
 
             if ( monitor.errorsReported() && updateIfEntryExists
                 && StudioLdapException.isEntryAlreadyExistsException( monitor.getException() ) )
@@ -452,14 +1453,15 @@ public class ImportLdifRunnable implements StudioConnectionBulkRunnableWithProgr
 
                 Collection<Modification> modifications = ModelConverter.toReplaceModifications( entry );
                 browserConnection.getConnection().getConnectionWrapper()
-                    .modifyEntry( new Dn( dn ), modifications, getControls( record ), monitor, null );
+                    .modifyEntry( new Dn( dn ), modifications, getControls( record, transactionControl ), monitor,
+                        null );
             }
         }
         else if ( record instanceof LdifChangeDeleteRecord )
         {
             LdifChangeDeleteRecord changeDeleteRecord = ( LdifChangeDeleteRecord ) record;
             browserConnection.getConnection().getConnectionWrapper()
-                .deleteEntry( new Dn( dn ), getControls( changeDeleteRecord ), monitor, null );
+                .deleteEntry( new Dn( dn ), getControls( changeDeleteRecord, transactionControl ), monitor, null );
         }
         else if ( record instanceof LdifChangeModifyRecord )
         {
@@ -500,7 +1502,8 @@ public class ImportLdifRunnable implements StudioConnectionBulkRunnableWithProgr
             }
 
             browserConnection.getConnection().getConnectionWrapper()
-                .modifyEntry( new Dn( dn ), modifications, getControls( modifyRecord ), monitor, null );
+                .modifyEntry( new Dn( dn ), modifications, getControls( modifyRecord, transactionControl ), monitor,
+                    null );
         }
         else if ( record instanceof LdifChangeModDnRecord )
         {
@@ -523,12 +1526,40 @@ public class ImportLdifRunnable implements StudioConnectionBulkRunnableWithProgr
                 }
 
                 browserConnection.getConnection().getConnectionWrapper()
-                    .renameEntry( new Dn( dn ), newDn, deleteOldRdn, getControls( modDnRecord ), monitor, null );
+                    .renameEntry( new Dn( dn ), newDn, deleteOldRdn, getControls( modDnRecord, transactionControl ),
+                        monitor, null );
             }
         }
     }
 
 
+    /**
+     * Gets the controls of the record and the given additional control.
+     * 
+     * @param record the LDIF record
+     * @param control the additional control, may be null
+     * 
+     * @return the controls
+     */
+    private static Control[] getControls( LdifRecord record, Control control )
+    {
+        Control[] controls = getControls( record );
+        if ( control == null )
+        {
+            return controls;
+        }
+        else if ( controls == null )
+        {
+            return new Control[]
+                { control };
+        }
+
+        Control[] allControls = Arrays.copyOf( controls, controls.length + 1 );
+        allControls[controls.length] = control;
+        return allControls;
+    }
+
+
     /**
      * Gets the controls.
      * 
@@ -21,31 +21,49 @@
 package org.apache.directory.studio.ldapbrowser.core.jobs;
 
 
+import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.commons.lang3.ArrayUtils;
+import org.apache.directory.api.ldap.model.constants.SchemaConstants;
+import org.apache.directory.api.ldap.model.entry.Attribute;
+import org.apache.directory.api.ldap.model.entry.Value;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.exception.LdapInvalidDnException;
 import org.apache.directory.api.ldap.model.message.Control;
 import org.apache.directory.api.ldap.model.message.SearchScope;
 import org.apache.directory.api.ldap.model.message.controls.PagedResults;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.util.GeneralizedTime;
 import org.apache.directory.studio.common.core.jobs.StudioProgressMonitor;
 import org.apache.directory.studio.connection.core.Connection;
 import org.apache.directory.studio.connection.core.Connection.AliasDereferencingMethod;
 import org.apache.directory.studio.connection.core.Connection.ReferralHandlingMethod;
 import org.apache.directory.studio.connection.core.Controls;
+import org.apache.directory.studio.connection.core.io.api.StudioSearchResult;
+import org.apache.directory.studio.connection.core.io.api.StudioSearchResultEnumeration;
 import org.apache.directory.studio.connection.core.jobs.StudioConnectionBulkRunnableWithProgress;
 import org.apache.directory.studio.ldapbrowser.core.BrowserCoreConstants;
 import org.apache.directory.studio.ldapbrowser.core.BrowserCoreMessages;
 import org.apache.directory.studio.ldapbrowser.core.BrowserCorePlugin;
 import org.apache.directory.studio.ldapbrowser.core.events.ChildrenInitializedEvent;
 import org.apache.directory.studio.ldapbrowser.core.events.EventRegistry;
+import org.apache.directory.studio.ldapbrowser.core.model.IAttribute;
 import org.apache.directory.studio.ldapbrowser.core.model.IBrowserConnection;
 import org.apache.directory.studio.ldapbrowser.core.model.IEntry;
 import org.apache.directory.studio.ldapbrowser.core.model.IRootDSE;
 import org.apache.directory.studio.ldapbrowser.core.model.ISearch;
 import org.apache.directory.studio.ldapbrowser.core.model.ISearchResult;
+import org.apache.directory.studio.ldapbrowser.core.model.SearchParameter;
+import org.apache.directory.studio.ldapbrowser.core.model.VirtualChildren;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.BrowserConnection;
 import org.apache.directory.studio.ldapbrowser.core.model.impl.ContinuedSearchResultEntry;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.PersistentDitCache;
 import org.apache.directory.studio.ldapbrowser.core.model.impl.Search;
 import org.apache.directory.studio.ldapbrowser.core.model.impl.SearchContinuation;
 
@@ -66,6 +84,10 @@ public class InitializeChildrenRunnable implements StudioConnectionBulkRunnableW
     /** The paged search control, only used internally. */
     private PagedResults pagedSearchControl;
 
+    /** The attributes used to track the changes of children. */
+    private static final String[] SYNC_TIMESTAMP_ATTRIBUTES = new String[]
+        { SchemaConstants.MODIFY_TIMESTAMP_AT, SchemaConstants.CREATE_TIMESTAMP_AT };
+
     /**
      * Creates a new instance of InitializeChildrenRunnable.
      * 
@@ -145,6 +167,8 @@ public class InitializeChildrenRunnable implements StudioConnectionBulkRunnableW
         monitor.beginTask( " ", entries.length + 2 ); //$NON-NLS-1$
         monitor.reportProgress( " " ); //$NON-NLS-1$
 
+        // prepare the searches of all entries
+        List<ChildrenSearch> childrenSearches = new ArrayList<ChildrenSearch>();
         for ( IEntry entry : entries )
         {
             monitor.setTaskName( BrowserCoreMessages.bind( BrowserCoreMessages.jobs__init_entries_task, new String[]
@@ -161,12 +185,52 @@ public class InitializeChildrenRunnable implements StudioConnectionBulkRunnableW
                     continue;
                 }
 
-                if ( pagedSearchControl == null && browserConnection.isPagedSearch() )
+                // children fetched window by window are refetched starting with the first window
+                VirtualChildren virtualChildren = entry.getVirtualChildren();
+                if ( virtualChildren != null && FetchVirtualChildrenRunnable.isApplicable( entry ) )
+                {
+                    clearCaches( entry, purgeAllCaches );
+                    new FetchVirtualChildrenRunnable( entry, 0, virtualChildren.getWindowSize() - 1 ).run( monitor );
+                    continue;
+                }
+
+                // each entry needs its own paged search control as the cookies differ
+                PagedResults entryPagedSearchControl = pagedSearchControl;
+                if ( entryPagedSearchControl == null && browserConnection.isPagedSearch() )
                 {
-                    pagedSearchControl = Controls.newPagedResultsControl( browserConnection.getPagedSearchSize() );
+                    entryPagedSearchControl = Controls.newPagedResultsControl( browserConnection
+                        .getPagedSearchSize() );
                 }
 
-                initializeChildren( entry, monitor, pagedSearchControl );
+                ChildrenSearch childrenSearch = prepareChildrenSearch( entry, monitor, entryPagedSearchControl );
+                if ( childrenSearch != null )
+                {
+                    childrenSearches.add( childrenSearch );
+                }
+            }
+        }
+
+        // send the searches of all entries at once, the directory processes them concurrently
+        List<ISearch> searches = new ArrayList<ISearch>();
+        for ( ChildrenSearch childrenSearch : childrenSearches )
+        {
+            searches.addAll( childrenSearch.getSearches() );
+        }
+        SearchRunnable.searchAndUpdateModel( searches.toArray( new ISearch[searches.size()] ), monitor );
+
+        for ( ChildrenSearch childrenSearch : childrenSearches )
+        {
+            initializeChildren( childrenSearch, monitor );
+        }
+
+        // keep the expanded subtrees up to date
+        for ( IEntry entry : entries )
+        {
+            IBrowserConnection browserConnection = entry.getBrowserConnection();
+            if ( browserConnection != null && !( entry instanceof IRootDSE ) && browserConnection.isLiveCacheSync()
+                && browserConnection instanceof BrowserConnection )
+            {
+                ( ( BrowserConnection ) browserConnection ).getLiveCacheSynchronizer().watch( entry );
             }
         }
     }
@@ -188,30 +252,84 @@ public class InitializeChildrenRunnable implements StudioConnectionBulkRunnableW
 
 
     /**
-     * Initializes the child entries.
+     * Prepares the searches to initialize the child entries. The children
+     * are initialized without search if a smart refresh is applicable or if
+     * they can be restored from the persistent DIT cache.
      * 
      * @param parent the parent
      * @param monitor the progress monitor
      * @param pagedSearchControl the paged search control
+     * 
+     * @return the prepared searches, null if the children are already initialized
      */
-    private void initializeChildren( IEntry parent, StudioProgressMonitor monitor, PagedResults pagedSearchControl )
+    private ChildrenSearch prepareChildrenSearch( IEntry parent, StudioProgressMonitor monitor,
+        PagedResults pagedSearchControl )
     {
         monitor.reportProgress( BrowserCoreMessages.bind( BrowserCoreMessages.jobs__init_entries_progress_sub,
             new String[]
             { parent.getDn().getName() } ) );
 
+        // fetch only the changed children if the children are already known
+        if ( purgeAllCaches && parent.getChildrenSyncTimestamp() != null
+            && isSmartRefreshApplicable( parent, pagedSearchControl ) && refreshChangedChildren( parent, monitor ) )
+        {
+            return null;
+        }
+
         // clear old children
         clearCaches( parent, purgeAllCaches );
 
-        // create search
-        ISearch search = createSearch( parent, pagedSearchControl, false, false, false );
+        // restore the children from the persistent DIT cache if they are still valid
+        PersistentDitCache ditCache = getPersistentDitCache( parent, pagedSearchControl );
+        String validationToken = null;
+        if ( ditCache != null )
+        {
+            validationToken = getValidationToken( ditCache, parent, monitor );
+            if ( !purgeAllCaches && ditCache.restoreChildren( parent, validationToken ) )
+            {
+                return null;
+            }
+        }
 
-        // search
-        executeSearch( parent, search, monitor );
+        // create search, remember the timestamps of the children for a later smart refresh
+        ChildrenSearch childrenSearch = new ChildrenSearch( parent );
+        childrenSearch.ditCache = ditCache;
+        childrenSearch.validationToken = validationToken;
+        childrenSearch.search = createSearch( parent, pagedSearchControl, false, false, false );
+        childrenSearch.trackTimestamps = isSmartRefreshApplicable( parent, pagedSearchControl );
+        if ( childrenSearch.trackTimestamps )
+        {
+            childrenSearch.search.getSearchParameter().setReturningAttributes( SYNC_TIMESTAMP_ATTRIBUTES );
+        }
+
+        // sub-entries, aliases and referrals
+        childrenSearch.subSearch = createSearch( parent, null, true, false, false );
+        childrenSearch.fetchSubentries = parent.getBrowserConnection().isFetchSubentries()
+            || parent.isFetchSubentries();
+        childrenSearch.aliasOrReferralSearch = createSearch( parent, null, false, parent.isFetchAliases(), parent
+            .isFetchReferrals() );
+        childrenSearch.fetchAliasesOrReferrals = parent.isFetchAliases() || parent.isFetchReferrals();
+
+        return childrenSearch;
+    }
+
+
+    /**
+     * Initializes the child entries from the results of the prepared searches.
+     * 
+     * @param childrenSearch the prepared searches, already performed
+     * @param monitor the progress monitor
+     */
+    private void initializeChildren( ChildrenSearch childrenSearch, StudioProgressMonitor monitor )
+    {
+        IEntry parent = childrenSearch.parent;
+        ISearch search = childrenSearch.search;
+        reportSearchProgress( parent, search, monitor );
         ISearchResult[] srs = search.getSearchResults();
         SearchContinuation[] scs = search.getSearchContinuations();
 
-        // fill children in search result
+        // fill children in search result, they are added in one step at the end
+        List<IEntry> children = new ArrayList<IEntry>();
         if ( ( srs != null && srs.length > 0 ) || ( scs != null && scs.length > 0 ) )
         {
             // clearing old children before filling new children is
@@ -224,7 +342,7 @@ public class InitializeChildrenRunnable implements StudioConnectionBulkRunnableW
                 {
                     for ( ISearchResult searchResult : srs )
                     {
-                        parent.addChild( searchResult.getEntry() );
+                        children.add( searchResult.getEntry() );
                     }
                     srs = null;
                 }
@@ -236,7 +354,7 @@ public class InitializeChildrenRunnable implements StudioConnectionBulkRunnableW
                         ContinuedSearchResultEntry entry = new ContinuedSearchResultEntry( parent
                             .getBrowserConnection(), searchContinuation.getUrl().getDn() );
                         entry.setUnresolved( searchContinuation.getUrl() );
-                        parent.addChild( entry );
+                        children.add( entry );
                     }
                     scs = null;
                 }
@@ -306,32 +424,508 @@ public class InitializeChildrenRunnable implements StudioConnectionBulkRunnableW
         }
 
         // get sub-entries
-        ISearch subSearch = createSearch( parent, null, true, false, false );
-        if ( parent.getBrowserConnection().isFetchSubentries() || parent.isFetchSubentries() )
+        ISearch subSearch = childrenSearch.subSearch;
+        if ( childrenSearch.fetchSubentries )
         {
-            executeSubSearch( parent, subSearch, monitor );
+            addSubSearchChildren( parent, subSearch, children, monitor );
         }
 
         // get aliases and referrals
-        ISearch aliasOrReferralSearch = createSearch( parent, null, false, parent.isFetchAliases(), parent
-            .isFetchReferrals() );
-        if ( parent.isFetchAliases() || parent.isFetchReferrals() )
+        ISearch aliasOrReferralSearch = childrenSearch.aliasOrReferralSearch;
+        if ( childrenSearch.fetchAliasesOrReferrals )
         {
-            executeSubSearch( parent, aliasOrReferralSearch, monitor );
+            addSubSearchChildren( parent, aliasOrReferralSearch, children, monitor );
         }
 
+        parent.updateChildren( children, Collections.<IEntry> emptyList() );
+
         // check exceeded limits / canceled
         parent.setHasMoreChildren( search.isCountLimitExceeded() || subSearch.isCountLimitExceeded()
             || aliasOrReferralSearch.isCountLimitExceeded() || monitor.isCanceled() );
 
         // set initialized state
         parent.setChildrenInitialized( true );
+
+        if ( childrenSearch.trackTimestamps && !parent.hasMoreChildren()
+            && parent.getNextPageChildrenRunnable() == null )
+        {
+            String timestamp = null;
+            for ( IEntry child : children )
+            {
+                if ( child instanceof ContinuedSearchResultEntry )
+                {
+                    timestamp = null;
+                    break;
+                }
+                timestamp = getLatestTimestamp( child, timestamp );
+            }
+            parent.setChildrenSyncTimestamp( timestamp );
+        }
+
+        if ( childrenSearch.ditCache != null )
+        {
+            childrenSearch.ditCache.setValidationToken( parent, childrenSearch.validationToken );
+        }
+    }
+
+
+    /**
+     * Checks if the smart refresh is enabled and applicable for the parent. It
+     * is not applicable for filtered or paged children and if sub-entries,
+     * aliases or referrals are fetched with additional searches.
+     * 
+     * @param parent the parent
+     * @param pagedSearchControl the paged search control
+     * 
+     * @return true if the smart refresh is applicable
+     */
+    private static boolean isSmartRefreshApplicable( IEntry parent, PagedResults pagedSearchControl )
+    {
+        if ( !BrowserCorePlugin.getDefault().getPluginPreferences().getBoolean(
+            BrowserCoreConstants.PREFERENCE_SMART_REFRESH ) )
+        {
+            return false;
+        }
+
+        IBrowserConnection browserConnection = parent.getBrowserConnection();
+        return parent.getChildrenFilter() == null && !browserConnection.isPagedSearchScrollMode()
+            && ( pagedSearchControl == null || ArrayUtils.isEmpty( pagedSearchControl.getCookie() ) )
+            && !browserConnection.isFetchSubentries() && !parent.isFetchSubentries() && !parent.isFetchAliases()
+            && !parent.isFetchReferrals();
+    }
+
+
+    /**
+     * Refreshes the children of the parent by fetching only the children created
+     * or modified since the last refresh. Deleted children are detected by
+     * comparing the number of subordinates reported by the directory, if that
+     * doesn't match a search that only returns the Dns is used.
+     * 
+     * @param parent the parent
+     * @param monitor the progress monitor
+     * 
+     * @return true if the children were refreshed, false if a full refresh is required
+     */
+    private static boolean refreshChangedChildren( IEntry parent, StudioProgressMonitor monitor )
+    {
+        StudioProgressMonitor dummyMonitor = new StudioProgressMonitor( monitor );
+        IEntry[] children = parent.getChildren();
+        Set<IEntry> oldChildren = new HashSet<IEntry>();
+        if ( children != null )
+        {
+            oldChildren.addAll( Arrays.asList( children ) );
+        }
+
+        // search created or modified children, new children are added to the parent
+        String timestamp = parent.getChildrenSyncTimestamp();
+        ISearch search = createSearch( parent, null, false, false, false );
+        search.getSearchParameter().setFilter( "(|(" + SchemaConstants.MODIFY_TIMESTAMP_AT + ">=" + timestamp //$NON-NLS-1$ //$NON-NLS-2$
+            + ")(" + SchemaConstants.CREATE_TIMESTAMP_AT + ">=" + timestamp + "))" ); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        search.getSearchParameter().setReturningAttributes( SYNC_TIMESTAMP_ATTRIBUTES );
+        executeSearch( parent, search, dummyMonitor );
+        if ( search.isCountLimitExceeded() || dummyMonitor.errorsReported() || monitor.isCanceled() )
+        {
+            return false;
+        }
+
+        // the attributes of modified children are fetched again when displayed
+        for ( ISearchResult searchResult : search.getSearchResults() )
+        {
+            IEntry child = searchResult.getEntry();
+            timestamp = getLatestTimestamp( child, timestamp );
+            if ( oldChildren.contains( child ) && child.isAttributesInitialized() )
+            {
+                child.setAttributesInitialized( false );
+            }
+        }
+
+        // detect deleted children, skipped if the number of subordinates matches
+        int count = fetchChildrenCount( parent, dummyMonitor );
+        if ( count < 0 || count != Math.max( parent.getChildrenCount(), 0 ) )
+        {
+            Set<Dn> existingDns = fetchChildrenDns( parent, dummyMonitor );
+            if ( existingDns == null || monitor.isCanceled() )
+            {
+                return false;
+            }
+
+            List<IEntry> deletedChildren = new ArrayList<IEntry>();
+            children = parent.getChildren();
+            if ( children != null )
+            {
+                for ( IEntry child : children )
+                {
+                    if ( !existingDns.contains( child.getDn() ) )
+                    {
+                        deletedChildren.add( child );
+                    }
+                }
+            }
+            parent.updateChildren( Collections.<IEntry> emptyList(), deletedChildren );
+            for ( IEntry child : deletedChildren )
+            {
+                parent.getBrowserConnection().uncacheEntryRecursive( child );
+            }
+        }
+
+        parent.setHasChildrenHint( parent.getChildrenCount() > 0 );
+        parent.setHasMoreChildren( false );
+        parent.setChildrenInitialized( true );
+        parent.setChildrenSyncTimestamp( timestamp );
+        return true;
+    }
+
+
+    /**
+     * Fetches the number of children of the parent, using the numSubordinates
+     * or subordinateCount attribute.
+     * 
+     * @param parent the parent
+     * @param monitor the progress monitor
+     * 
+     * @return the number of children, -1 if the directory doesn't provide it
+     */
+    private static int fetchChildrenCount( IEntry parent, StudioProgressMonitor monitor )
+    {
+        String countAttribute;
+        if ( parent.getBrowserConnection().getSchema().hasAttributeTypeDescription(
+            SchemaConstants.NUM_SUBORDINATES_AT ) )
+        {
+            countAttribute = SchemaConstants.NUM_SUBORDINATES_AT;
+        }
+        else if ( parent.getBrowserConnection().getSchema().hasAttributeTypeDescription(
+            SchemaConstants.SUBORDINATE_COUNT_AT ) )
+        {
+            countAttribute = SchemaConstants.SUBORDINATE_COUNT_AT;
+        }
+        else
+        {
+            return -1;
+        }
+
+        SearchParameter searchParameter = new SearchParameter();
+        searchParameter.setSearchBase( parent.getDn() );
+        searchParameter.setFilter( null );
+        searchParameter.setReturningAttributes( new String[]
+            { countAttribute } );
+        searchParameter.setScope( SearchScope.OBJECT );
+        searchParameter.setCountLimit( 1 );
+        searchParameter.setTimeLimit( 0 );
+        searchParameter.setAliasesDereferencingMethod( AliasDereferencingMethod.NEVER );
+        searchParameter.setReferralsHandlingMethod( parent.getBrowserConnection().getReferralsHandlingMethod() );
+
+        StudioSearchResultEnumeration enumeration = SearchRunnable.search( parent.getBrowserConnection(),
+            searchParameter, monitor );
+        try
+        {
+            if ( enumeration != null && enumeration.hasMore() )
+            {
+                Attribute attribute = enumeration.next().getEntry().get( countAttribute );
+                enumeration.close();
+                if ( attribute != null && attribute.get() != null )
+                {
+                    return Integer.parseInt( attribute.getString().trim() );
+                }
+            }
+        }
+        catch ( LdapException e )
+        {
+            // no count available, the Dns of the children are compared
+        }
+        catch ( NumberFormatException e )
+        {
+            // invalid count, the Dns of the children are compared
+        }
+
+        return -1;
+    }
+
+
+    /**
+     * Fetches the Dns of all children of the parent. No attributes are
+     * requested, paged results are used if enabled for the connection.
+     * 
+     * @param parent the parent
+     * @param monitor the progress monitor
+     * 
+     * @return the Dns of the children, null if not all Dns could be fetched
+     */
+    private static Set<Dn> fetchChildrenDns( IEntry parent, StudioProgressMonitor monitor )
+    {
+        IBrowserConnection browserConnection = parent.getBrowserConnection();
+        SearchParameter searchParameter = new SearchParameter();
+        searchParameter.setSearchBase( parent.getDn() );
+        searchParameter.setFilter( ISearch.FILTER_TRUE );
+        searchParameter.setReturningAttributes( ISearch.NO_ATTRIBUTES );
+        searchParameter.setScope( SearchScope.ONELEVEL );
+        searchParameter.setCountLimit( 0 );
+        searchParameter.setTimeLimit( 0 );
+        searchParameter.setAliasesDereferencingMethod( AliasDereferencingMethod.NEVER );
+        searchParameter.setReferralsHandlingMethod( browserConnection.getReferralsHandlingMethod() );
+        if ( browserConnection.isManageDsaIT() )
+        {
+            searchParameter.getControls().add( Controls.MANAGEDSAIT_CONTROL );
+        }
+        PagedResults pagedResults = null;
+        if ( browserConnection.isPagedSearch() )
+        {
+            pagedResults = Controls.newPagedResultsControl( browserConnection.getPagedSearchSize() );
+            searchParameter.getControls().add( pagedResults );
+        }
+
+        Set<Dn> dns = new HashSet<Dn>();
+        try
+        {
+            byte[] cookie;
+            do
+            {
+                cookie = null;
+                StudioSearchResultEnumeration enumeration = SearchRunnable.search( browserConnection,
+                    searchParameter, monitor );
+                if ( enumeration == null )
+                {
+                    return null;
+                }
+                while ( !monitor.isCanceled() && enumeration.hasMore() )
+                {
+                    StudioSearchResult sr = enumeration.next();
+                    if ( sr.getSearchContinuationUrl() == null )
+                    {
+                        dns.add( sr.getDn() );
+                    }
+                }
+
+                for ( Control responseControl : enumeration.getResponseControls() )
+                {
+                    if ( pagedResults != null && responseControl instanceof PagedResults )
+                    {
+                        cookie = ( ( PagedResults ) responseControl ).getCookie();
+                        pagedResults.setCookie( cookie );
+                    }
+                }
+            }
+            while ( ArrayUtils.isNotEmpty( cookie ) && !monitor.isCanceled() );
+        }
+        catch ( LdapException e )
+        {
+            return null;
+        }
+
+        return monitor.errorsReported() ? null : dns;
+    }
+
+
+    /**
+     * Gets the later one of the given timestamp and the modify and create
+     * timestamps of the entry.
+     * 
+     * @param entry the entry
+     * @param timestamp the timestamp, may be null
+     * 
+     * @return the latest timestamp, null if none is known
+     */
+    private static String getLatestTimestamp( IEntry entry, String timestamp )
+    {
+        for ( String attributeDescription : SYNC_TIMESTAMP_ATTRIBUTES )
+        {
+            IAttribute attribute = entry.getAttribute( attributeDescription );
+            if ( attribute != null && attribute.getStringValue() != null )
+            {
+                String value = attribute.getStringValue();
+                try
+                {
+                    if ( timestamp == null
+                        || new GeneralizedTime( value ).compareTo( new GeneralizedTime( timestamp ) ) > 0 )
+                    {
+                        timestamp = value;
+                    }
+                }
+                catch ( ParseException e )
+                {
+                    // ignore invalid timestamps
+                }
+            }
+        }
+        return timestamp;
+    }
+
+
+    /**
+     * Gets the persistent DIT cache of the parent's connection.
+     * 
+     * @param parent the parent
+     * @param pagedSearchControl the paged search control
+     * 
+     * @return the persistent DIT cache, null if disabled or not applicable
+     */
+    private static PersistentDitCache getPersistentDitCache( IEntry parent, PagedResults pagedSearchControl )
+    {
+        if ( !BrowserCorePlugin.getDefault().getPluginPreferences().getBoolean(
+            BrowserCoreConstants.PREFERENCE_PERSISTENT_DIT_CACHE ) )
+        {
+            return null;
+        }
+
+        // only the first page of a paged search and unfiltered children can be cached
+        if ( !( parent.getBrowserConnection() instanceof BrowserConnection ) || parent.getChildrenFilter() != null
+            || ( pagedSearchControl != null && ArrayUtils.isNotEmpty( pagedSearchControl.getCookie() ) ) )
+        {
+            return null;
+        }
+
+        return ( ( BrowserConnection ) parent.getBrowserConnection() ).getPersistentDitCache();
+    }
+
+
+    /**
+     * Gets the validation token of the parent entry, which is the contextCSN of the
+     * naming context that contains the parent entry. The contextCSN is only read
+     * once per naming context and session, so the persistent DIT cache doesn't cost
+     * an additional round trip for each expanded entry.
+     * 
+     * @param ditCache the persistent DIT cache
+     * @param parent the parent
+     * @param monitor the progress monitor
+     * 
+     * @return the validation token, null if the contextCSN can't be read
+     */
+    private static String getValidationToken( PersistentDitCache ditCache, IEntry parent,
+        StudioProgressMonitor monitor )
+    {
+        Dn namingContext = getNamingContext( parent );
+        if ( namingContext == null )
+        {
+            return null;
+        }
+
+        if ( !ditCache.hasContextCsn( namingContext ) )
+        {
+            ditCache.setContextCsn( namingContext,
+                fetchContextCsn( parent.getBrowserConnection(), namingContext, monitor ) );
+        }
+        return ditCache.getContextCsn( namingContext );
+    }
+
+
+    /**
+     * Gets the naming context that contains the given entry, using the
+     * namingContexts attribute of the Root DSE. If naming contexts are
+     * nested the innermost one is returned.
+     * 
+     * @param entry the entry
+     * 
+     * @return the naming context, null if the entry isn't within a known naming context
+     */
+    private static Dn getNamingContext( IEntry entry )
+    {
+        IAttribute attribute = entry.getBrowserConnection().getRootDSE()
+            .getAttribute( SchemaConstants.NAMING_CONTEXTS_AT );
+        if ( attribute == null )
+        {
+            return null;
+        }
+
+        Dn namingContext = null;
+        for ( String value : attribute.getStringValues() )
+        {
+            if ( value.length() > 0 && value.charAt( value.length() - 1 ) == '\u0000' )
+            {
+                value = value.substring( 0, value.length() - 1 );
+            }
+            if ( !Dn.isValid( value ) )
+            {
+                continue;
+            }
+
+            try
+            {
+                Dn dn = new Dn( value );
+                if ( ( dn.equals( entry.getDn() ) || entry.getDn().isDescendantOf( dn ) )
+                    && ( namingContext == null || dn.size() > namingContext.size() ) )
+                {
+                    namingContext = dn;
+                }
+            }
+            catch ( LdapInvalidDnException e )
+            {
+                // ignore invalid naming contexts
+            }
+        }
+        return namingContext;
     }
 
 
-    private void executeSubSearch( IEntry parent, ISearch subSearch, StudioProgressMonitor monitor )
+    /**
+     * Fetches the contextCSN of the given naming context using a cheap base search.
+     * 
+     * @param browserConnection the browser connection
+     * @param namingContext the naming context
+     * @param monitor the progress monitor
+     * 
+     * @return the validation token built from the contextCSN, null if the directory doesn't provide it
+     */
+    private static String fetchContextCsn( IBrowserConnection browserConnection, Dn namingContext,
+        StudioProgressMonitor monitor )
     {
-        executeSearch( parent, subSearch, monitor );
+        SearchParameter searchParameter = new SearchParameter();
+        searchParameter.setSearchBase( namingContext );
+        searchParameter.setFilter( null );
+        searchParameter.setReturningAttributes( new String[]
+            { SchemaConstants.CONTEXT_CSN_AT } );
+        searchParameter.setScope( SearchScope.OBJECT );
+        searchParameter.setCountLimit( 1 );
+        searchParameter.setTimeLimit( 0 );
+        searchParameter.setAliasesDereferencingMethod( AliasDereferencingMethod.NEVER );
+        searchParameter.setReferralsHandlingMethod( browserConnection.getReferralsHandlingMethod() );
+
+        StudioProgressMonitor dummyMonitor = new StudioProgressMonitor( monitor );
+        StudioSearchResultEnumeration enumeration = SearchRunnable.search( browserConnection, searchParameter,
+            dummyMonitor );
+        if ( enumeration == null )
+        {
+            return null;
+        }
+
+        try
+        {
+            if ( enumeration.hasMore() )
+            {
+                Attribute attribute = enumeration.next().getEntry().get( SchemaConstants.CONTEXT_CSN_AT );
+                if ( attribute != null && attribute.size() > 0 )
+                {
+                    List<String> values = new ArrayList<String>();
+                    for ( Value value : attribute )
+                    {
+                        values.add( value.getString() );
+                    }
+                    return PersistentDitCache.buildValidationToken( values.toArray( new String[values.size()] ) );
+                }
+            }
+        }
+        catch ( LdapException e )
+        {
+            // no validation possible, the children are fetched from the directory
+        }
+        finally
+        {
+            try
+            {
+                enumeration.close();
+            }
+            catch ( LdapException e )
+            {
+                // ignore
+            }
+        }
+
+        return null;
+    }
+
+
+    private static void addSubSearchChildren( IEntry parent, ISearch subSearch, List<IEntry> children,
+        StudioProgressMonitor monitor )
+    {
+        reportSearchProgress( parent, subSearch, monitor );
         ISearchResult[] subSrs = subSearch.getSearchResults();
         SearchContinuation[] subScs = subSearch.getSearchContinuations();
 
@@ -340,14 +934,14 @@ public class InitializeChildrenRunnable implements StudioConnectionBulkRunnableW
         {
             for ( ISearchResult searchResult : subSrs )
             {
-                parent.addChild( searchResult.getEntry() );
+                children.add( searchResult.getEntry() );
             }
             for ( SearchContinuation searchContinuation : subScs )
             {
                 ContinuedSearchResultEntry entry = new ContinuedSearchResultEntry( parent.getBrowserConnection(),
                     searchContinuation.getUrl().getDn() );
                 entry.setUnresolved( searchContinuation.getUrl() );
-                parent.addChild( entry );
+                children.add( entry );
             }
         }
     }
@@ -356,6 +950,12 @@ public class InitializeChildrenRunnable implements StudioConnectionBulkRunnableW
     private static void executeSearch( IEntry parent, ISearch search, StudioProgressMonitor monitor )
     {
         SearchRunnable.searchAndUpdateModel( parent.getBrowserConnection(), search, monitor );
+        reportSearchProgress( parent, search, monitor );
+    }
+
+
+    private static void reportSearchProgress( IEntry parent, ISearch search, StudioProgressMonitor monitor )
+    {
         ISearchResult[] srs = search.getSearchResults();
         monitor.reportProgress( BrowserCoreMessages.bind( BrowserCoreMessages.jobs__init_entries_progress_subcount,
             new String[]
@@ -363,7 +963,7 @@ public class InitializeChildrenRunnable implements StudioConnectionBulkRunnableW
     }
 
 
-    private static ISearch createSearch( IEntry parent, PagedResults pagedSearchControl, boolean isSubentriesSearch,
+    static ISearch createSearch( IEntry parent, PagedResults pagedSearchControl, boolean isSubentriesSearch,
         boolean isAliasSearch, boolean isReferralsSearch )
     {
         // scope
@@ -432,16 +1032,23 @@ public class InitializeChildrenRunnable implements StudioConnectionBulkRunnableW
         IEntry[] children = entry.getChildren();
         if ( children != null )
         {
+            List<IEntry> childrenToDelete = new ArrayList<IEntry>( children.length );
             for ( IEntry child : children )
             {
                 if ( child != null )
                 {
-                    entry.deleteChild( child );
-                    clearCaches( child, purgeAllCaches );
+                    childrenToDelete.add( child );
                 }
             }
+            entry.updateChildren( Collections.<IEntry> emptyList(), childrenToDelete );
+            for ( IEntry child : childrenToDelete )
+            {
+                clearCaches( child, purgeAllCaches );
+            }
         }
         entry.setChildrenInitialized( false );
+        entry.setChildrenSyncTimestamp( null );
+        entry.setVirtualChildren( null );
 
         // reset paging runnables
         entry.setTopPageChildrenRunnable( null );
@@ -455,4 +1062,53 @@ public class InitializeChildrenRunnable implements StudioConnectionBulkRunnableW
             entry.setHasMoreChildren( false );
         }
     }
+
+
+    /**
+     * The searches to initialize the children of one parent entry. They
+     * are sent together with the searches of the other entries.
+     */
+    private static class ChildrenSearch
+    {
+        private IEntry parent;
+
+        private ISearch search;
+
+        private ISearch subSearch;
+
+        private boolean fetchSubentries;
+
+        private ISearch aliasOrReferralSearch;
+
+        private boolean fetchAliasesOrReferrals;
+
+        private boolean trackTimestamps;
+
+        private PersistentDitCache ditCache;
+
+        private String validationToken;
+
+
+        private ChildrenSearch( IEntry parent )
+        {
+            this.parent = parent;
+        }
+
+
+        private List<ISearch> getSearches()
+        {
+            List<ISearch> searches = new ArrayList<ISearch>( 3 );
+            searches.add( search );
+            if ( fetchSubentries )
+            {
+                searches.add( subSearch );
+            }
+            if ( fetchAliasesOrReferrals )
+            {
+                searches.add( aliasOrReferralSearch );
+            }
+            return searches;
+        }
+    }
+
 }
@@ -0,0 +1,232 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+
+package org.apache.directory.studio.ldapbrowser.core.jobs;
+
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.directory.api.ldap.model.constants.SchemaConstants;
+import org.apache.directory.api.ldap.model.message.Control;
+import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.message.controls.PagedResults;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.studio.common.core.jobs.StudioProgressMonitor;
+import org.apache.directory.studio.connection.core.Connection;
+import org.apache.directory.studio.connection.core.Connection.AliasDereferencingMethod;
+import org.apache.directory.studio.connection.core.Connection.ReferralHandlingMethod;
+import org.apache.directory.studio.connection.core.Controls;
+import org.apache.directory.studio.connection.core.io.api.StudioSearchResultEnumeration;
+import org.apache.directory.studio.connection.core.jobs.StudioConnectionRunnableWithProgress;
+import org.apache.directory.studio.ldapbrowser.core.BrowserCoreMessages;
+import org.apache.directory.studio.ldapbrowser.core.model.IBrowserConnection;
+import org.apache.directory.studio.ldapbrowser.core.model.ISearch;
+import org.apache.directory.studio.ldapbrowser.core.model.SearchParameter;
+import org.apache.directory.studio.ldapbrowser.core.model.SubtreeProfile;
+
+
+/**
+ * Runnable to collect the statistics of a subtree. The entries are read
+ * with a single, paged subtree search and aggregated into a
+ * {@link SubtreeProfile} while streaming, they are not kept in memory.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class ProfileSubtreeRunnable implements StudioConnectionRunnableWithProgress
+{
+
+    /** The browser connection. */
+    private IBrowserConnection browserConnection;
+
+    /** The base of the subtree. */
+    private Dn base;
+
+    /** The collected statistics. */
+    private SubtreeProfile profile;
+
+
+    /**
+     * Creates a new instance of ProfileSubtreeRunnable.
+     *
+     * @param browserConnection the browser connection
+     * @param base the base of the subtree
+     */
+    public ProfileSubtreeRunnable( IBrowserConnection browserConnection, Dn base )
+    {
+        this.browserConnection = browserConnection;
+        this.base = base;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public Connection[] getConnections()
+    {
+        return new Connection[]
+            { browserConnection.getConnection() };
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getName()
+    {
+        return BrowserCoreMessages.jobs__profile_name;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public Object[] getLockedObjects()
+    {
+        return new Object[]
+            { browserConnection.getUrl() + "_" + base.getNormName() }; //$NON-NLS-1$
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getErrorMessage()
+    {
+        return BrowserCoreMessages.jobs__profile_error;
+    }
+
+
+    /**
+     * Gets the collected statistics, they are incomplete if the
+     * runnable was canceled or an error occurred.
+     *
+     * @return the collected statistics, null if the runnable wasn't run
+     */
+    public SubtreeProfile getProfile()
+    {
+        return profile;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void run( StudioProgressMonitor monitor )
+    {
+        monitor.beginTask( BrowserCoreMessages.jobs__profile_task, 2 );
+        monitor.reportProgress( " " ); //$NON-NLS-1$
+        monitor.worked( 1 );
+
+        profile = new SubtreeProfile( base );
+        SearchParameter searchParameter = createSearchParameter();
+        try
+        {
+            StudioSearchResultEnumeration enumeration = SearchRunnable.search( browserConnection, searchParameter,
+                monitor );
+            while ( enumeration != null && !monitor.isCanceled() && !monitor.errorsReported() )
+            {
+                if ( enumeration.hasMore() )
+                {
+                    profile.add( enumeration.next().getEntry() );
+                    if ( profile.getEntryCount() % 100 == 0 )
+                    {
+                        reportProgress( monitor );
+                    }
+                }
+                else
+                {
+                    enumeration.close();
+                    enumeration = searchNextPage( enumeration, searchParameter, monitor );
+                }
+            }
+            if ( enumeration != null )
+            {
+                enumeration.close();
+            }
+            reportProgress( monitor );
+        }
+        catch ( Exception e )
+        {
+            monitor.reportError( e );
+        }
+    }
+
+
+    private SearchParameter createSearchParameter()
+    {
+        SearchParameter searchParameter = new SearchParameter();
+        searchParameter.setSearchBase( base );
+        searchParameter.setFilter( ISearch.FILTER_TRUE );
+        searchParameter.setScope( SearchScope.SUBTREE );
+        searchParameter.setReturningAttributes( new String[]
+            { SchemaConstants.ALL_USER_ATTRIBUTES } );
+        searchParameter.setCountLimit( 0 );
+        searchParameter.setTimeLimit( 0 );
+        searchParameter.setAliasesDereferencingMethod( AliasDereferencingMethod.NEVER );
+        searchParameter.setReferralsHandlingMethod( ReferralHandlingMethod.IGNORE );
+        if ( browserConnection.isManageDsaIT() )
+        {
+            searchParameter.getControls().add( Controls.MANAGEDSAIT_CONTROL );
+        }
+        if ( browserConnection.isPagedSearch() )
+        {
+            searchParameter.getControls().add(
+                Controls.newPagedResultsControl( browserConnection.getPagedSearchSize() ) );
+        }
+        return searchParameter;
+    }
+
+
+    /**
+     * Requests the next page if the server returned a paged results cookie.
+     *
+     * @return the enumeration of the next page, null if there are no more pages
+     */
+    private StudioSearchResultEnumeration searchNextPage( StudioSearchResultEnumeration enumeration,
+        SearchParameter searchParameter, StudioProgressMonitor monitor )
+    {
+        for ( Control responseControl : enumeration.getResponseControls() )
+        {
+            if ( responseControl instanceof PagedResults )
+            {
+                byte[] cookie = ( ( PagedResults ) responseControl ).getCookie();
+                if ( ArrayUtils.isNotEmpty( cookie ) )
+                {
+                    for ( Control requestControl : searchParameter.getControls() )
+                    {
+                        if ( requestControl instanceof PagedResults )
+                        {
+                            ( ( PagedResults ) requestControl ).setCookie( cookie );
+                        }
+                    }
+                    return SearchRunnable.search( browserConnection, searchParameter, monitor );
+                }
+            }
+        }
+        return null;
+    }
+
+
+    private void reportProgress( StudioProgressMonitor monitor )
+    {
+        monitor.reportProgress( BrowserCoreMessages.bind( BrowserCoreMessages.jobs__profile_progress, new String[]
+            { Long.toString( profile.getEntryCount() ) } ) );
+    }
+
+}
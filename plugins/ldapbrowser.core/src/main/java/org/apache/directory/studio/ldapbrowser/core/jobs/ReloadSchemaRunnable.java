@@ -30,13 +30,12 @@ import org.apache.directory.studio.connection.core.Connection;
 import org.apache.directory.studio.connection.core.io.api.StudioSearchResultEnumeration;
 import org.apache.directory.studio.connection.core.jobs.StudioConnectionBulkRunnableWithProgress;
 import org.apache.directory.studio.ldapbrowser.core.BrowserCoreMessages;
+import org.apache.directory.studio.ldapbrowser.core.BrowserCorePlugin;
 import org.apache.directory.studio.ldapbrowser.core.events.BrowserConnectionUpdateEvent;
 import org.apache.directory.studio.ldapbrowser.core.events.EventRegistry;
 import org.apache.directory.studio.ldapbrowser.core.model.IBrowserConnection;
 import org.apache.directory.studio.ldapbrowser.core.model.SearchParameter;
 import org.apache.directory.studio.ldapbrowser.core.model.schema.Schema;
-import org.apache.directory.studio.ldifparser.model.LdifEnumeration;
-import org.apache.directory.studio.ldifparser.model.container.LdifContentRecord;
 
 
 /**
@@ -168,12 +167,12 @@ public class ReloadSchemaRunnable implements StudioConnectionBulkRunnableWithPro
                         SchemaConstants.MATCHING_RULE_USE_AT, SchemaConstants.CREATE_TIMESTAMP_AT,
                         SchemaConstants.MODIFY_TIMESTAMP_AT } );
 
-                LdifEnumeration le = ExportLdifRunnable.search( browserConnection, sp, monitor );
-                if ( le.hasNext() )
+                StudioSearchResultEnumeration enumeration = SearchRunnable.search( browserConnection, sp, monitor );
+                if ( enumeration != null && enumeration.hasMore() )
                 {
-                    LdifContentRecord schemaRecord = ( LdifContentRecord ) le.next();
-                    schema = new Schema();
-                    schema.loadFromRecord( schemaRecord );
+                    Entry schemaEntry = enumeration.next().getEntry();
+                    enumeration.close();
+                    schema = BrowserCorePlugin.getDefault().getSchemaRegistry().getSchema( schemaEntry );
                     browserConnection.setSchema( schema );
                 }
                 else
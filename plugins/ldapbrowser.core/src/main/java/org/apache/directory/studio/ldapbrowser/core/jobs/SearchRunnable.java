@@ -23,10 +23,15 @@ package org.apache.directory.studio.ldapbrowser.core.jobs;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.naming.directory.SearchControls;
@@ -57,10 +62,15 @@ import org.apache.directory.studio.ldapbrowser.core.events.SearchUpdateEvent;
 import org.apache.directory.studio.ldapbrowser.core.model.AttributeHierarchy;
 import org.apache.directory.studio.ldapbrowser.core.model.IAttribute;
 import org.apache.directory.studio.ldapbrowser.core.model.IBrowserConnection;
+import org.apache.directory.studio.ldapbrowser.core.model.IContinuation;
 import org.apache.directory.studio.ldapbrowser.core.model.IEntry;
+import org.apache.directory.studio.ldapbrowser.core.model.IRootDSE;
+import org.apache.directory.studio.ldapbrowser.core.model.IQuickSearch;
 import org.apache.directory.studio.ldapbrowser.core.model.ISearch;
 import org.apache.directory.studio.ldapbrowser.core.model.ISearchResult;
 import org.apache.directory.studio.ldapbrowser.core.model.SearchParameter;
+import org.apache.directory.studio.ldapbrowser.core.model.filter.LdapFilterEvaluator;
+import org.apache.directory.studio.ldapbrowser.core.model.filter.parser.LdapFilterParser;
 import org.apache.directory.studio.ldapbrowser.core.model.impl.BaseDNEntry;
 import org.apache.directory.studio.ldapbrowser.core.model.impl.ContinuedSearchResultEntry;
 import org.apache.directory.studio.ldapbrowser.core.model.impl.Entry;
@@ -83,6 +93,9 @@ public class SearchRunnable implements StudioConnectionBulkRunnableWithProgress
     /** The searches to perform. */
     protected ISearch[] searchesToPerform;
 
+    /** The number of search results whose missing ancestors are resolved in one batch */
+    private static final int RESULT_PAGE_SIZE = 500;
+
 
     /**
      * Creates a new instance of SearchRunnable.
@@ -174,20 +187,41 @@ public class SearchRunnable implements StudioConnectionBulkRunnableWithProgress
 
             if ( search.getBrowserConnection() != null )
             {
-                // reset search results
-                search.setSearchResults( new ISearchResult[0] );
+                // reset search results, the cached results of a quick search
+                // are kept until they are replaced by the directory's results
+                boolean keepResults = search == searchToPerform && search instanceof IQuickSearch;
+                ISearchResult[] cachedResults = keepResults ? search.getSearchResults() : null;
+                if ( !keepResults )
+                {
+                    search.setSearchResults( new ISearchResult[0] );
+                    searchToPerform.setSearchResults( new ISearchResult[0] );
+                }
                 search.getResponseControls().clear();
                 search.setNextPageSearchRunnable( null );
                 search.setTopPageSearchRunnable( null );
-                searchToPerform.setSearchResults( new ISearchResult[0] );
                 searchToPerform.setNextPageSearchRunnable( null );
                 searchToPerform.setTopPageSearchRunnable( null );
                 searchToPerform.getResponseControls().clear();
 
+                if ( searchToPerform.getSearchParameter().isCacheOnly() )
+                {
+                    // answer the search from the cached entries, no paging
+                    searchCacheAndUpdateModel( searchToPerform, monitor );
+                    search.setSearchResults( searchToPerform.getSearchResults() );
+                    continue;
+                }
+
                 do
                 {
                     // perform search
                     searchAndUpdateModel( searchToPerform.getBrowserConnection(), searchToPerform, monitor );
+                    if ( cachedResults != null && searchToPerform.getSearchResults() == cachedResults )
+                    {
+                        // the search failed or was canceled before the directory's results were set,
+                        // don't leave the cached results that may be stale
+                        searchToPerform.setSearchResults( new ISearchResult[0] );
+                    }
+                    cachedResults = null;
 
                     if ( search != searchToPerform )
                     {
@@ -285,6 +319,82 @@ public class SearchRunnable implements StudioConnectionBulkRunnableWithProgress
     }
 
 
+    /**
+     * Searches the entries in the cache of the browser connection, no request
+     * is sent to the directory. The filter is evaluated against the cached
+     * attributes, only entries reachable from the search base over already
+     * initialized children are found.
+     * 
+     * @param search the search
+     * @param monitor the progress monitor
+     */
+    public static void searchCacheAndUpdateModel( ISearch search, StudioProgressMonitor monitor )
+    {
+        IBrowserConnection browserConnection = search.getBrowserConnection();
+        LdapFilterParser parser = new LdapFilterParser();
+        parser.parse( search.getFilter() );
+        LdapFilterEvaluator evaluator;
+        try
+        {
+            evaluator = new LdapFilterEvaluator( parser.getModel(), browserConnection.getSchema() );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            search.setSearchResults( new ISearchResult[0] );
+            monitor.reportError( e );
+            return;
+        }
+
+        // collect the cached entries within the scope
+        SearchScope scope = search.getScope();
+        List<IEntry> entries = new ArrayList<IEntry>();
+        IEntry base = browserConnection.getEntryFromCache( search.getSearchBase() );
+        LinkedList<IEntry> queue = new LinkedList<IEntry>();
+        if ( base != null )
+        {
+            queue.add( base );
+        }
+        while ( !queue.isEmpty() && !monitor.isCanceled() )
+        {
+            IEntry entry = queue.removeFirst();
+            boolean isBase = entry == base;
+            boolean inScope = scope == SearchScope.OBJECT ? isBase : !isBase || scope == SearchScope.SUBTREE;
+            if ( inScope && ( scope == SearchScope.OBJECT
+                || !( entry instanceof IRootDSE ) && !( entry instanceof IContinuation ) ) )
+            {
+                entries.add( entry );
+            }
+            if ( scope == SearchScope.SUBTREE || ( isBase && scope == SearchScope.ONELEVEL ) )
+            {
+                IEntry[] children = entry.getChildren();
+                if ( children != null )
+                {
+                    queue.addAll( Arrays.asList( children ) );
+                }
+            }
+        }
+
+        // evaluate the filter
+        List<IEntry> matches = evaluator.filter( entries );
+        if ( search.getCountLimit() > 0 && matches.size() > search.getCountLimit() )
+        {
+            matches = matches.subList( 0, search.getCountLimit() );
+            search.setCountLimitExceeded( true );
+        }
+
+        ISearchResult[] searchResults = new ISearchResult[matches.size()];
+        for ( int i = 0; i < searchResults.length; i++ )
+        {
+            searchResults[i] = new org.apache.directory.studio.ldapbrowser.core.model.impl.SearchResult(
+                matches.get( i ), search );
+        }
+        search.setSearchResults( searchResults );
+        monitor.reportProgress( searchResults.length == 1 ? BrowserCoreMessages.model__retrieved_1_entry
+            : BrowserCoreMessages.bind( BrowserCoreMessages.model__retrieved_n_entries, new String[]
+                { Integer.toString( searchResults.length ) } ) );
+    }
+
+
     /**
      * Searches the directory and updates the browser model.
      * 
@@ -300,85 +410,173 @@ public class SearchRunnable implements StudioConnectionBulkRunnableWithProgress
             return;
         }
 
+        updateModel( sendSearch( browserConnection, search, monitor ), monitor );
+    }
+
+
+    /**
+     * Searches the directory and updates the browser model. All search
+     * requests are sent before the first result is read, so the directory
+     * processes them concurrently and the round trips overlap. The results
+     * are read one search after another.
+     * 
+     * @param searches the searches
+     * @param monitor the progress monitor
+     */
+    public static void searchAndUpdateModel( ISearch[] searches, StudioProgressMonitor monitor )
+    {
+        List<PendingSearch> pendingSearches = new ArrayList<PendingSearch>( searches.length );
+        for ( ISearch search : searches )
+        {
+            IBrowserConnection browserConnection = search.getBrowserConnection();
+            if ( browserConnection != null && browserConnection.getConnection() != null )
+            {
+                pendingSearches.add( sendSearch( browserConnection, search, monitor ) );
+            }
+        }
+
+        for ( PendingSearch pendingSearch : pendingSearches )
+        {
+            updateModel( pendingSearch, monitor );
+        }
+    }
+
+
+    /**
+     * Sends the search request, the results are read by
+     * {@link #updateModel(PendingSearch, StudioProgressMonitor)}.
+     * 
+     * @param browserConnection the browser connection
+     * @param search the search
+     * @param monitor the progress monitor
+     * 
+     * @return the pending search
+     */
+    private static PendingSearch sendSearch( IBrowserConnection browserConnection, ISearch search,
+        StudioProgressMonitor monitor )
+    {
+        PendingSearch pendingSearch = new PendingSearch( browserConnection, search );
         try
         {
             if ( !monitor.isCanceled() )
             {
                 // add returning attributes for children and alias detection
-                SearchParameter searchParameter = getSearchParameter( search );
+                pendingSearch.searchParameter = getSearchParameter( search );
+                pendingSearch.enumeration = search( browserConnection, pendingSearch.searchParameter, monitor );
+            }
+        }
+        catch ( Exception e )
+        {
+            pendingSearch.exception = e;
+        }
+        return pendingSearch;
+    }
+
+
+    /**
+     * Reads the results of the pending search and updates the browser model.
+     * 
+     * @param pendingSearch the pending search
+     * @param monitor the progress monitor
+     */
+    private static void updateModel( PendingSearch pendingSearch, StudioProgressMonitor monitor )
+    {
+        IBrowserConnection browserConnection = pendingSearch.browserConnection;
+        ISearch search = pendingSearch.search;
+        try
+        {
+            if ( pendingSearch.searchParameter == null && pendingSearch.exception != null )
+            {
+                throw pendingSearch.exception;
+            }
+
+            if ( !monitor.isCanceled() && pendingSearch.searchParameter != null )
+            {
+                SearchParameter searchParameter = pendingSearch.searchParameter;
                 ArrayList<ISearchResult> searchResultList = new ArrayList<ISearchResult>();
                 ArrayList<SearchContinuation> searchContinuationList = new ArrayList<SearchContinuation>();
+                Map<IEntry, List<IEntry>> createdChildren = new LinkedHashMap<IEntry, List<IEntry>>();
+                Map<IBrowserConnection, Map<Dn, Boolean>> knownEntries =
+                    new HashMap<IBrowserConnection, Map<Dn, Boolean>>();
 
-                StudioSearchResultEnumeration enumeration = null;
+                StudioSearchResultEnumeration enumeration = pendingSearch.enumeration;
                 // search
                 try
                 {
-                    enumeration = search( browserConnection, searchParameter, monitor );
+                    if ( pendingSearch.exception != null )
+                    {
+                        throw pendingSearch.exception;
+                    }
 
-                    // iterate through the search result
+                    // iterate through the search result, page by page
                     while ( !monitor.isCanceled() && enumeration != null && enumeration.hasMore() )
                     {
-                        StudioSearchResult sr = enumeration.next();
-                        boolean isContinuedSearchResult = sr.isContinuedSearchResult();
-                        LdapUrl searchContinuationUrl = sr.getSearchContinuationUrl();
+                        List<StudioSearchResult> page = new ArrayList<StudioSearchResult>();
+                        while ( page.size() < RESULT_PAGE_SIZE && !monitor.isCanceled() && enumeration.hasMore() )
+                        {
+                            page.add( enumeration.next() );
+                        }
+                        resolveMissingAncestors( browserConnection, page, knownEntries, monitor );
 
-                        if ( searchContinuationUrl == null )
+                        for ( StudioSearchResult sr : page )
                         {
-                            Dn dn = sr.getDn();
-                            IEntry entry = null;
+                            boolean isContinuedSearchResult = sr.isContinuedSearchResult();
+                            LdapUrl searchContinuationUrl = sr.getSearchContinuationUrl();
 
-                            Connection resultConnection = sr.getConnection();
-                            IBrowserConnection resultBrowserConnection = BrowserCorePlugin.getDefault()
-                                .getConnectionManager().getBrowserConnection( resultConnection );
-                            if ( resultBrowserConnection == null )
+                            if ( searchContinuationUrl == null )
                             {
-                                resultBrowserConnection = browserConnection;
-                            }
+                                Dn dn = sr.getDn();
+                                IEntry entry = null;
 
-                            // get entry from cache or create it
-                            entry = resultBrowserConnection.getEntryFromCache( dn );
-                            if ( entry == null )
-                            {
-                                entry = createAndCacheEntry( resultBrowserConnection, dn, monitor );
+                                IBrowserConnection resultBrowserConnection = getResultBrowserConnection( sr,
+                                    browserConnection );
 
-                                // If the entry is still null, we return
-                                // See https://issues.apache.org/jira/browse/DIRSTUDIO-865
+                                // get entry from cache or create it
+                                entry = resultBrowserConnection.getEntryFromCache( dn );
                                 if ( entry == null )
                                 {
-                                    return;
+                                    entry = createAndCacheEntry( resultBrowserConnection, dn,
+                                        getKnownEntries( knownEntries, resultBrowserConnection ), createdChildren );
+
+                                    // If the entry is still null, we return
+                                    // See https://issues.apache.org/jira/browse/DIRSTUDIO-865
+                                    if ( entry == null )
+                                    {
+                                        return;
+                                    }
                                 }
-                            }
 
-                            // initialize special flags
-                            initFlags( entry, sr, searchParameter );
+                                // initialize special flags
+                                initFlags( entry, sr, searchParameter );
 
-                            // fill the attributes
-                            fillAttributes( entry, sr, search.getSearchParameter() );
+                                // fill the attributes
+                                fillAttributes( entry, sr, search.getSearchParameter() );
 
-                            if ( isContinuedSearchResult )
+                                if ( isContinuedSearchResult )
+                                {
+                                    // the result is from a continued search
+                                    // we create a special entry that displays the URL of the entry
+                                    entry = new ContinuedSearchResultEntry( resultBrowserConnection, dn );
+                                }
+
+                                searchResultList.add(
+                                    new org.apache.directory.studio.ldapbrowser.core.model.impl.SearchResult( entry,
+                                        search ) );
+                            }
+                            else
                             {
-                                // the result is from a continued search
-                                // we create a special entry that displays the URL of the entry
-                                entry = new ContinuedSearchResultEntry( resultBrowserConnection, dn );
+                                //entry = new ContinuedSearchResultEntry( resultBrowserConnection, dn );
+                                SearchContinuation searchContinuation = new SearchContinuation( search,
+                                    searchContinuationUrl );
+                                searchContinuationList.add( searchContinuation );
                             }
 
-                            searchResultList
-                                .add( new org.apache.directory.studio.ldapbrowser.core.model.impl.SearchResult( entry,
-                                    search ) );
-                        }
-                        else
-                        {
-                            //entry = new ContinuedSearchResultEntry( resultBrowserConnection, dn );
-                            SearchContinuation searchContinuation = new SearchContinuation( search,
-                                searchContinuationUrl );
-                            searchContinuationList.add( searchContinuation );
-                        }
-
-                        monitor
-                            .reportProgress( searchResultList.size() == 1 ? BrowserCoreMessages.model__retrieved_1_entry
+                            monitor.reportProgress( searchResultList.size() == 1
+                                ? BrowserCoreMessages.model__retrieved_1_entry
                                 : BrowserCoreMessages.bind( BrowserCoreMessages.model__retrieved_n_entries,
                                     new String[]
                                     { Integer.toString( searchResultList.size() ) } ) );
+                        }
                     }
                 }
                 catch ( Exception e )
@@ -393,6 +591,14 @@ public class SearchRunnable implements StudioConnectionBulkRunnableWithProgress
                         monitor.reportError( e );
                     }
                 }
+                finally
+                {
+                    // add the created entries to their parents, one event per parent
+                    for ( Map.Entry<IEntry, List<IEntry>> children : createdChildren.entrySet() )
+                    {
+                        children.getKey().updateChildren( children.getValue(), Collections.<IEntry> emptyList() );
+                    }
+                }
 
                 // check for response controls
                 try
@@ -426,6 +632,11 @@ public class SearchRunnable implements StudioConnectionBulkRunnableWithProgress
                 search.setSearchContinuations( ( SearchContinuation[] ) searchContinuationList
                     .toArray( new SearchContinuation[searchContinuationList.size()] ) );
             }
+            else if ( pendingSearch.enumeration != null )
+            {
+                // canceled, abandon the outstanding search
+                pendingSearch.enumeration.close();
+            }
         }
         catch ( Exception e )
         {
@@ -581,19 +792,182 @@ public class SearchRunnable implements StudioConnectionBulkRunnableWithProgress
     }
 
 
+    /**
+     * Resolves the uncached ancestors of the given search results that may be
+     * base DNs, i.e. whose parent isn't cached either. Instead of one search
+     * per ancestor and search result, the existence checks of all distinct
+     * ancestors of the page are sent at once and their responses are read
+     * afterwards. The outcome is remembered in the known entries, so each
+     * ancestor is only checked once per search.
+     * 
+     * @param browserConnection the browser connection of the search
+     * @param page the search results
+     * @param knownEntries the known existence of entries, per browser connection
+     * @param monitor the progress monitor
+     */
+    private static void resolveMissingAncestors( IBrowserConnection browserConnection, List<StudioSearchResult> page,
+        Map<IBrowserConnection, Map<Dn, Boolean>> knownEntries, StudioProgressMonitor monitor )
+    {
+        // returned entries exist for sure
+        for ( StudioSearchResult sr : page )
+        {
+            if ( sr.getSearchContinuationUrl() == null )
+            {
+                getKnownEntries( knownEntries, getResultBrowserConnection( sr, browserConnection ) ).put( sr.getDn(),
+                    Boolean.TRUE );
+            }
+        }
+
+        // collect the ancestors to check
+        Map<IBrowserConnection, Set<Dn>> candidates = new LinkedHashMap<IBrowserConnection, Set<Dn>>();
+        for ( StudioSearchResult sr : page )
+        {
+            if ( sr.getSearchContinuationUrl() != null )
+            {
+                continue;
+            }
+
+            IBrowserConnection resultBrowserConnection = getResultBrowserConnection( sr, browserConnection );
+            Map<Dn, Boolean> known = getKnownEntries( knownEntries, resultBrowserConnection );
+            Dn dn = sr.getDn();
+            while ( dn != null && resultBrowserConnection.getEntryFromCache( dn ) == null )
+            {
+                Dn parentDn = dn.getParent();
+                if ( parentDn != null && !known.containsKey( dn )
+                    && ( parentDn.isEmpty() || resultBrowserConnection.getEntryFromCache( parentDn ) == null ) )
+                {
+                    Set<Dn> dns = candidates.get( resultBrowserConnection );
+                    if ( dns == null )
+                    {
+                        dns = new LinkedHashSet<Dn>();
+                        candidates.put( resultBrowserConnection, dns );
+                    }
+                    dns.add( dn );
+                }
+                dn = parentDn;
+            }
+        }
+        if ( candidates.isEmpty() )
+        {
+            return;
+        }
+
+        // send all existence checks before reading the first response
+        StudioProgressMonitor dummyMonitor = new StudioProgressMonitor( monitor );
+        Map<IBrowserConnection, Map<Dn, StudioSearchResultEnumeration>> checks =
+            new LinkedHashMap<IBrowserConnection, Map<Dn, StudioSearchResultEnumeration>>();
+        for ( Map.Entry<IBrowserConnection, Set<Dn>> entry : candidates.entrySet() )
+        {
+            IBrowserConnection resultBrowserConnection = entry.getKey();
+            Map<Dn, StudioSearchResultEnumeration> enumerations =
+                new LinkedHashMap<Dn, StudioSearchResultEnumeration>();
+            for ( Dn dn : entry.getValue() )
+            {
+                // check if the entry really exists in LDAP
+                // this is to avoid that a node "dc=com" is created for "dc=example,dc=com" context entry
+                SearchParameter searchParameter = new SearchParameter();
+                searchParameter.setSearchBase( dn );
+                searchParameter.setFilter( null );
+                searchParameter.setReturningAttributes( ISearch.NO_ATTRIBUTES );
+                searchParameter.setScope( SearchScope.OBJECT );
+                searchParameter.setCountLimit( 1 );
+                searchParameter.setTimeLimit( 0 );
+                searchParameter.setAliasesDereferencingMethod( resultBrowserConnection
+                    .getAliasesDereferencingMethod() );
+                searchParameter.setReferralsHandlingMethod( resultBrowserConnection.getReferralsHandlingMethod() );
+                searchParameter.setInitHasChildrenFlag( true );
+                enumerations.put( dn, search( resultBrowserConnection, searchParameter, dummyMonitor ) );
+            }
+            checks.put( resultBrowserConnection, enumerations );
+        }
+
+        // read the responses
+        for ( Map.Entry<IBrowserConnection, Map<Dn, StudioSearchResultEnumeration>> entry : checks.entrySet() )
+        {
+            Map<Dn, Boolean> known = getKnownEntries( knownEntries, entry.getKey() );
+            for ( Map.Entry<Dn, StudioSearchResultEnumeration> check : entry.getValue().entrySet() )
+            {
+                boolean exists = false;
+                StudioSearchResultEnumeration enumeration = check.getValue();
+                try
+                {
+                    if ( enumeration != null && enumeration.hasMore() )
+                    {
+                        exists = true;
+                        enumeration.close();
+                    }
+                }
+                catch ( LdapException e )
+                {
+                }
+                known.put( check.getKey(), Boolean.valueOf( exists ) );
+            }
+        }
+    }
+
+
+    /**
+     * Gets the known existence of entries of the given browser connection.
+     * 
+     * @param knownEntries the known existence of entries, per browser connection
+     * @param browserConnection the browser connection
+     * 
+     * @return the known existence of entries by Dn, never null
+     */
+    private static Map<Dn, Boolean> getKnownEntries( Map<IBrowserConnection, Map<Dn, Boolean>> knownEntries,
+        IBrowserConnection browserConnection )
+    {
+        Map<Dn, Boolean> known = knownEntries.get( browserConnection );
+        if ( known == null )
+        {
+            known = new HashMap<Dn, Boolean>();
+            knownEntries.put( browserConnection, known );
+        }
+        return known;
+    }
+
+
+    /**
+     * Gets the browser connection the search result belongs to, it differs
+     * from the browser connection of the search if a referral was followed.
+     * 
+     * @param sr the search result
+     * @param browserConnection the browser connection of the search
+     * 
+     * @return the browser connection of the search result
+     */
+    private static IBrowserConnection getResultBrowserConnection( StudioSearchResult sr,
+        IBrowserConnection browserConnection )
+    {
+        Connection resultConnection = sr.getConnection();
+        IBrowserConnection resultBrowserConnection = BrowserCorePlugin.getDefault().getConnectionManager()
+            .getBrowserConnection( resultConnection );
+        if ( resultBrowserConnection == null )
+        {
+            resultBrowserConnection = browserConnection;
+        }
+        return resultBrowserConnection;
+    }
+
+
     /**
      * Creates the entry and puts it into the BrowserConnection's entry cache.
+     * The uncached ancestors are created first, in depth order. Ancestors
+     * whose parent isn't cached are base DNs, they are only created if they
+     * are known to exist, see
+     * {@link #resolveMissingAncestors(IBrowserConnection, List, Map, StudioProgressMonitor)}.
      * 
      * @param browserConnection the browser connection
      * @param dn the Dn of the entry
-     * @param monitor 
+     * @param knownEntries the known existence of entries by Dn
+     * @param createdChildren the map to collect the created entries per parent, they are
+     *        added to their parents in one step by the caller
      * 
      * @return the created entry
      */
     private static IEntry createAndCacheEntry( IBrowserConnection browserConnection, Dn dn,
-        StudioProgressMonitor monitor )
+        Map<Dn, Boolean> knownEntries, Map<IEntry, List<IEntry>> createdChildren )
     {
-        StudioProgressMonitor dummyMonitor = new StudioProgressMonitor( monitor );
         IEntry entry = null;
 
         // build tree to parent
@@ -619,42 +993,28 @@ public class SearchRunnable implements StudioConnectionBulkRunnableWithProgress
                 IEntry parentEntry = browserConnection.getEntryFromCache( parentDn );
                 entry = new Entry( parentEntry, aDn.getRdn() );
                 entry.setDirectoryEntry( true );
-                parentEntry.addChild( entry );
+                List<IEntry> children = createdChildren.get( parentEntry );
+                if ( children == null )
+                {
+                    children = new ArrayList<IEntry>();
+                    createdChildren.put( parentEntry, children );
+                }
+                children.add( entry );
                 parentEntry.setChildrenInitialized( true );
                 parentEntry.setHasMoreChildren( true );
                 parentEntry.setHasChildrenHint( true );
                 browserConnection.cacheEntry( entry );
             }
+            else if ( Boolean.TRUE.equals( knownEntries.get( aDn ) ) )
+            {
+                // we have a base Dn that exists in LDAP, create base Dn entry
+                entry = new BaseDNEntry( aDn, browserConnection );
+                browserConnection.getRootDSE().addChild( entry );
+                browserConnection.cacheEntry( entry );
+            }
             else
             {
-                // we have a base Dn, check if the entry really exists in LDAP
-                // this is to avoid that a node "dc=com" is created for "dc=example,dc=com" context entry
-                SearchParameter searchParameter = new SearchParameter();
-                searchParameter.setSearchBase( aDn );
-                searchParameter.setFilter( null );
-                searchParameter.setReturningAttributes( ISearch.NO_ATTRIBUTES );
-                searchParameter.setScope( SearchScope.OBJECT );
-                searchParameter.setCountLimit( 1 );
-                searchParameter.setTimeLimit( 0 );
-                searchParameter.setAliasesDereferencingMethod( browserConnection.getAliasesDereferencingMethod() );
-                searchParameter.setReferralsHandlingMethod( browserConnection.getReferralsHandlingMethod() );
-                searchParameter.setInitHasChildrenFlag( true );
-                dummyMonitor.reset();
-                StudioSearchResultEnumeration enumeration = search( browserConnection, searchParameter, dummyMonitor );
-                try
-                {
-                    if ( enumeration != null && enumeration.hasMore() )
-                    {
-                        // create base Dn entry
-                        entry = new BaseDNEntry( aDn, browserConnection );
-                        browserConnection.getRootDSE().addChild( entry );
-                        browserConnection.cacheEntry( entry );
-                        enumeration.close();
-                    }
-                }
-                catch ( LdapException e )
-                {
-                }
+                entry = null;
             }
         }
 
@@ -870,4 +1230,29 @@ public class SearchRunnable implements StudioConnectionBulkRunnableWithProgress
             }
         }
     }
+
+
+    /**
+     * A search whose request is sent but whose results are not read yet.
+     */
+    private static class PendingSearch
+    {
+        private IBrowserConnection browserConnection;
+
+        private ISearch search;
+
+        private SearchParameter searchParameter;
+
+        private StudioSearchResultEnumeration enumeration;
+
+        private Exception exception;
+
+
+        private PendingSearch( IBrowserConnection browserConnection, ISearch search )
+        {
+            this.browserConnection = browserConnection;
+            this.search = search;
+        }
+    }
+
 }
@@ -203,6 +203,9 @@ public interface IBrowserConnection extends Serializable, IAdaptable, Connection
     /** The key for the connection parameter "Use ManageDsaIT Control" */
     String CONNECTION_PARAMETER_MANAGE_DSA_IT = "ldapbrowser.manageDsaIT"; //$NON-NLS-1$
 
+    /** The key for the connection parameter "Live Cache Synchronization". */
+    String CONNECTION_PARAMETER_LIVE_CACHE_SYNC = "ldapbrowser.liveCacheSync"; //$NON-NLS-1$
+
     /**
      * Gets the URL of this connection.
      * 
@@ -327,6 +330,23 @@ public interface IBrowserConnection extends Serializable, IAdaptable, Connection
     void setFetchSubentries( boolean fetchSubentries );
 
 
+    /**
+     * Checks if the cache of expanded subtrees should be kept up to date
+     * using a content synchronization or persistent search.
+     * 
+     * @return true if the cache should be synchronized
+     */
+    boolean isLiveCacheSync();
+
+
+    /**
+     * Sets if the cache of expanded subtrees should be kept up to date.
+     * 
+     * @param liveCacheSync true to synchronize the cache
+     */
+    void setLiveCacheSync( boolean liveCacheSync );
+
+
     /**
      * Checks if ManageDsaIT control should be used.
      * 
@@ -60,6 +60,19 @@ public interface IEntry extends Serializable, IAdaptable, EntryPropertyPageProvi
     void deleteChild( IEntry childToDelete );
 
 
+    /**
+     * Adds and deletes the given children in one step. In contrast to
+     * {@link #addChild(IEntry)} and {@link #deleteChild(IEntry)} only
+     * one event is fired, it carries the added and deleted children.
+     *
+     * @param childrenToAdd
+     *                the children to add, may be empty
+     * @param childrenToDelete
+     *                the children to delete, may be empty
+     */
+    void updateChildren( Collection<IEntry> childrenToAdd, Collection<IEntry> childrenToDelete );
+
+
     /**
      * Adds the given attribute to this entry. The attribute's entry must be
      * this entry.
@@ -408,6 +421,42 @@ public interface IEntry extends Serializable, IAdaptable, EntryPropertyPageProvi
     void setNextPageChildrenRunnable( StudioConnectionBulkRunnableWithProgress nextPageChildrenRunnable );
 
 
+    /**
+     * Gets the latest modify or create timestamp of the children, as
+     * reported by the directory. It is used to fetch only the changed
+     * children when refreshing this entry.
+     * 
+     * @return the latest timestamp of the children, null if unknown
+     */
+    String getChildrenSyncTimestamp();
+
+
+    /**
+     * Sets the latest modify or create timestamp of the children.
+     * 
+     * @param childrenSyncTimestamp the latest timestamp of the children, null if unknown
+     */
+    void setChildrenSyncTimestamp( String childrenSyncTimestamp );
+
+
+    /**
+     * Gets the children fetched window by window using the server side
+     * sort and virtual list view controls.
+     * 
+     * @return the virtual children, null if the children are fetched at once
+     */
+    VirtualChildren getVirtualChildren();
+
+
+    /**
+     * Sets the children fetched window by window using the server side
+     * sort and virtual list view controls.
+     * 
+     * @param virtualChildren the virtual children, null if the children are fetched at once
+     */
+    void setVirtualChildren( VirtualChildren virtualChildren );
+
+
     /**
      * Indicates whether this entry has a parent entry. Each entry except
      * the root DSE and the base entries should have a parent entry.
@@ -84,6 +84,9 @@ public class SearchParameter implements Serializable
     /** Flag indicating weather the hasChildren flag of IEntry should be initialized */
     private boolean initHasChildrenFlag;
 
+    /** Flag indicating weather only the cached entries should be searched */
+    private boolean cacheOnlyFlag;
+
 
     /**
      * Creates a new instance of SearchParameter with default search parameters:
@@ -99,6 +102,7 @@ public class SearchParameter implements Serializable
      * <li>follow referrals
      * <li>no initialization of hasChildren flag
      * <li>no initialization of isAlias and isReferral flag
+     * <li>search the directory, not only the cache
      * <li>no controls
      * <li>no response controls
      * </ul>
@@ -118,6 +122,7 @@ public class SearchParameter implements Serializable
         responseControls = new ArrayList<>();
         pagedSearchScrollModeFlag = true;
         initHasChildrenFlag = false;
+        cacheOnlyFlag = false;
     }
 
 
@@ -347,6 +352,7 @@ public class SearchParameter implements Serializable
         clone.setAliasesDereferencingMethod( getAliasesDereferencingMethod() );
         clone.setReferralsHandlingMethod( getReferralsHandlingMethod() );
         clone.setInitHasChildrenFlag( isInitHasChildrenFlag() );
+        clone.setCacheOnly( isCacheOnly() );
         clone.getControls().addAll( getControls() );
         clone.getResponseControls().addAll( getResponseControls() );
         return clone;
@@ -408,4 +414,27 @@ public class SearchParameter implements Serializable
         this.pagedSearchScrollModeFlag = pagedSearchScrollModeFlag;
     }
 
+
+    /**
+     * Checks if only the cached entries should be searched, without
+     * sending a request to the directory.
+     * 
+     * @return true, if only the cached entries should be searched
+     */
+    public boolean isCacheOnly()
+    {
+        return cacheOnlyFlag;
+    }
+
+
+    /**
+     * Sets if only the cached entries should be searched.
+     * 
+     * @param cacheOnlyFlag the cache only flag
+     */
+    public void setCacheOnly( boolean cacheOnlyFlag )
+    {
+        this.cacheOnlyFlag = cacheOnlyFlag;
+    }
+
 }
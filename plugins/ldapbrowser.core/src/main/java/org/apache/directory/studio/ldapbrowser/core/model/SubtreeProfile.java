@@ -0,0 +1,731 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+
+package org.apache.directory.studio.ldapbrowser.core.model;
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.apache.directory.api.ldap.model.constants.SchemaConstants;
+import org.apache.directory.api.ldap.model.entry.Attribute;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.entry.Value;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.util.Strings;
+
+
+/**
+ * Aggregated statistics of the entries of a subtree, collected in a single
+ * pass over the entries.
+ *
+ * The memory used is bounded: object classes and attributes are counted
+ * exactly as their number is limited by the schema, the number of distinct
+ * values of an attribute is estimated by a HyperLogLog sketch, the entries
+ * are counted per child subtree of the base up to {@link #MAX_SUBTREES}
+ * subtrees and only the {@link #MAX_LARGEST_ENTRIES} largest entries are kept.
+ *
+ * The size of a value is its length in bytes, the size of an entry is the
+ * sum of the lengths of its attribute descriptions and values.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class SubtreeProfile
+{
+
+    /** The maximum number of child subtrees that are counted individually. */
+    public static final int MAX_SUBTREES = 1000;
+
+    /** The number of largest entries that are kept. */
+    public static final int MAX_LARGEST_ENTRIES = 20;
+
+    /** The number of buckets of the value size histograms. */
+    public static final int HISTOGRAM_BUCKETS = 33;
+
+    /** The base of the subtree. */
+    private Dn base;
+
+    /** The number of entries. */
+    private long entryCount;
+
+    /** The sum of the entry sizes. */
+    private long totalSize;
+
+    /** The object class counters by their lower-cased name. */
+    private Map<String, Counter> objectClasses = new HashMap<String, Counter>();
+
+    /** The attribute profiles by their lower-cased attribute description. */
+    private Map<String, AttributeProfile> attributes = new HashMap<String, AttributeProfile>();
+
+    /** The entry counters of the child subtrees by their lower-cased Rdn. */
+    private Map<String, Counter> subtrees = new HashMap<String, Counter>();
+
+    /** The number of entries in child subtrees exceeding the maximum number of subtrees. */
+    private long otherSubtreesEntryCount;
+
+    /** The largest entries, the smallest of them on top. */
+    private PriorityQueue<EntrySize> largestEntries = new PriorityQueue<EntrySize>( MAX_LARGEST_ENTRIES + 1,
+        new Comparator<EntrySize>()
+        {
+            public int compare( EntrySize o1, EntrySize o2 )
+            {
+                return o1.size < o2.size ? -1 : ( o1.size > o2.size ? 1 : 0 );
+            }
+        } );
+
+
+    /**
+     * Creates a new instance of SubtreeProfile.
+     *
+     * @param base the base of the subtree
+     */
+    public SubtreeProfile( Dn base )
+    {
+        this.base = base;
+    }
+
+
+    /**
+     * Adds an entry of the subtree to the statistics.
+     *
+     * @param entry the entry
+     */
+    public void add( Entry entry )
+    {
+        entryCount++;
+
+        long entrySize = 0;
+        for ( Attribute attribute : entry )
+        {
+            String description = attribute.getUpId();
+            String key = Strings.toLowerCase( description );
+            AttributeProfile attributeProfile = attributes.get( key );
+            if ( attributeProfile == null )
+            {
+                attributeProfile = new AttributeProfile( description );
+                attributes.put( key, attributeProfile );
+            }
+            attributeProfile.entryCount++;
+            entrySize += Strings.getBytesUtf8( description ).length;
+
+            boolean isObjectClass = SchemaConstants.OBJECT_CLASS_AT.equalsIgnoreCase( description );
+            for ( Value value : attribute )
+            {
+                byte[] bytes = value.getBytes();
+                int size = bytes == null ? 0 : bytes.length;
+                attributeProfile.add( bytes, size );
+                entrySize += size;
+
+                if ( isObjectClass )
+                {
+                    count( objectClasses, value.getString() );
+                }
+            }
+        }
+        totalSize += entrySize;
+
+        addToSubtree( entry.getDn() );
+        addToLargestEntries( entry.getDn(), entrySize );
+    }
+
+
+    private void addToSubtree( Dn dn )
+    {
+        if ( dn == null || dn.size() <= base.size() )
+        {
+            return;
+        }
+
+        Dn child = dn;
+        while ( child.size() > base.size() + 1 )
+        {
+            child = child.getParent();
+        }
+        String rdn = child.getRdn().getName();
+        if ( subtrees.size() < MAX_SUBTREES || subtrees.containsKey( Strings.toLowerCase( rdn ) ) )
+        {
+            count( subtrees, rdn );
+        }
+        else
+        {
+            otherSubtreesEntryCount++;
+        }
+    }
+
+
+    private void addToLargestEntries( Dn dn, long size )
+    {
+        if ( largestEntries.size() < MAX_LARGEST_ENTRIES || largestEntries.peek().size < size )
+        {
+            largestEntries.add( new EntrySize( dn == null ? "" : dn.getName(), size ) ); //$NON-NLS-1$
+            if ( largestEntries.size() > MAX_LARGEST_ENTRIES )
+            {
+                largestEntries.poll();
+            }
+        }
+    }
+
+
+    private static void count( Map<String, Counter> counters, String name )
+    {
+        String key = Strings.toLowerCase( name );
+        Counter counter = counters.get( key );
+        if ( counter == null )
+        {
+            counter = new Counter( name );
+            counters.put( key, counter );
+        }
+        counter.count++;
+    }
+
+
+    /**
+     * Gets the base of the subtree.
+     *
+     * @return the base of the subtree
+     */
+    public Dn getBase()
+    {
+        return base;
+    }
+
+
+    /**
+     * Gets the number of entries.
+     *
+     * @return the number of entries
+     */
+    public long getEntryCount()
+    {
+        return entryCount;
+    }
+
+
+    /**
+     * Gets the sum of the entry sizes.
+     *
+     * @return the sum of the entry sizes
+     */
+    public long getTotalSize()
+    {
+        return totalSize;
+    }
+
+
+    /**
+     * Gets the number of entries by object class.
+     *
+     * @return the object class counters, the most frequent first
+     */
+    public List<Counter> getObjectClassCounters()
+    {
+        return sortByCount( objectClasses );
+    }
+
+
+    /**
+     * Gets the number of entries by child subtree of the base,
+     * the base entry itself isn't counted.
+     *
+     * @return the subtree counters, the largest first
+     * @see #getOtherSubtreesEntryCount()
+     */
+    public List<Counter> getSubtreeCounters()
+    {
+        return sortByCount( subtrees );
+    }
+
+
+    /**
+     * Gets the number of entries in child subtrees that are not counted
+     * individually because there are more than {@link #MAX_SUBTREES}
+     * child subtrees.
+     *
+     * @return the number of entries in other child subtrees
+     */
+    public long getOtherSubtreesEntryCount()
+    {
+        return otherSubtreesEntryCount;
+    }
+
+
+    /**
+     * Gets the attribute profiles.
+     *
+     * @return the attribute profiles, the most frequent first
+     */
+    public List<AttributeProfile> getAttributeProfiles()
+    {
+        List<AttributeProfile> list = new ArrayList<AttributeProfile>( attributes.values() );
+        Collections.sort( list, new Comparator<AttributeProfile>()
+        {
+            public int compare( AttributeProfile o1, AttributeProfile o2 )
+            {
+                if ( o1.entryCount != o2.entryCount )
+                {
+                    return o1.entryCount > o2.entryCount ? -1 : 1;
+                }
+                return o1.description.compareToIgnoreCase( o2.description );
+            }
+        } );
+        return list;
+    }
+
+
+    /**
+     * Gets the largest entries.
+     *
+     * @return the largest entries, the largest first
+     */
+    public List<EntrySize> getLargestEntries()
+    {
+        List<EntrySize> list = new ArrayList<EntrySize>( largestEntries );
+        Collections.sort( list, Collections.reverseOrder( largestEntries.comparator() ) );
+        return list;
+    }
+
+
+    private static List<Counter> sortByCount( Map<String, Counter> counters )
+    {
+        List<Counter> list = new ArrayList<Counter>( counters.values() );
+        Collections.sort( list, new Comparator<Counter>()
+        {
+            public int compare( Counter o1, Counter o2 )
+            {
+                if ( o1.count != o2.count )
+                {
+                    return o1.count > o2.count ? -1 : 1;
+                }
+                return o1.name.compareToIgnoreCase( o2.name );
+            }
+        } );
+        return list;
+    }
+
+
+    /**
+     * Gets the smallest value size of a histogram bucket.
+     *
+     * @param bucket the histogram bucket
+     * @return the smallest value size of the bucket
+     */
+    public static long getBucketMinSize( int bucket )
+    {
+        return bucket == 0 ? 0 : 1L << ( bucket - 1 );
+    }
+
+
+    /**
+     * Gets the largest value size of a histogram bucket.
+     *
+     * @param bucket the histogram bucket
+     * @return the largest value size of the bucket
+     */
+    public static long getBucketMaxSize( int bucket )
+    {
+        return bucket == 0 ? 0 : ( 1L << bucket ) - 1;
+    }
+
+
+    /**
+     * Creates a CSV representation of the statistics, with one section per aggregate.
+     *
+     * @param attributeDelimiter the delimiter of the columns
+     * @param quoteCharacter the quote character
+     * @param lineSeparator the line separator
+     * @return the CSV representation
+     */
+    public String toCsv( String attributeDelimiter, String quoteCharacter, String lineSeparator )
+    {
+        CsvBuilder csv = new CsvBuilder( attributeDelimiter, quoteCharacter, lineSeparator );
+
+        csv.row( "Base", "Entries", "Total Size" ); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        csv.row( base.getName(), entryCount, totalSize );
+        csv.newLine();
+
+        csv.row( "Object Class", "Entries" ); //$NON-NLS-1$ //$NON-NLS-2$
+        for ( Counter counter : getObjectClassCounters() )
+        {
+            csv.row( counter.name, counter.count );
+        }
+        csv.newLine();
+
+        csv.row( "Subtree", "Entries" ); //$NON-NLS-1$ //$NON-NLS-2$
+        for ( Counter counter : getSubtreeCounters() )
+        {
+            csv.row( counter.name, counter.count );
+        }
+        if ( otherSubtreesEntryCount > 0 )
+        {
+            csv.row( "...", otherSubtreesEntryCount ); //$NON-NLS-1$
+        }
+        csv.newLine();
+
+        csv.row( "Attribute", "Entries", "Values", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            "Distinct Values (estimated)", "Total Size", "Maximum Size" ); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        for ( AttributeProfile attributeProfile : getAttributeProfiles() )
+        {
+            csv.row( attributeProfile.description, attributeProfile.entryCount, attributeProfile.valueCount,
+                attributeProfile.getDistinctValueCount(), attributeProfile.totalSize, attributeProfile.maxSize );
+        }
+        csv.newLine();
+
+        csv.row( "Attribute", "Minimum Value Size", //$NON-NLS-1$ //$NON-NLS-2$
+            "Maximum Value Size", "Values" ); //$NON-NLS-1$ //$NON-NLS-2$
+        for ( AttributeProfile attributeProfile : getAttributeProfiles() )
+        {
+            for ( int i = 0; i < HISTOGRAM_BUCKETS; i++ )
+            {
+                if ( attributeProfile.histogram[i] > 0 )
+                {
+                    csv.row( attributeProfile.description, getBucketMinSize( i ), getBucketMaxSize( i ),
+                        attributeProfile.histogram[i] );
+                }
+            }
+        }
+        csv.newLine();
+
+        csv.row( "Largest Entry", "Size" ); //$NON-NLS-1$ //$NON-NLS-2$
+        for ( EntrySize entrySize : getLargestEntries() )
+        {
+            csv.row( entrySize.dn, entrySize.size );
+        }
+
+        return csv.toString();
+    }
+
+    /**
+     * The number of entries with a name, e.g. an object class.
+     */
+    public static class Counter
+    {
+        /** The name. */
+        private String name;
+
+        /** The number of entries. */
+        private long count;
+
+
+        private Counter( String name )
+        {
+            this.name = name;
+        }
+
+
+        /**
+         * Gets the name.
+         *
+         * @return the name
+         */
+        public String getName()
+        {
+            return name;
+        }
+
+
+        /**
+         * Gets the number of entries.
+         *
+         * @return the number of entries
+         */
+        public long getCount()
+        {
+            return count;
+        }
+    }
+
+    /**
+     * The size of an entry.
+     */
+    public static class EntrySize
+    {
+        /** The Dn of the entry. */
+        private String dn;
+
+        /** The size of the entry. */
+        private long size;
+
+
+        private EntrySize( String dn, long size )
+        {
+            this.dn = dn;
+            this.size = size;
+        }
+
+
+        /**
+         * Gets the Dn of the entry.
+         *
+         * @return the Dn of the entry
+         */
+        public String getDn()
+        {
+            return dn;
+        }
+
+
+        /**
+         * Gets the size of the entry.
+         *
+         * @return the size of the entry
+         */
+        public long getSize()
+        {
+            return size;
+        }
+    }
+
+    /**
+     * The statistics of an attribute description.
+     */
+    public static class AttributeProfile
+    {
+        /** The number of registers of the HyperLogLog sketch is 2^PRECISION. */
+        private static final int PRECISION = 10;
+
+        /** The attribute description. */
+        private String description;
+
+        /** The number of entries containing the attribute. */
+        private long entryCount;
+
+        /** The number of values. */
+        private long valueCount;
+
+        /** The sum of the value sizes. */
+        private long totalSize;
+
+        /** The size of the largest value. */
+        private long maxSize;
+
+        /** The number of values per size bucket, bucket i holds sizes in [2^(i-1), 2^i - 1]. */
+        private long[] histogram = new long[HISTOGRAM_BUCKETS];
+
+        /** The registers of the HyperLogLog sketch of the distinct values. */
+        private byte[] registers = new byte[1 << PRECISION];
+
+
+        private AttributeProfile( String description )
+        {
+            this.description = description;
+        }
+
+
+        private void add( byte[] bytes, int size )
+        {
+            valueCount++;
+            totalSize += size;
+            maxSize = Math.max( maxSize, size );
+            histogram[32 - Integer.numberOfLeadingZeros( size )]++;
+
+            long hash = hash( bytes );
+            int index = ( int ) ( hash >>> ( 64 - PRECISION ) );
+            int rank = Math.min( Long.numberOfLeadingZeros( hash << PRECISION ), 64 - PRECISION ) + 1;
+            if ( registers[index] < rank )
+            {
+                registers[index] = ( byte ) rank;
+            }
+        }
+
+
+        /**
+         * 64 bit FNV-1a hash, finalized with the MurmurHash3 mix function
+         * to spread the bits over the whole range.
+         */
+        private static long hash( byte[] bytes )
+        {
+            long hash = 0xcbf29ce484222325L;
+            if ( bytes != null )
+            {
+                for ( byte b : bytes )
+                {
+                    hash ^= b & 0xff;
+                    hash *= 0x100000001b3L;
+                }
+            }
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb9fe1a85ec53L;
+            hash ^= hash >>> 33;
+            return hash;
+        }
+
+
+        /**
+         * Gets the attribute description.
+         *
+         * @return the attribute description
+         */
+        public String getDescription()
+        {
+            return description;
+        }
+
+
+        /**
+         * Gets the number of entries containing the attribute.
+         *
+         * @return the number of entries containing the attribute
+         */
+        public long getEntryCount()
+        {
+            return entryCount;
+        }
+
+
+        /**
+         * Gets the number of values.
+         *
+         * @return the number of values
+         */
+        public long getValueCount()
+        {
+            return valueCount;
+        }
+
+
+        /**
+         * Gets the sum of the value sizes.
+         *
+         * @return the sum of the value sizes
+         */
+        public long getTotalSize()
+        {
+            return totalSize;
+        }
+
+
+        /**
+         * Gets the size of the largest value.
+         *
+         * @return the size of the largest value
+         */
+        public long getMaxSize()
+        {
+            return maxSize;
+        }
+
+
+        /**
+         * Gets the value size histogram.
+         *
+         * @return the number of values per size bucket
+         * @see SubtreeProfile#getBucketMinSize(int)
+         * @see SubtreeProfile#getBucketMaxSize(int)
+         */
+        public long[] getHistogram()
+        {
+            return histogram.clone();
+        }
+
+
+        /**
+         * Gets the estimated number of distinct values, the standard error
+         * of the estimation is about 3%.
+         *
+         * @return the estimated number of distinct values
+         */
+        public long getDistinctValueCount()
+        {
+            int m = registers.length;
+            double sum = 0;
+            int zeros = 0;
+            for ( byte register : registers )
+            {
+                sum += 1.0 / ( 1L << register );
+                if ( register == 0 )
+                {
+                    zeros++;
+                }
+            }
+
+            double estimate = 0.7213 / ( 1 + 1.079 / m ) * m * m / sum;
+            if ( estimate <= 2.5 * m && zeros > 0 )
+            {
+                // linear counting for small cardinalities
+                estimate = m * Math.log( ( double ) m / zeros );
+            }
+            return Math.min( Math.round( estimate ), valueCount );
+        }
+    }
+
+    /**
+     * Builds the CSV representation, all fields are quoted.
+     */
+    private static class CsvBuilder
+    {
+        private String attributeDelimiter;
+
+        private String quoteCharacter;
+
+        private String lineSeparator;
+
+        private StringBuilder sb = new StringBuilder();
+
+
+        private CsvBuilder( String attributeDelimiter, String quoteCharacter, String lineSeparator )
+        {
+            this.attributeDelimiter = attributeDelimiter;
+            this.quoteCharacter = quoteCharacter;
+            this.lineSeparator = lineSeparator;
+        }
+
+
+        private void row( Object... fields )
+        {
+            for ( int i = 0; i < fields.length; i++ )
+            {
+                if ( i > 0 )
+                {
+                    sb.append( attributeDelimiter );
+                }
+                String value = String.valueOf( fields[i] );
+                if ( value.startsWith( "=" ) ) //$NON-NLS-1$
+                {
+                    // avoid interpretation as formula
+                    value = "'" + value; //$NON-NLS-1$
+                }
+                sb.append( quoteCharacter );
+                sb.append( value.replace( quoteCharacter, quoteCharacter + quoteCharacter ) );
+                sb.append( quoteCharacter );
+            }
+            newLine();
+        }
+
+
+        private void newLine()
+        {
+            sb.append( lineSeparator );
+        }
+
+
+        public String toString()
+        {
+            return sb.toString();
+        }
+    }
+
+}
@@ -0,0 +1,181 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+
+package org.apache.directory.studio.ldapbrowser.core.model;
+
+
+import java.util.List;
+
+
+/**
+ * The VirtualChildren hold the children of an entry that are fetched
+ * window by window using the server side sort and virtual list view
+ * controls. Each child is stored at the position reported by the server,
+ * positions that weren't fetched yet are null.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class VirtualChildren
+{
+
+    /** The attribute type used to sort the children */
+    private String sortAttribute;
+
+    /** The number of children fetched with one request */
+    private int windowSize;
+
+    /** The number of children as estimated by the server */
+    private int contentCount;
+
+    /** The context identifier returned by the server, may be null */
+    private byte[] contextId;
+
+    /** The children by position */
+    private IEntry[] children;
+
+
+    /**
+     * Creates a new instance of VirtualChildren.
+     *
+     * @param sortAttribute the attribute type used to sort the children
+     * @param windowSize the number of children fetched with one request
+     */
+    public VirtualChildren( String sortAttribute, int windowSize )
+    {
+        this.sortAttribute = sortAttribute;
+        this.windowSize = windowSize;
+        this.children = new IEntry[0];
+    }
+
+
+    /**
+     * Gets the attribute type used to sort the children.
+     *
+     * @return the attribute type used to sort the children
+     */
+    public String getSortAttribute()
+    {
+        return sortAttribute;
+    }
+
+
+    /**
+     * Gets the number of children fetched with one request.
+     *
+     * @return the number of children fetched with one request
+     */
+    public int getWindowSize()
+    {
+        return windowSize;
+    }
+
+
+    /**
+     * Gets the number of children as estimated by the server.
+     *
+     * @return the number of children
+     */
+    public synchronized int getContentCount()
+    {
+        return contentCount;
+    }
+
+
+    /**
+     * Gets the context identifier to pass with the next request.
+     *
+     * @return the context identifier, may be null
+     */
+    public synchronized byte[] getContextId()
+    {
+        return contextId;
+    }
+
+
+    /**
+     * Stores a window of children. If the number of children changed
+     * on the server all previously fetched windows are discarded.
+     *
+     * @param contentCount the number of children reported by the server
+     * @param contextId the context identifier reported by the server
+     * @param first the position of the first child of the window
+     * @param window the children of the window
+     */
+    public synchronized void setWindow( int contentCount, byte[] contextId, int first, List<IEntry> window )
+    {
+        if ( contentCount != this.contentCount )
+        {
+            this.contentCount = contentCount;
+            this.children = new IEntry[contentCount];
+        }
+        this.contextId = contextId;
+
+        for ( int i = 0; i < window.size() && first + i < children.length; i++ )
+        {
+            if ( first + i >= 0 )
+            {
+                children[first + i] = window.get( i );
+            }
+        }
+    }
+
+
+    /**
+     * Gets the children of the given range.
+     *
+     * @param first the position of the first child
+     * @param last the position of the last child
+     *
+     * @return the children, null if not all children of the range are fetched yet
+     */
+    public synchronized IEntry[] getChildren( int first, int last )
+    {
+        if ( first < 0 || last >= children.length || first > last )
+        {
+            return null;
+        }
+
+        IEntry[] range = new IEntry[last - first + 1];
+        for ( int i = first; i <= last; i++ )
+        {
+            if ( children[i] == null )
+            {
+                return null;
+            }
+            range[i - first] = children[i];
+        }
+        return range;
+    }
+
+
+    /**
+     * Checks if all children of the given range are fetched.
+     *
+     * @param first the position of the first child
+     * @param last the position of the last child
+     *
+     * @return true if all children of the range are fetched
+     */
+    public boolean isFetched( int first, int last )
+    {
+        return getChildren( first, last ) != null;
+    }
+
+}
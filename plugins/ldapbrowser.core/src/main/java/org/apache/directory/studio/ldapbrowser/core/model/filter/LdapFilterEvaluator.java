@@ -0,0 +1,853 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+
+package org.apache.directory.studio.ldapbrowser.core.model.filter;
+
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.directory.api.ldap.model.constants.SchemaConstants;
+import org.apache.directory.api.ldap.model.exception.LdapInvalidDnException;
+import org.apache.directory.api.ldap.model.name.Ava;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.ldap.model.name.Rdn;
+import org.apache.directory.api.ldap.model.schema.AttributeType;
+import org.apache.directory.api.ldap.model.schema.MatchingRule;
+import org.apache.directory.api.util.GeneralizedTime;
+import org.apache.directory.api.util.Strings;
+import org.apache.directory.studio.ldapbrowser.core.model.AttributeDescription;
+import org.apache.directory.studio.ldapbrowser.core.model.AttributeHierarchy;
+import org.apache.directory.studio.ldapbrowser.core.model.IAttribute;
+import org.apache.directory.studio.ldapbrowser.core.model.IEntry;
+import org.apache.directory.studio.ldapbrowser.core.model.IValue;
+import org.apache.directory.studio.ldapbrowser.core.model.filter.parser.LdapFilterToken;
+import org.apache.directory.studio.ldapbrowser.core.model.schema.Schema;
+import org.apache.directory.studio.ldapbrowser.core.model.schema.SchemaUtils;
+import org.apache.directory.studio.ldapbrowser.core.utils.Utils;
+
+
+/**
+ * The LdapFilterEvaluator evaluates a {@link LdapFilter} against entries
+ * of the browser model, without asking the directory. The filter is
+ * compiled once into a tree of matchers, the values are compared
+ * according to the matching rules of the schema.
+ * <p>
+ * Only the attributes present in the entries are considered, so the
+ * result is only accurate for entries whose attributes are initialized.
+ * Approximate filters are evaluated like equality filters, attribute
+ * types without matching rule are compared case-insensitive. Telephone
+ * numbers are compared without spaces and hyphens, generalized times
+ * by the instant they denote. Values that aren't valid for their
+ * matching rule never match.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class LdapFilterEvaluator
+{
+
+    /** The minimum number of entries that are evaluated in parallel */
+    private static final int PARALLEL_THRESHOLD = 1000;
+
+    /** The comparison kinds by lower-case matching rule name and OID */
+    private static final Map<String, Comparison> COMPARISONS = new HashMap<String, Comparison>();
+
+    static
+    {
+        register( Comparison.CASE_IGNORE, "2.5.13.0", "objectIdentifierMatch" ); //$NON-NLS-1$ //$NON-NLS-2$
+        register( Comparison.CASE_IGNORE, "2.5.13.2", "caseIgnoreMatch" ); //$NON-NLS-1$ //$NON-NLS-2$
+        register( Comparison.CASE_IGNORE, "2.5.13.3", "caseIgnoreOrderingMatch" ); //$NON-NLS-1$ //$NON-NLS-2$
+        register( Comparison.CASE_IGNORE, "2.5.13.4", "caseIgnoreSubstringsMatch" ); //$NON-NLS-1$ //$NON-NLS-2$
+        register( Comparison.CASE_IGNORE, "2.5.13.11", "caseIgnoreListMatch" ); //$NON-NLS-1$ //$NON-NLS-2$
+        register( Comparison.CASE_IGNORE, "2.5.13.13", "booleanMatch" ); //$NON-NLS-1$ //$NON-NLS-2$
+        register( Comparison.CASE_IGNORE, "1.3.6.1.4.1.1466.109.114.2", //$NON-NLS-1$
+            "caseIgnoreIA5Match" ); //$NON-NLS-1$
+        register( Comparison.CASE_IGNORE, "1.3.6.1.4.1.1466.109.114.3", //$NON-NLS-1$
+            "caseIgnoreIA5SubstringsMatch" ); //$NON-NLS-1$
+        register( Comparison.CASE_EXACT, "2.5.13.5", "caseExactMatch" ); //$NON-NLS-1$ //$NON-NLS-2$
+        register( Comparison.CASE_EXACT, "2.5.13.6", "caseExactOrderingMatch" ); //$NON-NLS-1$ //$NON-NLS-2$
+        register( Comparison.CASE_EXACT, "2.5.13.7", "caseExactSubstringsMatch" ); //$NON-NLS-1$ //$NON-NLS-2$
+        register( Comparison.CASE_EXACT, "1.3.6.1.4.1.1466.109.114.1", //$NON-NLS-1$
+            "caseExactIA5Match" ); //$NON-NLS-1$
+        register( Comparison.NUMERIC, "2.5.13.8", "numericStringMatch" ); //$NON-NLS-1$ //$NON-NLS-2$
+        register( Comparison.NUMERIC, "2.5.13.9", "numericStringOrderingMatch" ); //$NON-NLS-1$ //$NON-NLS-2$
+        register( Comparison.NUMERIC, "2.5.13.10", "numericStringSubstringsMatch" ); //$NON-NLS-1$ //$NON-NLS-2$
+        register( Comparison.NUMERIC, "2.5.13.14", "integerMatch" ); //$NON-NLS-1$ //$NON-NLS-2$
+        register( Comparison.NUMERIC, "2.5.13.15", "integerOrderingMatch" ); //$NON-NLS-1$ //$NON-NLS-2$
+        register( Comparison.DN, "2.5.13.1", "distinguishedNameMatch" ); //$NON-NLS-1$ //$NON-NLS-2$
+        register( Comparison.DN, "2.5.13.23", "uniqueMemberMatch" ); //$NON-NLS-1$ //$NON-NLS-2$
+        register( Comparison.OCTET_STRING, "2.5.13.17", "octetStringMatch" ); //$NON-NLS-1$ //$NON-NLS-2$
+        register( Comparison.OCTET_STRING, "2.5.13.18", "octetStringOrderingMatch" ); //$NON-NLS-1$ //$NON-NLS-2$
+        register( Comparison.TELEPHONE_NUMBER, "2.5.13.20", "telephoneNumberMatch" ); //$NON-NLS-1$ //$NON-NLS-2$
+        register( Comparison.TELEPHONE_NUMBER, "2.5.13.21", //$NON-NLS-1$
+            "telephoneNumberSubstringsMatch" ); //$NON-NLS-1$
+        register( Comparison.GENERALIZED_TIME, "2.5.13.27", "generalizedTimeMatch" ); //$NON-NLS-1$ //$NON-NLS-2$
+        register( Comparison.GENERALIZED_TIME, "2.5.13.28", //$NON-NLS-1$
+            "generalizedTimeOrderingMatch" ); //$NON-NLS-1$
+    }
+
+    /** The schema */
+    private Schema schema;
+
+    /** The root of the compiled matcher tree */
+    private Matcher matcher;
+
+
+    /**
+     * Creates a new instance of LdapFilterEvaluator and compiles the filter.
+     *
+     * @param filter the filter, must be valid
+     * @param schema the schema used to look up the matching rules
+     *
+     * @throws IllegalArgumentException if the filter is invalid
+     */
+    public LdapFilterEvaluator( LdapFilter filter, Schema schema )
+    {
+        if ( filter == null || !filter.isValid() )
+        {
+            throw new IllegalArgumentException( filter != null ? filter.getInvalidCause() : null );
+        }
+
+        this.schema = schema;
+        this.matcher = compile( filter );
+    }
+
+
+    /**
+     * Checks if the given entry matches the filter.
+     *
+     * @param entry the entry
+     *
+     * @return true if the entry matches the filter
+     */
+    public boolean matches( IEntry entry )
+    {
+        return matcher.matches( entry );
+    }
+
+
+    /**
+     * Gets the entries that match the filter. Large lists of entries are
+     * evaluated in parallel, the order of the entries is kept.
+     *
+     * @param entries the entries to evaluate
+     *
+     * @return the matching entries
+     */
+    public List<IEntry> filter( List<IEntry> entries )
+    {
+        IEntry[] array = entries.toArray( new IEntry[entries.size()] );
+        boolean[] matches = new boolean[array.length];
+        if ( array.length >= PARALLEL_THRESHOLD )
+        {
+            ForkJoinPool.commonPool().invoke( new EvaluateTask( array, matches, 0, array.length ) );
+        }
+        else
+        {
+            new EvaluateTask( array, matches, 0, array.length ).evaluate();
+        }
+
+        List<IEntry> result = new ArrayList<IEntry>();
+        for ( int i = 0; i < array.length; i++ )
+        {
+            if ( matches[i] )
+            {
+                result.add( array[i] );
+            }
+        }
+        return result;
+    }
+
+
+    private static void register( Comparison comparison, String oid, String name )
+    {
+        COMPARISONS.put( oid, comparison );
+        COMPARISONS.put( Strings.toLowerCase( name ), comparison );
+    }
+
+
+    /**
+     * Compiles the filter into a matcher.
+     *
+     * @param filter the filter
+     *
+     * @return the matcher
+     */
+    private Matcher compile( LdapFilter filter )
+    {
+        LdapFilterComponent component = filter.getFilterComponent();
+        if ( component instanceof LdapAndFilterComponent || component instanceof LdapOrFilterComponent )
+        {
+            LdapFilter[] filters = component.getFilters();
+            Matcher[] matchers = new Matcher[filters.length];
+            for ( int i = 0; i < filters.length; i++ )
+            {
+                matchers[i] = compile( filters[i] );
+            }
+            return new SetMatcher( matchers, component instanceof LdapAndFilterComponent );
+        }
+        else if ( component instanceof LdapNotFilterComponent )
+        {
+            return new NotMatcher( compile( component.getFilters()[0] ) );
+        }
+        else if ( component instanceof LdapFilterItemComponent )
+        {
+            LdapFilterItemComponent item = ( LdapFilterItemComponent ) component;
+            String attribute = item.getAttributeToken().getValue();
+            int type = item.getFilterToken().getType();
+            if ( type == LdapFilterToken.PRESENT )
+            {
+                return new PresenceMatcher( attribute );
+            }
+
+            String value = item.getValueToken() != null ? item.getValueToken().getValue() : ""; //$NON-NLS-1$
+            AttributeType atd = schema.getAttributeTypeDescription( attribute );
+
+            // without substring or ordering rule the values are compared like the equality rule does
+            String matchingRule = SchemaUtils.getEqualityMatchingRuleNameOrNumericOidTransitive( atd, schema );
+            switch ( type )
+            {
+                case LdapFilterToken.SUBSTRING:
+                    String substringRule = SchemaUtils.getSubstringMatchingRuleNameOrNumericOidTransitive( atd,
+                        schema );
+                    return new SubstringMatcher( attribute, getComparison( substringRule != null ? substringRule
+                        : matchingRule, schema ), value );
+                case LdapFilterToken.GREATER:
+                case LdapFilterToken.LESS:
+                    String orderingRule = SchemaUtils.getOrderingMatchingRuleNameOrNumericOidTransitive( atd,
+                        schema );
+                    return new ValueMatcher( attribute, getComparison( orderingRule != null ? orderingRule
+                        : matchingRule, schema ), unescape( value ), type == LdapFilterToken.GREATER ? 1 : -1, false );
+                default:
+                    return new ValueMatcher( attribute, getComparison( matchingRule, schema ), unescape( value ), 0,
+                        false );
+            }
+        }
+        else
+        {
+            LdapFilterExtensibleComponent extensible = ( LdapFilterExtensibleComponent ) component;
+            String attribute = extensible.getAttributeToken() != null ? extensible.getAttributeToken().getValue()
+                : null;
+            String matchingRule = extensible.getMatchingRuleToken() != null ? extensible.getMatchingRuleToken()
+                .getValue() : null;
+            if ( matchingRule == null && attribute != null )
+            {
+                matchingRule = SchemaUtils.getEqualityMatchingRuleNameOrNumericOidTransitive( schema
+                    .getAttributeTypeDescription( attribute ), schema );
+            }
+            String value = extensible.getValueToken() != null ? extensible.getValueToken().getValue()
+                : ""; //$NON-NLS-1$
+            return new ValueMatcher( attribute, getComparison( matchingRule, schema ), unescape( value ), 0,
+                extensible.getDnAttrToken() != null );
+        }
+    }
+
+
+    /**
+     * Gets the kind of comparison of the given matching rule.
+     *
+     * @param matchingRule the matching rule name or OID, may be null
+     * @param schema the schema
+     *
+     * @return the kind of comparison, case-insensitive if unknown
+     */
+    private static Comparison getComparison( String matchingRule, Schema schema )
+    {
+        if ( matchingRule == null )
+        {
+            return Comparison.CASE_IGNORE;
+        }
+
+        Comparison comparison = COMPARISONS.get( Strings.toLowerCase( matchingRule ) );
+        if ( comparison == null && schema.hasMatchingRuleDescription( matchingRule ) )
+        {
+            MatchingRule mrd = schema.getMatchingRuleDescription( matchingRule );
+            comparison = COMPARISONS.get( mrd.getOid() );
+            for ( String name : mrd.getNames() )
+            {
+                if ( comparison == null )
+                {
+                    comparison = COMPARISONS.get( Strings.toLowerCase( name ) );
+                }
+            }
+        }
+        return comparison != null ? comparison : Comparison.CASE_IGNORE;
+    }
+
+
+    /**
+     * Normalizes a value according to the equality matching rule of the
+     * attribute type. Two values are equal by that rule if their normalized
+     * values are equal.
+     *
+     * @param attribute the attribute description
+     * @param value the value
+     * @param schema the schema used to look up the matching rule
+     *
+     * @return the normalized value, the value itself if it is invalid for the matching rule
+     */
+    public static Object normalizeValue( String attribute, String value, Schema schema )
+    {
+        String matchingRule = SchemaUtils.getEqualityMatchingRuleNameOrNumericOidTransitive( schema
+            .getAttributeTypeDescription( attribute ), schema );
+        Object normalized = normalize( getComparison( matchingRule, schema ), value, schema );
+        return normalized != null ? normalized : value;
+    }
+
+
+    /**
+     * Replaces the escaped characters of an assertion value, see RFC 4515.
+     *
+     * @param value the escaped value
+     *
+     * @return the unescaped value
+     */
+    public static String unescape( String value )
+    {
+        if ( value.indexOf( '\\' ) < 0 )
+        {
+            return value;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for ( int i = 0; i < value.length(); i++ )
+        {
+            char c = value.charAt( i );
+            if ( c == '\\' && i + 2 < value.length() && isHex( value.charAt( i + 1 ) )
+                && isHex( value.charAt( i + 2 ) ) )
+            {
+                out.write( Integer.parseInt( value.substring( i + 1, i + 3 ), 16 ) );
+                i += 2;
+            }
+            else
+            {
+                byte[] bytes = Strings.getBytesUtf8( String.valueOf( c ) );
+                out.write( bytes, 0, bytes.length );
+            }
+        }
+        return Strings.utf8ToString( out.toByteArray() );
+    }
+
+
+    private static boolean isHex( char c )
+    {
+        return Character.digit( c, 16 ) >= 0;
+    }
+
+
+    /**
+     * Gets the values of the given attribute and its subtypes.
+     *
+     * @param entry the entry
+     * @param attribute the attribute description
+     *
+     * @return the values, never null
+     */
+    private static List<IValue> getValues( IEntry entry, String attribute )
+    {
+        List<IValue> values = new ArrayList<IValue>();
+        if ( entry.getAttributes() == null )
+        {
+            return values;
+        }
+
+        if ( attribute == null )
+        {
+            for ( IAttribute a : entry.getAttributes() )
+            {
+                values.addAll( Arrays.asList( a.getValues() ) );
+            }
+        }
+        else
+        {
+            AttributeHierarchy ah = entry.getAttributeWithSubtypes( attribute );
+            if ( ah != null )
+            {
+                for ( IAttribute a : ah )
+                {
+                    values.addAll( Arrays.asList( a.getValues() ) );
+                }
+            }
+        }
+        return values;
+    }
+
+
+    /**
+     * The kinds of value comparison derived from the matching rules.
+     */
+    private enum Comparison
+    {
+        CASE_IGNORE, CASE_EXACT, NUMERIC, DN, OCTET_STRING, TELEPHONE_NUMBER, GENERALIZED_TIME
+    }
+
+
+    /**
+     * A node of the compiled filter.
+     */
+    private interface Matcher
+    {
+        boolean matches( IEntry entry );
+    }
+
+
+    /**
+     * Matches an AND or OR filter.
+     */
+    private static class SetMatcher implements Matcher
+    {
+        private Matcher[] matchers;
+
+        private boolean and;
+
+
+        private SetMatcher( Matcher[] matchers, boolean and )
+        {
+            this.matchers = matchers;
+            this.and = and;
+        }
+
+
+        public boolean matches( IEntry entry )
+        {
+            for ( Matcher matcher : matchers )
+            {
+                if ( matcher.matches( entry ) != and )
+                {
+                    return !and;
+                }
+            }
+            return and;
+        }
+    }
+
+
+    /**
+     * Matches a NOT filter.
+     */
+    private static class NotMatcher implements Matcher
+    {
+        private Matcher matcher;
+
+
+        private NotMatcher( Matcher matcher )
+        {
+            this.matcher = matcher;
+        }
+
+
+        public boolean matches( IEntry entry )
+        {
+            return !matcher.matches( entry );
+        }
+    }
+
+
+    /**
+     * Matches a presence filter.
+     */
+    private static class PresenceMatcher implements Matcher
+    {
+        private String attribute;
+
+
+        private PresenceMatcher( String attribute )
+        {
+            this.attribute = attribute;
+        }
+
+
+        public boolean matches( IEntry entry )
+        {
+            // all entries have an object class, even if not cached
+            return SchemaConstants.OBJECT_CLASS_AT.equalsIgnoreCase( attribute )
+                || SchemaConstants.OBJECT_CLASS_AT_OID.equals( attribute ) || !getValues( entry, attribute ).isEmpty();
+        }
+    }
+
+
+    /**
+     * Matches an equality, ordering, approximate or extensible filter.
+     */
+    private class ValueMatcher implements Matcher
+    {
+        private String attribute;
+
+        private Comparison comparison;
+
+        private String assertion;
+
+        private Object normalizedAssertion;
+
+        private int ordering;
+
+        private boolean dnAttributes;
+
+
+        /**
+         * @param attribute the attribute description, null to check all attributes
+         * @param comparison the kind of comparison
+         * @param assertion the unescaped assertion value
+         * @param ordering 0 for equality, 1 for greater or equal, -1 for less or equal
+         * @param dnAttributes true to check the attributes of the Dn too
+         */
+        private ValueMatcher( String attribute, Comparison comparison, String assertion, int ordering,
+            boolean dnAttributes )
+        {
+            this.attribute = attribute;
+            this.comparison = comparison;
+            this.assertion = assertion;
+            this.normalizedAssertion = normalize( comparison, assertion, schema );
+            this.ordering = ordering;
+            this.dnAttributes = dnAttributes;
+        }
+
+
+        public boolean matches( IEntry entry )
+        {
+            for ( IValue value : getValues( entry, attribute ) )
+            {
+                if ( comparison == Comparison.OCTET_STRING && value.isBinary() )
+                {
+                    if ( matches( compare( value.getBinaryValue(), Strings.getBytesUtf8( assertion ) ) ) )
+                    {
+                        return true;
+                    }
+                }
+                else if ( value.isString() && matchesNormalized( normalize( comparison, value.getStringValue(),
+                    schema ) ) )
+                {
+                    return true;
+                }
+            }
+
+            if ( dnAttributes )
+            {
+                for ( Rdn rdn : entry.getDn() )
+                {
+                    for ( Ava ava : rdn )
+                    {
+                        if ( ( attribute == null || new AttributeDescription( ava.getType() ).isSubtypeOf(
+                            new AttributeDescription( attribute ), schema ) || Strings.toLowerCase( ava.getType() )
+                            .equals( Strings.toLowerCase( attribute ) ) )
+                            && matchesNormalized( normalize( comparison, ava.getValue().getString(), schema ) ) )
+                        {
+                            return true;
+                        }
+                    }
+                }
+            }
+
+            return false;
+        }
+
+
+        private boolean matches( int result )
+        {
+            return ordering == 0 ? result == 0 : result * ordering >= 0;
+        }
+
+
+        private boolean matchesNormalized( Object normalized )
+        {
+            // the comparison is undefined if one of the values is invalid for the matching rule
+            return normalized != null && normalizedAssertion != null && matches( compareNormalized( normalized ) );
+        }
+
+
+        private int compareNormalized( Object normalized )
+        {
+            if ( normalized instanceof BigInteger && normalizedAssertion instanceof BigInteger )
+            {
+                return ( ( BigInteger ) normalized ).compareTo( ( BigInteger ) normalizedAssertion );
+            }
+            return normalized.toString().compareTo( normalizedAssertion.toString() );
+        }
+
+
+        private int compare( byte[] value, byte[] other )
+        {
+            for ( int i = 0; i < value.length && i < other.length; i++ )
+            {
+                if ( value[i] != other[i] )
+                {
+                    return ( value[i] & 0xff ) - ( other[i] & 0xff );
+                }
+            }
+            return value.length - other.length;
+        }
+    }
+
+
+    /**
+     * Matches a substring filter.
+     */
+    private static class SubstringMatcher implements Matcher
+    {
+        private String attribute;
+
+        private Comparison comparison;
+
+        private String[] parts;
+
+
+        /**
+         * @param attribute the attribute description
+         * @param comparison the kind of comparison
+         * @param pattern the escaped pattern, the parts are separated by asterisks
+         */
+        private SubstringMatcher( String attribute, Comparison comparison, String pattern )
+        {
+            this.attribute = attribute;
+            this.comparison = comparison == Comparison.DN || comparison == Comparison.OCTET_STRING
+                || comparison == Comparison.GENERALIZED_TIME ? Comparison.CASE_EXACT : comparison;
+            this.parts = pattern.split( "\\*", -1 ); //$NON-NLS-1$
+            for ( int i = 0; i < parts.length; i++ )
+            {
+                parts[i] = normalizePart( unescape( parts[i] ) );
+            }
+        }
+
+
+        public boolean matches( IEntry entry )
+        {
+            for ( IValue value : getValues( entry, attribute ) )
+            {
+                if ( value.isString() && matches( normalizePart( value.getStringValue() ) ) )
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+
+        private boolean matches( String value )
+        {
+            String initial = parts[0];
+            String last = parts[parts.length - 1];
+            if ( !value.startsWith( initial ) || !value.endsWith( last )
+                || value.length() < initial.length() + last.length() )
+            {
+                return false;
+            }
+
+            int position = initial.length();
+            int end = value.length() - last.length();
+            for ( int i = 1; i < parts.length - 1; i++ )
+            {
+                int index = value.indexOf( parts[i], position );
+                if ( index < 0 || index + parts[i].length() > end )
+                {
+                    return false;
+                }
+                position = index + parts[i].length();
+            }
+            return true;
+        }
+
+
+        private String normalizePart( String value )
+        {
+            switch ( comparison )
+            {
+                case CASE_IGNORE:
+                    return Strings.toLowerCase( collapseWhitespace( value ) );
+                case NUMERIC:
+                    return value.replace( " ", "" ); //$NON-NLS-1$ //$NON-NLS-2$
+                case TELEPHONE_NUMBER:
+                    return normalizeTelephoneNumber( value );
+                default:
+                    return collapseWhitespace( value );
+            }
+        }
+    }
+
+
+    /**
+     * Normalizes a value according to the kind of comparison.
+     *
+     * @param comparison the kind of comparison
+     * @param value the value
+     * @param schema the schema
+     *
+     * @return the normalized value, a BigInteger for numeric values and times, a String otherwise,
+     *         null if the value is invalid for the comparison
+     */
+    private static Object normalize( Comparison comparison, String value, Schema schema )
+    {
+        switch ( comparison )
+        {
+            case NUMERIC:
+                String number = value.replace( " ", "" ); //$NON-NLS-1$ //$NON-NLS-2$
+                try
+                {
+                    return new BigInteger( number );
+                }
+                catch ( NumberFormatException e )
+                {
+                    return number;
+                }
+            case DN:
+                try
+                {
+                    return Utils.getNormalizedOidString( new Dn( value ), schema );
+                }
+                catch ( LdapInvalidDnException e )
+                {
+                    return Strings.toLowerCase( collapseWhitespace( value ) );
+                }
+            case CASE_EXACT:
+                return collapseWhitespace( value ).trim();
+            case TELEPHONE_NUMBER:
+                return normalizeTelephoneNumber( value );
+            case GENERALIZED_TIME:
+                try
+                {
+                    return BigInteger.valueOf( new GeneralizedTime( value.trim() ).getCalendar().getTimeInMillis() );
+                }
+                catch ( ParseException e )
+                {
+                    return null;
+                }
+            default:
+                return Strings.toLowerCase( collapseWhitespace( value ).trim() );
+        }
+    }
+
+
+    /**
+     * Removes the spaces and hyphens of a telephone number, see RFC 4517.
+     *
+     * @param value the value
+     *
+     * @return the lower-cased value without spaces and hyphens
+     */
+    private static String normalizeTelephoneNumber( String value )
+    {
+        StringBuilder sb = new StringBuilder( value.length() );
+        for ( int i = 0; i < value.length(); i++ )
+        {
+            char c = value.charAt( i );
+            if ( !Character.isWhitespace( c ) && c != '-' && c != '\u2010' && c != '\u2212' )
+            {
+                sb.append( c );
+            }
+        }
+        return Strings.toLowerCase( sb.toString() );
+    }
+
+
+    /**
+     * Replaces sequences of whitespace by a single space.
+     *
+     * @param value the value
+     *
+     * @return the value with collapsed whitespace
+     */
+    private static String collapseWhitespace( String value )
+    {
+        StringBuilder sb = new StringBuilder( value.length() );
+        boolean space = false;
+        for ( int i = 0; i < value.length(); i++ )
+        {
+            char c = value.charAt( i );
+            if ( Character.isWhitespace( c ) )
+            {
+                if ( !space )
+                {
+                    sb.append( ' ' );
+                }
+                space = true;
+            }
+            else
+            {
+                sb.append( c );
+                space = false;
+            }
+        }
+        return sb.toString();
+    }
+
+
+    /**
+     * Evaluates a range of entries, splits large ranges.
+     */
+    private class EvaluateTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        /** The maximum number of entries evaluated by a single task. */
+        private static final int THRESHOLD = 250;
+
+        private IEntry[] entries;
+
+        private boolean[] matches;
+
+        private int start;
+
+        private int end;
+
+
+        private EvaluateTask( IEntry[] entries, boolean[] matches, int start, int end )
+        {
+            this.entries = entries;
+            this.matches = matches;
+            this.start = start;
+            this.end = end;
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        protected void compute()
+        {
+            if ( end - start <= THRESHOLD )
+            {
+                evaluate();
+            }
+            else
+            {
+                int middle = ( start + end ) >>> 1;
+                invokeAll( new EvaluateTask( entries, matches, start, middle ),
+                    new EvaluateTask( entries, matches, middle, end ) );
+            }
+        }
+
+
+        private void evaluate()
+        {
+            for ( int i = start; i < end; i++ )
+            {
+                matches[i] = matcher.matches( entries[i] );
+            }
+        }
+    }
+
+}
@@ -50,6 +50,7 @@ import org.apache.directory.studio.ldapbrowser.core.model.IAttribute;
 import org.apache.directory.studio.ldapbrowser.core.model.IBrowserConnection;
 import org.apache.directory.studio.ldapbrowser.core.model.ICompareableEntry;
 import org.apache.directory.studio.ldapbrowser.core.model.IEntry;
+import org.apache.directory.studio.ldapbrowser.core.model.VirtualChildren;
 import org.apache.directory.studio.ldapbrowser.core.model.schema.Schema;
 import org.apache.directory.studio.ldapbrowser.core.utils.Utils;
 import org.eclipse.search.ui.ISearchPageScoreComputer;
@@ -161,6 +162,50 @@ public abstract class AbstractEntry implements IEntry, ICompareableEntry
     }
 
 
+    /**
+     * {@inheritDoc}
+     */
+    public void updateChildren( Collection<IEntry> childrenToAdd, Collection<IEntry> childrenToDelete )
+    {
+        if ( childrenToAdd.isEmpty() && childrenToDelete.isEmpty() )
+        {
+            return;
+        }
+
+        ChildrenInfo ci = getBrowserConnectionImpl().getChildrenInfo( this );
+        if ( ci == null && !childrenToAdd.isEmpty() )
+        {
+            ci = new ChildrenInfo();
+            getBrowserConnectionImpl().setChildrenInfo( this, ci );
+        }
+
+        if ( ci != null )
+        {
+            if ( ci.childrenSet != null )
+            {
+                // remove one by one, Set.removeAll() may iterate the whole set for each given child
+                for ( IEntry childToDelete : childrenToDelete )
+                {
+                    ci.childrenSet.remove( childToDelete );
+                }
+            }
+            if ( !childrenToAdd.isEmpty() )
+            {
+                if ( ci.childrenSet == null )
+                {
+                    ci.childrenSet = new LinkedHashSet<IEntry>( childrenToAdd.size() * 2 );
+                }
+                ci.childrenSet.addAll( childrenToAdd );
+            }
+            if ( ci.childrenSet == null || ci.childrenSet.isEmpty() )
+            {
+                getBrowserConnectionImpl().setChildrenInfo( this, null );
+            }
+            entryModified( new ChildrenInitializedEvent( this, childrenToAdd, childrenToDelete ) );
+        }
+    }
+
+
     /**
      * {@inheritDoc}
      */
@@ -734,6 +779,64 @@ public abstract class AbstractEntry implements IEntry, ICompareableEntry
     }
 
 
+    /**
+     * {@inheritDoc}
+     */
+    public String getChildrenSyncTimestamp()
+    {
+        ChildrenInfo ci = getBrowserConnectionImpl().getChildrenInfo( this );
+        return ci != null ? ci.childrenSyncTimestamp : null;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setChildrenSyncTimestamp( String childrenSyncTimestamp )
+    {
+        ChildrenInfo ci = getBrowserConnectionImpl().getChildrenInfo( this );
+        if ( ci == null && childrenSyncTimestamp != null )
+        {
+            ci = new ChildrenInfo();
+            getBrowserConnectionImpl().setChildrenInfo( this, ci );
+        }
+
+        if ( ci != null )
+        {
+            ci.childrenSyncTimestamp = childrenSyncTimestamp;
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public VirtualChildren getVirtualChildren()
+    {
+        ChildrenInfo ci = getBrowserConnectionImpl().getChildrenInfo( this );
+        return ci != null ? ci.virtualChildren : null;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setVirtualChildren( VirtualChildren virtualChildren )
+    {
+        ChildrenInfo ci = getBrowserConnectionImpl().getChildrenInfo( this );
+        if ( ci == null && virtualChildren != null )
+        {
+            ci = new ChildrenInfo();
+            getBrowserConnectionImpl().setChildrenInfo( this, ci );
+        }
+
+        if ( ci != null )
+        {
+            ci.virtualChildren = virtualChildren;
+        }
+    }
+
+
     /**
      * {@inheritDoc}
      */
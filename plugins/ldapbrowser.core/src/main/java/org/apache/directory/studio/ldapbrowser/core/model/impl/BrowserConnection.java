@@ -21,7 +21,12 @@
 package org.apache.directory.studio.ldapbrowser.core.model.impl;
 
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -33,6 +38,8 @@ import org.apache.directory.studio.connection.core.Connection.AliasDereferencing
 import org.apache.directory.studio.connection.core.Connection.ReferralHandlingMethod;
 import org.apache.directory.studio.connection.core.event.ConnectionEventRegistry;
 import org.apache.directory.studio.ldapbrowser.core.BookmarkManager;
+import org.apache.directory.studio.ldapbrowser.core.BrowserConnectionManager;
+import org.apache.directory.studio.ldapbrowser.core.BrowserCorePlugin;
 import org.apache.directory.studio.ldapbrowser.core.SearchManager;
 import org.apache.directory.studio.ldapbrowser.core.internal.search.LdapSearchPageScoreComputer;
 import org.apache.directory.studio.ldapbrowser.core.model.IBrowserConnection;
@@ -41,6 +48,7 @@ import org.apache.directory.studio.ldapbrowser.core.model.IQuickSearch;
 import org.apache.directory.studio.ldapbrowser.core.model.IRootDSE;
 import org.apache.directory.studio.ldapbrowser.core.model.ISearch;
 import org.apache.directory.studio.ldapbrowser.core.model.schema.Schema;
+import org.apache.directory.studio.ldapbrowser.core.model.schema.SchemaRegistry;
 import org.apache.directory.studio.ldapbrowser.core.utils.Utils;
 import org.eclipse.search.ui.ISearchPageScoreComputer;
 
@@ -64,6 +72,9 @@ public class BrowserConnection implements IBrowserConnection, Serializable
     /** The schema. */
     private Schema schema;
 
+    /** Whether the schema is retained in the schema registry. */
+    private transient boolean schemaRetained;
+
     /** The search manager. */
     private SearchManager searchManager;
 
@@ -85,6 +96,15 @@ public class BrowserConnection implements IBrowserConnection, Serializable
     /** The entry to children info map. */
     private volatile Map<IEntry, ChildrenInfo> entryToChildrenInfoMap;
 
+    /** The persistent DIT cache, lazily loaded. */
+    private transient PersistentDitCache persistentDitCache;
+
+    /** The live cache synchronizer, lazily created. */
+    private transient LiveCacheSynchronizer liveCacheSynchronizer;
+
+    /** The quick search index, lazily created. */
+    private transient QuickSearchIndex quickSearchIndex;
+
 
     /**
      * Creates a new instance of BrowserConnection.
@@ -158,6 +178,16 @@ public class BrowserConnection implements IBrowserConnection, Serializable
         entryToAttributeInfoMap.clear();
         entryToChildrenInfoMap.clear();
         entryToChildrenFilterMap.clear();
+        persistentDitCache = null;
+        if ( liveCacheSynchronizer != null )
+        {
+            liveCacheSynchronizer.stop();
+            liveCacheSynchronizer = null;
+        }
+        if ( quickSearchIndex != null )
+        {
+            quickSearchIndex.clear();
+        }
         //        searchManager.setQuickSearch( null ); TODO
 
         rootDSE = new RootDSE( this );
@@ -354,6 +384,26 @@ public class BrowserConnection implements IBrowserConnection, Serializable
     }
 
 
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isLiveCacheSync()
+    {
+        return connection.getConnectionParameter().getExtendedBoolProperty( CONNECTION_PARAMETER_LIVE_CACHE_SYNC );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setLiveCacheSync( boolean liveCacheSync )
+    {
+        connection.getConnectionParameter().setExtendedBoolProperty( CONNECTION_PARAMETER_LIVE_CACHE_SYNC,
+            liveCacheSync );
+        ConnectionEventRegistry.fireConnectionUpdated( connection, this );
+    }
+
+
     /**
      * {@inheritDoc}
      */
@@ -540,10 +590,121 @@ public class BrowserConnection implements IBrowserConnection, Serializable
      */
     public void setSchema( Schema schema )
     {
+        if ( schema != this.schema || !schemaRetained )
+        {
+            SchemaRegistry schemaRegistry = BrowserCorePlugin.getDefault().getSchemaRegistry();
+            schemaRegistry.retain( schema );
+            if ( schemaRetained )
+            {
+                schemaRegistry.release( this.schema );
+            }
+            schemaRetained = true;
+        }
         this.schema = schema;
     }
 
 
+    /**
+     * Retains the schema in the schema registry, called when the connection
+     * is opened. An identical schema that is already registered is shared.
+     */
+    public void retainSchema()
+    {
+        if ( !schemaRetained )
+        {
+            setSchema( BrowserCorePlugin.getDefault().getSchemaRegistry().getSchema( schema ) );
+        }
+    }
+
+
+    /**
+     * Releases the schema from the schema registry, called when the connection
+     * is closed. The schema is still used until the connection is opened again.
+     */
+    public void releaseSchema()
+    {
+        if ( schemaRetained )
+        {
+            BrowserCorePlugin.getDefault().getSchemaRegistry().release( schema );
+            schemaRetained = false;
+        }
+    }
+
+
+    /**
+     * Gets the persistent DIT cache. The stored children lists are
+     * loaded on first access.
+     * 
+     * @return the persistent DIT cache, never null
+     */
+    public synchronized PersistentDitCache getPersistentDitCache()
+    {
+        if ( persistentDitCache == null )
+        {
+            persistentDitCache = new PersistentDitCache( this );
+
+            File file = new File( BrowserConnectionManager.getDitCacheFileName( connection.getId() ) );
+            if ( file.exists() )
+            {
+                try
+                {
+                    persistentDitCache.load( new FileInputStream( file ) );
+                }
+                catch ( IOException e )
+                {
+                    // ignore a corrupt or outdated file, the children are fetched from the directory
+                    persistentDitCache = new PersistentDitCache( this );
+                }
+            }
+        }
+
+        return persistentDitCache;
+    }
+
+
+    /**
+     * Gets the live cache synchronizer.
+     * 
+     * @return the live cache synchronizer, never null
+     */
+    public synchronized LiveCacheSynchronizer getLiveCacheSynchronizer()
+    {
+        if ( liveCacheSynchronizer == null )
+        {
+            liveCacheSynchronizer = new LiveCacheSynchronizer( this );
+        }
+
+        return liveCacheSynchronizer;
+    }
+
+
+    /**
+     * Gets the quick search index.
+     * 
+     * @return the quick search index, never null
+     */
+    public synchronized QuickSearchIndex getQuickSearchIndex()
+    {
+        if ( quickSearchIndex == null )
+        {
+            quickSearchIndex = new QuickSearchIndex( this );
+        }
+
+        return quickSearchIndex;
+    }
+
+
+    /**
+     * Gets a snapshot of the cached entries.
+     * 
+     * @return the cached entries
+     */
+    synchronized Collection<IEntry> getCachedEntries()
+    {
+        return new ArrayList<IEntry>( dnToEntryCache.values() );
+    }
+
+
     /**
      * This implementation returns the connection name
      */
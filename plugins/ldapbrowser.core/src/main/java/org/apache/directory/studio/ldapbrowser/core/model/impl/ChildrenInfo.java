@@ -26,6 +26,7 @@ import java.util.Set;
 
 import org.apache.directory.studio.connection.core.jobs.StudioConnectionBulkRunnableWithProgress;
 import org.apache.directory.studio.ldapbrowser.core.model.IEntry;
+import org.apache.directory.studio.ldapbrowser.core.model.VirtualChildren;
 
 
 /**
@@ -48,6 +49,12 @@ public class ChildrenInfo implements Serializable
     /** The has more children flag. */
     protected volatile boolean hasMoreChildren = false;
 
+    /** The latest modify or create timestamp of the children. */
+    protected volatile String childrenSyncTimestamp = null;
+
+    /** The children fetched using the virtual list view control. */
+    protected transient volatile VirtualChildren virtualChildren = null;
+
     /** The runnable used to fetch the top page of children. */
     protected StudioConnectionBulkRunnableWithProgress topPageChildrenRunnable;
 
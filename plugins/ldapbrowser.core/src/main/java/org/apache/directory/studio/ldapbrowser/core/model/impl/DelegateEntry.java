@@ -34,6 +34,7 @@ import org.apache.directory.studio.ldapbrowser.core.model.AttributeHierarchy;
 import org.apache.directory.studio.ldapbrowser.core.model.IAttribute;
 import org.apache.directory.studio.ldapbrowser.core.model.IBrowserConnection;
 import org.apache.directory.studio.ldapbrowser.core.model.IEntry;
+import org.apache.directory.studio.ldapbrowser.core.model.VirtualChildren;
 import org.apache.directory.studio.ldapbrowser.core.model.schema.Schema;
 import org.apache.directory.studio.ldapbrowser.core.utils.Utils;
 import org.eclipse.search.ui.ISearchPageScoreComputer;
@@ -330,6 +331,18 @@ public abstract class DelegateEntry implements IEntry
     }
 
 
+    /**
+     * {@inheritDoc}
+     */
+    public void updateChildren( Collection<IEntry> childrenToAdd, Collection<IEntry> childrenToDelete )
+    {
+        if ( getDelegate() != null )
+        {
+            getDelegate().updateChildren( childrenToAdd, childrenToDelete );
+        }
+    }
+
+
     /**
      * {@inheritDoc}
      */
@@ -728,6 +741,62 @@ public abstract class DelegateEntry implements IEntry
     }
 
 
+    /**
+     * {@inheritDoc}
+     */
+    public String getChildrenSyncTimestamp()
+    {
+        if ( getDelegate() != null )
+        {
+            return getDelegate().getChildrenSyncTimestamp();
+        }
+        else
+        {
+            return null;
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setChildrenSyncTimestamp( String childrenSyncTimestamp )
+    {
+        if ( getDelegate() != null )
+        {
+            getDelegate().setChildrenSyncTimestamp( childrenSyncTimestamp );
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public VirtualChildren getVirtualChildren()
+    {
+        if ( getDelegate() != null )
+        {
+            return getDelegate().getVirtualChildren();
+        }
+        else
+        {
+            return null;
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setVirtualChildren( VirtualChildren virtualChildren )
+    {
+        if ( getDelegate() != null )
+        {
+            getDelegate().setVirtualChildren( virtualChildren );
+        }
+    }
+
+
     /**
      * {@inheritDoc}
      */
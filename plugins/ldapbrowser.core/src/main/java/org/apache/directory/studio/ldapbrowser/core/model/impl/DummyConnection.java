@@ -268,6 +268,23 @@ public class DummyConnection implements IBrowserConnection
     }
 
 
+    /** 
+     * {@inheritDoc}
+     */
+    public boolean isLiveCacheSync()
+    {
+        return false;
+    }
+
+
+    /** 
+     * {@inheritDoc}
+     */
+    public void setLiveCacheSync( boolean liveCacheSync )
+    {
+    }
+
+
     /** 
      * {@inheritDoc}
      */
@@ -43,6 +43,7 @@ import org.apache.directory.studio.ldapbrowser.core.model.IAttribute;
 import org.apache.directory.studio.ldapbrowser.core.model.IBrowserConnection;
 import org.apache.directory.studio.ldapbrowser.core.model.ICompareableEntry;
 import org.apache.directory.studio.ldapbrowser.core.model.IEntry;
+import org.apache.directory.studio.ldapbrowser.core.model.VirtualChildren;
 import org.apache.directory.studio.ldapbrowser.core.model.schema.Schema;
 import org.apache.directory.studio.ldapbrowser.core.utils.Utils;
 
@@ -141,6 +142,14 @@ public class DummyEntry implements IEntry, ICompareableEntry
     }
 
 
+    /**
+     * {@inheritDoc}
+     */
+    public void updateChildren( Collection<IEntry> childrenToAdd, Collection<IEntry> childrenToDelete )
+    {
+    }
+
+
     /**
      * {@inheritDoc}
      */
@@ -463,6 +472,40 @@ public class DummyEntry implements IEntry, ICompareableEntry
     }
 
 
+    /**
+     * This implementation always returns null.
+     */
+    public String getChildrenSyncTimestamp()
+    {
+        return null;
+    }
+
+
+    /**
+     * This implementation does nothing.
+     */
+    public void setChildrenSyncTimestamp( String childrenSyncTimestamp )
+    {
+    }
+
+
+    /**
+     * This implementation always returns null.
+     */
+    public VirtualChildren getVirtualChildren()
+    {
+        return null;
+    }
+
+
+    /**
+     * This implementation does nothing.
+     */
+    public void setVirtualChildren( VirtualChildren virtualChildren )
+    {
+    }
+
+
     /**
      * This implementation does nothing.
      */
@@ -0,0 +1,641 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+
+package org.apache.directory.studio.ldapbrowser.core.model.impl;
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.directory.api.ldap.extras.controls.syncrepl.syncRequest.SyncRequestValue;
+import org.apache.directory.api.ldap.extras.controls.syncrepl.syncState.SyncStateValue;
+import org.apache.directory.api.ldap.model.constants.SchemaConstants;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.message.Control;
+import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.message.controls.ChangeType;
+import org.apache.directory.api.ldap.model.message.controls.EntryChange;
+import org.apache.directory.api.ldap.model.message.controls.PersistentSearch;
+import org.apache.directory.api.ldap.model.message.controls.PersistentSearchImpl;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.util.Strings;
+import org.apache.directory.studio.common.core.jobs.StudioProgressMonitor;
+import org.apache.directory.studio.connection.core.Connection;
+import org.apache.directory.studio.connection.core.Connection.AliasDereferencingMethod;
+import org.apache.directory.studio.connection.core.Connection.ReferralHandlingMethod;
+import org.apache.directory.studio.connection.core.Controls;
+import org.apache.directory.studio.connection.core.io.api.StudioSearchResult;
+import org.apache.directory.studio.connection.core.io.api.StudioSearchResultEnumeration;
+import org.apache.directory.studio.connection.core.jobs.StudioConnectionRunnableWithProgress;
+import org.apache.directory.studio.ldapbrowser.core.BrowserCoreMessages;
+import org.apache.directory.studio.ldapbrowser.core.jobs.SearchRunnable;
+import org.apache.directory.studio.ldapbrowser.core.jobs.StudioBrowserJob;
+import org.apache.directory.studio.ldapbrowser.core.model.IAttribute;
+import org.apache.directory.studio.ldapbrowser.core.model.IEntry;
+import org.apache.directory.studio.ldapbrowser.core.model.IRootDSE;
+import org.apache.directory.studio.ldapbrowser.core.model.SearchParameter;
+import org.apache.directory.studio.ldapbrowser.core.utils.Utils;
+
+
+/**
+ * The LiveCacheSynchronizer keeps the cached {@link IEntry} graph of a
+ * {@link BrowserConnection} up to date while the connection is open.
+ *
+ * For each expanded entry a long-running one-level search is run in a
+ * background {@link StudioBrowserJob}. If the directory supports the
+ * RFC 4533 content synchronization a refreshAndPersist search is used,
+ * otherwise a persistent search that only returns changes. The refresh
+ * phase only returns the children of the expanded entry, which are
+ * already cached. Added, modified, deleted and renamed children are
+ * applied to the cache. A search that fails is restarted until the
+ * expanded entry is removed from the cache or the synchronizer is
+ * stopped; the content synchronization resumes with the last cookie.
+ * At most {@link #MAX_WATCHED_ENTRIES} entries are watched, the entry
+ * that was expanded first is no longer watched if the limit is reached.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class LiveCacheSynchronizer
+{
+
+    /** The OID of the RFC 4533 sync request control. */
+    public static final String SYNC_REQUEST_CONTROL_OID = SyncRequestValue.OID;
+
+    /** The OID of the RFC 4533 sync state control. */
+    public static final String SYNC_STATE_CONTROL_OID = SyncStateValue.OID;
+
+    /** The maximum number of entries watched at the same time, each one runs a search. */
+    public static final int MAX_WATCHED_ENTRIES = 32;
+
+    /** The delay before a failed search is restarted, in milliseconds. */
+    private static final long RESTART_DELAY = 5000;
+
+    /** The browser connection. */
+    private BrowserConnection browserConnection;
+
+    /** The running watchers in the order they were started, keyed by the normalized Dn of the watched entry. */
+    private Map<String, Watcher> watchers;
+
+
+    /**
+     * Creates a new instance of LiveCacheSynchronizer.
+     *
+     * @param browserConnection the browser connection
+     */
+    public LiveCacheSynchronizer( BrowserConnection browserConnection )
+    {
+        this.browserConnection = browserConnection;
+        this.watchers = new LinkedHashMap<String, Watcher>();
+    }
+
+
+    /**
+     * Starts watching the children of the given expanded entry, if it
+     * isn't watched yet.
+     *
+     * @param entry the expanded entry
+     */
+    public synchronized void watch( IEntry entry )
+    {
+        if ( entry instanceof IRootDSE || !entry.isChildrenInitialized() )
+        {
+            return;
+        }
+
+        String key = getKey( entry.getDn() );
+        if ( !watchers.containsKey( key ) )
+        {
+            if ( watchers.size() >= MAX_WATCHED_ENTRIES )
+            {
+                Iterator<Watcher> iterator = watchers.values().iterator();
+                iterator.next().stop();
+                iterator.remove();
+            }
+
+            Watcher watcher = new Watcher( entry.getDn() );
+            watchers.put( key, watcher );
+            watcher.start();
+        }
+    }
+
+
+    /**
+     * Stops all searches.
+     */
+    public synchronized void stop()
+    {
+        for ( Watcher watcher : watchers.values() )
+        {
+            watcher.stop();
+        }
+        watchers.clear();
+    }
+
+
+    /**
+     * Gets the entries that are currently watched.
+     *
+     * @return the Dn of the watched entries
+     */
+    public synchronized List<Dn> getWatchedEntries()
+    {
+        List<Dn> entries = new ArrayList<Dn>();
+        for ( Watcher watcher : watchers.values() )
+        {
+            entries.add( watcher.dn );
+        }
+        return entries;
+    }
+
+
+    /**
+     * Removes the given watcher after its search has ended.
+     *
+     * @param watcher the watcher
+     */
+    private synchronized void unwatch( Watcher watcher )
+    {
+        String key = getKey( watcher.dn );
+        if ( watchers.get( key ) == watcher )
+        {
+            watchers.remove( key );
+        }
+    }
+
+
+    private String getKey( Dn dn )
+    {
+        return Utils.getNormalizedOidString( dn, browserConnection.getSchema() );
+    }
+
+
+    /**
+     * Checks if the directory supports the given control.
+     *
+     * @param oid the OID of the control
+     *
+     * @return true if the control is listed in the Root DSE
+     */
+    private boolean isControlSupported( String oid )
+    {
+        IAttribute supportedControls = browserConnection.getRootDSE().getAttribute(
+            SchemaConstants.SUPPORTED_CONTROL_AT );
+        if ( supportedControls != null )
+        {
+            for ( String supportedControl : supportedControls.getStringValues() )
+            {
+                if ( oid.equals( supportedControl ) )
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Applies an added entry. The entry is only added if its parent
+     * is cached and the children of the parent are initialized.
+     *
+     * @param sr the search result of the added entry
+     */
+    private void entryAdded( StudioSearchResult sr )
+    {
+        Dn dn = sr.getDn();
+        if ( browserConnection.getEntryFromCache( dn ) != null )
+        {
+            return;
+        }
+
+        IEntry parent = browserConnection.getEntryFromCache( dn.getParent() );
+        if ( parent == null )
+        {
+            return;
+        }
+        if ( !parent.isChildrenInitialized() )
+        {
+            parent.setHasChildrenHint( true );
+            return;
+        }
+
+        Entry child = new Entry( parent, dn.getRdn() );
+        child.setDirectoryEntry( true );
+        org.apache.directory.api.ldap.model.entry.Attribute objectClasses = sr.getEntry().get(
+            SchemaConstants.OBJECT_CLASS_AT );
+        if ( objectClasses != null )
+        {
+            IAttribute ocAttribute = new Attribute( child, SchemaConstants.OBJECT_CLASS_AT );
+            child.addAttribute( ocAttribute );
+            for ( org.apache.directory.api.ldap.model.entry.Value value : objectClasses )
+            {
+                ocAttribute.addValue( new Value( ocAttribute, value.getString() ) );
+                if ( SchemaConstants.ALIAS_OC.equalsIgnoreCase( value.getString() ) )
+                {
+                    child.setAlias( true );
+                    child.setHasChildrenHint( false );
+                }
+                if ( SchemaConstants.REFERRAL_OC.equalsIgnoreCase( value.getString() ) )
+                {
+                    child.setReferral( true );
+                    child.setHasChildrenHint( false );
+                }
+            }
+        }
+        browserConnection.cacheEntry( child );
+
+        parent.setHasChildrenHint( true );
+        parent.updateChildren( Collections.<IEntry> singletonList( child ), Collections.<IEntry> emptyList() );
+    }
+
+
+    /**
+     * Applies a modified entry. The attributes of a cached entry are
+     * invalidated, they are fetched again when the entry is displayed.
+     *
+     * @param dn the Dn of the modified entry
+     */
+    private void entryModified( Dn dn )
+    {
+        IEntry entry = browserConnection.getEntryFromCache( dn );
+        if ( entry != null && entry.isAttributesInitialized() )
+        {
+            entry.setAttributesInitialized( false );
+        }
+    }
+
+
+    /**
+     * Applies a deleted entry. The entry and its cached subtree are
+     * removed from the cache.
+     *
+     * @param dn the Dn of the deleted entry
+     */
+    private void entryDeleted( Dn dn )
+    {
+        IEntry entry = browserConnection.getEntryFromCache( dn );
+        if ( entry == null )
+        {
+            return;
+        }
+
+        IEntry parent = entry.getParententry();
+        browserConnection.uncacheEntryRecursive( entry );
+        if ( parent != null )
+        {
+            parent.updateChildren( Collections.<IEntry> emptyList(), Collections.<IEntry> singletonList( entry ) );
+        }
+    }
+
+
+    /**
+     * Applies a renamed or moved entry.
+     *
+     * @param oldDn the old Dn
+     * @param sr the search result of the entry with the new Dn
+     */
+    private void entryRenamed( Dn oldDn, StudioSearchResult sr )
+    {
+        entryDeleted( oldDn );
+        entryAdded( sr );
+    }
+
+
+    /**
+     * Runs the long-running search of the children of one expanded entry.
+     */
+    private class Watcher implements StudioConnectionRunnableWithProgress
+    {
+
+        /** The Dn of the watched entry. */
+        private Dn dn;
+
+        /** The job that runs the search. */
+        private StudioBrowserJob job;
+
+        /** The running flag. */
+        private volatile boolean running;
+
+        /** The current search. */
+        private volatile StudioSearchResultEnumeration enumeration;
+
+        /** The last received sync cookie. */
+        private byte[] cookie;
+
+        /** The Dn of the children with known entryUUID, used to detect renames. */
+        private Map<String, Dn> uuidToDn;
+
+
+        private Watcher( Dn dn )
+        {
+            this.dn = dn;
+            this.uuidToDn = new HashMap<String, Dn>();
+        }
+
+
+        private void start()
+        {
+            running = true;
+            job = new StudioBrowserJob( this );
+            job.setSystem( true );
+            job.schedule();
+        }
+
+
+        private void stop()
+        {
+            running = false;
+            job.cancel();
+            StudioSearchResultEnumeration currentEnumeration = enumeration;
+            if ( currentEnumeration != null )
+            {
+                try
+                {
+                    currentEnumeration.close();
+                }
+                catch ( LdapException e )
+                {
+                    // the search is abandoned anyway
+                }
+            }
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        public Connection[] getConnections()
+        {
+            return new Connection[]
+                { browserConnection.getConnection() };
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        public String getName()
+        {
+            return BrowserCoreMessages.bind( BrowserCoreMessages.jobs__live_cache_sync_name, new String[]
+                { dn.getName() } );
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        public Object[] getLockedObjects()
+        {
+            // the synchronizer itself ensures that an entry is only watched once
+            return new Object[0];
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        public String getErrorMessage()
+        {
+            return BrowserCoreMessages.bind( BrowserCoreMessages.jobs__live_cache_sync_error, new String[]
+                { dn.getName() } );
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        public void run( StudioProgressMonitor monitor )
+        {
+            try
+            {
+                boolean useSync = isControlSupported( SYNC_REQUEST_CONTROL_OID );
+                if ( !useSync && !isControlSupported( PersistentSearch.OID ) )
+                {
+                    return;
+                }
+
+                while ( isWatched( monitor ) )
+                {
+                    try
+                    {
+                        if ( !search( useSync, monitor ) )
+                        {
+                            // the directory rejected the search, don't retry
+                            return;
+                        }
+                    }
+                    catch ( LdapException e )
+                    {
+                        // the search was interrupted, e.g. by a timeout, restart it below
+                    }
+
+                    long restart = System.currentTimeMillis() + RESTART_DELAY;
+                    while ( isWatched( monitor ) && System.currentTimeMillis() < restart )
+                    {
+                        try
+                        {
+                            Thread.sleep( 100 );
+                        }
+                        catch ( InterruptedException e )
+                        {
+                            return;
+                        }
+                    }
+                }
+            }
+            finally
+            {
+                unwatch( this );
+            }
+        }
+
+
+        /**
+         * Checks if the search should still run. The search ends if the
+         * watched entry was removed from the cache.
+         *
+         * @param monitor the progress monitor
+         *
+         * @return true if the search should still run
+         */
+        private boolean isWatched( StudioProgressMonitor monitor )
+        {
+            if ( !running || monitor.isCanceled()
+                || !browserConnection.getConnection().getConnectionWrapper().isConnected() )
+            {
+                return false;
+            }
+            return browserConnection.getEntryFromCache( dn ) != null;
+        }
+
+
+        /**
+         * Runs one search until it ends.
+         *
+         * @param useSync true to use the content synchronization, false to use a persistent search
+         * @param monitor the progress monitor
+         *
+         * @return false if the search couldn't be started
+         *
+         * @throws LdapException if the search is interrupted
+         */
+        private boolean search( boolean useSync, StudioProgressMonitor monitor ) throws LdapException
+        {
+            SearchParameter searchParameter = new SearchParameter();
+            searchParameter.setSearchBase( dn );
+            searchParameter.setFilter( null );
+            searchParameter.setReturningAttributes( new String[]
+                { SchemaConstants.OBJECT_CLASS_AT } );
+            searchParameter.setScope( SearchScope.ONELEVEL );
+            searchParameter.setCountLimit( 0 );
+            searchParameter.setTimeLimit( 0 );
+            searchParameter.setAliasesDereferencingMethod( AliasDereferencingMethod.NEVER );
+            searchParameter.setReferralsHandlingMethod( ReferralHandlingMethod.IGNORE );
+            if ( useSync )
+            {
+                searchParameter.getControls().add( Controls.newSyncRequestControl( cookie ) );
+            }
+            else
+            {
+                PersistentSearch persistentSearch = new PersistentSearchImpl();
+                persistentSearch.setCritical( true );
+                persistentSearch.setChangesOnly( true );
+                persistentSearch.setReturnECs( true );
+                persistentSearch.setChangeTypes( ChangeType.ADD.getValue() | ChangeType.DELETE.getValue()
+                    | ChangeType.MODIFY.getValue() | ChangeType.MODDN.getValue() );
+                searchParameter.getControls().add( persistentSearch );
+            }
+
+            StudioProgressMonitor dummyMonitor = new StudioProgressMonitor( monitor );
+            enumeration = SearchRunnable.search( browserConnection, searchParameter, dummyMonitor );
+            if ( enumeration == null )
+            {
+                return false;
+            }
+
+            try
+            {
+                while ( running && enumeration.hasMore() )
+                {
+                    StudioSearchResult sr = enumeration.next();
+                    if ( sr != null && sr.getSearchContinuationUrl() == null )
+                    {
+                        if ( useSync )
+                        {
+                            applySyncState( sr );
+                        }
+                        else
+                        {
+                            applyEntryChange( sr );
+                        }
+                    }
+                }
+            }
+            finally
+            {
+                enumeration.close();
+                enumeration = null;
+            }
+
+            return true;
+        }
+
+
+        private void applyEntryChange( StudioSearchResult sr )
+        {
+            Control control = sr.getControl( EntryChange.OID );
+            if ( !( control instanceof EntryChange ) )
+            {
+                return;
+            }
+
+            EntryChange entryChange = ( EntryChange ) control;
+            switch ( entryChange.getChangeType() )
+            {
+                case ADD:
+                    entryAdded( sr );
+                    break;
+                case MODIFY:
+                    entryModified( sr.getDn() );
+                    break;
+                case DELETE:
+                    entryDeleted( sr.getDn() );
+                    break;
+                case MODDN:
+                    if ( entryChange.getPreviousDn() != null )
+                    {
+                        entryRenamed( entryChange.getPreviousDn(), sr );
+                    }
+                    break;
+            }
+        }
+
+
+        private void applySyncState( StudioSearchResult sr )
+        {
+            Control control = sr.getControl( SYNC_STATE_CONTROL_OID );
+            if ( !( control instanceof SyncStateValue ) )
+            {
+                return;
+            }
+
+            SyncStateValue syncState = ( SyncStateValue ) control;
+            String uuid = Strings.dumpBytes( syncState.getEntryUUID() );
+            if ( syncState.getCookie() != null )
+            {
+                cookie = syncState.getCookie();
+            }
+
+            Dn childDn = sr.getDn();
+            Dn oldDn = uuidToDn.get( uuid );
+            switch ( syncState.getSyncStateType() )
+            {
+                case PRESENT:
+                case ADD:
+                    entryAdded( sr );
+                    uuidToDn.put( uuid, childDn );
+                    break;
+                case MODIFY:
+                    if ( oldDn != null && !oldDn.equals( childDn ) )
+                    {
+                        entryRenamed( oldDn, sr );
+                    }
+                    else
+                    {
+                        entryModified( childDn );
+                    }
+                    uuidToDn.put( uuid, childDn );
+                    break;
+                case DELETE:
+                    entryDeleted( oldDn != null ? oldDn : childDn );
+                    uuidToDn.remove( uuid );
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+}
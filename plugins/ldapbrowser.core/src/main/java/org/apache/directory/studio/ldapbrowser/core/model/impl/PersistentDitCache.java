@@ -0,0 +1,506 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+
+package org.apache.directory.studio.ldapbrowser.core.model.impl;
+
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.directory.api.ldap.model.constants.SchemaConstants;
+import org.apache.directory.api.ldap.model.exception.LdapInvalidDnException;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.ldap.model.name.Rdn;
+import org.apache.directory.api.util.Strings;
+import org.apache.directory.studio.ldapbrowser.core.model.IAttribute;
+import org.apache.directory.studio.ldapbrowser.core.model.IEntry;
+import org.apache.directory.studio.ldapbrowser.core.utils.Utils;
+
+
+/**
+ * The PersistentDitCache keeps the children lists of a {@link BrowserConnection}
+ * across restarts.
+ *
+ * The children lists of all completely initialized entries are written to a
+ * compact, compressed binary file when the connection is closed. Each list is
+ * stored together with a validation token, which is the contextCSN of the
+ * naming context that contains the parent entry. The contextCSN changes with
+ * every modification below the naming context, including added and deleted
+ * children. When an entry is expanded in a later session the stored children
+ * are only reused if the contextCSN read from the directory is still the same.
+ * The contextCSN is only read once per naming context and session.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class PersistentDitCache
+{
+
+    /** The magic number of the file format. */
+    private static final int MAGIC = 0x44495443;
+
+    /** The version of the file format. */
+    private static final int VERSION = 3;
+
+    private static final int HAS_CHILDREN_HINT_FLAG = 1 << 0;
+
+    private static final int IS_ALIAS_FLAG = 1 << 1;
+
+    private static final int IS_REFERRAL_FLAG = 1 << 2;
+
+    private static final int IS_SUBENTRY_FLAG = 1 << 3;
+
+    /** The browser connection. */
+    private BrowserConnection browserConnection;
+
+    /** The records read from disk, not yet restored, keyed by the normalized Dn of the parent. */
+    private Map<String, Record> records;
+
+    /** The validation tokens of the entries fetched in this session, keyed by the normalized Dn. */
+    private Map<String, String> validationTokens;
+
+    /** The contextCSNs read in this session, keyed by the normalized Dn of the naming context. */
+    private Map<String, String> contextCsns;
+
+
+    /**
+     * Creates a new instance of PersistentDitCache.
+     *
+     * @param browserConnection the browser connection
+     */
+    public PersistentDitCache( BrowserConnection browserConnection )
+    {
+        this.browserConnection = browserConnection;
+        this.records = new HashMap<String, Record>();
+        this.validationTokens = new HashMap<String, String>();
+        this.contextCsns = new HashMap<String, String>();
+    }
+
+
+    /**
+     * Checks if the contextCSN of the given naming context was already read in this session.
+     *
+     * @param namingContext the naming context
+     *
+     * @return true if the contextCSN was already read, even if it couldn't be read
+     */
+    public synchronized boolean hasContextCsn( Dn namingContext )
+    {
+        return contextCsns.containsKey( getKey( namingContext ) );
+    }
+
+
+    /**
+     * Gets the contextCSN of the given naming context read in this session.
+     *
+     * @param namingContext the naming context
+     *
+     * @return the contextCSN, null if it wasn't read or couldn't be read
+     */
+    public synchronized String getContextCsn( Dn namingContext )
+    {
+        return contextCsns.get( getKey( namingContext ) );
+    }
+
+
+    /**
+     * Sets the contextCSN of the given naming context.
+     *
+     * @param namingContext the naming context
+     * @param contextCsn the contextCSN, null if the contextCSN couldn't be read
+     */
+    public synchronized void setContextCsn( Dn namingContext, String contextCsn )
+    {
+        contextCsns.put( getKey( namingContext ), contextCsn );
+    }
+
+
+    /**
+     * Sets the validation token of the given entry. The token is fetched
+     * together with the children of the entry and is saved along with them.
+     *
+     * @param entry the entry
+     * @param validationToken the validation token, null to remove the token
+     */
+    public synchronized void setValidationToken( IEntry entry, String validationToken )
+    {
+        String key = getKey( entry.getDn() );
+        if ( validationToken == null )
+        {
+            validationTokens.remove( key );
+        }
+        else
+        {
+            validationTokens.put( key, validationToken );
+        }
+    }
+
+
+    /**
+     * Restores the children of the given parent entry from the stored record.
+     * The record is consumed, it is only used once per session.
+     *
+     * @param parent the parent entry
+     * @param validationToken the current contextCSN token of the naming context of the parent entry
+     *
+     * @return true if the children were restored, false if no matching record exists
+     */
+    public synchronized boolean restoreChildren( IEntry parent, String validationToken )
+    {
+        String key = getKey( parent.getDn() );
+        Record record = records.remove( key );
+        if ( record == null || validationToken == null || !validationToken.equals( record.validationToken ) )
+        {
+            return false;
+        }
+
+        Rdn[] rdns = new Rdn[record.rdns.length];
+        try
+        {
+            for ( int i = 0; i < rdns.length; i++ )
+            {
+                rdns[i] = new Rdn( record.rdns[i] );
+            }
+        }
+        catch ( LdapInvalidDnException e )
+        {
+            // the record is corrupt, fetch the children from the directory
+            return false;
+        }
+
+        List<IEntry> children = new ArrayList<IEntry>( rdns.length );
+        for ( int i = 0; i < rdns.length; i++ )
+        {
+            IEntry child = null;
+            try
+            {
+                child = browserConnection.getEntryFromCache( parent.getDn().add( rdns[i] ) );
+            }
+            catch ( LdapInvalidDnException e )
+            {
+                // can't happen, the Rdn is valid
+            }
+            if ( child == null )
+            {
+                child = new Entry( parent, rdns[i] );
+                child.setDirectoryEntry( true );
+                browserConnection.cacheEntry( child );
+            }
+
+            int flags = record.flags[i];
+            child.setHasChildrenHint( ( flags & HAS_CHILDREN_HINT_FLAG ) != 0 );
+            child.setAlias( ( flags & IS_ALIAS_FLAG ) != 0 );
+            child.setReferral( ( flags & IS_REFERRAL_FLAG ) != 0 );
+            child.setSubentry( ( flags & IS_SUBENTRY_FLAG ) != 0 );
+
+            if ( record.objectClasses[i].length > 0 && child.getAttribute( SchemaConstants.OBJECT_CLASS_AT ) == null )
+            {
+                IAttribute ocAttribute = new Attribute( child, SchemaConstants.OBJECT_CLASS_AT );
+                child.addAttribute( ocAttribute );
+                for ( String objectClass : record.objectClasses[i] )
+                {
+                    ocAttribute.addValue( new Value( ocAttribute, objectClass ) );
+                }
+            }
+
+            children.add( child );
+        }
+        parent.updateChildren( children, Collections.<IEntry> emptyList() );
+
+        parent.setHasChildrenHint( record.rdns.length > 0 );
+        parent.setHasMoreChildren( false );
+        parent.setChildrenInitialized( true );
+        validationTokens.put( key, validationToken );
+
+        return true;
+    }
+
+
+    /**
+     * Loads the records from the given input stream.
+     *
+     * @param stream the input stream
+     *
+     * @throws IOException if the stream can't be read or has an unknown format
+     */
+    public synchronized void load( InputStream stream ) throws IOException
+    {
+        DataInputStream in = new DataInputStream( new BufferedInputStream( new GZIPInputStream( stream ) ) );
+        try
+        {
+            if ( in.readInt() != MAGIC || in.readInt() != VERSION )
+            {
+                throw new IOException( "Unknown DIT cache format" ); //$NON-NLS-1$
+            }
+
+            int recordCount = in.readInt();
+            for ( int r = 0; r < recordCount; r++ )
+            {
+                Record record = new Record();
+                String key = readString( in );
+                record.validationToken = readString( in );
+                int childCount = in.readInt();
+                record.rdns = new String[childCount];
+                record.flags = new int[childCount];
+                record.objectClasses = new String[childCount][];
+                for ( int c = 0; c < childCount; c++ )
+                {
+                    record.rdns[c] = readString( in );
+                    record.flags[c] = in.readByte();
+                    int ocCount = in.readShort();
+                    record.objectClasses[c] = new String[ocCount];
+                    for ( int o = 0; o < ocCount; o++ )
+                    {
+                        record.objectClasses[c][o] = readString( in );
+                    }
+                }
+                records.put( key, record );
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+
+    /**
+     * Saves the children lists of all completely initialized entries
+     * to the given output stream. Records read from disk that were not
+     * used in this session are kept.
+     *
+     * @param stream the output stream
+     *
+     * @throws IOException if the stream can't be written
+     */
+    public synchronized void save( OutputStream stream ) throws IOException
+    {
+        Map<String, Record> toSave = new HashMap<String, Record>( records );
+        IEntry[] baseEntries = browserConnection.getRootDSE().getChildren();
+        if ( baseEntries != null )
+        {
+            for ( IEntry baseEntry : baseEntries )
+            {
+                collectRecords( baseEntry, toSave );
+            }
+        }
+
+        DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new GZIPOutputStream( stream ) ) );
+        try
+        {
+            out.writeInt( MAGIC );
+            out.writeInt( VERSION );
+            out.writeInt( toSave.size() );
+            for ( Map.Entry<String, Record> entry : toSave.entrySet() )
+            {
+                Record record = entry.getValue();
+                writeString( out, entry.getKey() );
+                writeString( out, record.validationToken );
+                out.writeInt( record.rdns.length );
+                for ( int c = 0; c < record.rdns.length; c++ )
+                {
+                    writeString( out, record.rdns[c] );
+                    out.writeByte( record.flags[c] );
+                    out.writeShort( record.objectClasses[c].length );
+                    for ( String objectClass : record.objectClasses[c] )
+                    {
+                        writeString( out, objectClass );
+                    }
+                }
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+
+    /**
+     * Walks the children of the given entry and creates a record for
+     * each entry whose children are completely initialized.
+     *
+     * @param entry the entry
+     * @param toSave the map to add the records to
+     */
+    private void collectRecords( IEntry entry, Map<String, Record> toSave )
+    {
+        if ( !entry.isChildrenInitialized() || entry.hasMoreChildren() || entry.getChildrenFilter() != null
+            || entry.getTopPageChildrenRunnable() != null || entry.getNextPageChildrenRunnable() != null )
+        {
+            return;
+        }
+
+        IEntry[] children = entry.getChildren();
+        String key = getKey( entry.getDn() );
+        String validationToken = validationTokens.get( key );
+        if ( children == null || validationToken == null )
+        {
+            return;
+        }
+
+        List<IEntry> entries = new ArrayList<IEntry>( children.length );
+        for ( IEntry child : children )
+        {
+            // continued search results and other special entries can't be restored
+            if ( child instanceof Entry )
+            {
+                entries.add( child );
+            }
+        }
+
+        Record record = new Record();
+        record.validationToken = validationToken;
+        record.rdns = new String[entries.size()];
+        record.flags = new int[entries.size()];
+        record.objectClasses = new String[entries.size()][];
+        for ( int i = 0; i < entries.size(); i++ )
+        {
+            IEntry child = entries.get( i );
+            record.rdns[i] = child.getRdn().getName();
+            record.flags[i] = ( child.hasChildren() ? HAS_CHILDREN_HINT_FLAG : 0 )
+                | ( child.isAlias() ? IS_ALIAS_FLAG : 0 ) | ( child.isReferral() ? IS_REFERRAL_FLAG : 0 )
+                | ( child.isSubentry() ? IS_SUBENTRY_FLAG : 0 );
+            IAttribute ocAttribute = child.getAttribute( SchemaConstants.OBJECT_CLASS_AT );
+            record.objectClasses[i] = ocAttribute != null ? ocAttribute.getStringValues() : new String[0];
+        }
+        toSave.put( key, record );
+
+        for ( IEntry child : children )
+        {
+            collectRecords( child, toSave );
+        }
+    }
+
+
+    /**
+     * Writes the given string as the length and the UTF-8 bytes, unlike
+     * {@link DataOutputStream#writeUTF(String)} it isn't limited to 64 KB.
+     *
+     * @param out the output stream
+     * @param value the string
+     *
+     * @throws IOException if the stream can't be written
+     */
+    private static void writeString( DataOutputStream out, String value ) throws IOException
+    {
+        byte[] bytes = Strings.getBytesUtf8( value );
+        out.writeInt( bytes.length );
+        out.write( bytes );
+    }
+
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutputStream, String)}.
+     *
+     * @param in the input stream
+     *
+     * @return the string
+     *
+     * @throws IOException if the stream can't be read
+     */
+    private static String readString( DataInputStream in ) throws IOException
+    {
+        int length = in.readInt();
+        if ( length < 0 )
+        {
+            throw new IOException( "Invalid DIT cache string length" ); //$NON-NLS-1$
+        }
+        byte[] bytes = new byte[length];
+        in.readFully( bytes );
+        return Strings.utf8ToString( bytes );
+    }
+
+
+    /**
+     * Gets the key of the given Dn.
+     *
+     * @param dn the Dn
+     *
+     * @return the normalized Dn
+     */
+    private String getKey( Dn dn )
+    {
+        return Utils.getNormalizedOidString( dn, browserConnection.getSchema() );
+    }
+
+
+    /**
+     * Builds the validation token from the given contextCSN values. A multi-master
+     * naming context has one contextCSN value per replica, the values are sorted
+     * so that the token doesn't depend on the order returned by the directory.
+     *
+     * @param contextCsnValues the contextCSN values
+     *
+     * @return the validation token, null if no value is provided
+     */
+    public static String buildValidationToken( String[] contextCsnValues )
+    {
+        if ( contextCsnValues == null || contextCsnValues.length == 0 )
+        {
+            return null;
+        }
+
+        String[] values = contextCsnValues.clone();
+        Arrays.sort( values );
+        StringBuilder sb = new StringBuilder();
+        for ( int i = 0; i < values.length; i++ )
+        {
+            if ( i > 0 )
+            {
+                sb.append( '|' );
+            }
+            sb.append( values[i] );
+        }
+        return sb.toString();
+    }
+
+
+    /**
+     * A stored children list.
+     */
+    private static class Record
+    {
+        /** The validation token of the parent entry. */
+        private String validationToken;
+
+        /** The Rdns of the children. */
+        private String[] rdns;
+
+        /** The flags of the children. */
+        private int[] flags;
+
+        /** The object classes of the children. */
+        private String[][] objectClasses;
+    }
+
+}
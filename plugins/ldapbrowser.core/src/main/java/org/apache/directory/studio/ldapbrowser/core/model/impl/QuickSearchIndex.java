@@ -0,0 +1,690 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+
+package org.apache.directory.studio.ldapbrowser.core.model.impl;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.directory.api.ldap.model.constants.SchemaConstants;
+import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.schema.AttributeType;
+import org.apache.directory.api.util.Strings;
+import org.apache.directory.studio.common.core.jobs.StudioProgressMonitor;
+import org.apache.directory.studio.connection.core.Connection;
+import org.apache.directory.studio.connection.core.jobs.StudioConnectionRunnableWithProgress;
+import org.apache.directory.studio.ldapbrowser.core.BrowserCoreMessages;
+import org.apache.directory.studio.ldapbrowser.core.events.BulkModificationEvent;
+import org.apache.directory.studio.ldapbrowser.core.events.ChildrenInitializedEvent;
+import org.apache.directory.studio.ldapbrowser.core.events.EntryDeletedEvent;
+import org.apache.directory.studio.ldapbrowser.core.events.EntryModificationEvent;
+import org.apache.directory.studio.ldapbrowser.core.events.EntryMovedEvent;
+import org.apache.directory.studio.ldapbrowser.core.events.EntryRenamedEvent;
+import org.apache.directory.studio.ldapbrowser.core.jobs.StudioBrowserJob;
+import org.apache.directory.studio.ldapbrowser.core.model.IAttribute;
+import org.apache.directory.studio.ldapbrowser.core.model.IContinuation;
+import org.apache.directory.studio.ldapbrowser.core.model.IEntry;
+import org.apache.directory.studio.ldapbrowser.core.model.IRootDSE;
+import org.apache.directory.studio.ldapbrowser.core.model.ISearch;
+import org.apache.directory.studio.ldapbrowser.core.model.ISearchResult;
+import org.apache.directory.studio.ldapbrowser.core.model.IValue;
+import org.apache.directory.studio.ldapbrowser.core.model.filter.LdapFilter;
+import org.apache.directory.studio.ldapbrowser.core.model.filter.LdapFilterComponent;
+import org.apache.directory.studio.ldapbrowser.core.model.filter.LdapFilterEvaluator;
+import org.apache.directory.studio.ldapbrowser.core.model.filter.LdapFilterItemComponent;
+import org.apache.directory.studio.ldapbrowser.core.model.filter.LdapAndFilterComponent;
+import org.apache.directory.studio.ldapbrowser.core.model.filter.LdapOrFilterComponent;
+import org.apache.directory.studio.ldapbrowser.core.model.filter.parser.LdapFilterParser;
+import org.apache.directory.studio.ldapbrowser.core.model.filter.parser.LdapFilterToken;
+import org.apache.directory.studio.ldapbrowser.core.model.schema.Schema;
+import org.apache.directory.studio.ldapbrowser.core.model.schema.SchemaUtils;
+
+
+/**
+ * The QuickSearchIndex is an in-memory inverted index over the cached
+ * entries of a {@link BrowserConnection}. For each attribute type it maps
+ * the normalized values to the entries holding them, values of subtypes
+ * are also indexed for their supertypes.
+ *
+ * The index is built from the cache in a background job, chunk by chunk, and
+ * then kept up to date with the entry update events. Until it is built no
+ * entries are found. It only narrows down the candidate entries,
+ * each candidate is verified with the {@link LdapFilterEvaluator}. Hence the
+ * results are the cached entries matching the filter, the directory search
+ * must still be performed to get the complete result.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class QuickSearchIndex
+{
+
+    /** The equality matching rules whose assertion values can't be looked up by their normalized value */
+    private static final Set<String> UNINDEXED_EQUALITY_RULES = new HashSet<String>( Arrays.asList( new String[]
+        { "2.5.13.1", "distinguishednamematch", //$NON-NLS-1$ //$NON-NLS-2$
+            "2.5.13.23", "uniquemembermatch", //$NON-NLS-1$ //$NON-NLS-2$
+            "2.5.13.17", "octetstringmatch", //$NON-NLS-1$ //$NON-NLS-2$
+            "2.5.13.8", "numericstringmatch", //$NON-NLS-1$ //$NON-NLS-2$
+            "2.5.13.14", "integermatch", //$NON-NLS-1$ //$NON-NLS-2$
+            "2.5.13.27", "generalizedtimematch" } ) ); //$NON-NLS-1$ //$NON-NLS-2$
+
+    /** The number of cached entries indexed at once while building the index */
+    private static final int BUILD_CHUNK_SIZE = 1000;
+
+    /** The browser connection */
+    private BrowserConnection browserConnection;
+
+    /** The flag indicating that the index was built from the cache */
+    private volatile boolean built;
+
+    /** The flag indicating that the index is being built from the cache */
+    private boolean building;
+
+    /** Incremented when the index is cleared, aborts a running build */
+    private int generation;
+
+    /** The attribute type OID to normalized value to entries map */
+    private Map<String, TreeMap<String, Set<IEntry>>> valueIndex = new HashMap<String, TreeMap<String, Set<IEntry>>>();
+
+    /** The attribute type OID to entries map, contains the entries with binary values too */
+    private Map<String, Set<IEntry>> attributeIndex = new HashMap<String, Set<IEntry>>();
+
+    /** The indexed entries with their attribute type OIDs and normalized values, used to remove an entry */
+    private Map<IEntry, List<String[]>> postings = new HashMap<IEntry, List<String[]>>();
+
+
+    /**
+     * Creates a new instance of QuickSearchIndex.
+     *
+     * @param browserConnection the browser connection
+     */
+    public QuickSearchIndex( BrowserConnection browserConnection )
+    {
+        this.browserConnection = browserConnection;
+    }
+
+
+    /**
+     * Sets the cached entries matching the given search as search results.
+     * If the count limit is exceeded the count limit exceeded flag is set.
+     *
+     * @param search the search
+     */
+    public synchronized void search( ISearch search )
+    {
+        List<IEntry> matches = getMatchingEntries( search );
+        if ( search.getCountLimit() > 0 && matches.size() > search.getCountLimit() )
+        {
+            matches = matches.subList( 0, search.getCountLimit() );
+            search.setCountLimitExceeded( true );
+        }
+
+        ISearchResult[] searchResults = new ISearchResult[matches.size()];
+        for ( int i = 0; i < searchResults.length; i++ )
+        {
+            searchResults[i] = new SearchResult( matches.get( i ), search );
+        }
+        search.setSearchResults( searchResults );
+    }
+
+
+    /**
+     * Gets the cached entries within the scope of the given search that match its filter.
+     *
+     * @param search the search
+     *
+     * @return the matching entries, empty if the filter is invalid, the search base isn't cached
+     *         or the index isn't built yet
+     */
+    public synchronized List<IEntry> getMatchingEntries( ISearch search )
+    {
+        List<IEntry> matches = new ArrayList<IEntry>();
+        IEntry base = browserConnection.getEntryFromCache( search.getSearchBase() );
+        LdapFilterParser parser = new LdapFilterParser();
+        parser.parse( search.getFilter() );
+        LdapFilter filter = parser.getModel();
+        if ( !built || base == null || filter == null || !filter.isValid() )
+        {
+            return matches;
+        }
+
+        LdapFilterEvaluator evaluator = new LdapFilterEvaluator( filter, browserConnection.getSchema() );
+        Set<IEntry> candidates = getCandidates( filter );
+        for ( IEntry candidate : candidates != null ? candidates : postings.keySet() )
+        {
+            if ( browserConnection.getEntryFromCache( candidate.getDn() ) == candidate
+                && isInScope( candidate, base, search.getScope() ) && evaluator.matches( candidate ) )
+            {
+                matches.add( candidate );
+            }
+        }
+        return matches;
+    }
+
+
+    /**
+     * Updates the index after the given entry modification.
+     *
+     * @param event the entry modification event
+     */
+    public synchronized void entryUpdated( EntryModificationEvent event )
+    {
+        if ( !built && !building )
+        {
+            return;
+        }
+
+        if ( event instanceof BulkModificationEvent || event instanceof EntryRenamedEvent
+            || event instanceof EntryMovedEvent )
+        {
+            // the Dns of whole subtrees changed, rebuild on next use
+            clear();
+        }
+        else if ( event instanceof EntryDeletedEvent )
+        {
+            // the deleted descendants are skipped as they aren't cached anymore
+            remove( event.getModifiedEntry() );
+        }
+        else if ( event instanceof ChildrenInitializedEvent )
+        {
+            ChildrenInitializedEvent childrenEvent = ( ChildrenInitializedEvent ) event;
+            if ( childrenEvent.getDeletedChildren() != null )
+            {
+                for ( IEntry child : childrenEvent.getDeletedChildren() )
+                {
+                    remove( child );
+                }
+            }
+            IEntry[] children = event.getModifiedEntry().getChildren();
+            if ( children != null )
+            {
+                for ( IEntry child : children )
+                {
+                    add( child );
+                }
+            }
+        }
+        else
+        {
+            add( event.getModifiedEntry() );
+        }
+    }
+
+
+    /**
+     * Indexes the results of the given performed search.
+     *
+     * @param search the search
+     */
+    public synchronized void searchPerformed( ISearch search )
+    {
+        if ( ( built || building ) && search.getSearchResults() != null )
+        {
+            for ( ISearchResult searchResult : search.getSearchResults() )
+            {
+                add( searchResult.getEntry() );
+            }
+        }
+    }
+
+
+    /**
+     * Clears the index, it is built again on next use.
+     */
+    public synchronized void clear()
+    {
+        valueIndex.clear();
+        attributeIndex.clear();
+        postings.clear();
+        built = false;
+        generation++;
+    }
+
+
+    /**
+     * Checks if the index is built and can be searched.
+     *
+     * @return true if the index is built
+     */
+    public boolean isBuilt()
+    {
+        return built;
+    }
+
+
+    /**
+     * Schedules a background job that builds the index from the cached entries,
+     * if it isn't built yet.
+     */
+    public void scheduleBuild()
+    {
+        if ( !built )
+        {
+            StudioBrowserJob job = new StudioBrowserJob( new BuildRunnable() );
+            job.setSystem( true );
+            job.schedule();
+        }
+    }
+
+
+    /**
+     * Builds the index from the cached entries, if not done yet. The entries
+     * are indexed chunk by chunk, so searches and updates aren't blocked for
+     * long. Updates received meanwhile are applied, a clear aborts the build.
+     *
+     * @param monitor the progress monitor, the build is aborted if canceled
+     */
+    public void build( StudioProgressMonitor monitor )
+    {
+        int buildGeneration;
+        synchronized ( this )
+        {
+            if ( built || building )
+            {
+                return;
+            }
+            building = true;
+            buildGeneration = generation;
+        }
+
+        try
+        {
+            List<IEntry> entries = new ArrayList<IEntry>( browserConnection.getCachedEntries() );
+            for ( int i = 0; i < entries.size(); i += BUILD_CHUNK_SIZE )
+            {
+                synchronized ( this )
+                {
+                    if ( monitor.isCanceled() || generation != buildGeneration )
+                    {
+                        return;
+                    }
+                    for ( IEntry entry : entries.subList( i, Math.min( i + BUILD_CHUNK_SIZE, entries.size() ) ) )
+                    {
+                        // entries indexed by an update meanwhile are up to date
+                        if ( !postings.containsKey( entry ) )
+                        {
+                            add( entry );
+                        }
+                    }
+                }
+            }
+
+            synchronized ( this )
+            {
+                built = generation == buildGeneration && !monitor.isCanceled();
+            }
+        }
+        finally
+        {
+            synchronized ( this )
+            {
+                building = false;
+            }
+        }
+    }
+
+
+    /**
+     * Adds or re-indexes an entry.
+     *
+     * @param entry the entry
+     */
+    private void add( IEntry entry )
+    {
+        remove( entry );
+
+        List<String[]> entryPostings = new ArrayList<String[]>();
+        postings.put( entry, entryPostings );
+        IAttribute[] attributes = entry.getAttributes();
+        if ( attributes == null )
+        {
+            return;
+        }
+
+        Schema schema = browserConnection.getSchema();
+        for ( IAttribute attribute : attributes )
+        {
+            for ( String oid : getOidWithSupertypes( attribute.getAttributeTypeDescription(), schema ) )
+            {
+                getSet( attributeIndex, oid ).add( entry );
+                entryPostings.add( new String[]
+                    { oid, null } );
+                for ( IValue value : attribute.getValues() )
+                {
+                    if ( value.isString() )
+                    {
+                        String token = normalize( value.getStringValue() );
+                        TreeMap<String, Set<IEntry>> tokens = valueIndex.get( oid );
+                        if ( tokens == null )
+                        {
+                            tokens = new TreeMap<String, Set<IEntry>>();
+                            valueIndex.put( oid, tokens );
+                        }
+                        getSet( tokens, token ).add( entry );
+                        entryPostings.add( new String[]
+                            { oid, token } );
+                    }
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Removes an entry from the index.
+     *
+     * @param entry the entry
+     */
+    private void remove( IEntry entry )
+    {
+        List<String[]> entryPostings = postings.remove( entry );
+        if ( entryPostings == null )
+        {
+            return;
+        }
+
+        for ( String[] posting : entryPostings )
+        {
+            if ( posting[1] == null )
+            {
+                removeFromSet( attributeIndex, posting[0], entry );
+            }
+            else
+            {
+                TreeMap<String, Set<IEntry>> tokens = valueIndex.get( posting[0] );
+                if ( tokens != null )
+                {
+                    removeFromSet( tokens, posting[1], entry );
+                    if ( tokens.isEmpty() )
+                    {
+                        valueIndex.remove( posting[0] );
+                    }
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Gets the candidate entries that may match the given filter.
+     *
+     * @param filter the filter
+     *
+     * @return the candidates, null if all indexed entries are candidates
+     */
+    private Set<IEntry> getCandidates( LdapFilter filter )
+    {
+        LdapFilterComponent component = filter.getFilterComponent();
+        if ( component instanceof LdapAndFilterComponent )
+        {
+            // the smallest candidate set of the sub-filters
+            Set<IEntry> candidates = null;
+            for ( LdapFilter subFilter : component.getFilters() )
+            {
+                Set<IEntry> subCandidates = getCandidates( subFilter );
+                if ( subCandidates != null && ( candidates == null || subCandidates.size() < candidates.size() ) )
+                {
+                    candidates = subCandidates;
+                }
+            }
+            return candidates;
+        }
+        else if ( component instanceof LdapOrFilterComponent )
+        {
+            Set<IEntry> candidates = new LinkedHashSet<IEntry>();
+            for ( LdapFilter subFilter : component.getFilters() )
+            {
+                Set<IEntry> subCandidates = getCandidates( subFilter );
+                if ( subCandidates == null )
+                {
+                    return null;
+                }
+                candidates.addAll( subCandidates );
+            }
+            return candidates;
+        }
+        else if ( component instanceof LdapFilterItemComponent )
+        {
+            LdapFilterItemComponent item = ( LdapFilterItemComponent ) component;
+            String attribute = item.getAttributeToken().getValue();
+            int type = item.getFilterToken().getType();
+            AttributeType atd = browserConnection.getSchema().getAttributeTypeDescription( stripOptions( attribute ) );
+            if ( type == LdapFilterToken.PRESENT && SchemaConstants.OBJECT_CLASS_AT_OID.equals( atd.getOid() ) )
+            {
+                // presence of objectClass always matches
+                return null;
+            }
+
+            String value = item.getValueToken() != null ? item.getValueToken().getValue() : ""; //$NON-NLS-1$
+            TreeMap<String, Set<IEntry>> tokens = valueIndex.get( atd.getOid() );
+            if ( type == LdapFilterToken.EQUAL || type == LdapFilterToken.APROX )
+            {
+                String equalityRule = SchemaUtils.getEqualityMatchingRuleNameOrNumericOidTransitive( atd,
+                    browserConnection.getSchema() );
+                if ( equalityRule == null || !UNINDEXED_EQUALITY_RULES.contains( Strings.toLowerCase( equalityRule ) ) )
+                {
+                    Set<IEntry> entries = tokens != null ? tokens.get( normalize( LdapFilterEvaluator
+                        .unescape( value ) ) ) : null;
+                    return entries != null ? new LinkedHashSet<IEntry>( entries ) : new LinkedHashSet<IEntry>();
+                }
+            }
+            else if ( type == LdapFilterToken.SUBSTRING && value.indexOf( '*' ) > 0 )
+            {
+                // the values starting with the initial part
+                String prefix = normalize( LdapFilterEvaluator.unescape( value.substring( 0, value.indexOf( '*' ) ) ) );
+                Set<IEntry> candidates = new LinkedHashSet<IEntry>();
+                if ( tokens != null )
+                {
+                    for ( Set<IEntry> entries : tokens.subMap( prefix, prefix + Character.MAX_VALUE ).values() )
+                    {
+                        candidates.addAll( entries );
+                    }
+                }
+                return candidates;
+            }
+
+            // all entries with the attribute
+            Set<IEntry> entries = attributeIndex.get( atd.getOid() );
+            return entries != null ? new LinkedHashSet<IEntry>( entries ) : new LinkedHashSet<IEntry>();
+        }
+        else
+        {
+            // NOT and extensible filters
+            return null;
+        }
+    }
+
+
+    /**
+     * Checks if the entry is within the scope of the search base, using the cached parent entries.
+     *
+     * @param entry the entry
+     * @param base the search base entry
+     * @param scope the search scope
+     *
+     * @return true if the entry is within the scope
+     */
+    private static boolean isInScope( IEntry entry, IEntry base, SearchScope scope )
+    {
+        if ( entry == base )
+        {
+            return scope != SearchScope.ONELEVEL;
+        }
+        if ( scope == SearchScope.OBJECT || entry instanceof IRootDSE || entry instanceof IContinuation )
+        {
+            return false;
+        }
+
+        IEntry parent = entry.getParententry();
+        if ( scope == SearchScope.ONELEVEL )
+        {
+            return parent == base;
+        }
+        while ( parent != null && parent != base )
+        {
+            parent = parent.getParententry();
+        }
+        return parent == base;
+    }
+
+
+    /**
+     * Gets the OID of the attribute type and the OIDs of its supertypes.
+     *
+     * @param atd the attribute type
+     * @param schema the schema
+     *
+     * @return the OIDs
+     */
+    private static Collection<String> getOidWithSupertypes( AttributeType atd, Schema schema )
+    {
+        Set<String> oids = new LinkedHashSet<String>();
+        while ( atd != null && oids.add( atd.getOid() ) )
+        {
+            atd = atd.getSuperiorOid() != null && schema.hasAttributeTypeDescription( atd.getSuperiorOid() ) ? schema
+                .getAttributeTypeDescription( atd.getSuperiorOid() ) : null;
+        }
+        return oids;
+    }
+
+
+    /**
+     * Normalizes a value for the lookup. The value is converted to lower
+     * case, whitespace and hyphens are removed. This is weaker than each
+     * supported matching rule, so the candidates are a superset of the matches.
+     *
+     * @param value the value
+     *
+     * @return the normalized value
+     */
+    private static String normalize( String value )
+    {
+        StringBuilder sb = new StringBuilder( value.length() );
+        for ( int i = 0; i < value.length(); i++ )
+        {
+            char c = value.charAt( i );
+            if ( !Character.isWhitespace( c ) && c != '-' && c != '\u2010' && c != '\u2212' )
+            {
+                sb.append( c );
+            }
+        }
+        return Strings.toLowerCase( sb.toString() );
+    }
+
+
+    private static String stripOptions( String attribute )
+    {
+        int index = attribute.indexOf( ';' );
+        return index > 0 ? attribute.substring( 0, index ) : attribute;
+    }
+
+
+    private static <K> Set<IEntry> getSet( Map<K, Set<IEntry>> map, K key )
+    {
+        Set<IEntry> set = map.get( key );
+        if ( set == null )
+        {
+            set = new LinkedHashSet<IEntry>();
+            map.put( key, set );
+        }
+        return set;
+    }
+
+
+    private static <K> void removeFromSet( Map<K, Set<IEntry>> map, K key, IEntry entry )
+    {
+        Set<IEntry> set = map.get( key );
+        if ( set != null )
+        {
+            set.remove( entry );
+            if ( set.isEmpty() )
+            {
+                map.remove( key );
+            }
+        }
+    }
+
+
+    /**
+     * Builds the index in a background job.
+     */
+    private class BuildRunnable implements StudioConnectionRunnableWithProgress
+    {
+
+        /**
+         * {@inheritDoc}
+         */
+        public Connection[] getConnections()
+        {
+            // only the cache is read, no need to open the connection
+            return new Connection[0];
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        public String getName()
+        {
+            return BrowserCoreMessages.bind( BrowserCoreMessages.jobs__quick_search_index_name, new String[]
+                { browserConnection.toString() } );
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        public Object[] getLockedObjects()
+        {
+            return new Object[]
+                { QuickSearchIndex.this };
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        public String getErrorMessage()
+        {
+            return BrowserCoreMessages.bind( BrowserCoreMessages.jobs__quick_search_index_error, new String[]
+                { browserConnection.toString() } );
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        public void run( StudioProgressMonitor monitor )
+        {
+            monitor.beginTask( getName(), 1 );
+            build( monitor );
+            monitor.worked( 1 );
+        }
+    }
+
+}
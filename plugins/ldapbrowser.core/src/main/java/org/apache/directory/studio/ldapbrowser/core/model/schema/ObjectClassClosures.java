@@ -0,0 +1,188 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+
+package org.apache.directory.studio.ldapbrowser.core.model.schema;
+
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.directory.api.ldap.model.schema.AttributeType;
+import org.apache.directory.api.ldap.model.schema.ObjectClass;
+import org.apache.directory.api.util.Strings;
+
+
+/**
+ * Memo of the transitive superclass closures and the MUST and MAY
+ * attribute types of the object classes of one {@link Schema}. All
+ * values are computed on first use and never change, as a schema
+ * isn't modified after loading but replaced.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+class ObjectClassClosures
+{
+
+    /** The schema */
+    private Schema schema;
+
+    /** The superclass closures by lower-case object class OID */
+    private Map<String, Collection<ObjectClass>> superiorClosures = new HashMap<String, Collection<ObjectClass>>();
+
+    /** The transitive MUST attribute type names by lower-case object class OID */
+    private Map<String, Collection<String>> mustNames = new HashMap<String, Collection<String>>();
+
+    /** The transitive MAY attribute type names by lower-case object class OID */
+    private Map<String, Collection<String>> mayNames = new HashMap<String, Collection<String>>();
+
+    /** The MUST attribute types by set of lower-case object class OIDs */
+    private Map<Set<String>, Collection<AttributeType>> mustAttributeTypes = new HashMap<Set<String>, Collection<AttributeType>>();
+
+    /** The MAY attribute types by set of lower-case object class OIDs */
+    private Map<Set<String>, Collection<AttributeType>> mayAttributeTypes = new HashMap<Set<String>, Collection<AttributeType>>();
+
+
+    /**
+     * Creates a new instance of ObjectClassClosures.
+     *
+     * @param schema the schema
+     */
+    ObjectClassClosures( Schema schema )
+    {
+        this.schema = schema;
+    }
+
+
+    /**
+     * Gets all existing superior object classes of the given object
+     * class, transitively.
+     *
+     * @param ocd the object class
+     *
+     * @return the superior object classes, unmodifiable
+     */
+    synchronized Collection<ObjectClass> getSuperiorClosure( ObjectClass ocd )
+    {
+        String key = Strings.toLowerCase( ocd.getOid() );
+        Collection<ObjectClass> closure = superiorClosures.get( key );
+        if ( closure == null )
+        {
+            List<ObjectClass> superiors = new ArrayList<ObjectClass>();
+            Set<String> visited = new HashSet<String>();
+            visited.add( key );
+            LinkedList<ObjectClass> queue = new LinkedList<ObjectClass>();
+            queue.add( ocd );
+            while ( !queue.isEmpty() )
+            {
+                for ( String superior : queue.removeFirst().getSuperiorOids() )
+                {
+                    if ( schema.hasObjectClassDescription( superior ) )
+                    {
+                        ObjectClass superiorOcd = schema.getObjectClassDescription( superior );
+                        if ( visited.add( Strings.toLowerCase( superiorOcd.getOid() ) ) )
+                        {
+                            superiors.add( superiorOcd );
+                            queue.add( superiorOcd );
+                        }
+                    }
+                }
+            }
+
+            closure = Collections.unmodifiableList( superiors );
+            superiorClosures.put( key, closure );
+        }
+        return closure;
+    }
+
+
+    /**
+     * Gets the MUST or MAY attribute type names of the given and all
+     * superior object classes.
+     *
+     * @param ocd the object class
+     * @param must true for the MUST, false for the MAY attribute types
+     *
+     * @return the attribute type names, sorted and unmodifiable
+     */
+    synchronized Collection<String> getAttributeTypeNames( ObjectClass ocd, boolean must )
+    {
+        Map<String, Collection<String>> memo = must ? mustNames : mayNames;
+        String key = Strings.toLowerCase( ocd.getOid() );
+        Collection<String> names = memo.get( key );
+        if ( names == null )
+        {
+            Set<String> set = new TreeSet<String>( SchemaUtils.nameAndOidComparator );
+            set.addAll( must ? ocd.getMustAttributeTypeOids() : ocd.getMayAttributeTypeOids() );
+            for ( ObjectClass superior : getSuperiorClosure( ocd ) )
+            {
+                set.addAll( must ? superior.getMustAttributeTypeOids() : superior.getMayAttributeTypeOids() );
+            }
+
+            names = Collections.unmodifiableSet( set );
+            memo.put( key, names );
+        }
+        return names;
+    }
+
+
+    /**
+     * Gets the MUST or MAY attribute types of the given set of object classes.
+     *
+     * @param ocds the object classes
+     * @param must true for the MUST, false for the MAY attribute types
+     *
+     * @return the attribute types, unmodifiable
+     */
+    synchronized Collection<AttributeType> getAttributeTypes( Collection<ObjectClass> ocds, boolean must )
+    {
+        Map<Set<String>, Collection<AttributeType>> memo = must ? mustAttributeTypes : mayAttributeTypes;
+        Set<String> key = new HashSet<String>();
+        for ( ObjectClass ocd : ocds )
+        {
+            key.add( Strings.toLowerCase( ocd.getOid() ) );
+        }
+
+        Collection<AttributeType> atds = memo.get( key );
+        if ( atds == null )
+        {
+            Set<AttributeType> set = new HashSet<AttributeType>();
+            for ( ObjectClass ocd : ocds )
+            {
+                for ( String name : getAttributeTypeNames( ocd, must ) )
+                {
+                    set.add( schema.getAttributeTypeDescription( name ) );
+                }
+            }
+
+            atds = Collections.unmodifiableSet( set );
+            memo.put( key, atds );
+        }
+        return atds;
+    }
+
+}
@@ -21,27 +21,47 @@
 package org.apache.directory.studio.ldapbrowser.core.model.schema;
 
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.directory.api.ldap.model.constants.SchemaConstants;
+import org.apache.directory.api.ldap.model.entry.Attribute;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.entry.Value;
+import org.apache.directory.api.ldap.model.exception.LdapInvalidDnException;
 import org.apache.directory.api.ldap.model.name.Dn;
 import org.apache.directory.api.ldap.model.schema.AttributeType;
 import org.apache.directory.api.ldap.model.schema.LdapSyntax;
 import org.apache.directory.api.ldap.model.schema.MatchingRule;
 import org.apache.directory.api.ldap.model.schema.MatchingRuleUse;
 import org.apache.directory.api.ldap.model.schema.ObjectClass;
+import org.apache.directory.api.ldap.model.schema.SchemaObject;
 import org.apache.directory.api.ldap.model.schema.UsageEnum;
 import org.apache.directory.api.ldap.model.schema.parsers.AttributeTypeDescriptionSchemaParser;
 import org.apache.directory.api.ldap.model.schema.parsers.LdapSyntaxDescriptionSchemaParser;
@@ -50,13 +70,19 @@ import org.apache.directory.api.ldap.model.schema.parsers.MatchingRuleUseDescrip
 import org.apache.directory.api.ldap.model.schema.parsers.ObjectClassDescriptionSchemaParser;
 import org.apache.directory.api.util.Strings;
 import org.apache.directory.studio.connection.core.Utils;
+import org.apache.directory.studio.ldapbrowser.core.BrowserCoreConstants;
+import org.apache.directory.studio.ldapbrowser.core.BrowserCoreMessages;
+import org.apache.directory.studio.ldapbrowser.core.BrowserCorePlugin;
 import org.apache.directory.studio.ldapbrowser.core.model.AttributeDescription;
 import org.apache.directory.studio.ldifparser.LdifFormatParameters;
 import org.apache.directory.studio.ldifparser.model.LdifEnumeration;
 import org.apache.directory.studio.ldifparser.model.container.LdifContainer;
 import org.apache.directory.studio.ldifparser.model.container.LdifContentRecord;
 import org.apache.directory.studio.ldifparser.model.lines.LdifAttrValLine;
+import org.apache.directory.studio.ldifparser.model.lines.LdifSepLine;
 import org.apache.directory.studio.ldifparser.parser.LdifParser;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
 
 
 /**
@@ -73,6 +99,30 @@ public class Schema
 
     public static final String DN_SYNTAX_OID = "1.3.6.1.4.1.1466.115.121.1.12"; //$NON-NLS-1$
 
+    /** The version of the binary snapshot format, must be increased on each format change. */
+    public static final int SNAPSHOT_VERSION = 1;
+
+    private static final int SNAPSHOT_MAGIC = 0x53434845;
+
+    /** The attributes that are part of the content hash, by lower-cased name and OID. */
+    private static final Map<String, String> CONTENT_HASH_ATTRIBUTES = new HashMap<String, String>();
+    static
+    {
+        String[][] attributes = new String[][]
+            {
+                { SchemaConstants.OBJECT_CLASSES_AT, SchemaConstants.OBJECT_CLASSES_AT_OID },
+                { SchemaConstants.ATTRIBUTE_TYPES_AT, SchemaConstants.ATTRIBUTE_TYPES_AT_OID },
+                { SchemaConstants.LDAP_SYNTAXES_AT, SchemaConstants.LDAP_SYNTAXES_AT_OID },
+                { SchemaConstants.MATCHING_RULES_AT, SchemaConstants.MATCHING_RULES_AT_OID },
+                { SchemaConstants.MATCHING_RULE_USE_AT, SchemaConstants.MATCHING_RULE_USE_AT_OID } };
+        for ( String[] attribute : attributes )
+        {
+            String name = Strings.toLowerCase( attribute[0] );
+            CONTENT_HASH_ATTRIBUTES.put( name, name );
+            CONTENT_HASH_ATTRIBUTES.put( attribute[1], name );
+        }
+    }
+
     public static final LdapSyntax DUMMY_LDAP_SYNTAX;
     static
     {
@@ -127,15 +177,26 @@ public class Schema
 
     private String modifyTimestamp;
 
-    private Map<String, ObjectClass> ocdMapByNameOrNumericOid;
+    private DefinitionMap<ObjectClass> ocdMapByNameOrNumericOid;
 
-    private Map<String, AttributeType> atdMapByNameOrNumericOid;
+    private DefinitionMap<AttributeType> atdMapByNameOrNumericOid;
 
-    private Map<String, LdapSyntax> lsdMapByNumericOid;
+    private DefinitionMap<LdapSyntax> lsdMapByNumericOid;
 
-    private Map<String, MatchingRule> mrdMapByNameOrNumericOid;
+    private DefinitionMap<MatchingRule> mrdMapByNameOrNumericOid;
 
-    private Map<String, MatchingRuleUse> mrudMapByNameOrNumericOid;
+    private DefinitionMap<MatchingRuleUse> mrudMapByNameOrNumericOid;
+
+    private List<RawSchemaValue> rawSchemaValues;
+
+    /** The hash of the schema definitions, computed on first access. */
+    private String contentHash;
+
+    /** The memo of object class closures, created on first access. */
+    private ObjectClassClosures objectClassClosures;
+
+    /** Flag indicating that pseudo syntaxes and matching rules are created. */
+    private volatile boolean referencedDefinitionsCompleted;
 
 
     /**
@@ -147,11 +208,12 @@ public class Schema
         this.dn = null;
         this.createTimestamp = null;
         this.modifyTimestamp = null;
-        this.ocdMapByNameOrNumericOid = new HashMap<String, ObjectClass>();
-        this.atdMapByNameOrNumericOid = new HashMap<String, AttributeType>();
-        this.lsdMapByNumericOid = new HashMap<String, LdapSyntax>();
-        this.mrdMapByNameOrNumericOid = new HashMap<String, MatchingRule>();
-        this.mrudMapByNameOrNumericOid = new HashMap<String, MatchingRuleUse>();
+        this.ocdMapByNameOrNumericOid = new DefinitionMap<ObjectClass>( true );
+        this.atdMapByNameOrNumericOid = new DefinitionMap<AttributeType>( true );
+        this.lsdMapByNumericOid = new DefinitionMap<LdapSyntax>( false );
+        this.mrdMapByNameOrNumericOid = new DefinitionMap<MatchingRule>( true );
+        this.mrudMapByNameOrNumericOid = new DefinitionMap<MatchingRuleUse>( true );
+        this.rawSchemaValues = new ArrayList<RawSchemaValue>();
     }
 
 
@@ -204,6 +266,28 @@ public class Schema
     }
 
 
+    /**
+     * Loads all schema elements from the given subschema entry.
+     * 
+     * @param schemaEntry the subschema entry
+     */
+    public void loadFromEntry( Entry schemaEntry )
+    {
+        setDn( schemaEntry.getDn() );
+
+        List<RawSchemaValue> values = new ArrayList<RawSchemaValue>();
+        for ( Attribute attribute : schemaEntry )
+        {
+            for ( Value value : attribute )
+            {
+                values.add( new RawSchemaValue( attribute.getUpId(), value.getString() ) );
+            }
+        }
+
+        addSchemaValues( values );
+    }
+
+
     /**
      * Saves the schema in LDIF format to the given writer.
      * 
@@ -223,6 +307,116 @@ public class Schema
     }
 
 
+    /**
+     * Saves the schema as binary snapshot to the given output stream. The
+     * snapshot contains the raw schema values together with the numeric OID
+     * and names of each schema definition, so it can be loaded without the
+     * LDIF parser. The stream is not closed.
+     * 
+     * @param out the output stream
+     * 
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void saveToSnapshot( OutputStream out ) throws IOException
+    {
+        DataOutputStream dos = new DataOutputStream( new BufferedOutputStream( out ) );
+        dos.writeInt( SNAPSHOT_MAGIC );
+        dos.writeInt( SNAPSHOT_VERSION );
+        writeString( dos, dn != null ? dn.getName() : null );
+        dos.writeInt( rawSchemaValues.size() );
+        for ( RawSchemaValue rawSchemaValue : rawSchemaValues )
+        {
+            writeString( dos, rawSchemaValue.attributeName );
+            writeString( dos, rawSchemaValue.value );
+            writeString( dos, rawSchemaValue.oid );
+            dos.writeInt( rawSchemaValue.names.size() );
+            for ( String name : rawSchemaValue.names )
+            {
+                writeString( dos, name );
+            }
+        }
+        dos.flush();
+    }
+
+
+    /**
+     * Loads all schema elements from the given binary snapshot, written by
+     * {@link #saveToSnapshot(OutputStream)}. The stream is not closed.
+     * 
+     * @param in the input stream
+     * 
+     * @throws IOException if the snapshot can't be read or was written by another version
+     */
+    public void loadFromSnapshot( InputStream in ) throws IOException
+    {
+        DataInputStream dis = new DataInputStream( new BufferedInputStream( in ) );
+        if ( dis.readInt() != SNAPSHOT_MAGIC || dis.readInt() != SNAPSHOT_VERSION )
+        {
+            throw new IOException( "Unsupported schema snapshot" ); //$NON-NLS-1$
+        }
+
+        String dnName = readString( dis );
+        try
+        {
+            setDn( dnName != null ? new Dn( dnName ) : null );
+        }
+        catch ( LdapInvalidDnException e )
+        {
+            throw new IOException( e );
+        }
+
+        int count = dis.readInt();
+        List<RawSchemaValue> values = new ArrayList<RawSchemaValue>( count );
+        for ( int i = 0; i < count; i++ )
+        {
+            RawSchemaValue rawSchemaValue = new RawSchemaValue( readString( dis ), readString( dis ) );
+
+            // the stored index, definitions are parsed on first access
+            rawSchemaValue.oid = readString( dis );
+            int namesCount = dis.readInt();
+            if ( namesCount > 0 )
+            {
+                List<String> names = new ArrayList<String>( namesCount );
+                for ( int j = 0; j < namesCount; j++ )
+                {
+                    names.add( readString( dis ) );
+                }
+                rawSchemaValue.names = names;
+            }
+            values.add( rawSchemaValue );
+        }
+        addSchemaValues( values );
+    }
+
+
+    private static void writeString( DataOutputStream dos, String s ) throws IOException
+    {
+        if ( s == null )
+        {
+            dos.writeInt( -1 );
+        }
+        else
+        {
+            byte[] bytes = s.getBytes( StandardCharsets.UTF_8 );
+            dos.writeInt( bytes.length );
+            dos.write( bytes );
+        }
+    }
+
+
+    private static String readString( DataInputStream dis ) throws IOException
+    {
+        int length = dis.readInt();
+        if ( length < 0 )
+        {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        dis.readFully( bytes );
+        return new String( bytes, StandardCharsets.UTF_8 );
+    }
+
+
     /**
      * Parses the schema record.
      * 
@@ -235,117 +429,431 @@ public class Schema
         setSchemaRecord( schemaRecord );
         setDn( new Dn( schemaRecord.getDnLine().getValueAsString() ) );
 
-        ObjectClassDescriptionSchemaParser ocdPparser = new ObjectClassDescriptionSchemaParser();
-        ocdPparser.setQuirksMode( true );
-        AttributeTypeDescriptionSchemaParser atdParser = new AttributeTypeDescriptionSchemaParser();
-        atdParser.setQuirksMode( true );
-        LdapSyntaxDescriptionSchemaParser lsdParser = new LdapSyntaxDescriptionSchemaParser();
-        lsdParser.setQuirksMode( true );
-        MatchingRuleDescriptionSchemaParser mrdParser = new MatchingRuleDescriptionSchemaParser();
-        mrdParser.setQuirksMode( true );
-        MatchingRuleUseDescriptionSchemaParser mrudParser = new MatchingRuleUseDescriptionSchemaParser();
-        mrudParser.setQuirksMode( true );
-
         LdifAttrValLine[] lines = schemaRecord.getAttrVals();
-        for ( int i = 0; i < lines.length; i++ )
+        List<RawSchemaValue> values = new ArrayList<RawSchemaValue>( lines.length );
+        for ( LdifAttrValLine line : lines )
         {
-            LdifAttrValLine line = lines[i];
-            String attributeName = line.getUnfoldedAttributeDescription();
-            String value = line.getValueAsString();
-            List<String> ldifValues = new ArrayList<String>( 1 );
-            ldifValues.add( value );
+            values.add( new RawSchemaValue( line.getUnfoldedAttributeDescription(), line.getValueAsString() ) );
+        }
 
-            try
+        addSchemaValues( values );
+    }
+
+
+    /**
+     * Adds the raw values of the schema record. The schema definitions are
+     * only indexed by their numeric OID and names, each definition is parsed
+     * on first access.
+     * 
+     * @param values the raw values
+     */
+    private void addSchemaValues( List<RawSchemaValue> values )
+    {
+        referencedDefinitionsCompleted = false;
+        contentHash = null;
+        objectClassClosures = null;
+
+        for ( RawSchemaValue rawSchemaValue : values )
+        {
+            rawSchemaValues.add( rawSchemaValue );
+
+            DefinitionMap<?> definitionMap = getDefinitionMap( rawSchemaValue.attributeName );
+            if ( definitionMap != null )
             {
-                if ( attributeName.equalsIgnoreCase( SchemaConstants.OBJECT_CLASSES_AT ) )
-                {
-                    ObjectClass ocd = ocdPparser.parse( value );
-                    ocd.addExtension( RAW_SCHEMA_DEFINITION_LDIF_VALUE, ldifValues );
-                    addObjectClass( ocd );
-                }
-                else if ( attributeName.equalsIgnoreCase( SchemaConstants.ATTRIBUTE_TYPES_AT ) )
+                definitionMap.index( rawSchemaValue );
+            }
+            else if ( rawSchemaValue.attributeName.equalsIgnoreCase( SchemaConstants.CREATE_TIMESTAMP_AT ) )
+            {
+                setCreateTimestamp( rawSchemaValue.value );
+            }
+            else if ( rawSchemaValue.attributeName.equalsIgnoreCase( SchemaConstants.MODIFY_TIMESTAMP_AT ) )
+            {
+                setModifyTimestamp( rawSchemaValue.value );
+            }
+        }
+    }
+
+
+    /**
+     * Gets the definition map for the given schema attribute.
+     * 
+     * @param attributeName the attribute name
+     * 
+     * @return the definition map, null if the attribute contains no schema definitions
+     */
+    private DefinitionMap<?> getDefinitionMap( String attributeName )
+    {
+        if ( attributeName.equalsIgnoreCase( SchemaConstants.OBJECT_CLASSES_AT ) )
+        {
+            return ocdMapByNameOrNumericOid;
+        }
+        else if ( attributeName.equalsIgnoreCase( SchemaConstants.ATTRIBUTE_TYPES_AT ) )
+        {
+            return atdMapByNameOrNumericOid;
+        }
+        else if ( attributeName.equalsIgnoreCase( SchemaConstants.LDAP_SYNTAXES_AT ) )
+        {
+            return lsdMapByNumericOid;
+        }
+        else if ( attributeName.equalsIgnoreCase( SchemaConstants.MATCHING_RULES_AT ) )
+        {
+            return mrdMapByNameOrNumericOid;
+        }
+        else if ( attributeName.equalsIgnoreCase( SchemaConstants.MATCHING_RULE_USE_AT ) )
+        {
+            return mrudMapByNameOrNumericOid;
+        }
+        return null;
+    }
+
+
+    /**
+     * Initializes a schema definition after it was parsed.
+     * 
+     * @param schemaObject the parsed schema definition
+     * @param rawSchemaValue the raw value
+     */
+    private void initializeSchemaObject( SchemaObject schemaObject, RawSchemaValue rawSchemaValue )
+    {
+        List<String> ldifValues = new ArrayList<String>( 1 );
+        ldifValues.add( rawSchemaValue.value );
+        schemaObject.addExtension( RAW_SCHEMA_DEFINITION_LDIF_VALUE, ldifValues );
+
+        if ( schemaObject instanceof LdapSyntax )
+        {
+            LdapSyntax lsd = ( LdapSyntax ) schemaObject;
+            if ( StringUtils.isEmpty( lsd.getDescription() ) && Utils.getOidDescription( lsd.getOid() ) != null )
+            {
+                lsd.setDescription( Utils.getOidDescription( lsd.getOid() ) );
+            }
+        }
+        else if ( schemaObject instanceof ObjectClass && isExtensibleObject( ( ObjectClass ) schemaObject ) )
+        {
+            // set extensibleObject may attributes
+            Collection<AttributeType> userAtds = SchemaUtils.getUserAttributeDescriptions( this );
+            Collection<String> atdNames = SchemaUtils.getNames( userAtds );
+            List<String> atdNames2 = new ArrayList<String>( atdNames );
+            ( ( ObjectClass ) schemaObject ).setMayAttributeTypeOids( atdNames2 );
+        }
+    }
+
+
+    private static boolean isExtensibleObject( ObjectClass ocd )
+    {
+        if ( ocd.getNames() != null )
+        {
+            for ( String name : ocd.getNames() )
+            {
+                if ( SchemaConstants.EXTENSIBLE_OBJECT_OC.equalsIgnoreCase( name ) )
                 {
-                    AttributeType atd = atdParser.parse( value );
-                    atd.addExtension( RAW_SCHEMA_DEFINITION_LDIF_VALUE, ldifValues );
-                    addAttributeType( atd );
+                    return true;
                 }
-                else if ( attributeName.equalsIgnoreCase( SchemaConstants.LDAP_SYNTAXES_AT ) )
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Creates pseudo syntaxes and matching rules for the syntaxes and matching
+     * rules used by attribute types but missing in the schema. As this
+     * requires all attribute types to be parsed it is only done when a
+     * syntax or matching rule is missing or all of them are requested.
+     */
+    private synchronized void completeReferencedDefinitions()
+    {
+        if ( referencedDefinitionsCompleted )
+        {
+            return;
+        }
+
+        for ( AttributeType atd : getAttributeTypeDescriptions() )
+        {
+            // assume all received syntaxes in attributes are valid -> create pseudo syntaxes if missing
+            String syntaxOid = atd.getSyntaxOid();
+            if ( syntaxOid != null && !lsdMapByNumericOid.contains( syntaxOid ) )
+            {
+                LdapSyntax lsd = new LdapSyntax( syntaxOid );
+                lsd.setDescription( Utils.getOidDescription( syntaxOid ) );
+                addLdapSyntax( lsd );
+            }
+
+            // assume all received matching rules in attributes are valid -> create pseudo matching rules if missing
+            String emr = atd.getEqualityOid();
+            String omr = atd.getOrderingOid();
+            String smr = atd.getSubstringOid();
+            checkMatchingRules( emr, omr, smr );
+        }
+
+        referencedDefinitionsCompleted = true;
+    }
+
+
+    private void checkMatchingRules( String... matchingRules )
+    {
+        for ( String matchingRule : matchingRules )
+        {
+            if ( matchingRule != null && !mrdMapByNameOrNumericOid.contains( matchingRule ) )
+            {
+                MatchingRule mrd = new MatchingRule( matchingRule );
+                mrd.addName( matchingRule );
+                addMatchingRule( mrd );
+            }
+        }
+    }
+
+
+    /**
+     * Extracts the numeric OID and the names of the given schema definition
+     * without parsing the whole definition.
+     * 
+     * @param rawSchemaValue the raw value, e.g. "( 2.5.4.3 NAME ( 'cn' 'commonName' ) ... )"
+     * 
+     * @return true if the numeric OID was extracted, false if the definition has an unexpected format
+     */
+    private static boolean indexDefinition( RawSchemaValue rawSchemaValue )
+    {
+        List<String> tokens = tokenize( rawSchemaValue.value );
+        if ( tokens == null || tokens.size() < 2 || !"(".equals( tokens.get( 0 ) ) //$NON-NLS-1$
+            || "(".equals( tokens.get( 1 ) ) || ")".equals( tokens.get( 1 ) ) ) //$NON-NLS-1$ //$NON-NLS-2$
+        {
+            return false;
+        }
+
+        String oid = unquote( tokens.get( 1 ) );
+        if ( oid.length() == 0 )
+        {
+            return false;
+        }
+
+        List<String> names = new ArrayList<String>();
+        int depth = 1;
+        for ( int i = 2; i < tokens.size() && depth > 0; i++ )
+        {
+            String token = tokens.get( i );
+            if ( "(".equals( token ) ) //$NON-NLS-1$
+            {
+                depth++;
+            }
+            else if ( ")".equals( token ) ) //$NON-NLS-1$
+            {
+                depth--;
+            }
+            else if ( depth == 1 && "NAME".equalsIgnoreCase( token ) && i + 1 < tokens.size() ) //$NON-NLS-1$
+            {
+                i++;
+                if ( "(".equals( tokens.get( i ) ) ) //$NON-NLS-1$
                 {
-                    LdapSyntax lsd = lsdParser.parse( value );
-                    if ( StringUtils.isEmpty( lsd.getDescription() )
-                        && Utils.getOidDescription( lsd.getOid() ) != null )
+                    for ( i++; i < tokens.size() && !")".equals( tokens.get( i ) ); i++ ) //$NON-NLS-1$
                     {
-                        lsd.setDescription( Utils.getOidDescription( lsd.getOid() ) );
+                        names.add( unquote( tokens.get( i ) ) );
                     }
-                    lsd.addExtension( RAW_SCHEMA_DEFINITION_LDIF_VALUE, ldifValues );
-                    addLdapSyntax( lsd );
-                }
-                else if ( attributeName.equalsIgnoreCase( SchemaConstants.MATCHING_RULES_AT ) )
-                {
-                    MatchingRule mrd = mrdParser.parse( value );
-                    mrd.addExtension( RAW_SCHEMA_DEFINITION_LDIF_VALUE, ldifValues );
-                    addMatchingRule( mrd );
                 }
-                else if ( attributeName.equalsIgnoreCase( SchemaConstants.MATCHING_RULE_USE_AT ) )
+                else
                 {
-                    MatchingRuleUse mrud = mrudParser.parse( value );
-                    mrud.addExtension( RAW_SCHEMA_DEFINITION_LDIF_VALUE, ldifValues );
-                    addMatchingRuleUse( mrud );
+                    names.add( unquote( tokens.get( i ) ) );
                 }
-                else if ( attributeName.equalsIgnoreCase( SchemaConstants.CREATE_TIMESTAMP_AT ) )
+                break;
+            }
+        }
+
+        rawSchemaValue.oid = oid;
+        rawSchemaValue.names = names;
+        return true;
+    }
+
+
+    /**
+     * Splits a schema definition into parentheses, quoted strings (including
+     * the quotes) and other words.
+     * 
+     * @param value the schema definition
+     * 
+     * @return the tokens, null if a quoted string isn't terminated
+     */
+    private static List<String> tokenize( String value )
+    {
+        List<String> tokens = new ArrayList<String>();
+        int length = value.length();
+        int i = 0;
+        while ( i < length )
+        {
+            char c = value.charAt( i );
+            if ( Character.isWhitespace( c ) )
+            {
+                i++;
+            }
+            else if ( c == '(' || c == ')' )
+            {
+                tokens.add( String.valueOf( c ) );
+                i++;
+            }
+            else if ( c == '\'' )
+            {
+                int end = value.indexOf( '\'', i + 1 );
+                if ( end < 0 )
                 {
-                    setCreateTimestamp( value );
+                    return null;
                 }
-                else if ( attributeName.equalsIgnoreCase( SchemaConstants.MODIFY_TIMESTAMP_AT ) )
+                tokens.add( value.substring( i, end + 1 ) );
+                i = end + 1;
+            }
+            else
+            {
+                int start = i;
+                while ( i < length && !Character.isWhitespace( value.charAt( i ) )
+                    && "()'".indexOf( value.charAt( i ) ) < 0 ) //$NON-NLS-1$
                 {
-                    setModifyTimestamp( value );
+                    i++;
                 }
+                tokens.add( value.substring( start, i ) );
             }
-            catch ( Exception e )
+        }
+        return tokens;
+    }
+
+
+    private static String unquote( String token )
+    {
+        if ( token.length() >= 2 && token.charAt( 0 ) == '\'' && token.charAt( token.length() - 1 ) == '\'' )
+        {
+            return token.substring( 1, token.length() - 1 );
+        }
+        return token;
+    }
+
+
+    /**
+     * Gets the hash of the schema definitions. Schemas with the same hash
+     * contain the same definitions. The hash is canonical, the order of the
+     * attributes and values, the Dn and all other attributes of the subschema
+     * entry, e.g. the timestamps, are ignored.
+     * 
+     * @return the hash of the schema definitions
+     * 
+     * @see #computeContentHash(Entry)
+     */
+    public synchronized String getContentHash()
+    {
+        if ( contentHash == null )
+        {
+            List<String[]> definitions = new ArrayList<String[]>();
+            for ( RawSchemaValue rawSchemaValue : rawSchemaValues )
             {
-                // TODO: exception handling
-                System.out.println( "Error reading schema: " + attributeName + " = " + value ); //$NON-NLS-1$ //$NON-NLS-2$
-                System.out.println( e.getMessage() );
+                addContentDefinition( definitions, rawSchemaValue.attributeName, rawSchemaValue.value );
             }
+            contentHash = computeContentHash( definitions );
         }
+        return contentHash;
+    }
 
-        for ( AttributeType atd : getAttributeTypeDescriptions() )
+
+    /**
+     * Gets the memo of the object class closures of this schema.
+     * 
+     * @return the memo of the object class closures
+     */
+    synchronized ObjectClassClosures getObjectClassClosures()
+    {
+        if ( objectClassClosures == null )
         {
-            // assume all received syntaxes in attributes are valid -> create pseudo syntaxes if missing
-            String syntaxOid = atd.getSyntaxOid();
-            if ( syntaxOid != null && !hasLdapSyntaxDescription( syntaxOid ) )
+            objectClassClosures = new ObjectClassClosures( this );
+        }
+        return objectClassClosures;
+    }
+
+
+    /**
+     * Computes the hash of the given subschema entry, without loading it.
+     * It equals the {@link #getContentHash()} of a schema loaded from
+     * that entry.
+     * 
+     * @param schemaEntry the subschema entry
+     * 
+     * @return the hash of the subschema entry
+     */
+    public static String computeContentHash( Entry schemaEntry )
+    {
+        List<String[]> definitions = new ArrayList<String[]>();
+        for ( Attribute attribute : schemaEntry )
+        {
+            for ( Value value : attribute )
             {
-                LdapSyntax lsd = new LdapSyntax( syntaxOid );
-                lsd.setDescription( Utils.getOidDescription( syntaxOid ) );
-                addLdapSyntax( lsd );
+                addContentDefinition( definitions, attribute.getUpId(), value.getString() );
             }
+        }
+        return computeContentHash( definitions );
+    }
 
-            // assume all received matching rules in attributes are valid -> create pseudo matching rules if missing
-            String emr = atd.getEqualityOid();
-            String omr = atd.getOrderingOid();
-            String smr = atd.getSubstringOid();
-            checkMatchingRules( emr, omr, smr );
+
+    /**
+     * Adds the given value to the definitions that are part of the content
+     * hash, if it is the value of a schema definition attribute.
+     * 
+     * @param definitions the list of attribute name and value pairs
+     * @param attributeName the attribute name or OID
+     * @param value the value
+     */
+    private static void addContentDefinition( List<String[]> definitions, String attributeName, String value )
+    {
+        String name = Strings.toLowerCase( attributeName );
+        if ( CONTENT_HASH_ATTRIBUTES.containsKey( name ) )
+        {
+            definitions.add( new String[]
+                { CONTENT_HASH_ATTRIBUTES.get( name ), value } );
         }
+    }
+
+
+    /**
+     * Computes the hash of the given definitions, sorted by attribute name and value.
+     * 
+     * @param definitions the list of attribute name and value pairs
+     * 
+     * @return the hash
+     */
+    private static String computeContentHash( List<String[]> definitions )
+    {
+        Collections.sort( definitions, new Comparator<String[]>()
+        {
+            public int compare( String[] d1, String[] d2 )
+            {
+                int c = d1[0].compareTo( d2[0] );
+                return c != 0 ? c : d1[1].compareTo( d2[1] );
+            }
+        } );
 
-        // set extensibleObject may attributes
-        ObjectClass extensibleObjectOcd = this.getObjectClassDescription( SchemaConstants.EXTENSIBLE_OBJECT_OC );
-        Collection<AttributeType> userAtds = SchemaUtils.getUserAttributeDescriptions( this );
-        Collection<String> atdNames = SchemaUtils.getNames( userAtds );
-        List<String> atdNames2 = new ArrayList<String>( atdNames );
-        extensibleObjectOcd.setMayAttributeTypeOids( atdNames2 );
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance( "SHA-256" ); //$NON-NLS-1$
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException( e );
+        }
+        for ( String[] definition : definitions )
+        {
+            updateContentDigest( digest, definition[0] );
+            updateContentDigest( digest, definition[1] );
+        }
+        return Strings.toHexString( digest.digest() );
     }
 
 
-    private void checkMatchingRules( String... matchingRules )
+    private static void updateContentDigest( MessageDigest digest, String s )
     {
-        for ( String matchingRule : matchingRules )
+        if ( s == null )
         {
-            if ( matchingRule != null && !hasMatchingRuleDescription( matchingRule ) )
-            {
-                MatchingRule mrd = new MatchingRule( matchingRule );
-                mrd.addName( matchingRule );
-                addMatchingRule( mrd );
-            }
+            digest.update( ( byte ) 0 );
+        }
+        else
+        {
+            byte[] bytes = s.getBytes( StandardCharsets.UTF_8 );
+            digest.update( ( byte ) 1 );
+            digest.update( ByteBuffer.allocate( 4 ).putInt( bytes.length ).array() );
+            digest.update( bytes );
         }
     }
 
@@ -354,10 +862,22 @@ public class Schema
      * Gets the schema record.
      * 
      * @return the schema record when the schema was created using the
-     *         loadFromLdif() method, null otherwise
+     *         loadFromLdif(), loadFromRecord() or loadFromSnapshot() method,
+     *         null otherwise
      */
     public LdifContentRecord getSchemaRecord()
     {
+        if ( schemaRecord == null && dn != null && !rawSchemaValues.isEmpty() )
+        {
+            // loaded from a snapshot, rebuild the record from the raw values
+            LdifContentRecord record = LdifContentRecord.create( dn.getName() );
+            for ( RawSchemaValue rawSchemaValue : rawSchemaValues )
+            {
+                record.addAttrVal( LdifAttrValLine.create( rawSchemaValue.attributeName, rawSchemaValue.value ) );
+            }
+            record.finish( LdifSepLine.create() );
+            schemaRecord = record;
+        }
         return schemaRecord;
     }
 
@@ -448,17 +968,7 @@ public class Schema
      */
     private void addObjectClass( ObjectClass ocd )
     {
-        if ( ocd.getOid() != null )
-        {
-            ocdMapByNameOrNumericOid.put( Strings.toLowerCase( ocd.getOid() ), ocd );
-        }
-        if ( ocd.getNames() != null && !ocd.getNames().isEmpty() )
-        {
-            for ( String ocdName : ocd.getNames() )
-            {
-                ocdMapByNameOrNumericOid.put( Strings.toLowerCase( ocdName ), ocd );
-            }
-        }
+        ocdMapByNameOrNumericOid.add( ocd );
     }
 
 
@@ -469,8 +979,7 @@ public class Schema
      */
     public Collection<ObjectClass> getObjectClassDescriptions()
     {
-        Set<ObjectClass> set = new HashSet<ObjectClass>( ocdMapByNameOrNumericOid.values() );
-        return set;
+        return ocdMapByNameOrNumericOid.getAll();
     }
 
 
@@ -486,7 +995,7 @@ public class Schema
     {
         if ( nameOrOid != null )
         {
-            return ocdMapByNameOrNumericOid.containsKey( Strings.toLowerCase( nameOrOid ) );
+            return ocdMapByNameOrNumericOid.contains( nameOrOid );
         }
 
         return false;
@@ -504,9 +1013,10 @@ public class Schema
      */
     public ObjectClass getObjectClassDescription( String nameOrOid )
     {
-        if ( ocdMapByNameOrNumericOid.containsKey( Strings.toLowerCase( nameOrOid ) ) )
+        ObjectClass ocd = ocdMapByNameOrNumericOid.get( nameOrOid );
+        if ( ocd != null )
         {
-            return ocdMapByNameOrNumericOid.get( Strings.toLowerCase( nameOrOid ) );
+            return ocd;
         }
         else if ( !isDefault() )
         {
@@ -517,10 +1027,10 @@ public class Schema
             // DUMMY
             List<String> names = new ArrayList<String>();
             names.add( nameOrOid );
-            ObjectClass ocd = new ObjectClass( nameOrOid );
-            ocd.setNames( names );
-            ocd.setExtensions( DUMMY_EXTENSIONS );
-            return ocd;
+            ObjectClass dummy = new ObjectClass( nameOrOid );
+            dummy.setNames( names );
+            dummy.setExtensions( DUMMY_EXTENSIONS );
+            return dummy;
         }
     }
 
@@ -534,17 +1044,7 @@ public class Schema
      */
     private void addAttributeType( AttributeType atd )
     {
-        if ( atd.getOid() != null )
-        {
-            atdMapByNameOrNumericOid.put( Strings.toLowerCase( atd.getOid() ), atd );
-        }
-        if ( atd.getNames() != null && !atd.getNames().isEmpty() )
-        {
-            for ( String atdName : atd.getNames() )
-            {
-                atdMapByNameOrNumericOid.put( Strings.toLowerCase( atdName ), atd );
-            }
-        }
+        atdMapByNameOrNumericOid.add( atd );
     }
 
 
@@ -555,8 +1055,7 @@ public class Schema
      */
     public Collection<AttributeType> getAttributeTypeDescriptions()
     {
-        Set<AttributeType> set = new HashSet<AttributeType>( atdMapByNameOrNumericOid.values() );
-        return set;
+        return atdMapByNameOrNumericOid.getAll();
     }
 
 
@@ -572,7 +1071,7 @@ public class Schema
     {
         if ( nameOrOid != null )
         {
-            return atdMapByNameOrNumericOid.containsKey( Strings.toLowerCase( nameOrOid ) );
+            return atdMapByNameOrNumericOid.contains( nameOrOid );
         }
 
         return false;
@@ -593,9 +1092,10 @@ public class Schema
         AttributeDescription ad = new AttributeDescription( nameOrOid );
         String attributeType = ad.getParsedAttributeType();
 
-        if ( atdMapByNameOrNumericOid.containsKey( Strings.toLowerCase( attributeType ) ) )
+        AttributeType atd = atdMapByNameOrNumericOid.get( attributeType );
+        if ( atd != null )
         {
-            return atdMapByNameOrNumericOid.get( Strings.toLowerCase( attributeType ) );
+            return atd;
         }
         else if ( !isDefault() )
         {
@@ -606,12 +1106,12 @@ public class Schema
             // DUMMY
             List<String> attributeTypes = new ArrayList<String>();
             attributeTypes.add( attributeType );
-            AttributeType atd = new AttributeType( attributeType );
-            atd.setNames( attributeTypes );
-            atd.setUserModifiable( true );
-            atd.setUsage( UsageEnum.USER_APPLICATIONS );
-            atd.setExtensions( DUMMY_EXTENSIONS );
-            return atd;
+            AttributeType dummy = new AttributeType( attributeType );
+            dummy.setNames( attributeTypes );
+            dummy.setUserModifiable( true );
+            dummy.setUsage( UsageEnum.USER_APPLICATIONS );
+            dummy.setExtensions( DUMMY_EXTENSIONS );
+            return dummy;
         }
     }
 
@@ -625,10 +1125,7 @@ public class Schema
      */
     private void addLdapSyntax( LdapSyntax lsd )
     {
-        if ( lsd.getOid() != null )
-        {
-            lsdMapByNumericOid.put( Strings.toLowerCase( lsd.getOid() ), lsd );
-        }
+        lsdMapByNumericOid.add( lsd );
     }
 
 
@@ -639,8 +1136,8 @@ public class Schema
      */
     public Collection<LdapSyntax> getLdapSyntaxDescriptions()
     {
-        Set<LdapSyntax> set = new HashSet<LdapSyntax>( lsdMapByNumericOid.values() );
-        return set;
+        completeReferencedDefinitions();
+        return lsdMapByNumericOid.getAll();
     }
 
 
@@ -655,7 +1152,11 @@ public class Schema
     {
         if ( numericOid != null )
         {
-            return lsdMapByNumericOid.containsKey( Strings.toLowerCase( numericOid ) );
+            if ( !lsdMapByNumericOid.contains( numericOid ) )
+            {
+                completeReferencedDefinitions();
+            }
+            return lsdMapByNumericOid.contains( numericOid );
         }
 
         return false;
@@ -676,11 +1177,16 @@ public class Schema
         {
             return DUMMY_LDAP_SYNTAX;
         }
-        else if ( lsdMapByNumericOid.containsKey( Strings.toLowerCase( numericOid ) ) )
+        else if ( hasLdapSyntaxDescription( numericOid ) )
         {
-            return lsdMapByNumericOid.get( Strings.toLowerCase( numericOid ) );
+            LdapSyntax lsd = lsdMapByNumericOid.get( numericOid );
+            if ( lsd != null )
+            {
+                return lsd;
+            }
         }
-        else if ( !isDefault() )
+
+        if ( !isDefault() )
         {
             return DEFAULT_SCHEMA.getLdapSyntaxDescription( numericOid );
         }
@@ -703,17 +1209,7 @@ public class Schema
      */
     private void addMatchingRule( MatchingRule mrd )
     {
-        if ( mrd.getOid() != null )
-        {
-            mrdMapByNameOrNumericOid.put( Strings.toLowerCase( mrd.getOid() ), mrd );
-        }
-        if ( mrd.getNames() != null && !mrd.getNames().isEmpty() )
-        {
-            for ( String mrdName : mrd.getNames() )
-            {
-                mrdMapByNameOrNumericOid.put( Strings.toLowerCase( mrdName ), mrd );
-            }
-        }
+        mrdMapByNameOrNumericOid.add( mrd );
     }
 
 
@@ -724,8 +1220,8 @@ public class Schema
      */
     public Collection<MatchingRule> getMatchingRuleDescriptions()
     {
-        Set<MatchingRule> set = new HashSet<MatchingRule>( mrdMapByNameOrNumericOid.values() );
-        return set;
+        completeReferencedDefinitions();
+        return mrdMapByNameOrNumericOid.getAll();
     }
 
 
@@ -741,7 +1237,11 @@ public class Schema
     {
         if ( nameOrOid != null )
         {
-            return mrdMapByNameOrNumericOid.containsKey( Strings.toLowerCase( nameOrOid ) );
+            if ( !mrdMapByNameOrNumericOid.contains( nameOrOid ) )
+            {
+                completeReferencedDefinitions();
+            }
+            return mrdMapByNameOrNumericOid.contains( nameOrOid );
         }
 
         return false;
@@ -759,11 +1259,16 @@ public class Schema
      */
     public MatchingRule getMatchingRuleDescription( String nameOrOid )
     {
-        if ( mrdMapByNameOrNumericOid.containsKey( Strings.toLowerCase( nameOrOid ) ) )
+        if ( nameOrOid != null && hasMatchingRuleDescription( nameOrOid ) )
         {
-            return mrdMapByNameOrNumericOid.get( Strings.toLowerCase( nameOrOid ) );
+            MatchingRule mrd = mrdMapByNameOrNumericOid.get( nameOrOid );
+            if ( mrd != null )
+            {
+                return mrd;
+            }
         }
-        else if ( !isDefault() )
+
+        if ( !isDefault() )
         {
             return DEFAULT_SCHEMA.getMatchingRuleDescription( nameOrOid );
         }
@@ -786,17 +1291,7 @@ public class Schema
      */
     private void addMatchingRuleUse( MatchingRuleUse mrud )
     {
-        if ( mrud.getOid() != null )
-        {
-            mrudMapByNameOrNumericOid.put( Strings.toLowerCase( mrud.getOid() ), mrud );
-        }
-        if ( mrud.getNames() != null && !mrud.getNames().isEmpty() )
-        {
-            for ( String mrudName : mrud.getNames() )
-            {
-                mrudMapByNameOrNumericOid.put( Strings.toLowerCase( mrudName ), mrud );
-            }
-        }
+        mrudMapByNameOrNumericOid.add( mrud );
     }
 
 
@@ -807,9 +1302,7 @@ public class Schema
      */
     public Collection<MatchingRuleUse> getMatchingRuleUseDescriptions()
     {
-        Set<MatchingRuleUse> set = new HashSet<MatchingRuleUse>( mrudMapByNameOrNumericOid
-            .values() );
-        return set;
+        return mrudMapByNameOrNumericOid.getAll();
     }
 
 
@@ -825,7 +1318,7 @@ public class Schema
     {
         if ( nameOrOid != null )
         {
-            return mrudMapByNameOrNumericOid.containsKey( Strings.toLowerCase( nameOrOid ) );
+            return mrudMapByNameOrNumericOid.contains( nameOrOid );
         }
 
         return false;
@@ -843,9 +1336,10 @@ public class Schema
      */
     public MatchingRuleUse getMatchingRuleUseDescription( String nameOrOid )
     {
-        if ( mrudMapByNameOrNumericOid.containsKey( Strings.toLowerCase( nameOrOid ) ) )
+        MatchingRuleUse mrud = mrudMapByNameOrNumericOid.get( nameOrOid );
+        if ( mrud != null )
         {
-            return mrudMapByNameOrNumericOid.get( Strings.toLowerCase( nameOrOid ) );
+            return mrud;
         }
         else if ( !isDefault() )
         {
@@ -860,4 +1354,430 @@ public class Schema
         }
     }
 
+
+    /**
+     * Maps the names and numeric OIDs to the schema definitions of one kind.
+     * The raw definitions are indexed when the schema is loaded, each of them
+     * is parsed on first access and cached. All maps of a schema share the
+     * schema's lock, initializing a definition may access the other maps.
+     */
+    private class DefinitionMap<T extends SchemaObject>
+    {
+        /** Flag indicating whether the names are indexed too, not only the numeric OID. */
+        private boolean indexNames;
+
+        private Map<String, Definition> definitions = new HashMap<String, Definition>();
+
+        /** The parsers used for single definitions, created on first use. */
+        private SchemaParsers parsers;
+
+
+        private DefinitionMap( boolean indexNames )
+        {
+            this.indexNames = indexNames;
+        }
+
+
+        /**
+         * Indexes the given raw definition. Definitions without the stored
+         * index and an unexpected format are parsed immediately.
+         * 
+         * @param rawSchemaValue the raw definition
+         */
+        private void index( RawSchemaValue rawSchemaValue )
+        {
+            synchronized ( Schema.this )
+            {
+                Definition definition = new Definition( rawSchemaValue );
+                if ( rawSchemaValue.oid == null && !indexDefinition( rawSchemaValue ) )
+                {
+                    if ( parsers == null )
+                    {
+                        parsers = new SchemaParsers();
+                    }
+
+                    SchemaObject schemaObject = null;
+                    Exception exception = null;
+                    try
+                    {
+                        schemaObject = parsers.parse( rawSchemaValue.attributeName, rawSchemaValue.value );
+                    }
+                    catch ( Exception e )
+                    {
+                        exception = e;
+                    }
+                    if ( !initialize( definition, schemaObject, exception ) )
+                    {
+                        return;
+                    }
+                    rawSchemaValue.oid = schemaObject.getOid();
+                    if ( schemaObject.getNames() != null )
+                    {
+                        rawSchemaValue.names = schemaObject.getNames();
+                    }
+                }
+
+                put( rawSchemaValue.oid, rawSchemaValue.names, definition );
+            }
+        }
+
+
+        /**
+         * Adds an already created schema definition.
+         * 
+         * @param schemaObject the schema definition
+         */
+        private void add( T schemaObject )
+        {
+            synchronized ( Schema.this )
+            {
+                Definition definition = new Definition( null );
+                definition.schemaObject = schemaObject;
+                put( schemaObject.getOid(), schemaObject.getNames(), definition );
+            }
+        }
+
+
+        private void put( String oid, List<String> names, Definition definition )
+        {
+            if ( oid != null )
+            {
+                definitions.put( Strings.toLowerCase( oid ), definition );
+            }
+            if ( indexNames && names != null )
+            {
+                for ( String name : names )
+                {
+                    definitions.put( Strings.toLowerCase( name ), definition );
+                }
+            }
+        }
+
+
+        /**
+         * Checks if a valid schema definition with the given name or numeric OID
+         * exists, the definition is parsed if necessary. Tombstones of definitions
+         * that can't be parsed aren't contained.
+         * 
+         * @param nameOrOid the name or numeric OID
+         * 
+         * @return true if a valid schema definition exists
+         */
+        private boolean contains( String nameOrOid )
+        {
+            return get( nameOrOid ) != null;
+        }
+
+
+        /**
+         * Gets the schema definition with the given name or numeric OID,
+         * the definition is parsed if necessary.
+         * 
+         * @param nameOrOid the name or numeric OID
+         * 
+         * @return the schema definition, null if none exists or it can't be parsed
+         */
+        private T get( String nameOrOid )
+        {
+            synchronized ( Schema.this )
+            {
+                if ( nameOrOid == null )
+                {
+                    return null;
+                }
+
+                Definition definition = definitions.get( Strings.toLowerCase( nameOrOid ) );
+                if ( definition == null )
+                {
+                    return null;
+                }
+
+                if ( definition.schemaObject == null && !definition.invalid )
+                {
+                    if ( parsers == null )
+                    {
+                        parsers = new SchemaParsers();
+                    }
+
+                    SchemaObject schemaObject = null;
+                    Exception exception = null;
+                    try
+                    {
+                        schemaObject = parsers.parse( definition.rawSchemaValue.attributeName,
+                            definition.rawSchemaValue.value );
+                    }
+                    catch ( Exception e )
+                    {
+                        exception = e;
+                    }
+                    initialize( definition, schemaObject, exception );
+                }
+                return definition.schemaObject;
+            }
+        }
+
+
+        /**
+         * Gets all schema definitions. Definitions not parsed yet are parsed
+         * in parallel.
+         * 
+         * @return all schema definitions
+         */
+        private Collection<T> getAll()
+        {
+            synchronized ( Schema.this )
+            {
+                Set<Definition> all = new HashSet<Definition>( definitions.values() );
+                List<Definition> unparsed = new ArrayList<Definition>();
+                for ( Definition definition : all )
+                {
+                    if ( definition.schemaObject == null && !definition.invalid )
+                    {
+                        unparsed.add( definition );
+                    }
+                }
+
+                if ( !unparsed.isEmpty() )
+                {
+                    int count = unparsed.size();
+                    String[] attributeNames = new String[count];
+                    String[] values = new String[count];
+                    for ( int i = 0; i < count; i++ )
+                    {
+                        attributeNames[i] = unparsed.get( i ).rawSchemaValue.attributeName;
+                        values[i] = unparsed.get( i ).rawSchemaValue.value;
+                    }
+
+                    SchemaObject[] schemaObjects = new SchemaObject[count];
+                    Exception[] exceptions = new Exception[count];
+                    ForkJoinPool.commonPool().invoke(
+                        new ParseTask( attributeNames, values, schemaObjects, exceptions, 0, count ) );
+
+                    for ( int i = 0; i < count; i++ )
+                    {
+                        initialize( unparsed.get( i ), schemaObjects[i], exceptions[i] );
+                    }
+                }
+
+                Set<T> set = new HashSet<T>();
+                for ( Definition definition : all )
+                {
+                    if ( definition.schemaObject != null )
+                    {
+                        set.add( definition.schemaObject );
+                    }
+                }
+                return set;
+            }
+        }
+
+
+        /**
+         * Stores the parsed schema definition. Definitions that can't be
+         * parsed are logged and kept as invalid, so they aren't parsed again.
+         * 
+         * @param definition the definition
+         * @param schemaObject the parsed schema definition, may be null
+         * @param exception the exception thrown while parsing, null if none
+         * 
+         * @return true if the definition was parsed
+         */
+        @SuppressWarnings("unchecked")
+        private boolean initialize( Definition definition, SchemaObject schemaObject, Exception exception )
+        {
+            RawSchemaValue rawSchemaValue = definition.rawSchemaValue;
+            if ( exception != null || schemaObject == null )
+            {
+                // the default schema is also loaded outside of the running plugin
+                if ( BrowserCorePlugin.getDefault() != null )
+                {
+                    BrowserCorePlugin.getDefault().getLog().log(
+                        new Status( IStatus.WARNING, BrowserCoreConstants.PLUGIN_ID, BrowserCoreMessages.bind(
+                            BrowserCoreMessages.model__error_parsing_schema_definition, new String[]
+                            { rawSchemaValue.attributeName, rawSchemaValue.value } ), exception ) );
+                }
+
+                // keep the definition as tombstone, it isn't parsed again and still shadows its names
+                definition.invalid = true;
+                return false;
+            }
+
+            definition.schemaObject = ( T ) schemaObject;
+            initializeSchemaObject( schemaObject, rawSchemaValue );
+            return true;
+        }
+
+
+        /**
+         * A raw schema definition and its parsed form, null until first access.
+         */
+        private class Definition
+        {
+            private RawSchemaValue rawSchemaValue;
+
+            private T schemaObject;
+
+            /** Flag indicating that the raw definition can't be parsed. */
+            private boolean invalid;
+
+
+            private Definition( RawSchemaValue rawSchemaValue )
+            {
+                this.rawSchemaValue = rawSchemaValue;
+            }
+        }
+    }
+
+
+    /**
+     * A raw value of the schema record. For schema definitions the numeric
+     * OID and names are stored as index.
+     */
+    private static class RawSchemaValue
+    {
+        private String attributeName;
+
+        private String value;
+
+        private String oid;
+
+        private List<String> names = Collections.emptyList();
+
+
+        private RawSchemaValue( String attributeName, String value )
+        {
+            this.attributeName = attributeName;
+            this.value = value;
+        }
+    }
+
+
+    /**
+     * The schema parsers, all in quirks mode.
+     */
+    private static class SchemaParsers
+    {
+        private ObjectClassDescriptionSchemaParser ocdParser = new ObjectClassDescriptionSchemaParser();
+
+        private AttributeTypeDescriptionSchemaParser atdParser = new AttributeTypeDescriptionSchemaParser();
+
+        private LdapSyntaxDescriptionSchemaParser lsdParser = new LdapSyntaxDescriptionSchemaParser();
+
+        private MatchingRuleDescriptionSchemaParser mrdParser = new MatchingRuleDescriptionSchemaParser();
+
+        private MatchingRuleUseDescriptionSchemaParser mrudParser = new MatchingRuleUseDescriptionSchemaParser();
+
+
+        private SchemaParsers()
+        {
+            ocdParser.setQuirksMode( true );
+            atdParser.setQuirksMode( true );
+            lsdParser.setQuirksMode( true );
+            mrdParser.setQuirksMode( true );
+            mrudParser.setQuirksMode( true );
+        }
+
+
+        /**
+         * Parses the schema definition.
+         * 
+         * @param attributeName the attribute name
+         * @param value the raw value
+         * 
+         * @return the schema definition, null if the attribute contains no schema definitions
+         * 
+         * @throws ParseException if the value can't be parsed
+         */
+        private SchemaObject parse( String attributeName, String value ) throws ParseException
+        {
+            if ( attributeName.equalsIgnoreCase( SchemaConstants.OBJECT_CLASSES_AT ) )
+            {
+                return ocdParser.parse( value );
+            }
+            else if ( attributeName.equalsIgnoreCase( SchemaConstants.ATTRIBUTE_TYPES_AT ) )
+            {
+                return atdParser.parse( value );
+            }
+            else if ( attributeName.equalsIgnoreCase( SchemaConstants.LDAP_SYNTAXES_AT ) )
+            {
+                return lsdParser.parse( value );
+            }
+            else if ( attributeName.equalsIgnoreCase( SchemaConstants.MATCHING_RULES_AT ) )
+            {
+                return mrdParser.parse( value );
+            }
+            else if ( attributeName.equalsIgnoreCase( SchemaConstants.MATCHING_RULE_USE_AT ) )
+            {
+                return mrudParser.parse( value );
+            }
+            return null;
+        }
+    }
+
+
+    /**
+     * Parses a range of schema values, large ranges are split and parsed
+     * in parallel. Each leaf task uses its own parsers.
+     */
+    private static class ParseTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        /** The maximum number of values parsed by a single task. */
+        private static final int THRESHOLD = 100;
+
+        private String[] attributeNames;
+
+        private String[] values;
+
+        private SchemaObject[] schemaObjects;
+
+        private Exception[] exceptions;
+
+        private int start;
+
+        private int end;
+
+
+        private ParseTask( String[] attributeNames, String[] values, SchemaObject[] schemaObjects,
+            Exception[] exceptions, int start, int end )
+        {
+            this.attributeNames = attributeNames;
+            this.values = values;
+            this.schemaObjects = schemaObjects;
+            this.exceptions = exceptions;
+            this.start = start;
+            this.end = end;
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        protected void compute()
+        {
+            if ( end - start <= THRESHOLD )
+            {
+                SchemaParsers parsers = new SchemaParsers();
+                for ( int i = start; i < end; i++ )
+                {
+                    try
+                    {
+                        schemaObjects[i] = parsers.parse( attributeNames[i], values[i] );
+                    }
+                    catch ( Exception e )
+                    {
+                        exceptions[i] = e;
+                    }
+                }
+            }
+            else
+            {
+                int middle = ( start + end ) >>> 1;
+                invokeAll( new ParseTask( attributeNames, values, schemaObjects, exceptions, start, middle ),
+                    new ParseTask( attributeNames, values, schemaObjects, exceptions, middle, end ) );
+            }
+        }
+    }
+
 }
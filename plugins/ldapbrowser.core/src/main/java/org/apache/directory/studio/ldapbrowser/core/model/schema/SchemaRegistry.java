@@ -0,0 +1,170 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+
+package org.apache.directory.studio.ldapbrowser.core.model.schema;
+
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.directory.api.ldap.model.entry.Entry;
+
+
+/**
+ * The SchemaRegistry shares identical schemas between browser connections,
+ * e.g. connections to replicas of the same directory. The schemas are
+ * identified by the hash of the raw subschema entry, so each distinct
+ * schema is loaded only once. Shared schemas are used read-only.
+ * <p>
+ * The browser connections retain the schema they use, a schema is only
+ * registered while it is retained and unregistered when no browser
+ * connection uses it anymore.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class SchemaRegistry
+{
+
+    /** The shared schemas by content hash */
+    private Map<String, SharedSchema> sharedSchemas = new HashMap<String, SharedSchema>();
+
+
+    /**
+     * Gets the shared schema for the given subschema entry. The entry
+     * is only loaded if no identical schema is registered. A loaded
+     * schema is registered when it is retained.
+     *
+     * @param schemaEntry the subschema entry
+     *
+     * @return the shared schema, or the schema loaded from the entry
+     */
+    public synchronized Schema getSchema( Entry schemaEntry )
+    {
+        SharedSchema sharedSchema = sharedSchemas.get( Schema.computeContentHash( schemaEntry ) );
+        if ( sharedSchema != null )
+        {
+            return sharedSchema.schema;
+        }
+
+        Schema schema = new Schema();
+        schema.loadFromEntry( schemaEntry );
+        return schema;
+    }
+
+
+    /**
+     * Gets the shared schema that is identical to the given schema. The
+     * given schema is registered when it is retained.
+     *
+     * @param schema the loaded schema
+     *
+     * @return the shared schema, or the given schema if no identical schema is registered
+     */
+    public synchronized Schema getSchema( Schema schema )
+    {
+        if ( schema == null || schema.isDefault() )
+        {
+            return schema;
+        }
+
+        SharedSchema sharedSchema = sharedSchemas.get( schema.getContentHash() );
+        return sharedSchema != null ? sharedSchema.schema : schema;
+    }
+
+
+    /**
+     * Retains the given schema, called when a browser connection starts
+     * using it. The schema is registered if no identical schema is registered.
+     *
+     * @param schema the schema
+     */
+    public synchronized void retain( Schema schema )
+    {
+        if ( schema == null || schema.isDefault() )
+        {
+            return;
+        }
+
+        SharedSchema sharedSchema = sharedSchemas.get( schema.getContentHash() );
+        if ( sharedSchema == null )
+        {
+            sharedSchema = new SharedSchema( schema );
+            sharedSchemas.put( schema.getContentHash(), sharedSchema );
+        }
+        if ( sharedSchema.schema == schema )
+        {
+            sharedSchema.referenceCount++;
+        }
+    }
+
+
+    /**
+     * Releases the given schema, called when a browser connection stops
+     * using it. The schema is unregistered when it isn't used anymore.
+     *
+     * @param schema the schema
+     */
+    public synchronized void release( Schema schema )
+    {
+        if ( schema == null || schema.isDefault() )
+        {
+            return;
+        }
+
+        SharedSchema sharedSchema = sharedSchemas.get( schema.getContentHash() );
+        if ( sharedSchema != null && sharedSchema.schema == schema )
+        {
+            sharedSchema.referenceCount--;
+            if ( sharedSchema.referenceCount <= 0 )
+            {
+                sharedSchemas.remove( schema.getContentHash() );
+            }
+        }
+    }
+
+
+    /**
+     * Gets the number of registered schemas.
+     *
+     * @return the number of registered schemas
+     */
+    public synchronized int size()
+    {
+        return sharedSchemas.size();
+    }
+
+
+    /**
+     * A registered schema and the number of browser connections using it.
+     */
+    private static class SharedSchema
+    {
+        private Schema schema;
+
+        private int referenceCount;
+
+
+        private SharedSchema( Schema schema )
+        {
+            this.schema = schema;
+        }
+    }
+
+}
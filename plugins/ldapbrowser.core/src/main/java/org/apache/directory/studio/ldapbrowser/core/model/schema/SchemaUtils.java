@@ -23,6 +23,7 @@ package org.apache.directory.studio.ldapbrowser.core.model.schema;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
@@ -153,7 +154,7 @@ public class SchemaUtils
         NON_MODIFIABLE_ATTRIBUTE_OIDS_AND_NAMES.add( Strings.toLowerCase( SchemaConstants.VENDOR_VERSION_AT_OID ) );
     }
 
-    private static final Comparator<String> nameAndOidComparator = new Comparator<String>()
+    static final Comparator<String> nameAndOidComparator = new Comparator<String>()
     {
         public int compare( String s1, String s2 )
         {
@@ -361,21 +362,12 @@ public class SchemaUtils
     public static Collection<AttributeType> getMustAttributeTypeDescriptions( IEntry entry )
     {
         Schema schema = entry.getBrowserConnection().getSchema();
-        Collection<AttributeType> atds = new HashSet<AttributeType>();
         Collection<ObjectClass> ocds = entry.getObjectClassDescriptions();
         if ( ocds != null )
         {
-            for ( ObjectClass ocd : entry.getObjectClassDescriptions() )
-            {
-                Collection<String> musts = getMustAttributeTypeDescriptionNamesTransitive( ocd, schema );
-                for ( String must : musts )
-                {
-                    AttributeType atd = schema.getAttributeTypeDescription( must );
-                    atds.add( atd );
-                }
-            }
+            return schema.getObjectClassClosures().getAttributeTypes( ocds, true );
         }
-        return atds;
+        return Collections.emptySet();
     }
 
 
@@ -389,21 +381,12 @@ public class SchemaUtils
     public static Collection<AttributeType> getMayAttributeTypeDescriptions( IEntry entry )
     {
         Schema schema = entry.getBrowserConnection().getSchema();
-        Collection<AttributeType> atds = new HashSet<AttributeType>();
         Collection<ObjectClass> ocds = entry.getObjectClassDescriptions();
         if ( ocds != null )
         {
-            for ( ObjectClass ocd : entry.getObjectClassDescriptions() )
-            {
-                Collection<String> mays = getMayAttributeTypeDescriptionNamesTransitive( ocd, schema );
-                for ( String may : mays )
-                {
-                    AttributeType atd = schema.getAttributeTypeDescription( may );
-                    atds.add( atd );
-                }
-            }
+            return schema.getObjectClassClosures().getAttributeTypes( ocds, false );
         }
-        return atds;
+        return Collections.emptySet();
     }
 
 
@@ -809,21 +792,6 @@ public class SchemaUtils
     }
 
 
-    private static Collection<ObjectClass> getExistingSuperiorObjectClassDescription(
-        ObjectClass ocd, Schema schema )
-    {
-        List<ObjectClass> superiorList = new ArrayList<ObjectClass>();
-        for ( String superior : ocd.getSuperiorOids() )
-        {
-            if ( schema.hasObjectClassDescription( superior ) )
-            {
-                superiorList.add( schema.getObjectClassDescription( superior ) );
-            }
-        }
-        return superiorList;
-    }
-
-
     /**
      * Gets the superior object class descriptions of the given object class description.
      * 
@@ -880,14 +848,7 @@ public class SchemaUtils
     public static Collection<String> getMustAttributeTypeDescriptionNamesTransitive( ObjectClass ocd,
         Schema schema )
     {
-        Set<String> musts = new TreeSet<String>( nameAndOidComparator );
-        musts.addAll( ocd.getMustAttributeTypeOids() );
-        Collection<ObjectClass> superiors = getExistingSuperiorObjectClassDescription( ocd, schema );
-        for ( ObjectClass superior : superiors )
-        {
-            musts.addAll( getMustAttributeTypeDescriptionNamesTransitive( superior, schema ) );
-        }
-        return musts;
+        return schema.getObjectClassClosures().getAttributeTypeNames( ocd, true );
     }
 
 
@@ -904,14 +865,7 @@ public class SchemaUtils
     public static Collection<String> getMayAttributeTypeDescriptionNamesTransitive( ObjectClass ocd,
         Schema schema )
     {
-        Set<String> mays = new TreeSet<String>( nameAndOidComparator );
-        mays.addAll( ocd.getMayAttributeTypeOids() );
-        Collection<ObjectClass> superiors = getExistingSuperiorObjectClassDescription( ocd, schema );
-        for ( ObjectClass superior : superiors )
-        {
-            mays.addAll( getMayAttributeTypeDescriptionNamesTransitive( superior, schema ) );
-        }
-        return mays;
+        return schema.getObjectClassClosures().getAttributeTypeNames( ocd, false );
     }
 
 
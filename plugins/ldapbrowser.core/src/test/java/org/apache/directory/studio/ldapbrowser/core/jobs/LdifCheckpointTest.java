@@ -0,0 +1,202 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+
+package org.apache.directory.studio.ldapbrowser.core.jobs;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.apache.directory.studio.ldapbrowser.core.jobs.ImportLdifRunnable.LdifCheckpoint;
+import org.apache.directory.studio.ldifparser.model.LdifEnumeration;
+import org.apache.directory.studio.ldifparser.model.container.LdifContainer;
+import org.apache.directory.studio.ldifparser.model.container.LdifRecord;
+import org.apache.directory.studio.ldifparser.parser.LdifParser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+/**
+ * Tests the checkpoints of the LDIF import.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class LdifCheckpointTest
+{
+    private static final String LDIF = "version: 1\n" //$NON-NLS-1$
+        + "\n" //$NON-NLS-1$
+        + "dn: ou=users,ou=system\n" //$NON-NLS-1$
+        + "objectClass: organizationalUnit\n" //$NON-NLS-1$
+        + "ou: users\n" //$NON-NLS-1$
+        + "\n" //$NON-NLS-1$
+        + "# second record\n" //$NON-NLS-1$
+        + "dn: uid=user.1,ou=users,ou=system\n" //$NON-NLS-1$
+        + "changetype: add\n" //$NON-NLS-1$
+        + "objectClass: account\n" //$NON-NLS-1$
+        + "uid: user.1\n" //$NON-NLS-1$
+        + "\n" //$NON-NLS-1$
+        + "dn: uid=user.2,ou=users,ou=system\n" //$NON-NLS-1$
+        + "changetype: delete\n"; //$NON-NLS-1$
+
+    @TempDir
+    Path tempDir;
+
+
+    /**
+     * Tests that the parser resumes at the record after the checkpoint.
+     */
+    @Test
+    public void testResume() throws Exception
+    {
+        File ldifFile = tempDir.resolve( "import.ldif" ).toFile(); //$NON-NLS-1$
+        Writer writer = new FileWriter( ldifFile );
+        writer.write( LDIF );
+        writer.close();
+        File checkpointFile = ImportLdifRunnable.getCheckpointFile( ldifFile );
+        assertFalse( ImportLdifRunnable.hasCheckpoint( ldifFile ) );
+
+        // apply the first record
+        LdifCheckpoint checkpoint = new LdifCheckpoint( checkpointFile, ldifFile, 0L, new StringReader( LDIF ) );
+        checkpoint.applied( nextRecord( new LdifParser().parse( checkpoint.getReader() ) ) );
+        checkpoint.save();
+        assertTrue( ImportLdifRunnable.hasCheckpoint( ldifFile ) );
+
+        // resume with the second record
+        long offset = LdifCheckpoint.read( checkpointFile, ldifFile );
+        Reader reader = new StringReader( LDIF );
+        assertEquals( offset, reader.skip( offset ) );
+        checkpoint = new LdifCheckpoint( checkpointFile, ldifFile, offset, reader );
+        LdifEnumeration enumeration = new LdifParser().parse( checkpoint.getReader() );
+        LdifRecord second = nextRecord( enumeration );
+        assertEquals( "uid=user.1,ou=users,ou=system", second.getDnLine().getValueAsString() ); //$NON-NLS-1$
+
+        // the offsets of a resumed parser are relative to the checkpoint
+        checkpoint.applied( second );
+        checkpoint.save();
+        reader = new StringReader( LDIF );
+        reader.skip( LdifCheckpoint.read( checkpointFile, ldifFile ) );
+        LdifRecord third = nextRecord( new LdifParser().parse( reader ) );
+        assertEquals( "uid=user.2,ou=users,ou=system", third.getDnLine().getValueAsString() ); //$NON-NLS-1$
+
+        // a completed import removes the checkpoint
+        checkpoint.delete();
+        assertFalse( checkpointFile.exists() );
+        assertFalse( ImportLdifRunnable.hasCheckpoint( ldifFile ) );
+    }
+
+
+    /**
+     * Tests that the checkpoint is correct behind a record that ends past 2^31
+     * characters, where the int offsets of the parsed records wrap around.
+     */
+    @Test
+    public void testLargeOffset() throws Exception
+    {
+        File ldifFile = tempDir.resolve( "large.ldif" ).toFile(); //$NON-NLS-1$
+        Writer writer = new FileWriter( ldifFile );
+        writer.write( LDIF );
+        writer.close();
+        File checkpointFile = ImportLdifRunnable.getCheckpointFile( ldifFile );
+
+        // a synthetic reader with a large prefix of empty lines before the LDIF
+        long prefixLength = Integer.MAX_VALUE + 100L;
+        Reader reader = new SequenceReader( prefixLength, LDIF );
+        LdifCheckpoint checkpoint = new LdifCheckpoint( checkpointFile, ldifFile, 0L, reader );
+
+        // read the prefix, the parser would return offsets that wrapped around
+        char[] buffer = new char[65536];
+        long read = 0L;
+        while ( read < prefixLength )
+        {
+            read += checkpoint.getReader().read( buffer, 0, ( int ) Math.min( buffer.length, prefixLength - read ) );
+        }
+        LdifRecord first = nextRecord( new LdifParser().parse( checkpoint.getReader() ) );
+        first.adjustOffset( ( int ) prefixLength );
+        assertTrue( first.getOffset() < 0 );
+
+        checkpoint.applied( first );
+        checkpoint.save();
+        assertEquals( prefixLength + LDIF.indexOf( "# second record" ), //$NON-NLS-1$
+            LdifCheckpoint.read( checkpointFile, ldifFile ) );
+    }
+
+
+    private static LdifRecord nextRecord( LdifEnumeration enumeration ) throws Exception
+    {
+        while ( enumeration.hasNext() )
+        {
+            LdifContainer container = enumeration.next();
+            if ( container instanceof LdifRecord )
+            {
+                return ( LdifRecord ) container;
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * A reader that returns a number of newlines followed by a string, without holding the newlines.
+     */
+    private static class SequenceReader extends Reader
+    {
+        private long prefixLength;
+
+        private Reader suffix;
+
+
+        private SequenceReader( long prefixLength, String suffix )
+        {
+            this.prefixLength = prefixLength;
+            this.suffix = new StringReader( suffix );
+        }
+
+
+        @Override
+        public int read( char[] cbuf, int off, int len ) throws IOException
+        {
+            if ( prefixLength == 0L )
+            {
+                return suffix.read( cbuf, off, len );
+            }
+            int n = ( int ) Math.min( len, prefixLength );
+            Arrays.fill( cbuf, off, off + n, '\n' );
+            prefixLength -= n;
+            return n;
+        }
+
+
+        @Override
+        public void close()
+        {
+        }
+    }
+
+}
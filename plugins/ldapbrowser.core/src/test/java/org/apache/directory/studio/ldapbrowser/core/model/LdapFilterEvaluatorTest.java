@@ -0,0 +1,238 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+
+package org.apache.directory.studio.ldapbrowser.core.model;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.studio.connection.core.event.ConnectionEventRegistry;
+import org.apache.directory.studio.ldapbrowser.core.model.filter.LdapFilterEvaluator;
+import org.apache.directory.studio.ldapbrowser.core.model.filter.parser.LdapFilterParser;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.Attribute;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.DummyConnection;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.DummyEntry;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.Value;
+import org.apache.directory.studio.ldapbrowser.core.model.schema.Schema;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Tests the client-side filter evaluation.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class LdapFilterEvaluatorTest
+{
+    private IBrowserConnection connection;
+
+    private IEntry entry;
+
+
+    @BeforeEach
+    public void setup() throws Exception
+    {
+        ConnectionEventRegistry.suspendEventFiringInCurrentThread();
+        connection = new DummyConnection( Schema.DEFAULT_SCHEMA );
+        entry = createEntry( "cn=Foo Bar,ou=users", "Foo Bar", "1000" ); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+
+
+    private IEntry createEntry( String dn, String cn, String uidNumber ) throws Exception
+    {
+        IEntry entry = new DummyEntry( new Dn( dn ), connection );
+        addValue( entry, "objectClass", "top" ); //$NON-NLS-1$ //$NON-NLS-2$
+        addValue( entry, "objectClass", "person" ); //$NON-NLS-1$ //$NON-NLS-2$
+        addValue( entry, "cn", cn ); //$NON-NLS-1$
+        addValue( entry, "uidNumber", uidNumber ); //$NON-NLS-1$
+        return entry;
+    }
+
+
+    private void addValue( IEntry entry, String description, String value )
+    {
+        IAttribute attribute = entry.getAttribute( description );
+        if ( attribute == null )
+        {
+            attribute = new Attribute( entry, description );
+            entry.addAttribute( attribute );
+        }
+        attribute.addValue( new Value( attribute, value ) );
+    }
+
+
+    private boolean matches( String filter )
+    {
+        LdapFilterParser parser = new LdapFilterParser();
+        parser.parse( filter );
+        return new LdapFilterEvaluator( parser.getModel(), connection.getSchema() ).matches( entry );
+    }
+
+
+    /**
+     * Tests equality filters, cn is compared case-insensitive.
+     */
+    @Test
+    public void testEquality()
+    {
+        assertTrue( matches( "(cn=foo bar)" ) ); //$NON-NLS-1$
+        assertTrue( matches( "(commonName=FOO   BAR)" ) ); //$NON-NLS-1$
+        assertTrue( matches( "(objectClass=Person)" ) ); //$NON-NLS-1$
+        assertFalse( matches( "(cn=foo)" ) ); //$NON-NLS-1$
+        assertFalse( matches( "(sn=foo bar)" ) ); //$NON-NLS-1$
+    }
+
+
+    /**
+     * Tests presence and substring filters.
+     */
+    @Test
+    public void testPresenceAndSubstring()
+    {
+        assertTrue( matches( "(cn=*)" ) ); //$NON-NLS-1$
+        assertFalse( matches( "(sn=*)" ) ); //$NON-NLS-1$
+        assertTrue( matches( "(cn=foo*)" ) ); //$NON-NLS-1$
+        assertTrue( matches( "(cn=*BAR)" ) ); //$NON-NLS-1$
+        assertTrue( matches( "(cn=f*o*r)" ) ); //$NON-NLS-1$
+        assertFalse( matches( "(cn=*baz*)" ) ); //$NON-NLS-1$
+        assertFalse( matches( "(cn=foo bar*r)" ) ); //$NON-NLS-1$
+    }
+
+
+    /**
+     * Tests ordering filters, uidNumber is compared as integer.
+     */
+    @Test
+    public void testOrdering()
+    {
+        assertTrue( matches( "(uidNumber>=999)" ) ); //$NON-NLS-1$
+        assertTrue( matches( "(uidNumber<=1000)" ) ); //$NON-NLS-1$
+        assertFalse( matches( "(uidNumber<=200)" ) ); //$NON-NLS-1$
+        assertTrue( matches( "(uidNumber=1000)" ) ); //$NON-NLS-1$
+    }
+
+
+    /**
+     * Tests AND, OR and NOT filters.
+     */
+    @Test
+    public void testComposition()
+    {
+        assertTrue( matches( "(&(cn=foo bar)(uidNumber=1000))" ) ); //$NON-NLS-1$
+        assertFalse( matches( "(&(cn=foo bar)(uidNumber=1001))" ) ); //$NON-NLS-1$
+        assertTrue( matches( "(|(cn=foo)(uidNumber=1000))" ) ); //$NON-NLS-1$
+        assertTrue( matches( "(!(cn=foo))" ) ); //$NON-NLS-1$
+        assertFalse( matches( "(!(|(cn=foo)(cn=foo bar)))" ) ); //$NON-NLS-1$
+    }
+
+
+    /**
+     * Tests escaped values and extensible filters.
+     */
+    @Test
+    public void testEscapedAndExtensible()
+    {
+        assertTrue( matches( "(cn=Foo\\20Bar)" ) ); //$NON-NLS-1$
+        assertTrue( matches( "(cn:caseExactMatch:=Foo Bar)" ) ); //$NON-NLS-1$
+        assertFalse( matches( "(cn:caseExactMatch:=foo bar)" ) ); //$NON-NLS-1$
+        assertTrue( matches( "(ou:dn:=users)" ) ); //$NON-NLS-1$
+        assertFalse( matches( "(ou=users)" ) ); //$NON-NLS-1$
+    }
+
+
+    /**
+     * Tests that telephone numbers are compared without spaces and hyphens.
+     */
+    @Test
+    public void testTelephoneNumber()
+    {
+        addValue( entry, "telephoneNumber", "+1 555-123 4567" ); //$NON-NLS-1$ //$NON-NLS-2$
+
+        assertTrue( matches( "(telephoneNumber=+15551234567)" ) ); //$NON-NLS-1$
+        assertTrue( matches( "(telephoneNumber=+1-555-123-4567)" ) ); //$NON-NLS-1$
+        assertTrue( matches( "(telephoneNumber=*5551234*)" ) ); //$NON-NLS-1$
+        assertTrue( matches( "(telephoneNumber=*-123 45*)" ) ); //$NON-NLS-1$
+        assertFalse( matches( "(telephoneNumber=+15551234568)" ) ); //$NON-NLS-1$
+        assertFalse( matches( "(telephoneNumber=*5559*)" ) ); //$NON-NLS-1$
+    }
+
+
+    /**
+     * Tests that generalized times are compared by the instant they denote.
+     */
+    @Test
+    public void testGeneralizedTime()
+    {
+        addValue( entry, "createTimestamp", "20240102030405Z" ); //$NON-NLS-1$ //$NON-NLS-2$
+
+        assertTrue( matches( "(createTimestamp=20240102030405Z)" ) ); //$NON-NLS-1$
+        assertTrue( matches( "(createTimestamp=20240102030405.000Z)" ) ); //$NON-NLS-1$
+        assertTrue( matches( "(createTimestamp=20240102050405+0200)" ) ); //$NON-NLS-1$
+        assertTrue( matches( "(createTimestamp>=20231231235959Z)" ) ); //$NON-NLS-1$
+        assertTrue( matches( "(createTimestamp<=20240102040405+0100)" ) ); //$NON-NLS-1$
+        assertFalse( matches( "(createTimestamp>=20240102050405+0100)" ) ); //$NON-NLS-1$
+        assertFalse( matches( "(createTimestamp<=20240102030404Z)" ) ); //$NON-NLS-1$
+
+        // invalid values never match
+        assertFalse( matches( "(createTimestamp=yesterday)" ) ); //$NON-NLS-1$
+        assertFalse( matches( "(createTimestamp>=yesterday)" ) ); //$NON-NLS-1$
+    }
+
+
+    /**
+     * Tests that invalid filters are rejected.
+     */
+    @Test
+    public void testInvalidFilter()
+    {
+        assertThrows( IllegalArgumentException.class, () -> matches( "(cn=foo" ) ); //$NON-NLS-1$
+    }
+
+
+    /**
+     * Tests the evaluation of many entries, the order is kept.
+     */
+    @Test
+    public void testFilterEntries() throws Exception
+    {
+        List<IEntry> entries = new ArrayList<IEntry>();
+        for ( int i = 0; i < 3000; i++ )
+        {
+            entries.add( createEntry( "cn=user" + i, "user" + i, Integer.toString( i ) ) ); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+
+        LdapFilterParser parser = new LdapFilterParser();
+        parser.parse( "(&(cn=user*)(uidNumber>=2990))" ); //$NON-NLS-1$
+        List<IEntry> result = new LdapFilterEvaluator( parser.getModel(), connection.getSchema() ).filter( entries );
+
+        assertEquals( 10, result.size() );
+        assertEquals( entries.get( 2990 ), result.get( 0 ) );
+        assertEquals( entries.get( 2999 ), result.get( 9 ) );
+    }
+
+}
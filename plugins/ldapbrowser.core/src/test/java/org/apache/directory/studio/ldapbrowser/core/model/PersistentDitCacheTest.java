@@ -0,0 +1,190 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.studio.ldapbrowser.core.model;
+
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.directory.api.ldap.model.constants.SchemaConstants;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.ldap.model.name.Rdn;
+import org.apache.directory.studio.connection.core.Connection;
+import org.apache.directory.studio.connection.core.ConnectionParameter;
+import org.apache.directory.studio.connection.core.event.ConnectionEventRegistry;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.Attribute;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.BaseDNEntry;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.BrowserConnection;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.DummyEntry;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.Entry;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.PersistentDitCache;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.Value;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Tests saving and restoring the children lists with the {@link PersistentDitCache}.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class PersistentDitCacheTest
+{
+
+    /** An Rdn whose value is longer than the 64 KB limit of DataOutputStream.writeUTF(). */
+    private static final String LONG_RDN = "cn=" + StringUtils.repeat( 'x', 70000 ); //$NON-NLS-1$
+
+    private byte[] saved;
+
+
+    @BeforeEach
+    public void setup() throws Exception
+    {
+        ConnectionEventRegistry.suspendEventFiringInCurrentThread();
+
+        BrowserConnection connection = new BrowserConnection( new Connection( new ConnectionParameter() ) );
+        PersistentDitCache ditCache = new PersistentDitCache( connection );
+        IEntry base = createBaseEntry( connection );
+
+        // the special entry is skipped, the other children and their subtrees are saved
+        List<IEntry> children = new ArrayList<IEntry>();
+        children.add( new DummyEntry( new Dn( "cn=dummy,ou=system" ), connection ) ); //$NON-NLS-1$
+        for ( String rdn : new String[]
+            { "uid=user0", "uid=user1", LONG_RDN } ) //$NON-NLS-1$ //$NON-NLS-2$
+        {
+            IEntry child = new Entry( base, new Rdn( rdn ) );
+            connection.cacheEntry( child );
+            children.add( child );
+        }
+        setChildren( ditCache, base, children );
+
+        IEntry user0 = children.get( 1 );
+        IAttribute ocAttribute = new Attribute( user0, SchemaConstants.OBJECT_CLASS_AT );
+        user0.addAttribute( ocAttribute );
+        ocAttribute.addValue( new Value( ocAttribute, "inetOrgPerson" ) ); //$NON-NLS-1$
+        IEntry grandChild = new Entry( user0, new Rdn( "cn=child" ) ); //$NON-NLS-1$
+        connection.cacheEntry( grandChild );
+        setChildren( ditCache, user0, Collections.singletonList( grandChild ) );
+        user0.setHasChildrenHint( true );
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ditCache.save( out );
+        saved = out.toByteArray();
+    }
+
+
+    @AfterEach
+    public void tearDown()
+    {
+        ConnectionEventRegistry.resumeEventFiringInCurrentThread();
+    }
+
+
+    private static IEntry createBaseEntry( BrowserConnection connection ) throws Exception
+    {
+        IEntry base = new BaseDNEntry( new Dn( "ou=system" ), connection ); //$NON-NLS-1$
+        connection.cacheEntry( base );
+        connection.getRootDSE().addChild( base );
+        return base;
+    }
+
+
+    private static void setChildren( PersistentDitCache ditCache, IEntry parent, List<IEntry> children )
+    {
+        parent.updateChildren( children, Collections.<IEntry> emptyList() );
+        parent.setChildrenInitialized( true );
+        ditCache.setValidationToken( parent, "csn1" ); //$NON-NLS-1$
+    }
+
+
+    private static PersistentDitCache load( BrowserConnection connection, byte[] bytes ) throws Exception
+    {
+        PersistentDitCache ditCache = new PersistentDitCache( connection );
+        ditCache.load( new ByteArrayInputStream( bytes ) );
+        return ditCache;
+    }
+
+
+    /**
+     * Tests that the saved children lists are restored in a new session if the
+     * validation token is unchanged, including an Rdn longer than 64 KB.
+     */
+    @Test
+    public void testRoundTrip() throws Exception
+    {
+        BrowserConnection connection = new BrowserConnection( new Connection( new ConnectionParameter() ) );
+        IEntry base = createBaseEntry( connection );
+        PersistentDitCache ditCache = load( connection, saved );
+
+        assertTrue( ditCache.restoreChildren( base, "csn1" ) ); //$NON-NLS-1$
+        assertTrue( base.isChildrenInitialized() );
+        IEntry[] children = base.getChildren();
+        assertEquals( 3, children.length );
+        assertEquals( new Rdn( "uid=user0" ), children[0].getRdn() ); //$NON-NLS-1$
+        assertEquals( new Rdn( "uid=user1" ), children[1].getRdn() ); //$NON-NLS-1$
+        assertEquals( new Rdn( LONG_RDN ), children[2].getRdn() );
+        assertTrue( children[0].hasChildren() );
+        IAttribute ocAttribute = children[0].getAttribute( SchemaConstants.OBJECT_CLASS_AT );
+        assertNotNull( ocAttribute );
+        assertArrayEquals( new String[]
+            { "inetOrgPerson" }, ocAttribute.getStringValues() ); //$NON-NLS-1$
+
+        // the subtree below the skipped special entry is saved too
+        assertTrue( ditCache.restoreChildren( children[0], "csn1" ) ); //$NON-NLS-1$
+        assertEquals( 1, children[0].getChildren().length );
+        assertEquals( new Rdn( "cn=child" ), children[0].getChildren()[0].getRdn() ); //$NON-NLS-1$
+
+        // a record is only used once
+        assertFalse( ditCache.restoreChildren( base, "csn1" ) ); //$NON-NLS-1$
+    }
+
+
+    /**
+     * Tests that a record is rejected if the validation token changed,
+     * the children must be fetched from the directory.
+     */
+    @Test
+    public void testStaleToken() throws Exception
+    {
+        BrowserConnection connection = new BrowserConnection( new Connection( new ConnectionParameter() ) );
+        IEntry base = createBaseEntry( connection );
+        PersistentDitCache ditCache = load( connection, saved );
+
+        assertFalse( ditCache.restoreChildren( base, "csn2" ) ); //$NON-NLS-1$
+        assertFalse( base.isChildrenInitialized() );
+        assertNull( base.getChildren() );
+
+        // the stale record is dropped
+        assertFalse( ditCache.restoreChildren( base, "csn1" ) ); //$NON-NLS-1$
+    }
+
+}
@@ -0,0 +1,213 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.studio.ldapbrowser.core.model;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.ldap.model.name.Rdn;
+import org.apache.directory.studio.common.core.jobs.StudioProgressMonitor;
+import org.apache.directory.studio.connection.core.Connection;
+import org.apache.directory.studio.connection.core.ConnectionParameter;
+import org.apache.directory.studio.connection.core.event.ConnectionEventRegistry;
+import org.apache.directory.studio.ldapbrowser.core.events.AttributesInitializedEvent;
+import org.apache.directory.studio.ldapbrowser.core.events.EntryDeletedEvent;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.Attribute;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.BaseDNEntry;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.BrowserConnection;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.Entry;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.QuickSearch;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.QuickSearchIndex;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.Value;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Tests the index of the cached entries used by the quick search.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class QuickSearchIndexTest
+{
+    private BrowserConnection connection;
+
+    private QuickSearchIndex index;
+
+    private IEntry base;
+
+    private List<IEntry> users;
+
+
+    @BeforeEach
+    public void setup() throws Exception
+    {
+        ConnectionEventRegistry.suspendEventFiringInCurrentThread();
+        connection = new BrowserConnection( new Connection( new ConnectionParameter() ) );
+        index = connection.getQuickSearchIndex();
+
+        base = new BaseDNEntry( new Dn( "ou=system" ), connection ); //$NON-NLS-1$
+        connection.cacheEntry( base );
+        addValue( base, "objectClass", "organizationalUnit" ); //$NON-NLS-1$ //$NON-NLS-2$
+        addValue( base, "ou", "system" ); //$NON-NLS-1$ //$NON-NLS-2$
+
+        users = new ArrayList<IEntry>();
+        for ( int i = 0; i < 5; i++ )
+        {
+            IEntry user = new Entry( base, new Rdn( "uid=user" + i ) ); //$NON-NLS-1$
+            connection.cacheEntry( user );
+            addValue( user, "objectClass", "inetOrgPerson" ); //$NON-NLS-1$ //$NON-NLS-2$
+            addValue( user, "uid", "user" + i ); //$NON-NLS-1$ //$NON-NLS-2$
+            addValue( user, "cn", "User " + i ); //$NON-NLS-1$ //$NON-NLS-2$
+            addValue( user, "telephoneNumber", "+1 555-000 " + i ); //$NON-NLS-1$ //$NON-NLS-2$
+            users.add( user );
+        }
+    }
+
+
+    private void addValue( IEntry entry, String description, String value )
+    {
+        IAttribute attribute = entry.getAttribute( description );
+        if ( attribute == null )
+        {
+            attribute = new Attribute( entry, description );
+            entry.addAttribute( attribute );
+        }
+        attribute.addValue( new Value( attribute, value ) );
+    }
+
+
+    private void build()
+    {
+        index.build( new StudioProgressMonitor( new NullProgressMonitor() ) );
+    }
+
+
+    private List<IEntry> search( String filter, SearchScope scope )
+    {
+        QuickSearch quickSearch = new QuickSearch( base, connection );
+        quickSearch.getSearchParameter().setFilter( filter );
+        quickSearch.getSearchParameter().setScope( scope );
+        return index.getMatchingEntries( quickSearch );
+    }
+
+
+    private List<IEntry> search( String filter )
+    {
+        return search( filter, SearchScope.ONELEVEL );
+    }
+
+
+    /**
+     * Tests that nothing is found until the index is built.
+     */
+    @Test
+    public void testNotBuilt()
+    {
+        assertFalse( index.isBuilt() );
+        assertTrue( search( "(cn=user 1)" ).isEmpty() ); //$NON-NLS-1$
+
+        build();
+
+        assertTrue( index.isBuilt() );
+        assertEquals( 1, search( "(cn=user 1)" ).size() ); //$NON-NLS-1$
+    }
+
+
+    /**
+     * Tests the lookup of equality and substring tokens and the verification
+     * of the candidates.
+     */
+    @Test
+    public void testTokenMatching()
+    {
+        build();
+
+        assertEquals( users.subList( 3, 4 ), search( "(cn=USER   3)" ) ); //$NON-NLS-1$
+        assertEquals( users.subList( 3, 4 ), search( "(commonName=user 3)" ) ); //$NON-NLS-1$
+        assertEquals( users.subList( 3, 4 ), search( "(name=user 3)" ) ); //$NON-NLS-1$
+        assertEquals( users.subList( 2, 3 ), search( "(telephoneNumber=+15550002)" ) ); //$NON-NLS-1$
+        assertEquals( users, search( "(cn=user*)" ) ); //$NON-NLS-1$
+        assertEquals( users.subList( 4, 5 ), search( "(telephoneNumber=+1-555*4)" ) ); //$NON-NLS-1$
+        assertEquals( 2, search( "(|(cn=user 1)(uid=user2))" ).size() ); //$NON-NLS-1$
+        assertEquals( 4, search( "(!(cn=user 1))" ).size() ); //$NON-NLS-1$
+        assertTrue( search( "(&(cn=user 1)(uid=user2))" ).isEmpty() ); //$NON-NLS-1$
+        assertTrue( search( "(cn=user)" ).isEmpty() ); //$NON-NLS-1$
+        assertTrue( search( "(cn=usr*)" ).isEmpty() ); //$NON-NLS-1$
+
+        // the scope is checked with the cached parents
+        assertEquals( 6, search( "(objectClass=*)", SearchScope.SUBTREE ).size() ); //$NON-NLS-1$
+        assertEquals( 1, search( "(ou=system)", SearchScope.OBJECT ).size() ); //$NON-NLS-1$
+        assertTrue( search( "(ou=system)" ).isEmpty() ); //$NON-NLS-1$
+    }
+
+
+    /**
+     * Tests that changed attributes are re-indexed.
+     */
+    @Test
+    public void testUpdate()
+    {
+        build();
+
+        IEntry user = users.get( 1 );
+        user.deleteAttribute( user.getAttribute( "cn" ) ); //$NON-NLS-1$
+        addValue( user, "cn", "Renamed User" ); //$NON-NLS-1$ //$NON-NLS-2$
+        index.entryUpdated( new AttributesInitializedEvent( user ) );
+
+        assertTrue( search( "(cn=user 1)" ).isEmpty() ); //$NON-NLS-1$
+        assertEquals( users.subList( 1, 2 ), search( "(cn=renamed user)" ) ); //$NON-NLS-1$
+        assertEquals( users.subList( 1, 2 ), search( "(cn=renamed*)" ) ); //$NON-NLS-1$
+    }
+
+
+    /**
+     * Tests that deleted entries are removed and a cleared index is built again.
+     */
+    @Test
+    public void testRemoval()
+    {
+        build();
+
+        index.entryUpdated( new EntryDeletedEvent( connection, users.get( 2 ) ) );
+
+        assertTrue( search( "(cn=user 2)" ).isEmpty() ); //$NON-NLS-1$
+        assertEquals( 4, search( "(cn=user*)" ).size() ); //$NON-NLS-1$
+        assertEquals( 3, search( "(!(cn=user 1))" ).size() ); //$NON-NLS-1$
+
+        index.clear();
+
+        assertFalse( index.isBuilt() );
+        assertTrue( search( "(cn=user*)" ).isEmpty() ); //$NON-NLS-1$
+
+        build();
+
+        assertEquals( 5, search( "(cn=user*)" ).size() ); //$NON-NLS-1$
+    }
+
+}
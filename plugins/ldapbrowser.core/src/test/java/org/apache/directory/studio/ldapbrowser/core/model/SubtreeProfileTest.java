@@ -0,0 +1,156 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+
+package org.apache.directory.studio.ldapbrowser.core.model;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.studio.ldapbrowser.core.model.SubtreeProfile.AttributeProfile;
+import org.apache.directory.studio.ldapbrowser.core.model.SubtreeProfile.Counter;
+import org.apache.directory.studio.ldapbrowser.core.model.SubtreeProfile.EntrySize;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Tests the subtree statistics.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class SubtreeProfileTest
+{
+    private SubtreeProfile profile;
+
+
+    @BeforeEach
+    public void setup() throws Exception
+    {
+        profile = new SubtreeProfile( new Dn( "ou=system" ) ); //$NON-NLS-1$
+        add( "ou=system", "objectClass: organizationalUnit", //$NON-NLS-1$ //$NON-NLS-2$
+            "ou: system" ); //$NON-NLS-1$
+        add( "ou=users,ou=system", "objectClass: organizationalUnit", //$NON-NLS-1$ //$NON-NLS-2$
+            "ou: users" ); //$NON-NLS-1$
+        for ( int i = 0; i < 10000; i++ )
+        {
+            add( "uid=user" + i + ",ou=users,ou=system", //$NON-NLS-1$ //$NON-NLS-2$
+                "objectClass: person", "objectClass: top", //$NON-NLS-1$ //$NON-NLS-2$
+                "uid: user" + i, "sn: " + ( i % 100 ) ); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        add( "ou=groups,ou=system", "objectClass: organizationalUnit", //$NON-NLS-1$ //$NON-NLS-2$
+            "ou: groups", //$NON-NLS-1$
+            "description: " + new String( new char[1000] ).replace( '\0', 'x' ) ); //$NON-NLS-1$
+    }
+
+
+    private void add( String dn, String... attributes ) throws Exception
+    {
+        profile.add( new DefaultEntry( dn, ( Object[] ) attributes ) );
+    }
+
+
+    /**
+     * Tests the entry counts by object class and by child subtree.
+     */
+    @Test
+    public void testCounts()
+    {
+        assertEquals( 10003, profile.getEntryCount() );
+
+        List<Counter> objectClasses = profile.getObjectClassCounters();
+        assertEquals( 3, objectClasses.size() );
+        assertEquals( "person", objectClasses.get( 0 ).getName() ); //$NON-NLS-1$
+        assertEquals( 10000, objectClasses.get( 0 ).getCount() );
+        assertEquals( "organizationalUnit", objectClasses.get( 2 ).getName() ); //$NON-NLS-1$
+        assertEquals( 3, objectClasses.get( 2 ).getCount() );
+
+        List<Counter> subtrees = profile.getSubtreeCounters();
+        assertEquals( 2, subtrees.size() );
+        assertEquals( "ou=users", subtrees.get( 0 ).getName() ); //$NON-NLS-1$
+        assertEquals( 10001, subtrees.get( 0 ).getCount() );
+        assertEquals( 1, subtrees.get( 1 ).getCount() );
+        assertEquals( 0, profile.getOtherSubtreesEntryCount() );
+    }
+
+
+    /**
+     * Tests the attribute frequency, the value size histogram and the distinct value estimation.
+     */
+    @Test
+    public void testAttributes()
+    {
+        List<AttributeProfile> attributes = profile.getAttributeProfiles();
+        assertEquals( "objectClass", attributes.get( 0 ).getDescription() ); //$NON-NLS-1$
+        assertEquals( 10003, attributes.get( 0 ).getEntryCount() );
+        assertEquals( 20003, attributes.get( 0 ).getValueCount() );
+        assertEquals( 3, attributes.get( 0 ).getDistinctValueCount() );
+
+        for ( AttributeProfile attribute : attributes )
+        {
+            if ( attribute.getDescription().equals( "sn" ) ) //$NON-NLS-1$
+            {
+                // values "0" to "99" of size 1 and 2
+                long distinct = attribute.getDistinctValueCount();
+                assertTrue( distinct > 90 && distinct < 110, Long.toString( distinct ) );
+                assertEquals( 1000, attribute.getHistogram()[1] );
+                assertEquals( 9000, attribute.getHistogram()[2] );
+                assertEquals( 2, attribute.getMaxSize() );
+            }
+            if ( attribute.getDescription().equals( "uid" ) ) //$NON-NLS-1$
+            {
+                long distinct = attribute.getDistinctValueCount();
+                assertTrue( distinct > 9500 && distinct < 10500, Long.toString( distinct ) );
+            }
+        }
+    }
+
+
+    /**
+     * Tests that only the largest entries are kept.
+     */
+    @Test
+    public void testLargestEntries()
+    {
+        List<EntrySize> largestEntries = profile.getLargestEntries();
+        assertEquals( SubtreeProfile.MAX_LARGEST_ENTRIES, largestEntries.size() );
+        assertEquals( "ou=groups,ou=system", largestEntries.get( 0 ).getDn() ); //$NON-NLS-1$
+        assertTrue( largestEntries.get( 0 ).getSize() > 1000 );
+        assertTrue( largestEntries.get( 1 ).getSize() >= largestEntries.get( 19 ).getSize() );
+    }
+
+
+    /**
+     * Tests the CSV representation.
+     */
+    @Test
+    public void testCsv()
+    {
+        String csv = profile.toCsv( ",", "\"", "\n" ); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        assertTrue( csv.startsWith( "\"Base\",\"Entries\",\"Total Size\"\n\"ou=system\",\"10003\"," ) ); //$NON-NLS-1$
+        assertTrue( csv.contains( "\n\"person\",\"10000\"\n" ) ); //$NON-NLS-1$
+        assertTrue( csv.contains( "\n\"ou=users\",\"10001\"\n" ) ); //$NON-NLS-1$
+    }
+
+}
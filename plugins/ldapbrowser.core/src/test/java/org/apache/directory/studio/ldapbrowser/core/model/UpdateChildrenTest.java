@@ -0,0 +1,180 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.studio.ldapbrowser.core.model;
+
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.ldap.model.name.Rdn;
+import org.apache.directory.studio.connection.core.Connection;
+import org.apache.directory.studio.connection.core.ConnectionParameter;
+import org.apache.directory.studio.connection.core.event.CoreEventRunner;
+import org.apache.directory.studio.ldapbrowser.core.events.ChildrenInitializedEvent;
+import org.apache.directory.studio.ldapbrowser.core.events.EntryModificationEvent;
+import org.apache.directory.studio.ldapbrowser.core.events.EntryUpdateListener;
+import org.apache.directory.studio.ldapbrowser.core.events.EventRegistry;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.BaseDNEntry;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.BrowserConnection;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.Entry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Tests {@link IEntry#updateChildren(java.util.Collection, java.util.Collection)}.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class UpdateChildrenTest
+{
+
+    private BrowserConnection connection;
+
+    private IEntry base;
+
+    private List<IEntry> users;
+
+    private List<EntryModificationEvent> events;
+
+    private EntryUpdateListener listener = new EntryUpdateListener()
+    {
+        public void entryUpdated( EntryModificationEvent event )
+        {
+            events.add( event );
+        }
+    };
+
+
+    @BeforeEach
+    public void setup() throws Exception
+    {
+        connection = new BrowserConnection( new Connection( new ConnectionParameter() ) );
+        base = new BaseDNEntry( new Dn( "ou=system" ), connection ); //$NON-NLS-1$
+        connection.cacheEntry( base );
+
+        users = new ArrayList<IEntry>();
+        for ( int i = 0; i < 3; i++ )
+        {
+            IEntry user = new Entry( base, new Rdn( "uid=user" + i ) ); //$NON-NLS-1$
+            connection.cacheEntry( user );
+            users.add( user );
+        }
+
+        events = new ArrayList<EntryModificationEvent>();
+        EventRegistry.addEntryUpdateListener( listener, new CoreEventRunner() );
+    }
+
+
+    @AfterEach
+    public void tearDown()
+    {
+        EventRegistry.removeEntryUpdateListener( listener );
+    }
+
+
+    private ChildrenInitializedEvent getSingleEvent()
+    {
+        assertEquals( 1, events.size() );
+        assertTrue( events.get( 0 ) instanceof ChildrenInitializedEvent );
+        ChildrenInitializedEvent event = ( ChildrenInitializedEvent ) events.get( 0 );
+        assertSame( base, event.getModifiedEntry() );
+        return event;
+    }
+
+
+    /**
+     * Tests that the added children are appended in their order with one event.
+     */
+    @Test
+    public void testAdd()
+    {
+        base.updateChildren( users, Collections.<IEntry> emptyList() );
+
+        assertArrayEquals( users.toArray(), base.getChildren() );
+        ChildrenInitializedEvent event = getSingleEvent();
+        assertTrue( event.hasChildrenChanges() );
+        assertEquals( users, new ArrayList<IEntry>( event.getAddedChildren() ) );
+        assertTrue( event.getDeletedChildren().isEmpty() );
+    }
+
+
+    /**
+     * Tests that the deleted children are removed with one event, the
+     * children are unknown again once the last child was removed.
+     */
+    @Test
+    public void testRemove()
+    {
+        base.updateChildren( users, Collections.<IEntry> emptyList() );
+        events.clear();
+
+        base.updateChildren( Collections.<IEntry> emptyList(), Arrays.asList( users.get( 0 ), users.get( 2 ) ) );
+
+        assertArrayEquals( new IEntry[]
+            { users.get( 1 ) }, base.getChildren() );
+        ChildrenInitializedEvent event = getSingleEvent();
+        assertTrue( event.hasChildrenChanges() );
+        assertTrue( event.getAddedChildren().isEmpty() );
+        assertEquals( Arrays.asList( users.get( 0 ), users.get( 2 ) ),
+            new ArrayList<IEntry>( event.getDeletedChildren() ) );
+
+        events.clear();
+        base.updateChildren( Collections.<IEntry> emptyList(), Collections.singletonList( users.get( 1 ) ) );
+
+        assertNull( base.getChildren() );
+        assertTrue( getSingleEvent().hasChildrenChanges() );
+    }
+
+
+    /**
+     * Tests that children that are added and deleted in one step are
+     * replaced, and that an update without changes fires no event.
+     */
+    @Test
+    public void testUnchanged()
+    {
+        base.updateChildren( users, Collections.<IEntry> emptyList() );
+        events.clear();
+
+        base.updateChildren( Collections.<IEntry> emptyList(), Collections.<IEntry> emptyList() );
+
+        assertArrayEquals( users.toArray(), base.getChildren() );
+        assertTrue( events.isEmpty() );
+
+        base.updateChildren( Collections.singletonList( users.get( 0 ) ),
+            Collections.singletonList( users.get( 0 ) ) );
+
+        assertEquals( 3, base.getChildrenCount() );
+        assertFalse( events.isEmpty() );
+    }
+
+}
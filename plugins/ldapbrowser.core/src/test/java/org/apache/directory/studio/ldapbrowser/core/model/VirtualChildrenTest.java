@@ -0,0 +1,149 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.studio.ldapbrowser.core.model;
+
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.DummyEntry;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Tests the window bookkeeping of the children fetched with the virtual list view.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class VirtualChildrenTest
+{
+
+    private static List<IEntry> createWindow( int first, int size ) throws Exception
+    {
+        List<IEntry> window = new ArrayList<IEntry>();
+        for ( int i = first; i < first + size; i++ )
+        {
+            Dn dn = new Dn( "uid=user" + i + ",ou=users,ou=system" ); //$NON-NLS-1$ //$NON-NLS-2$
+            window.add( new DummyEntry( dn, null ) );
+        }
+        return window;
+    }
+
+
+    /**
+     * Tests that nothing is fetched initially.
+     */
+    @Test
+    public void testEmpty()
+    {
+        VirtualChildren virtualChildren = new VirtualChildren( "uid", 10 ); //$NON-NLS-1$
+
+        assertEquals( "uid", virtualChildren.getSortAttribute() ); //$NON-NLS-1$
+        assertEquals( 10, virtualChildren.getWindowSize() );
+        assertEquals( 0, virtualChildren.getContentCount() );
+        assertNull( virtualChildren.getContextId() );
+        assertNull( virtualChildren.getChildren( 0, 0 ) );
+        assertFalse( virtualChildren.isFetched( 0, 9 ) );
+    }
+
+
+    /**
+     * Tests that the windows are stored at their positions and only
+     * ranges that are fetched completely are returned.
+     */
+    @Test
+    public void testWindows() throws Exception
+    {
+        VirtualChildren virtualChildren = new VirtualChildren( "uid", 10 ); //$NON-NLS-1$
+        List<IEntry> firstWindow = createWindow( 0, 10 );
+        byte[] contextId = new byte[]
+            { 1, 2, 3 };
+        virtualChildren.setWindow( 100, contextId, 0, firstWindow );
+
+        assertEquals( 100, virtualChildren.getContentCount() );
+        assertSame( contextId, virtualChildren.getContextId() );
+        assertTrue( virtualChildren.isFetched( 0, 9 ) );
+        assertFalse( virtualChildren.isFetched( 0, 10 ) );
+        assertFalse( virtualChildren.isFetched( 50, 59 ) );
+        assertArrayEquals( firstWindow.toArray(), virtualChildren.getChildren( 0, 9 ) );
+        assertSame( firstWindow.get( 3 ), virtualChildren.getChildren( 3, 3 )[0] );
+
+        List<IEntry> otherWindow = createWindow( 50, 10 );
+        virtualChildren.setWindow( 100, null, 50, otherWindow );
+
+        assertNull( virtualChildren.getContextId() );
+        assertTrue( virtualChildren.isFetched( 0, 9 ) );
+        assertTrue( virtualChildren.isFetched( 50, 59 ) );
+        assertFalse( virtualChildren.isFetched( 9, 50 ) );
+        assertArrayEquals( otherWindow.toArray(), virtualChildren.getChildren( 50, 59 ) );
+    }
+
+
+    /**
+     * Tests that the fetched windows are discarded if the number of
+     * children changed on the server.
+     */
+    @Test
+    public void testContentCountChanged() throws Exception
+    {
+        VirtualChildren virtualChildren = new VirtualChildren( "uid", 10 ); //$NON-NLS-1$
+        virtualChildren.setWindow( 100, null, 0, createWindow( 0, 10 ) );
+        virtualChildren.setWindow( 100, null, 10, createWindow( 10, 10 ) );
+        assertTrue( virtualChildren.isFetched( 0, 19 ) );
+
+        virtualChildren.setWindow( 101, null, 10, createWindow( 10, 10 ) );
+
+        assertEquals( 101, virtualChildren.getContentCount() );
+        assertFalse( virtualChildren.isFetched( 0, 9 ) );
+        assertTrue( virtualChildren.isFetched( 10, 19 ) );
+        assertFalse( virtualChildren.isFetched( 100, 100 ) );
+    }
+
+
+    /**
+     * Tests that children outside of the content count are ignored
+     * and invalid ranges return nothing.
+     */
+    @Test
+    public void testBounds() throws Exception
+    {
+        VirtualChildren virtualChildren = new VirtualChildren( "uid", 10 ); //$NON-NLS-1$
+
+        // the server may return a window that starts before the first position or exceeds the last position
+        virtualChildren.setWindow( 15, null, -2, createWindow( 0, 10 ) );
+        virtualChildren.setWindow( 15, null, 10, createWindow( 10, 10 ) );
+
+        assertTrue( virtualChildren.isFetched( 0, 7 ) );
+        assertFalse( virtualChildren.isFetched( 8, 9 ) );
+        assertTrue( virtualChildren.isFetched( 10, 14 ) );
+        assertNull( virtualChildren.getChildren( 10, 15 ) );
+        assertNull( virtualChildren.getChildren( -1, 5 ) );
+        assertNull( virtualChildren.getChildren( 5, 4 ) );
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+
+package org.apache.directory.studio.ldapbrowser.ui.actions;
+
+
+import org.apache.directory.studio.connection.ui.RunnableContextRunner;
+import org.apache.directory.studio.ldapbrowser.common.actions.BrowserAction;
+import org.apache.directory.studio.ldapbrowser.core.jobs.ProfileSubtreeRunnable;
+import org.apache.directory.studio.ldapbrowser.core.model.IEntry;
+import org.apache.directory.studio.ldapbrowser.ui.dialogs.SubtreeProfileDialog;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.jface.resource.ImageDescriptor;
+import org.eclipse.ui.PlatformUI;
+
+
+/**
+ * This Action collects the statistics of the subtree of the selected entry
+ * and opens the subtree profile dialog.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class ProfileSubtreeAction extends BrowserAction
+{
+    /**
+     * Creates a new instance of ProfileSubtreeAction.
+     */
+    public ProfileSubtreeAction()
+    {
+        super();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void run()
+    {
+        IEntry entry = getEntry();
+        ProfileSubtreeRunnable runnable = new ProfileSubtreeRunnable( entry.getBrowserConnection(), entry.getDn() );
+        IStatus status = RunnableContextRunner.execute( runnable, null, true );
+
+        // a canceled profile is shown with the entries read so far
+        if ( status.getSeverity() != IStatus.ERROR && runnable.getProfile() != null )
+        {
+            new SubtreeProfileDialog( PlatformUI.getWorkbench().getActiveWorkbenchWindow().getShell(),
+                runnable.getProfile() ).open();
+        }
+    }
+
+
+    private IEntry getEntry()
+    {
+        if ( getSelectedEntries().length == 1 )
+        {
+            return getSelectedEntries()[0];
+        }
+        else if ( getSelectedSearchResults().length == 1 )
+        {
+            return getSelectedSearchResults()[0].getEntry();
+        }
+        else if ( getSelectedBookmarks().length == 1 )
+        {
+            return getSelectedBookmarks()[0].getEntry();
+        }
+
+        return null;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getText()
+    {
+        return Messages.getString( "ProfileSubtreeAction.Text" ); //$NON-NLS-1$
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public ImageDescriptor getImageDescriptor()
+    {
+        return null;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getCommandId()
+    {
+        return null;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isEnabled()
+    {
+        return getSelectedEntries().length + getSelectedSearchResults().length + getSelectedBookmarks().length == 1
+            && getSelectedSearches().length == 0 && getEntry() != null;
+    }
+
+}
@@ -0,0 +1,280 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+
+package org.apache.directory.studio.ldapbrowser.ui.dialogs;
+
+
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import org.apache.directory.studio.common.ui.widgets.BaseWidgetUtils;
+import org.apache.directory.studio.ldapbrowser.core.BrowserCoreConstants;
+import org.apache.directory.studio.ldapbrowser.core.BrowserCorePlugin;
+import org.apache.directory.studio.ldapbrowser.core.model.SubtreeProfile;
+import org.apache.directory.studio.ldapbrowser.core.model.SubtreeProfile.AttributeProfile;
+import org.apache.directory.studio.ldapbrowser.core.model.SubtreeProfile.Counter;
+import org.apache.directory.studio.ldapbrowser.core.model.SubtreeProfile.EntrySize;
+import org.eclipse.core.runtime.Preferences;
+import org.eclipse.jface.dialogs.Dialog;
+import org.eclipse.jface.dialogs.IDialogConstants;
+import org.eclipse.jface.dialogs.MessageDialog;
+import org.eclipse.osgi.util.NLS;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.FileDialog;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.TabFolder;
+import org.eclipse.swt.widgets.TabItem;
+import org.eclipse.swt.widgets.Table;
+import org.eclipse.swt.widgets.TableColumn;
+import org.eclipse.swt.widgets.TableItem;
+
+
+/**
+ * The SubtreeProfileDialog shows the statistics of a subtree
+ * and allows to save them as CSV file.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class SubtreeProfileDialog extends Dialog
+{
+
+    /** The id of the save as CSV button. */
+    private static final int SAVE_AS_CSV_ID = IDialogConstants.CLIENT_ID + 1;
+
+    /** The statistics to show. */
+    private SubtreeProfile profile;
+
+
+    /**
+     * Creates a new instance of SubtreeProfileDialog.
+     *
+     * @param parentShell the parent shell
+     * @param profile the statistics to show
+     */
+    public SubtreeProfileDialog( Shell parentShell, SubtreeProfile profile )
+    {
+        super( parentShell );
+        super.setShellStyle( super.getShellStyle() | SWT.RESIZE );
+        this.profile = profile;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    protected void configureShell( Shell shell )
+    {
+        super.configureShell( shell );
+        shell.setText( Messages.getString( "SubtreeProfileDialog.Title" ) ); //$NON-NLS-1$
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    protected void createButtonsForButtonBar( Composite parent )
+    {
+        createButton( parent, SAVE_AS_CSV_ID,
+            Messages.getString( "SubtreeProfileDialog.SaveAsCsv" ), false ); //$NON-NLS-1$
+        createButton( parent, IDialogConstants.OK_ID, IDialogConstants.CLOSE_LABEL, true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    protected void buttonPressed( int buttonId )
+    {
+        if ( buttonId == SAVE_AS_CSV_ID )
+        {
+            saveAsCsv();
+        }
+        else
+        {
+            super.buttonPressed( buttonId );
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    protected Control createDialogArea( Composite parent )
+    {
+        Composite composite = ( Composite ) super.createDialogArea( parent );
+        GridData gd = new GridData( GridData.FILL_BOTH );
+        gd.widthHint = convertHorizontalDLUsToPixels( IDialogConstants.MINIMUM_MESSAGE_AREA_WIDTH * 2 );
+        gd.heightHint = convertVerticalDLUsToPixels( IDialogConstants.MINIMUM_MESSAGE_AREA_WIDTH );
+        composite.setLayoutData( gd );
+
+        String summary = NLS.bind( Messages.getString( "SubtreeProfileDialog.Summary" ), new Object[] //$NON-NLS-1$
+            { profile.getBase().getName(), Long.toString( profile.getEntryCount() ),
+                Long.toString( profile.getTotalSize() ) } );
+        BaseWidgetUtils.createLabel( composite, summary, 1 );
+
+        TabFolder tabFolder = new TabFolder( composite, SWT.TOP );
+        tabFolder.setLayoutData( new GridData( GridData.FILL_BOTH ) );
+
+        Table objectClassTable = createTable( tabFolder, "SubtreeProfileDialog.ObjectClasses", //$NON-NLS-1$
+            "SubtreeProfileDialog.ObjectClass", "SubtreeProfileDialog.Entries" ); //$NON-NLS-1$ //$NON-NLS-2$
+        for ( Counter counter : profile.getObjectClassCounters() )
+        {
+            createItem( objectClassTable, counter.getName(), counter.getCount() );
+        }
+
+        Table subtreeTable = createTable( tabFolder, "SubtreeProfileDialog.Subtrees", //$NON-NLS-1$
+            "SubtreeProfileDialog.Subtree", "SubtreeProfileDialog.Entries" ); //$NON-NLS-1$ //$NON-NLS-2$
+        for ( Counter counter : profile.getSubtreeCounters() )
+        {
+            createItem( subtreeTable, counter.getName(), counter.getCount() );
+        }
+        if ( profile.getOtherSubtreesEntryCount() > 0 )
+        {
+            createItem( subtreeTable, Messages.getString( "SubtreeProfileDialog.OtherSubtrees" ), //$NON-NLS-1$
+                profile.getOtherSubtreesEntryCount() );
+        }
+
+        Table attributeTable = createTable( tabFolder, "SubtreeProfileDialog.Attributes", //$NON-NLS-1$
+            "SubtreeProfileDialog.Attribute", "SubtreeProfileDialog.Entries", //$NON-NLS-1$ //$NON-NLS-2$
+            "SubtreeProfileDialog.Values", "SubtreeProfileDialog.DistinctValues", //$NON-NLS-1$ //$NON-NLS-2$
+            "SubtreeProfileDialog.TotalSize", "SubtreeProfileDialog.MaxSize" ); //$NON-NLS-1$ //$NON-NLS-2$
+        for ( AttributeProfile attributeProfile : profile.getAttributeProfiles() )
+        {
+            createItem( attributeTable, attributeProfile.getDescription(), attributeProfile.getEntryCount(),
+                attributeProfile.getValueCount(), attributeProfile.getDistinctValueCount(),
+                attributeProfile.getTotalSize(), attributeProfile.getMaxSize() );
+        }
+
+        Table valueSizeTable = createTable( tabFolder, "SubtreeProfileDialog.ValueSizes", //$NON-NLS-1$
+            "SubtreeProfileDialog.Attribute", "SubtreeProfileDialog.ValueSize", //$NON-NLS-1$ //$NON-NLS-2$
+            "SubtreeProfileDialog.Values" ); //$NON-NLS-1$
+        for ( AttributeProfile attributeProfile : profile.getAttributeProfiles() )
+        {
+            long[] histogram = attributeProfile.getHistogram();
+            for ( int i = 0; i < histogram.length; i++ )
+            {
+                if ( histogram[i] > 0 )
+                {
+                    String range = SubtreeProfile.getBucketMinSize( i ) + " - " //$NON-NLS-1$
+                        + SubtreeProfile.getBucketMaxSize( i );
+                    createItem( valueSizeTable, attributeProfile.getDescription(), range, histogram[i] );
+                }
+            }
+        }
+
+        Table largestEntryTable = createTable( tabFolder, "SubtreeProfileDialog.LargestEntries", //$NON-NLS-1$
+            "SubtreeProfileDialog.Dn", "SubtreeProfileDialog.Size" ); //$NON-NLS-1$ //$NON-NLS-2$
+        for ( EntrySize entrySize : profile.getLargestEntries() )
+        {
+            createItem( largestEntryTable, entrySize.getDn(), entrySize.getSize() );
+        }
+
+        packColumns( objectClassTable, subtreeTable, attributeTable, valueSizeTable, largestEntryTable );
+        applyDialogFont( composite );
+        return composite;
+    }
+
+
+    private static Table createTable( TabFolder tabFolder, String tabKey, String... columnKeys )
+    {
+        Table table = new Table( tabFolder, SWT.BORDER | SWT.FULL_SELECTION | SWT.V_SCROLL | SWT.H_SCROLL );
+        table.setHeaderVisible( true );
+        table.setLinesVisible( true );
+        for ( int i = 0; i < columnKeys.length; i++ )
+        {
+            TableColumn column = new TableColumn( table, i == 0 ? SWT.LEFT : SWT.RIGHT );
+            column.setText( Messages.getString( columnKeys[i] ) );
+        }
+
+        TabItem tabItem = new TabItem( tabFolder, SWT.NONE );
+        tabItem.setText( Messages.getString( tabKey ) );
+        tabItem.setControl( table );
+        return table;
+    }
+
+
+    private static void createItem( Table table, Object... values )
+    {
+        TableItem item = new TableItem( table, SWT.NONE );
+        for ( int i = 0; i < values.length; i++ )
+        {
+            item.setText( i, String.valueOf( values[i] ) );
+        }
+    }
+
+
+    private static void packColumns( Table... tables )
+    {
+        for ( Table table : tables )
+        {
+            for ( TableColumn column : table.getColumns() )
+            {
+                column.pack();
+            }
+        }
+    }
+
+
+    /**
+     * Saves the statistics as CSV file, using the CSV format preferences.
+     */
+    private void saveAsCsv()
+    {
+        FileDialog fileDialog = new FileDialog( getShell(), SWT.SAVE );
+        fileDialog.setFilterExtensions( new String[]
+            { "*.csv", "*.*" } ); //$NON-NLS-1$ //$NON-NLS-2$
+        fileDialog.setOverwrite( true );
+        String path = fileDialog.open();
+        if ( path == null )
+        {
+            return;
+        }
+
+        Preferences coreStore = BrowserCorePlugin.getDefault().getPluginPreferences();
+        String attributeDelimiter = coreStore
+            .getString( BrowserCoreConstants.PREFERENCE_FORMAT_CSV_ATTRIBUTEDELIMITER );
+        String quoteCharacter = coreStore.getString( BrowserCoreConstants.PREFERENCE_FORMAT_CSV_QUOTECHARACTER );
+        String lineSeparator = coreStore.getString( BrowserCoreConstants.PREFERENCE_FORMAT_CSV_LINESEPARATOR );
+        String encoding = coreStore.getString( BrowserCoreConstants.PREFERENCE_FORMAT_CSV_ENCODING );
+
+        try
+        {
+            Writer writer = new OutputStreamWriter( new FileOutputStream( path ), encoding );
+            try
+            {
+                writer.write( profile.toCsv( attributeDelimiter, quoteCharacter, lineSeparator ) );
+            }
+            finally
+            {
+                writer.close();
+            }
+        }
+        catch ( Exception e )
+        {
+            MessageDialog.openError( getShell(), Messages.getString( "SubtreeProfileDialog.Title" ), //$NON-NLS-1$
+                NLS.bind( Messages.getString( "SubtreeProfileDialog.SaveError" ), e.getMessage() ) ); //$NON-NLS-1$
+        }
+    }
+
+}
@@ -96,7 +96,8 @@ public class SearchPropertyPage extends PropertyPage implements IWorkbenchProper
 
         Composite composite = BaseWidgetUtils.createColumnContainer( parent, 3, 1 );
 
-        spw = new SearchPageWrapper( SearchPageWrapper.CONNECTION_READONLY );
+        spw = new SearchPageWrapper( SearchPageWrapper.CONNECTION_READONLY
+            | SearchPageWrapper.CACHEONLY_VISIBLE );
         spw.createContents( composite );
         spw.loadFromSearch( search );
         spw.addWidgetModifyListener( this );
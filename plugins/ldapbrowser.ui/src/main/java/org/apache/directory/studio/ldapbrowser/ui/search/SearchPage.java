@@ -157,7 +157,7 @@ public class SearchPage extends DialogPage implements ISearchPage, WidgetModifyL
         parent.setLayoutData( gd );
 
         Composite composite = BaseWidgetUtils.createColumnContainer( parent, 3, 1 );
-        spw = new SearchPageWrapper( SearchPageWrapper.NONE );
+        spw = new SearchPageWrapper( SearchPageWrapper.CACHEONLY_VISIBLE );
         spw.createContents( composite );
         spw.loadFromSearch( search );
         spw.addWidgetModifyListener( this );
@@ -49,6 +49,7 @@ import org.apache.directory.studio.ldapbrowser.ui.actions.NewEntryAction;
 import org.apache.directory.studio.ldapbrowser.ui.actions.NewSearchAction;
 import org.apache.directory.studio.ldapbrowser.ui.actions.OpenEntryEditorAction;
 import org.apache.directory.studio.ldapbrowser.ui.actions.PasswordModifyExtendedOperationAction;
+import org.apache.directory.studio.ldapbrowser.ui.actions.ProfileSubtreeAction;
 import org.apache.directory.studio.utils.ActionUtils;
 import org.eclipse.jface.action.IAction;
 import org.eclipse.jface.action.IMenuManager;
@@ -194,6 +195,9 @@ public class BrowserViewActionGroup extends BrowserActionGroup
     /** The Constant passwordModifyExtendedOperationAction. */
     private static final String passwordModifyExtendedOperationAction = "passwordModifyExtendedOperation"; //$NON-NLS-1$
 
+    /** The Constant profileSubtreeAction. */
+    private static final String profileSubtreeAction = "profileSubtreeAction"; //$NON-NLS-1$
+
 
     /**
      * Creates a new instance of BrowserViewActionGroup and 
@@ -278,6 +282,8 @@ public class BrowserViewActionGroup extends BrowserActionGroup
         browserActionMap.put( openEntryEditorAction, new BrowserViewActionProxy( viewer, new OpenEntryEditorAction() ) );
 
         browserActionMap.put( passwordModifyExtendedOperationAction, new BrowserViewActionProxy( viewer, new PasswordModifyExtendedOperationAction() ) );
+
+        browserActionMap.put( profileSubtreeAction, new BrowserViewActionProxy( viewer, new ProfileSubtreeAction() ) );
     }
 
 
@@ -413,6 +419,7 @@ public class BrowserViewActionGroup extends BrowserActionGroup
         exportMenuManager.add( browserActionMap.get( exportExcelAction ) );
         exportMenuManager.add( browserActionMap.get( exportOdfAction ) );
         menuManager.add( exportMenuManager );
+        menuManager.add( browserActionMap.get( profileSubtreeAction ) );
         menuManager.add( new Separator() );
 
         // refresh
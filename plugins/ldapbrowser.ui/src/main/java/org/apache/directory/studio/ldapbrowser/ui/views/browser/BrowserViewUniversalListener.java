@@ -652,8 +652,13 @@ public class BrowserViewUniversalListener extends BrowserUniversalListener imple
         {
             viewer.refresh();
         }
-        else if ( event instanceof ChildrenInitializedEvent )
+        else if ( event instanceof ChildrenInitializedEvent
+            && !( ( ChildrenInitializedEvent ) event ).hasChildrenChanges() )
         {
+            // Only for newly initialized children, a bulk modification fired by
+            // IEntry.updateChildren() carries the added and deleted children and
+            // must not collapse the expanded subtrees
+
             // Getting the children of the entry to collapse their nodes
             // See DIRSTUDIO-481 (refreshing of attributes and children)
             Object[] children = ( ( BrowserContentProvider ) viewer.getContentProvider() ).getChildren( event
@@ -45,6 +45,14 @@ import org.eclipse.swt.widgets.Group;
  */
 public class ImportDsmlMainWizardPage extends WizardPage
 {
+    /** The stream requests flag key */
+    public static final String STREAM_REQUESTS_DIALOGSETTING_KEY = ImportDsmlMainWizardPage.class.getName()
+        + ".streamRequests"; //$NON-NLS-1$
+
+    /** The pipeline add requests flag key */
+    public static final String PIPELINE_ADD_REQUESTS_DIALOGSETTING_KEY = ImportDsmlMainWizardPage.class.getName()
+        + ".pipelineAddRequests"; //$NON-NLS-1$
+
     /** The wizard the page is attached to */
     private ImportDsmlWizard wizard;
 
@@ -76,6 +84,12 @@ public class ImportDsmlMainWizardPage extends WizardPage
     /** The custom response file name. */
     private String customResponseFileName;
 
+    /** The stream requests button. */
+    private Button streamRequestsButton;
+
+    /** The pipeline add requests button. */
+    private Button pipelineAddRequestsButton;
+
 
     /**
      * Creates a new instance of ImportDsmlMainWizardPage.
@@ -215,6 +229,52 @@ public class ImportDsmlMainWizardPage extends WizardPage
             }
         } );
 
+        // Options
+        Composite optionsOuterComposite = BaseWidgetUtils.createColumnContainer( composite, 1, 3 );
+        Group optionsGroup = BaseWidgetUtils.createGroup( optionsOuterComposite, Messages
+            .getString( "ImportDsmlMainWizardPage.Options" ), 1 ); //$NON-NLS-1$
+        Composite optionsContainer = BaseWidgetUtils.createColumnContainer( optionsGroup, 3, 1 );
+
+        streamRequestsButton = BaseWidgetUtils.createCheckbox( optionsContainer, Messages
+            .getString( "ImportDsmlMainWizardPage.StreamRequests" ), 3 ); //$NON-NLS-1$
+        streamRequestsButton
+            .setToolTipText( Messages.getString( "ImportDsmlMainWizardPage.StreamRequestsToolTip" ) ); //$NON-NLS-1$
+        if ( BrowserUIPlugin.getDefault().getDialogSettings().get( STREAM_REQUESTS_DIALOGSETTING_KEY ) == null )
+        {
+            BrowserUIPlugin.getDefault().getDialogSettings().put( STREAM_REQUESTS_DIALOGSETTING_KEY, false );
+        }
+        streamRequestsButton.setSelection( BrowserUIPlugin.getDefault().getDialogSettings().getBoolean(
+            STREAM_REQUESTS_DIALOGSETTING_KEY ) );
+        wizard.setStreamRequests( streamRequestsButton.getSelection() );
+        streamRequestsButton.addSelectionListener( new SelectionAdapter()
+        {
+            public void widgetSelected( SelectionEvent event )
+            {
+                wizard.setStreamRequests( streamRequestsButton.getSelection() );
+                validate();
+            }
+        } );
+
+        pipelineAddRequestsButton = BaseWidgetUtils.createCheckbox( optionsContainer, Messages
+            .getString( "ImportDsmlMainWizardPage.PipelineAddRequests" ), 3 ); //$NON-NLS-1$
+        pipelineAddRequestsButton.setToolTipText( Messages
+            .getString( "ImportDsmlMainWizardPage.PipelineAddRequestsToolTip" ) ); //$NON-NLS-1$
+        if ( BrowserUIPlugin.getDefault().getDialogSettings().get( PIPELINE_ADD_REQUESTS_DIALOGSETTING_KEY ) == null )
+        {
+            BrowserUIPlugin.getDefault().getDialogSettings().put( PIPELINE_ADD_REQUESTS_DIALOGSETTING_KEY, false );
+        }
+        pipelineAddRequestsButton.setSelection( BrowserUIPlugin.getDefault().getDialogSettings().getBoolean(
+            PIPELINE_ADD_REQUESTS_DIALOGSETTING_KEY ) );
+        wizard.setPipelineAddRequests( pipelineAddRequestsButton.getSelection() );
+        pipelineAddRequestsButton.addSelectionListener( new SelectionAdapter()
+        {
+            public void widgetSelected( SelectionEvent event )
+            {
+                wizard.setPipelineAddRequests( pipelineAddRequestsButton.getSelection() );
+                validate();
+            }
+        } );
+
         setControl( composite );
     }
 
@@ -302,5 +362,9 @@ public class ImportDsmlMainWizardPage extends WizardPage
     public void saveDialogSettings()
     {
         dsmlFileBrowserWidget.saveDialogSettings();
+        BrowserUIPlugin.getDefault().getDialogSettings().put( STREAM_REQUESTS_DIALOGSETTING_KEY,
+            streamRequestsButton.getSelection() );
+        BrowserUIPlugin.getDefault().getDialogSettings().put( PIPELINE_ADD_REQUESTS_DIALOGSETTING_KEY,
+            pipelineAddRequestsButton.getSelection() );
     }
 }
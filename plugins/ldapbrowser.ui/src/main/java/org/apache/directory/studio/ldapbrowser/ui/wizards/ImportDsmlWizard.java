@@ -65,6 +65,12 @@ public class ImportDsmlWizard extends Wizard implements IImportWizard
     /** The Save Response flag */
     private boolean saveResponse;
 
+    /** The Stream Requests flag */
+    private boolean streamRequests;
+
+    /** The Pipeline Add Requests flag */
+    private boolean pipelineAddRequests;
+
 
     /**
      * Creates a new instance of ImportDsmlWizard.
@@ -108,16 +114,10 @@ public class ImportDsmlWizard extends Wizard implements IImportWizard
         if ( dsmlFilename != null && !"".equals( dsmlFilename ) ) //$NON-NLS-1$
         {
             File dsmlFile = new File( dsmlFilename );
-
-            if ( saveResponse )
-            {
-                File responseFile = new File( responseFilename );
-                new StudioBrowserJob( new ImportDsmlRunnable( importConnection, dsmlFile, responseFile ) ).execute();
-            }
-            else
-            {
-                new StudioBrowserJob( new ImportDsmlRunnable( importConnection, dsmlFile ) ).execute();
-            }
+            File responseFile = saveResponse ? new File( responseFilename ) : null;
+            int pipelineSize = pipelineAddRequests ? ImportDsmlRunnable.DEFAULT_PIPELINE_SIZE : 1;
+            new StudioBrowserJob( new ImportDsmlRunnable( importConnection, dsmlFile, responseFile, streamRequests,
+                pipelineSize ) ).execute();
 
             return true;
         }
@@ -246,4 +246,26 @@ public class ImportDsmlWizard extends Wizard implements IImportWizard
     {
         this.saveResponse = b;
     }
+
+
+    /**
+     * Sets the Stream Requests flag
+     * @param b
+     *          The Stream Requests flag
+     */
+    public void setStreamRequests( boolean b )
+    {
+        this.streamRequests = b;
+    }
+
+
+    /**
+     * Sets the Pipeline Add Requests flag
+     * @param b
+     *          The Pipeline Add Requests flag
+     */
+    public void setPipelineAddRequests( boolean b )
+    {
+        this.pipelineAddRequests = b;
+    }
 }
@@ -28,6 +28,7 @@ import org.apache.directory.studio.common.ui.widgets.WidgetModifyEvent;
 import org.apache.directory.studio.common.ui.widgets.WidgetModifyListener;
 import org.apache.directory.studio.ldapbrowser.common.widgets.FileBrowserWidget;
 import org.apache.directory.studio.ldapbrowser.common.widgets.search.BrowserConnectionWidget;
+import org.apache.directory.studio.ldapbrowser.core.jobs.ImportLdifRunnable;
 import org.apache.directory.studio.ldapbrowser.ui.BrowserUIConstants;
 import org.apache.directory.studio.ldapbrowser.ui.BrowserUIPlugin;
 import org.eclipse.jface.wizard.WizardPage;
@@ -50,6 +51,14 @@ public class ImportLdifMainWizardPage extends WizardPage
     public static final String CONTINUE_ON_ERROR_DIALOGSETTING_KEY = ImportLdifMainWizardPage.class.getName()
         + ".continueOnError"; //$NON-NLS-1$
 
+    /** The pipeline add records flag key */
+    public static final String PIPELINE_ADD_RECORDS_DIALOGSETTING_KEY = ImportLdifMainWizardPage.class.getName()
+        + ".pipelineAddRecords"; //$NON-NLS-1$
+
+    /** The use transactions flag key */
+    public static final String USE_TRANSACTIONS_DIALOGSETTING_KEY = ImportLdifMainWizardPage.class.getName()
+        + ".useTransactions"; //$NON-NLS-1$
+
     /** The update if entry exists flag key */
     public static final String UPDATE_IF_ENTRY_EXISTS_DIALOGSETTING_KEY = ImportLdifMainWizardPage.class.getName()
         + ".updateIfEntryExists"; //$NON-NLS-1$
@@ -95,6 +104,15 @@ public class ImportLdifMainWizardPage extends WizardPage
     /** The continue on error button. */
     private Button continueOnErrorButton;
 
+    /** The pipeline add records button. */
+    private Button pipelineAddRecordsButton;
+
+    /** The use transactions button. */
+    private Button useTransactionsButton;
+
+    /** The resume import button. */
+    private Button resumeImportButton;
+
 
     /**
      * Creates a new instance of ImportLdifMainWizardPage.
@@ -123,6 +141,14 @@ public class ImportLdifMainWizardPage extends WizardPage
         boolean ok = true;
 
         File ldifFile = new File( ldifFileBrowserWidget.getFilename() );
+        boolean resume = false;
+        if ( resumeImportButton != null )
+        {
+            resumeImportButton.setEnabled( ldifFile.isFile() && ImportLdifRunnable.hasCheckpoint( ldifFile ) );
+            resume = resumeImportButton.isEnabled() && resumeImportButton.getSelection();
+            wizard.setResumeImport( resume );
+        }
+
         if ( "".equals( ldifFileBrowserWidget.getFilename() ) ) //$NON-NLS-1$
         {
             setErrorMessage( null );
@@ -153,7 +179,7 @@ public class ImportLdifMainWizardPage extends WizardPage
                 setErrorMessage( Messages.getString( "ImportLdifMainWizardPage.ErrorSelectedLogFileNotFile" ) ); //$NON-NLS-1$
                 ok = false;
             }
-            else if ( logFile.exists() && !overwriteLogfileButton.getSelection() )
+            else if ( logFile.exists() && !overwriteLogfileButton.getSelection() && !resume )
             {
                 setErrorMessage( Messages.getString( "ImportLdifMainWizardPage.ErrorSelectedLogFileExist" ) ); //$NON-NLS-1$
                 ok = false;
@@ -356,6 +382,60 @@ public class ImportLdifMainWizardPage extends WizardPage
             }
         } );
 
+        pipelineAddRecordsButton = BaseWidgetUtils.createCheckbox( optionsContainer, Messages
+            .getString( "ImportLdifMainWizardPage.PipelineAddRecords" ), 3 ); //$NON-NLS-1$
+        pipelineAddRecordsButton
+            .setToolTipText( Messages.getString( "ImportLdifMainWizardPage.PipelineAddRecordsToolTip" ) ); //$NON-NLS-1$
+        if ( BrowserUIPlugin.getDefault().getDialogSettings().get( PIPELINE_ADD_RECORDS_DIALOGSETTING_KEY ) == null )
+        {
+            BrowserUIPlugin.getDefault().getDialogSettings().put( PIPELINE_ADD_RECORDS_DIALOGSETTING_KEY, false );
+        }
+        pipelineAddRecordsButton.setSelection( BrowserUIPlugin.getDefault().getDialogSettings().getBoolean(
+            PIPELINE_ADD_RECORDS_DIALOGSETTING_KEY ) );
+        wizard.setPipelineAddRecords( pipelineAddRecordsButton.getSelection() );
+        pipelineAddRecordsButton.addSelectionListener( new SelectionAdapter()
+        {
+            public void widgetSelected( SelectionEvent event )
+            {
+                wizard.setPipelineAddRecords( pipelineAddRecordsButton.getSelection() );
+                validate();
+            }
+        } );
+
+        useTransactionsButton = BaseWidgetUtils.createCheckbox( optionsContainer, Messages
+            .getString( "ImportLdifMainWizardPage.UseTransactions" ), 3 ); //$NON-NLS-1$
+        useTransactionsButton
+            .setToolTipText( Messages.getString( "ImportLdifMainWizardPage.UseTransactionsToolTip" ) ); //$NON-NLS-1$
+        if ( BrowserUIPlugin.getDefault().getDialogSettings().get( USE_TRANSACTIONS_DIALOGSETTING_KEY ) == null )
+        {
+            BrowserUIPlugin.getDefault().getDialogSettings().put( USE_TRANSACTIONS_DIALOGSETTING_KEY, false );
+        }
+        useTransactionsButton.setSelection( BrowserUIPlugin.getDefault().getDialogSettings().getBoolean(
+            USE_TRANSACTIONS_DIALOGSETTING_KEY ) );
+        wizard.setUseTransactions( useTransactionsButton.getSelection() );
+        useTransactionsButton.addSelectionListener( new SelectionAdapter()
+        {
+            public void widgetSelected( SelectionEvent event )
+            {
+                wizard.setUseTransactions( useTransactionsButton.getSelection() );
+                validate();
+            }
+        } );
+
+        resumeImportButton = BaseWidgetUtils.createCheckbox( optionsContainer, Messages
+            .getString( "ImportLdifMainWizardPage.ResumeImport" ), 3 ); //$NON-NLS-1$
+        resumeImportButton
+            .setToolTipText( Messages.getString( "ImportLdifMainWizardPage.ResumeImportToolTip" ) ); //$NON-NLS-1$
+        File ldifFile = new File( ldifFileBrowserWidget.getFilename() );
+        resumeImportButton.setEnabled( ldifFile.isFile() && ImportLdifRunnable.hasCheckpoint( ldifFile ) );
+        resumeImportButton.addSelectionListener( new SelectionAdapter()
+        {
+            public void widgetSelected( SelectionEvent event )
+            {
+                validate();
+            }
+        } );
+
         setControl( composite );
     }
 
@@ -370,6 +450,10 @@ public class ImportLdifMainWizardPage extends WizardPage
             updateIfEntryExistsButton.getSelection() );
         BrowserUIPlugin.getDefault().getDialogSettings().put( CONTINUE_ON_ERROR_DIALOGSETTING_KEY,
             continueOnErrorButton.getSelection() );
+        BrowserUIPlugin.getDefault().getDialogSettings().put( PIPELINE_ADD_RECORDS_DIALOGSETTING_KEY,
+            pipelineAddRecordsButton.getSelection() );
+        BrowserUIPlugin.getDefault().getDialogSettings().put( USE_TRANSACTIONS_DIALOGSETTING_KEY,
+            useTransactionsButton.getSelection() );
     }
 
 }
\ No newline at end of file
@@ -72,6 +72,15 @@ public class ImportLdifWizard extends Wizard implements IImportWizard
     /** The continue on error flag. */
     private boolean continueOnError;
 
+    /** The pipeline add records flag. */
+    private boolean pipelineAddRecords;
+
+    /** The use transactions flag. */
+    private boolean useTransactions;
+
+    /** The resume import flag. */
+    private boolean resumeImport;
+
 
     /**
      * Creates a new instance of ImportLdifWizard.
@@ -184,18 +193,11 @@ public class ImportLdifWizard extends Wizard implements IImportWizard
         if ( ldifFilename != null && !"".equals( ldifFilename ) ) //$NON-NLS-1$
         {
             File ldifFile = new File( ldifFilename );
-
-            if ( enableLogging )
-            {
-                File logFile = new File( logFilename );
-                new StudioBrowserJob( new ImportLdifRunnable( importConnection, ldifFile, logFile, updateIfEntryExists,
-                    continueOnError ) ).execute();
-            }
-            else
-            {
-                new StudioBrowserJob( new ImportLdifRunnable( importConnection, ldifFile, updateIfEntryExists,
-                    continueOnError ) ).execute();
-            }
+            File logFile = enableLogging ? new File( logFilename ) : null;
+            int pipelineSize = pipelineAddRecords ? ImportLdifRunnable.DEFAULT_PIPELINE_SIZE : 1;
+            int transactionSize = useTransactions ? ImportLdifRunnable.DEFAULT_TRANSACTION_SIZE : 1;
+            new StudioBrowserJob( new ImportLdifRunnable( importConnection, ldifFile, logFile, updateIfEntryExists,
+                continueOnError, pipelineSize, transactionSize, resumeImport ) ).execute();
 
             return true;
         }
@@ -258,6 +260,39 @@ public class ImportLdifWizard extends Wizard implements IImportWizard
     }
 
 
+    /**
+     * Sets the pipeline add records flag.
+     * 
+     * @param pipelineAddRecords the pipeline add records flag
+     */
+    public void setPipelineAddRecords( boolean pipelineAddRecords )
+    {
+        this.pipelineAddRecords = pipelineAddRecords;
+    }
+
+
+    /**
+     * Sets the use transactions flag.
+     * 
+     * @param useTransactions the use transactions flag
+     */
+    public void setUseTransactions( boolean useTransactions )
+    {
+        this.useTransactions = useTransactions;
+    }
+
+
+    /**
+     * Sets the resume import flag.
+     * 
+     * @param resumeImport the resume import flag
+     */
+    public void setResumeImport( boolean resumeImport )
+    {
+        this.resumeImport = resumeImport;
+    }
+
+
     /**
      * Sets the log filename.
      * 
@@ -75,6 +75,9 @@ public class LdifEditorPreferencePage extends PreferencePage implements IWorkben
     /** The continue on error button. */
     private Button continueOnErrorButton;
 
+    /** The use transactions button. */
+    private Button useTransactionsButton;
+
 
     /**
      * Creates a new instance of LdifEditorPreferencePage.
@@ -193,6 +196,13 @@ public class LdifEditorPreferencePage extends PreferencePage implements IWorkben
         continueOnErrorButton.setSelection( getPreferenceStore().getBoolean(
             LdifEditorConstants.PREFERENCE_LDIFEDITOR_OPTIONS_CONTINUEONERROR ) );
 
+        useTransactionsButton = BaseWidgetUtils.createCheckbox( optionsGroup, Messages
+            .getString( "LdifEditorPreferencePage.UseTransactions" ), 1 ); //$NON-NLS-1$
+        useTransactionsButton.setToolTipText( Messages
+            .getString( "LdifEditorPreferencePage.UseTransactionsToolTip" ) ); //$NON-NLS-1$
+        useTransactionsButton.setSelection( getPreferenceStore().getBoolean(
+            LdifEditorConstants.PREFERENCE_LDIFEDITOR_OPTIONS_USETRANSACTIONS ) );
+
         checkEnabled();
 
         return composite;
@@ -232,6 +242,8 @@ public class LdifEditorPreferencePage extends PreferencePage implements IWorkben
             updateIfEntryExistsButton.getSelection() );
         getPreferenceStore().setValue( LdifEditorConstants.PREFERENCE_LDIFEDITOR_OPTIONS_CONTINUEONERROR,
             continueOnErrorButton.getSelection() );
+        getPreferenceStore().setValue( LdifEditorConstants.PREFERENCE_LDIFEDITOR_OPTIONS_USETRANSACTIONS,
+            useTransactionsButton.getSelection() );
 
         return true;
     }
@@ -258,6 +270,8 @@ public class LdifEditorPreferencePage extends PreferencePage implements IWorkben
             LdifEditorConstants.PREFERENCE_LDIFEDITOR_OPTIONS_UPDATEIFENTRYEXISTS ) );
         continueOnErrorButton.setSelection( getPreferenceStore().getDefaultBoolean(
             LdifEditorConstants.PREFERENCE_LDIFEDITOR_OPTIONS_CONTINUEONERROR ) );
+        useTransactionsButton.setSelection( getPreferenceStore().getDefaultBoolean(
+            LdifEditorConstants.PREFERENCE_LDIFEDITOR_OPTIONS_USETRANSACTIONS ) );
 
         super.performDefaults();
 
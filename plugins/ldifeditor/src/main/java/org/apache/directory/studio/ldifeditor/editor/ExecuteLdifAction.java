@@ -23,6 +23,7 @@ package org.apache.directory.studio.ldifeditor.editor;
 
 import org.apache.directory.studio.ldapbrowser.common.dialogs.SelectBrowserConnectionDialog;
 import org.apache.directory.studio.ldapbrowser.core.jobs.ExecuteLdifRunnable;
+import org.apache.directory.studio.ldapbrowser.core.jobs.ImportLdifRunnable;
 import org.apache.directory.studio.ldapbrowser.core.jobs.StudioBrowserJob;
 import org.apache.directory.studio.ldapbrowser.core.model.IBrowserConnection;
 import org.apache.directory.studio.ldifeditor.LdifEditorActivator;
@@ -94,9 +95,12 @@ public class ExecuteLdifAction extends Action
             .getBoolean( LdifEditorConstants.PREFERENCE_LDIFEDITOR_OPTIONS_UPDATEIFENTRYEXISTS );
         boolean continueOnErrorButton = preferenceStore
             .getBoolean( LdifEditorConstants.PREFERENCE_LDIFEDITOR_OPTIONS_CONTINUEONERROR );
+        boolean useTransactions = preferenceStore
+            .getBoolean( LdifEditorConstants.PREFERENCE_LDIFEDITOR_OPTIONS_USETRANSACTIONS );
+        int transactionSize = useTransactions ? ImportLdifRunnable.DEFAULT_TRANSACTION_SIZE : 1;
 
         ExecuteLdifRunnable runnable = new ExecuteLdifRunnable( connection, ldif, updateIfEntryExistsButton,
-            continueOnErrorButton );
+            continueOnErrorButton, transactionSize );
         StudioBrowserJob job = new StudioBrowserJob( runnable );
         job.execute();
     }
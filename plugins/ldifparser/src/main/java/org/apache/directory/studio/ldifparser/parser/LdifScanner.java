@@ -137,9 +137,9 @@ public class LdifScanner
 
     private StringBuffer ldifBuffer;
 
-    private int ldifBufferOffset;
+    private long ldifBufferOffset;
 
-    private int pos;
+    private long pos;
 
 
     public LdifScanner()
@@ -183,7 +183,7 @@ public class LdifScanner
         {
             try
             {
-                return ldifBuffer.charAt( pos - ldifBufferOffset );
+                return ldifBuffer.charAt( ( int ) ( pos - ldifBufferOffset ) );
             }
             catch ( RuntimeException e )
             {
@@ -203,7 +203,7 @@ public class LdifScanner
     void addFolding( StringBuffer sb )
     {
 
-        int oldPos = pos;
+        long oldPos = pos;
 
         try
         {
@@ -315,7 +315,7 @@ public class LdifScanner
     void removeFolding( StringBuffer sb )
     {
 
-        int oldPos = pos;
+        long oldPos = pos;
 
         try
         {
@@ -524,11 +524,24 @@ public class LdifScanner
     }
 
 
+    /**
+     * Gets the offset of a token that ends at the current position. Token and
+     * part offsets are int, past 2^31 characters they wrap around.
+     *
+     * @param length the length of the token
+     * @return the offset of the token
+     */
+    private int offset( int length )
+    {
+        return ( int ) ( pos - length + 1 );
+    }
+
+
     private void flushBuffer()
     {
         if ( this.ldifBufferOffset < this.pos && this.ldifBuffer.length() > 0 )
         {
-            int delta = Math.min( pos - this.ldifBufferOffset, this.ldifBuffer.length() );
+            int delta = ( int ) Math.min( pos - this.ldifBufferOffset, this.ldifBuffer.length() );
             delta--;
             this.ldifBuffer.delete( 0, delta );
             this.ldifBufferOffset += delta;
@@ -551,7 +564,7 @@ public class LdifScanner
             if ( sep != null )
                 line += sep.getValue();
 
-            return new LdifToken( LdifToken.UNKNOWN, line, pos - line.length() + 1 );
+            return new LdifToken( LdifToken.UNKNOWN, line, offset( line.length() ) );
         }
 
         return null;
@@ -568,7 +581,7 @@ public class LdifScanner
             LdifToken sep = matchSep();
             if ( sep != null )
                 line += sep.getValue();
-            return new LdifToken( LdifToken.UNKNOWN, line, pos - line.length() + 1 );
+            return new LdifToken( LdifToken.UNKNOWN, line, offset( line.length() ) );
         }
 
         return null;
@@ -588,7 +601,7 @@ public class LdifScanner
         }
         catch ( EOFException e )
         {
-            return new LdifToken( LdifToken.EOF, "", pos + 1 ); //$NON-NLS-1$
+            return new LdifToken( LdifToken.EOF, "", offset( 0 ) ); //$NON-NLS-1$
         }
 
     }
@@ -629,7 +642,7 @@ public class LdifScanner
                 {
                 }
 
-                return new LdifToken( LdifToken.SEP, sb.toString(), pos - sb.length() + 1 );
+                return new LdifToken( LdifToken.SEP, sb.toString(), offset( sb.length() ) );
             }
             else
             {
@@ -651,7 +664,7 @@ public class LdifScanner
         String line = getFullLine( "#" ); //$NON-NLS-1$
         if ( line != null )
         {
-            return new LdifToken( LdifToken.COMMENT, line, pos - line.length() + 1 );
+            return new LdifToken( LdifToken.COMMENT, line, offset( line.length() ) );
         }
 
         return null;
@@ -665,7 +678,7 @@ public class LdifScanner
         String line = getWordTillColon( "version" ); //$NON-NLS-1$
         if ( line != null )
         {
-            return new LdifToken( LdifToken.VERSION_SPEC, line, pos - line.length() + 1 );
+            return new LdifToken( LdifToken.VERSION_SPEC, line, offset( line.length() ) );
         }
 
         return null;
@@ -679,7 +692,7 @@ public class LdifScanner
         String line = getWordTillColon( "dn" ); //$NON-NLS-1$
         if ( line != null )
         {
-            return new LdifToken( LdifToken.DN_SPEC, line, pos - line.length() + 1 );
+            return new LdifToken( LdifToken.DN_SPEC, line, offset( line.length() ) );
         }
 
         return null;
@@ -693,7 +706,7 @@ public class LdifScanner
         String line = getWordTillColon( "control" ); //$NON-NLS-1$
         if ( line != null )
         {
-            return new LdifToken( LdifToken.CONTROL_SPEC, line, pos - line.length() + 1 );
+            return new LdifToken( LdifToken.CONTROL_SPEC, line, offset( line.length() ) );
         }
 
         return null;
@@ -707,7 +720,7 @@ public class LdifScanner
         String line = getWordTillColon( "changetype" ); //$NON-NLS-1$
         if ( line != null )
         {
-            return new LdifToken( LdifToken.CHANGETYPE_SPEC, line, pos - line.length() + 1 );
+            return new LdifToken( LdifToken.CHANGETYPE_SPEC, line, offset( line.length() ) );
         }
 
         return null;
@@ -721,27 +734,27 @@ public class LdifScanner
         String line = getWord( "add" ); //$NON-NLS-1$
         if ( line != null )
         {
-            return new LdifToken( LdifToken.CHANGETYPE_ADD, line, pos - line.length() + 1 );
+            return new LdifToken( LdifToken.CHANGETYPE_ADD, line, offset( line.length() ) );
         }
         line = getWord( "modify" ); //$NON-NLS-1$
         if ( line != null )
         {
-            return new LdifToken( LdifToken.CHANGETYPE_MODIFY, line, pos - line.length() + 1 );
+            return new LdifToken( LdifToken.CHANGETYPE_MODIFY, line, offset( line.length() ) );
         }
         line = getWord( "delete" ); //$NON-NLS-1$
         if ( line != null )
         {
-            return new LdifToken( LdifToken.CHANGETYPE_DELETE, line, pos - line.length() + 1 );
+            return new LdifToken( LdifToken.CHANGETYPE_DELETE, line, offset( line.length() ) );
         }
         line = getWord( "moddn" ); //$NON-NLS-1$
         if ( line != null )
         {
-            return new LdifToken( LdifToken.CHANGETYPE_MODDN, line, pos - line.length() + 1 );
+            return new LdifToken( LdifToken.CHANGETYPE_MODDN, line, offset( line.length() ) );
         }
         line = getWord( "modrdn" ); //$NON-NLS-1$
         if ( line != null )
         {
-            return new LdifToken( LdifToken.CHANGETYPE_MODDN, line, pos - line.length() + 1 );
+            return new LdifToken( LdifToken.CHANGETYPE_MODDN, line, offset( line.length() ) );
         }
 
         return null;
@@ -765,13 +778,13 @@ public class LdifScanner
         if ( t != null )
         {
             sb.append( t );
-            return new LdifToken( LdifToken.CONTROL_CRITICALITY_TRUE, sb.toString(), pos - sb.length() + 1 );
+            return new LdifToken( LdifToken.CONTROL_CRITICALITY_TRUE, sb.toString(), offset( sb.length() ) );
         }
         String f = getWord( "false" ); //$NON-NLS-1$
         if ( f != null )
         {
             sb.append( f );
-            return new LdifToken( LdifToken.CONTROL_CRITICALITY_FALSE, sb.toString(), pos - sb.length() + 1 );
+            return new LdifToken( LdifToken.CONTROL_CRITICALITY_FALSE, sb.toString(), offset( sb.length() ) );
         }
 
         while ( sb.length() > 0 )
@@ -810,7 +823,7 @@ public class LdifScanner
                 {
                 }
 
-                return new LdifToken( LdifToken.NUMBER, sb.toString(), pos - sb.length() + 1 );
+                return new LdifToken( LdifToken.NUMBER, sb.toString(), offset( sb.length() ) );
             }
             else
             {
@@ -848,7 +861,7 @@ public class LdifScanner
                 {
                 }
 
-                return new LdifToken( LdifToken.OID, sb.toString(), pos - sb.length() + 1 );
+                return new LdifToken( LdifToken.OID, sb.toString(), offset( sb.length() ) );
             }
             else
             {
@@ -887,7 +900,7 @@ public class LdifScanner
                 {
                 }
 
-                return new LdifToken( LdifToken.ATTRIBUTE, sb.toString(), pos - sb.length() + 1 );
+                return new LdifToken( LdifToken.ATTRIBUTE, sb.toString(), offset( sb.length() ) );
             }
             else
             {
@@ -932,17 +945,17 @@ public class LdifScanner
         String line = getWord( "add" ); //$NON-NLS-1$
         if ( line != null )
         {
-            return new LdifToken( LdifToken.MODTYPE_ADD_SPEC, line, pos - line.length() + 1 );
+            return new LdifToken( LdifToken.MODTYPE_ADD_SPEC, line, offset( line.length() ) );
         }
         line = getWord( "replace" ); //$NON-NLS-1$
         if ( line != null )
         {
-            return new LdifToken( LdifToken.MODTYPE_REPLACE_SPEC, line, pos - line.length() + 1 );
+            return new LdifToken( LdifToken.MODTYPE_REPLACE_SPEC, line, offset( line.length() ) );
         }
         line = getWord( "delete" ); //$NON-NLS-1$
         if ( line != null )
         {
-            return new LdifToken( LdifToken.MODTYPE_DELETE_SPEC, line, pos - line.length() + 1 );
+            return new LdifToken( LdifToken.MODTYPE_DELETE_SPEC, line, offset( line.length() ) );
         }
 
         return null;
@@ -956,7 +969,7 @@ public class LdifScanner
         String line = getWord( "-" ); //$NON-NLS-1$
         if ( line != null )
         {
-            return new LdifToken( LdifToken.MODTYPE_SEP, line, pos - line.length() + 1 );
+            return new LdifToken( LdifToken.MODTYPE_SEP, line, offset( line.length() ) );
         }
 
         return null;
@@ -1004,7 +1017,7 @@ public class LdifScanner
                 {
                 }
 
-                return new LdifToken( tokenType, sb.toString(), pos - sb.length() + 1 );
+                return new LdifToken( tokenType, sb.toString(), offset( sb.length() ) );
             }
             else
             {
@@ -1026,7 +1039,7 @@ public class LdifScanner
         String line = getContent( true );
         if ( line != null )
         {
-            return new LdifToken( LdifToken.VALUE, line, pos - line.length() + 1 );
+            return new LdifToken( LdifToken.VALUE, line, offset( line.length() ) );
         }
 
         return null;
@@ -1040,7 +1053,7 @@ public class LdifScanner
         String line = getWordTillColon( "newrdn" ); //$NON-NLS-1$
         if ( line != null )
         {
-            return new LdifToken( LdifToken.MODDN_NEWRDN_SPEC, line, pos - line.length() + 1 );
+            return new LdifToken( LdifToken.MODDN_NEWRDN_SPEC, line, offset( line.length() ) );
         }
 
         return null;
@@ -1054,7 +1067,7 @@ public class LdifScanner
         String line = getWordTillColon( "deleteoldrdn" ); //$NON-NLS-1$
         if ( line != null )
         {
-            return new LdifToken( LdifToken.MODDN_DELOLDRDN_SPEC, line, pos - line.length() + 1 );
+            return new LdifToken( LdifToken.MODDN_DELOLDRDN_SPEC, line, offset( line.length() ) );
         }
 
         return null;
@@ -1068,7 +1081,7 @@ public class LdifScanner
         String line = getWordTillColon( "newsuperior" ); //$NON-NLS-1$
         if ( line != null )
         {
-            return new LdifToken( LdifToken.MODDN_NEWSUPERIOR_SPEC, line, pos - line.length() + 1 );
+            return new LdifToken( LdifToken.MODDN_NEWSUPERIOR_SPEC, line, offset( line.length() ) );
         }
 
         return null;
@@ -0,0 +1,157 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.studio.test.integration.core;
+
+
+import static org.apache.directory.studio.test.integration.junit5.TestFixture.MISC111_DN;
+import static org.apache.directory.studio.test.integration.junit5.TestFixture.MISC11_DN;
+import static org.apache.directory.studio.test.integration.junit5.TestFixture.MISC1_DN;
+import static org.apache.directory.studio.test.integration.junit5.TestFixture.TARGET_DN;
+import static org.apache.directory.studio.test.integration.junit5.TestFixture.USERS_DN;
+import static org.apache.directory.studio.test.integration.junit5.TestFixture.dn;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.apache.directory.api.ldap.model.cursor.EntryCursor;
+import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.studio.common.core.jobs.StudioProgressMonitor;
+import org.apache.directory.studio.connection.core.Connection;
+import org.apache.directory.studio.connection.core.ConnectionCorePlugin;
+import org.apache.directory.studio.connection.core.ConnectionParameter;
+import org.apache.directory.studio.connection.core.ConnectionParameter.AuthenticationMethod;
+import org.apache.directory.studio.connection.core.ConnectionParameter.EncryptionMethod;
+import org.apache.directory.studio.ldapbrowser.core.jobs.CopyEntriesRunnable;
+import org.apache.directory.studio.ldapbrowser.core.jobs.InitializeRootDSERunnable;
+import org.apache.directory.studio.ldapbrowser.core.model.IEntry;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.BaseDNEntry;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.BrowserConnection;
+import org.apache.directory.studio.test.integration.junit5.LdapServerType;
+import org.apache.directory.studio.test.integration.junit5.LdapServersSource;
+import org.apache.directory.studio.test.integration.junit5.SkipTestIfLdapServerIsNotAvailableInterceptor;
+import org.apache.directory.studio.test.integration.junit5.TestLdapServer;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+
+
+/**
+ * Tests the {@link CopyEntriesRunnable}.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@ExtendWith(SkipTestIfLdapServerIsNotAvailableInterceptor.class)
+public class CopyEntriesRunnableTest
+{
+
+    @BeforeAll
+    public static void setCertificateHandler()
+    {
+        ConnectionCorePlugin.getDefault().setCertificateHandler( null );
+    }
+
+
+    /**
+     * Copies a subtree of three levels, the descendants are read with one entry per page.
+     */
+    @ParameterizedTest
+    @LdapServersSource(only = LdapServerType.ApacheDS)
+    public void testCopySubtreePaged( TestLdapServer ldapServer ) throws Exception
+    {
+        StudioProgressMonitor monitor = new StudioProgressMonitor( new NullProgressMonitor() );
+        BrowserConnection browserConnection = createBrowserConnection( ldapServer, monitor );
+        browserConnection.setPagedSearch( true );
+        browserConnection.setPagedSearchSize( 1 );
+
+        copy( browserConnection, MISC1_DN, monitor );
+        assertFalse( monitor.errorsReported() );
+
+        Dn misc1CopyDn = dn( MISC1_DN.getRdn(), TARGET_DN );
+        Dn misc11CopyDn = dn( MISC11_DN.getRdn(), misc1CopyDn );
+        Dn misc111CopyDn = dn( MISC111_DN.getRdn(), misc11CopyDn );
+        assertTrue( ldapServer.withAdminConnectionAndGet( connection -> connection.exists( misc1CopyDn ) ) );
+        assertTrue( ldapServer.withAdminConnectionAndGet( connection -> connection.exists( misc11CopyDn ) ) );
+        assertTrue( ldapServer.withAdminConnectionAndGet( connection -> connection.exists( misc111CopyDn ) ) );
+
+        browserConnection.getConnection().getConnectionWrapper().disconnect();
+    }
+
+
+    /**
+     * Copies the users, the descendants are read with several pages.
+     */
+    @ParameterizedTest
+    @LdapServersSource(only = LdapServerType.ApacheDS)
+    public void testCopyUsersPaged( TestLdapServer ldapServer ) throws Exception
+    {
+        StudioProgressMonitor monitor = new StudioProgressMonitor( new NullProgressMonitor() );
+        BrowserConnection browserConnection = createBrowserConnection( ldapServer, monitor );
+        browserConnection.setPagedSearch( true );
+        browserConnection.setPagedSearchSize( 3 );
+
+        copy( browserConnection, USERS_DN, monitor );
+        assertFalse( monitor.errorsReported() );
+
+        Dn usersCopyDn = dn( USERS_DN.getRdn(), TARGET_DN );
+        assertEquals( count( ldapServer, USERS_DN ), count( ldapServer, usersCopyDn ) );
+
+        browserConnection.getConnection().getConnectionWrapper().disconnect();
+    }
+
+
+    private static void copy( BrowserConnection browserConnection, Dn dn, StudioProgressMonitor monitor )
+    {
+        IEntry parent = new BaseDNEntry( TARGET_DN, browserConnection );
+        IEntry entryToCopy = new BaseDNEntry( dn, browserConnection );
+        new CopyEntriesRunnable( parent, new IEntry[]
+            { entryToCopy }, SearchScope.SUBTREE, null ).run( monitor );
+    }
+
+
+    private static int count( TestLdapServer ldapServer, Dn dn )
+    {
+        return ldapServer.withAdminConnectionAndGet( connection -> {
+            int count = 0;
+            try ( EntryCursor cursor = connection.search( dn, "(objectClass=*)", SearchScope.SUBTREE, "1.1" ) )
+            {
+                while ( cursor.next() )
+                {
+                    count++;
+                }
+            }
+            return count;
+        } );
+    }
+
+
+    private static BrowserConnection createBrowserConnection( TestLdapServer ldapServer,
+        StudioProgressMonitor monitor )
+    {
+        ConnectionParameter connectionParameter = new ConnectionParameter( null, ldapServer.getHost(),
+            ldapServer.getPort(), EncryptionMethod.NONE, AuthenticationMethod.SIMPLE,
+            ldapServer.getAdminDn(), ldapServer.getAdminPassword(), null, false, null, 30000L );
+        BrowserConnection browserConnection = new BrowserConnection( new Connection( connectionParameter ) );
+        InitializeRootDSERunnable.loadRootDSE( browserConnection, monitor );
+        return browserConnection;
+    }
+
+}
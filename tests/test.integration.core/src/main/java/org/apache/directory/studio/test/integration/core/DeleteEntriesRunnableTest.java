@@ -0,0 +1,203 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.studio.test.integration.core;
+
+
+import static org.apache.directory.studio.test.integration.junit5.TestFixture.GROUPS_DN;
+import static org.apache.directory.studio.test.integration.junit5.TestFixture.USERS_DN;
+import static org.apache.directory.studio.test.integration.junit5.TestFixture.dn;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.studio.common.core.jobs.StudioProgressMonitor;
+import org.apache.directory.studio.connection.core.Connection;
+import org.apache.directory.studio.connection.core.ConnectionCorePlugin;
+import org.apache.directory.studio.connection.core.ConnectionParameter;
+import org.apache.directory.studio.connection.core.ConnectionParameter.AuthenticationMethod;
+import org.apache.directory.studio.connection.core.ConnectionParameter.EncryptionMethod;
+import org.apache.directory.studio.connection.core.event.ConnectionEventRegistry;
+import org.apache.directory.studio.ldapbrowser.core.jobs.DeleteEntriesRunnable;
+import org.apache.directory.studio.ldapbrowser.core.jobs.InitializeRootDSERunnable;
+import org.apache.directory.studio.ldapbrowser.core.jobs.SearchRunnable;
+import org.apache.directory.studio.ldapbrowser.core.model.IEntry;
+import org.apache.directory.studio.ldapbrowser.core.model.ISearch;
+import org.apache.directory.studio.ldapbrowser.core.model.ISearchResult;
+import org.apache.directory.studio.ldapbrowser.core.model.SearchParameter;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.BrowserConnection;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.Search;
+import org.apache.directory.studio.test.integration.junit5.LdapServerType;
+import org.apache.directory.studio.test.integration.junit5.LdapServersSource;
+import org.apache.directory.studio.test.integration.junit5.SkipTestIfLdapServerIsNotAvailableInterceptor;
+import org.apache.directory.studio.test.integration.junit5.TestLdapServer;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+
+
+/**
+ * Tests the {@link DeleteEntriesRunnable}.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@ExtendWith(SkipTestIfLdapServerIsNotAvailableInterceptor.class)
+public class DeleteEntriesRunnableTest
+{
+
+    private BrowserConnection browserConnection;
+
+    @BeforeAll
+    public static void setCertificateHandler()
+    {
+        ConnectionCorePlugin.getDefault().setCertificateHandler( null );
+    }
+
+
+    @AfterEach
+    public void tearDown() throws Exception
+    {
+        if ( browserConnection != null )
+        {
+            browserConnection.clearCaches();
+            browserConnection.getConnection().getConnectionWrapper().disconnect();
+        }
+    }
+
+
+    /**
+     * Tests that the deleted entries are removed from the results of the
+     * searches, other results and unaffected searches are kept.
+     */
+    @ParameterizedTest
+    @LdapServersSource(only = LdapServerType.ApacheDS)
+    public void testDeletedEntriesAreRemovedFromSearches( TestLdapServer ldapServer ) throws Exception
+    {
+        List<Dn> dns = new ArrayList<>();
+        for ( int i = 0; i < 5; i++ )
+        {
+            Dn dn = dn( "uid=user.X" + i, USERS_DN );
+            dns.add( dn );
+            ldapServer.withAdminConnection( connection -> connection.add( new DefaultEntry( dn,
+                "objectClass: inetOrgPerson", "sn: X", "cn: X", "uid: " + dn.getRdn().getValue() ) ) );
+        }
+
+        StudioProgressMonitor monitor = new StudioProgressMonitor( new NullProgressMonitor() );
+        browserConnection = createBrowserConnection( ldapServer, monitor );
+        ISearch usersSearch = search( USERS_DN, ISearch.FILTER_TRUE, monitor );
+        ISearch filteredSearch = search( USERS_DN, "(uid=user.X*)", monitor );
+        ISearch groupsSearch = search( GROUPS_DN, ISearch.FILTER_TRUE, monitor );
+        ISearchResult[] groupsResults = groupsSearch.getSearchResults();
+        int usersCount = usersSearch.getSearchResults().length;
+
+        List<IEntry> entriesToDelete = new ArrayList<>();
+        for ( Dn dn : new Dn[]
+            { dns.get( 0 ), dns.get( 2 ), dns.get( 4 ) } )
+        {
+            IEntry entry = browserConnection.getEntryFromCache( dn );
+            assertNotNull( entry );
+            entriesToDelete.add( entry );
+        }
+        ConnectionEventRegistry.suspendEventFiringInCurrentThread();
+        try
+        {
+            new DeleteEntriesRunnable( entriesToDelete, false ).run( monitor );
+        }
+        finally
+        {
+            ConnectionEventRegistry.resumeEventFiringInCurrentThread();
+        }
+        assertFalse( monitor.errorsReported() );
+        for ( IEntry entry : entriesToDelete )
+        {
+            Dn dn = entry.getDn();
+            assertFalse( ldapServer.withAdminConnectionAndGet( connection -> connection.exists( dn ) ) );
+        }
+
+        Set<Dn> resultDns = getResultDns( usersSearch );
+        assertEquals( usersCount - 3, resultDns.size() );
+        assertFalse( resultDns.contains( dns.get( 0 ) ) );
+        assertFalse( resultDns.contains( dns.get( 2 ) ) );
+        assertFalse( resultDns.contains( dns.get( 4 ) ) );
+        assertTrue( resultDns.contains( dns.get( 1 ) ) );
+        assertTrue( resultDns.contains( dns.get( 3 ) ) );
+        assertEquals( new HashSet<>( Arrays.asList( dns.get( 1 ), dns.get( 3 ) ) ), getResultDns( filteredSearch ) );
+        assertSame( groupsResults, groupsSearch.getSearchResults() );
+    }
+
+
+    private static Set<Dn> getResultDns( ISearch search )
+    {
+        Set<Dn> dns = new HashSet<>();
+        for ( ISearchResult searchResult : search.getSearchResults() )
+        {
+            dns.add( searchResult.getDn() );
+        }
+        return dns;
+    }
+
+
+    private ISearch search( Dn base, String filter, StudioProgressMonitor monitor )
+    {
+        SearchParameter searchParameter = new SearchParameter();
+        searchParameter.setSearchBase( base );
+        searchParameter.setFilter( filter );
+        searchParameter.setScope( SearchScope.ONELEVEL );
+        searchParameter.setReturningAttributes( ISearch.NO_ATTRIBUTES );
+        ISearch search = new Search( browserConnection, searchParameter );
+
+        ConnectionEventRegistry.suspendEventFiringInCurrentThread();
+        try
+        {
+            SearchRunnable.searchAndUpdateModel( browserConnection, search, monitor );
+            browserConnection.getSearchManager().addSearch( search );
+        }
+        finally
+        {
+            ConnectionEventRegistry.resumeEventFiringInCurrentThread();
+        }
+        return search;
+    }
+
+
+    private static BrowserConnection createBrowserConnection( TestLdapServer ldapServer,
+        StudioProgressMonitor monitor )
+    {
+        ConnectionParameter connectionParameter = new ConnectionParameter( null, ldapServer.getHost(),
+            ldapServer.getPort(), EncryptionMethod.NONE, AuthenticationMethod.SIMPLE,
+            ldapServer.getAdminDn(), ldapServer.getAdminPassword(), null, false, null, 30000L );
+        BrowserConnection browserConnection = new BrowserConnection( new Connection( connectionParameter ) );
+        InitializeRootDSERunnable.loadRootDSE( browserConnection, monitor );
+        return browserConnection;
+    }
+
+}
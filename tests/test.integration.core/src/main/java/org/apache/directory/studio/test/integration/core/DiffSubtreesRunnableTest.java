@@ -0,0 +1,164 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+
+package org.apache.directory.studio.test.integration.core;
+
+
+import static org.apache.directory.studio.test.integration.junit5.TestFixture.TARGET_DN;
+import static org.apache.directory.studio.test.integration.junit5.TestFixture.USER1_DN;
+import static org.apache.directory.studio.test.integration.junit5.TestFixture.USER2_DN;
+import static org.apache.directory.studio.test.integration.junit5.TestFixture.USERS_DN;
+import static org.apache.directory.studio.test.integration.junit5.TestFixture.dn;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.entry.Modification;
+import org.apache.directory.api.ldap.model.ldif.LdifEntry;
+import org.apache.directory.api.ldap.model.ldif.LdifReader;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.studio.common.core.jobs.StudioProgressMonitor;
+import org.apache.directory.studio.connection.core.Connection;
+import org.apache.directory.studio.connection.core.ConnectionCorePlugin;
+import org.apache.directory.studio.connection.core.ConnectionParameter;
+import org.apache.directory.studio.connection.core.ConnectionParameter.AuthenticationMethod;
+import org.apache.directory.studio.connection.core.ConnectionParameter.EncryptionMethod;
+import org.apache.directory.studio.ldapbrowser.core.jobs.DiffSubtreesRunnable;
+import org.apache.directory.studio.ldapbrowser.core.jobs.InitializeRootDSERunnable;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.BrowserConnection;
+import org.apache.directory.studio.test.integration.junit5.LdapServerType;
+import org.apache.directory.studio.test.integration.junit5.LdapServersSource;
+import org.apache.directory.studio.test.integration.junit5.SkipTestIfLdapServerIsNotAvailableInterceptor;
+import org.apache.directory.studio.test.integration.junit5.TestLdapServer;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+
+
+/**
+ * Tests the {@link DiffSubtreesRunnable}.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@ExtendWith(SkipTestIfLdapServerIsNotAvailableInterceptor.class)
+public class DiffSubtreesRunnableTest
+{
+
+    @BeforeAll
+    public static void setCertificateHandler()
+    {
+        ConnectionCorePlugin.getDefault().setCertificateHandler( null );
+    }
+
+
+    /**
+     * Compares the users subtree with a partial copy in the target subtree.
+     * Equal entries are not reported, values only differing by case in a
+     * case-insensitive attribute are not reported. The Rdn of the source
+     * base entry is mapped to the Rdn of the target base entry.
+     */
+    @ParameterizedTest
+    @LdapServersSource(only = LdapServerType.ApacheDS)
+    public void testDiff( TestLdapServer ldapServer ) throws Exception
+    {
+        Dn user1CopyDn = dn( USER1_DN.getRdn(), TARGET_DN );
+        Dn user2CopyDn = dn( USER2_DN.getRdn(), TARGET_DN );
+        Dn extraDn = dn( "uid=user.extra", TARGET_DN );
+        ldapServer.withAdminConnection( connection -> {
+            Entry user1 = connection.lookup( USER1_DN );
+            user1.setDn( user1CopyDn );
+            connection.add( user1 );
+
+            Entry user2 = connection.lookup( USER2_DN );
+            user2.setDn( user2CopyDn );
+            String cn = user2.get( "cn" ).getString();
+            user2.removeAttributes( "cn", "sn" );
+            user2.add( "cn", cn.toUpperCase() );
+            user2.add( "sn", "Changed" );
+            connection.add( user2 );
+
+            connection.add( new DefaultEntry( extraDn, "objectClass: inetOrgPerson", "sn: extra", "cn: extra",
+                "uid: user.extra" ) );
+        } );
+
+        StudioProgressMonitor monitor = new StudioProgressMonitor( new NullProgressMonitor() );
+        BrowserConnection sourceBrowserConnection = createBrowserConnection( ldapServer, monitor );
+        BrowserConnection targetBrowserConnection = createBrowserConnection( ldapServer, monitor );
+        File file = File.createTempFile( "diff", ".ldif" );
+        file.deleteOnExit();
+
+        DiffSubtreesRunnable runnable = new DiffSubtreesRunnable( sourceBrowserConnection, USERS_DN,
+            targetBrowserConnection, TARGET_DN, file.getAbsolutePath() );
+        runnable.run( monitor );
+        assertFalse( monitor.errorsReported() );
+
+        Map<Dn, LdifEntry> changes = new HashMap<>();
+        try ( LdifReader reader = new LdifReader( file ) )
+        {
+            for ( LdifEntry change : reader )
+            {
+                changes.put( change.getDn(), change );
+            }
+        }
+        assertEquals( changes.size(), runnable.getChangeCount() );
+
+        if ( changes.containsKey( TARGET_DN ) )
+        {
+            for ( Modification modification : changes.get( TARGET_DN ).getModifications() )
+            {
+                assertFalse( "ou".equalsIgnoreCase( modification.getAttribute().getUpId() ) );
+            }
+        }
+        assertNull( changes.get( user1CopyDn ) );
+        assertNotNull( changes.get( user2CopyDn ) );
+        assertTrue( changes.get( user2CopyDn ).isChangeModify() );
+        for ( Modification modification : changes.get( user2CopyDn ).getModifications() )
+        {
+            assertEquals( "sn", modification.getAttribute().getUpId() );
+        }
+        assertTrue( changes.get( dn( "uid=user.3", TARGET_DN ) ).isChangeAdd() );
+        assertTrue( changes.get( extraDn ).isChangeDelete() );
+
+        sourceBrowserConnection.getConnection().getConnectionWrapper().disconnect();
+        targetBrowserConnection.getConnection().getConnectionWrapper().disconnect();
+    }
+
+
+    private static BrowserConnection createBrowserConnection( TestLdapServer ldapServer,
+        StudioProgressMonitor monitor )
+    {
+        ConnectionParameter connectionParameter = new ConnectionParameter( null, ldapServer.getHost(),
+            ldapServer.getPort(), EncryptionMethod.NONE, AuthenticationMethod.SIMPLE,
+            ldapServer.getAdminDn(), ldapServer.getAdminPassword(), null, true, null, 30000L );
+        BrowserConnection browserConnection = new BrowserConnection( new Connection( connectionParameter ) );
+        InitializeRootDSERunnable.loadRootDSE( browserConnection, monitor );
+        return browserConnection;
+    }
+
+}
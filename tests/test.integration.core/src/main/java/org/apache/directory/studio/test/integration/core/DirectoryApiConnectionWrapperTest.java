@@ -1245,6 +1245,40 @@ public class DirectoryApiConnectionWrapperTest
     }
 
 
+    @ParameterizedTest
+    @LdapServersSource
+    public void testCreateEntries( TestLdapServer ldapServer ) throws Exception
+    {
+        List<Entry> entries = new ArrayList<>();
+        for ( int i = 0; i < 50; i++ )
+        {
+            entries.add( new DefaultEntry( dn( "uid=user.X" + i, USERS_DN ), "objectClass: inetOrgPerson", "sn: X",
+                "cn: X", "uid: user.X" + i ) );
+        }
+        Entry existingEntry = new DefaultEntry( dn( "uid=user.existing", USERS_DN ), "objectClass: inetOrgPerson",
+            "sn: X", "cn: X", "uid: user.existing" );
+        ldapServer.withAdminConnection( connection -> connection.add( existingEntry ) );
+        entries.add( existingEntry );
+
+        // create entries, pipelined
+        StudioProgressMonitor monitor = getProgressMonitor();
+        StudioLdapException[] exceptions = getConnectionWrapper( monitor, ldapServer ).createEntries( entries, null,
+            8, monitor );
+
+        // should have created the new entries, the existing entry fails
+        assertFalse( monitor.isCanceled() );
+        assertFalse( monitor.errorsReported() );
+        assertEquals( entries.size(), exceptions.length );
+        for ( int i = 0; i < 50; i++ )
+        {
+            assertNull( exceptions[i] );
+            String dn = entries.get( i ).getDn().getName();
+            assertTrue( ldapServer.withAdminConnectionAndGet( connection -> connection.exists( dn ) ) );
+        }
+        assertTrue( StudioLdapException.isEntryAlreadyExistsException( exceptions[50] ) );
+    }
+
+
     @ParameterizedTest
     @LdapServersSource
     public void testAddFollowsReferral_DirectReferral( TestLdapServer ldapServer ) throws Exception
@@ -1330,6 +1364,45 @@ public class DirectoryApiConnectionWrapperTest
     }
 
 
+    @ParameterizedTest
+    @LdapServersSource
+    public void testModifyEntries( TestLdapServer ldapServer ) throws Exception
+    {
+        List<Dn> dns = new ArrayList<>();
+        List<Collection<Modification>> modifications = new ArrayList<>();
+        for ( int i = 0; i < 50; i++ )
+        {
+            Dn dn = dn( "uid=user.X" + i, USERS_DN );
+            dns.add( dn );
+            modifications.add( Collections.singletonList( new DefaultModification(
+                ModificationOperation.REPLACE_ATTRIBUTE, new DefaultAttribute( "sn", "modified" + i ) ) ) );
+            ldapServer.withAdminConnection( connection -> connection.add( new DefaultEntry( dn,
+                "objectClass: inetOrgPerson", "sn: X", "cn: X", "uid: " + dn.getRdn().getValue() ) ) );
+        }
+        dns.add( dn( "uid=user.missing", USERS_DN ) );
+        modifications.add( Collections.singletonList( new DefaultModification(
+            ModificationOperation.REPLACE_ATTRIBUTE, new DefaultAttribute( "sn", "modified" ) ) ) );
+
+        // modify entries, pipelined
+        StudioProgressMonitor monitor = getProgressMonitor();
+        StudioLdapException[] exceptions = getConnectionWrapper( monitor, ldapServer ).modifyEntries( dns,
+            modifications, null, 8, monitor );
+
+        // should have modified the existing entries, the missing entry fails
+        assertFalse( monitor.isCanceled() );
+        assertFalse( monitor.errorsReported() );
+        assertEquals( dns.size(), exceptions.length );
+        for ( int i = 0; i < 50; i++ )
+        {
+            assertNull( exceptions[i] );
+            Dn dn = dns.get( i );
+            Entry entry = ldapServer.withAdminConnectionAndGet( connection -> connection.lookup( dn ) );
+            assertEquals( "modified" + i, entry.get( "sn" ).getString() );
+        }
+        assertTrue( StudioLdapException.isNoSuchObjectException( exceptions[50] ) );
+    }
+
+
     @ParameterizedTest
     @LdapServersSource
     public void testModifyFollowsReferral_DirectReferral( TestLdapServer ldapServer ) throws Exception
@@ -1435,6 +1508,97 @@ public class DirectoryApiConnectionWrapperTest
     }
 
 
+    @ParameterizedTest
+    @LdapServersSource
+    public void testDeleteEntries( TestLdapServer ldapServer ) throws Exception
+    {
+        List<Dn> dns = new ArrayList<>();
+        for ( int i = 0; i < 50; i++ )
+        {
+            Dn dn = dn( "uid=user.X" + i, USERS_DN );
+            dns.add( dn );
+            ldapServer.withAdminConnection( connection -> connection.add( new DefaultEntry( dn,
+                "objectClass: inetOrgPerson", "sn: X", "cn: X", "uid: " + dn.getRdn().getValue() ) ) );
+        }
+        dns.add( dn( "uid=user.missing", USERS_DN ) );
+
+        // delete entries, pipelined
+        StudioProgressMonitor monitor = getProgressMonitor();
+        StudioLdapException[] exceptions = getConnectionWrapper( monitor, ldapServer ).deleteEntries( dns, null, 8,
+            monitor );
+
+        // should have deleted the existing entries, the missing entry fails
+        assertFalse( monitor.isCanceled() );
+        assertFalse( monitor.errorsReported() );
+        assertEquals( dns.size(), exceptions.length );
+        for ( int i = 0; i < 50; i++ )
+        {
+            assertNull( exceptions[i] );
+            String dn = dns.get( i ).getName();
+            assertFalse( ldapServer.withAdminConnectionAndGet( connection -> connection.exists( dn ) ) );
+        }
+        assertTrue( StudioLdapException.isNoSuchObjectException( exceptions[50] ) );
+    }
+
+
+    @ParameterizedTest
+    @LdapServersSource
+    public void testDeleteEntriesAfterReportedError( TestLdapServer ldapServer ) throws Exception
+    {
+        List<Dn> dns = new ArrayList<>();
+        for ( int i = 0; i < 10; i++ )
+        {
+            Dn dn = dn( "uid=user.X" + i, USERS_DN );
+            dns.add( dn );
+            ldapServer.withAdminConnection( connection -> connection.add( new DefaultEntry( dn,
+                "objectClass: inetOrgPerson", "sn: X", "cn: X", "uid: " + dn.getRdn().getValue() ) ) );
+        }
+
+        // an error reported before the requests doesn't discard their results
+        StudioProgressMonitor monitor = getProgressMonitor();
+        ConnectionWrapper connectionWrapper = getConnectionWrapper( monitor, ldapServer );
+        monitor.reportError( "previous error" );
+        StudioLdapException[] exceptions = connectionWrapper.deleteEntries( dns, null, 4, monitor );
+
+        assertEquals( dns.size(), exceptions.length );
+        for ( int i = 0; i < dns.size(); i++ )
+        {
+            assertNull( exceptions[i] );
+            String dn = dns.get( i ).getName();
+            assertFalse( ldapServer.withAdminConnectionAndGet( connection -> connection.exists( dn ) ) );
+        }
+    }
+
+
+    @ParameterizedTest
+    @LdapServersSource
+    public void testDeleteEntriesCanceled( TestLdapServer ldapServer ) throws Exception
+    {
+        List<Dn> dns = new ArrayList<>();
+        for ( int i = 0; i < 10; i++ )
+        {
+            Dn dn = dn( "uid=user.X" + i, USERS_DN );
+            dns.add( dn );
+            ldapServer.withAdminConnection( connection -> connection.add( new DefaultEntry( dn,
+                "objectClass: inetOrgPerson", "sn: X", "cn: X", "uid: " + dn.getRdn().getValue() ) ) );
+        }
+
+        // the requests of a canceled monitor are not sent, each entry fails with the cancellation
+        StudioProgressMonitor monitor = getProgressMonitor();
+        ConnectionWrapper connectionWrapper = getConnectionWrapper( monitor, ldapServer );
+        monitor.setCanceled( true );
+        StudioLdapException[] exceptions = connectionWrapper.deleteEntries( dns, null, 4, monitor );
+
+        assertEquals( dns.size(), exceptions.length );
+        for ( int i = 0; i < dns.size(); i++ )
+        {
+            assertTrue( StudioLdapException.isCancelException( exceptions[i] ) );
+            String dn = dns.get( i ).getName();
+            assertTrue( ldapServer.withAdminConnectionAndGet( connection -> connection.exists( dn ) ) );
+        }
+    }
+
+
     @ParameterizedTest
     @LdapServersSource
     public void testDeleteFollowsReferral_DirectReferral( TestLdapServer ldapServer ) throws Exception
@@ -0,0 +1,187 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+
+package org.apache.directory.studio.test.integration.core;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.message.Control;
+import org.apache.directory.studio.common.core.jobs.StudioProgressMonitor;
+import org.apache.directory.studio.connection.core.Connection;
+import org.apache.directory.studio.connection.core.ConnectionParameter;
+import org.apache.directory.studio.connection.core.Controls;
+import org.apache.directory.studio.connection.core.ReferralsInfo;
+import org.apache.directory.studio.connection.core.io.ConnectionWrapper;
+import org.apache.directory.studio.connection.core.io.api.DirectoryApiConnectionWrapper;
+import org.apache.directory.studio.ldapbrowser.core.jobs.ExecuteLdifRunnable;
+import org.apache.directory.studio.ldapbrowser.core.model.IAttribute;
+import org.apache.directory.studio.ldapbrowser.core.model.IRootDSE;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.Attribute;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.BrowserConnection;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.Value;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Tests applying LDIF records in transactions, with a connection wrapper
+ * that simulates a server supporting transactions.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class ExecuteLdifRunnableTest
+{
+
+    private static final String LDIF = "dn: uid=user.1,ou=users,ou=system\n"
+        + "changetype: add\n"
+        + "objectClass: account\n"
+        + "uid: user.1\n"
+        + "\n"
+        + "dn: uid=user.2,ou=users,ou=system\n"
+        + "changetype: add\n"
+        + "objectClass: account\n"
+        + "uid: user.2\n"
+        + "\n"
+        + "dn: uid=user.fail,ou=users,ou=system\n"
+        + "changetype: add\n"
+        + "objectClass: account\n"
+        + "uid: user.fail\n"
+        + "\n"
+        + "dn: uid=user.4,ou=users,ou=system\n"
+        + "changetype: add\n"
+        + "objectClass: account\n"
+        + "uid: user.4\n";
+
+
+    /**
+     * Tests that a failed record aborts its transaction, the other records
+     * are applied in smaller transactions and the failed record is applied
+     * without transaction, so its error is logged.
+     */
+    @Test
+    public void testFailedRecordInTransaction()
+    {
+        TransactionConnectionWrapper wrapper = new TransactionConnectionWrapper();
+        BrowserConnection browserConnection = createBrowserConnection( wrapper );
+
+        StudioProgressMonitor monitor = new StudioProgressMonitor( new NullProgressMonitor() );
+        ExecuteLdifRunnable.executeLdif( browserConnection, LDIF, false, true, 4, monitor );
+
+        // the transaction of all records and the one of the failed half are aborted
+        assertEquals( 1, wrapper.commits );
+        assertEquals( 2, wrapper.aborts );
+        assertEquals( Arrays.asList( "user.1", "user.2", "user.4" ), wrapper.created );
+
+        // the error of the failed record is reported
+        assertTrue( monitor.errorsReported() );
+    }
+
+
+    private static BrowserConnection createBrowserConnection( final TransactionConnectionWrapper wrapper )
+    {
+        Connection connection = new Connection( new ConnectionParameter() )
+        {
+            public ConnectionWrapper getConnectionWrapper()
+            {
+                return wrapper;
+            }
+        };
+        BrowserConnection browserConnection = new BrowserConnection( connection );
+
+        IRootDSE rootDSE = browserConnection.getRootDSE();
+        IAttribute attribute = new Attribute( rootDSE, "supportedExtension" );
+        attribute.addValue( new Value( attribute, Controls.START_TRANSACTION_EXTENSION_OID ) );
+        rootDSE.addAttribute( attribute );
+        return browserConnection;
+    }
+
+
+    /**
+     * A connection wrapper that applies add requests with the transaction
+     * specification control on commit and fails to add the entry user.fail.
+     */
+    private static class TransactionConnectionWrapper extends DirectoryApiConnectionWrapper
+    {
+        private List<String> created = new ArrayList<>();
+
+        private List<String> pending = new ArrayList<>();
+
+        private int commits;
+
+        private int aborts;
+
+
+        private TransactionConnectionWrapper()
+        {
+            super( null );
+        }
+
+
+        public void createEntry( Entry entry, Control[] controls, StudioProgressMonitor monitor,
+            ReferralsInfo referralsInfo )
+        {
+            String uid = entry.getDn().getRdn().getValue();
+            if ( "user.fail".equals( uid ) )
+            {
+                monitor.reportError( new LdapException( "Failed to add " + uid ) );
+            }
+            else if ( controls != null && controls.length > 0 )
+            {
+                pending.add( uid );
+            }
+            else
+            {
+                created.add( uid );
+            }
+        }
+
+
+        public byte[] startTransaction( StudioProgressMonitor monitor )
+        {
+            pending.clear();
+            return new byte[]
+                { ( byte ) ( commits + aborts ) };
+        }
+
+
+        public void endTransaction( byte[] transactionId, boolean commit, StudioProgressMonitor monitor )
+        {
+            if ( commit )
+            {
+                created.addAll( pending );
+                commits++;
+            }
+            else
+            {
+                aborts++;
+            }
+            pending.clear();
+        }
+    }
+
+}
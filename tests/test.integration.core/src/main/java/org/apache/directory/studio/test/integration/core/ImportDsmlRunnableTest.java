@@ -0,0 +1,155 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+
+package org.apache.directory.studio.test.integration.core;
+
+
+import static org.apache.directory.studio.test.integration.junit5.TestFixture.USER1_DN;
+import static org.apache.directory.studio.test.integration.junit5.TestFixture.USERS_DN;
+import static org.apache.directory.studio.test.integration.junit5.TestFixture.dn;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.apache.directory.api.dsmlv2.response.BatchResponseDsml;
+import org.apache.directory.api.dsmlv2.response.Dsmlv2ResponseParser;
+import org.apache.directory.api.ldap.codec.api.LdapApiServiceFactory;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.studio.common.core.jobs.StudioProgressMonitor;
+import org.apache.directory.studio.connection.core.Connection;
+import org.apache.directory.studio.connection.core.ConnectionCorePlugin;
+import org.apache.directory.studio.connection.core.ConnectionParameter;
+import org.apache.directory.studio.connection.core.ConnectionParameter.AuthenticationMethod;
+import org.apache.directory.studio.connection.core.ConnectionParameter.EncryptionMethod;
+import org.apache.directory.studio.ldapbrowser.core.jobs.ImportDsmlRunnable;
+import org.apache.directory.studio.ldapbrowser.core.jobs.InitializeRootDSERunnable;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.BrowserConnection;
+import org.apache.directory.studio.test.integration.junit5.LdapServerType;
+import org.apache.directory.studio.test.integration.junit5.LdapServersSource;
+import org.apache.directory.studio.test.integration.junit5.SkipTestIfLdapServerIsNotAvailableInterceptor;
+import org.apache.directory.studio.test.integration.junit5.TestLdapServer;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+
+
+/**
+ * Tests the {@link ImportDsmlRunnable}.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@ExtendWith(SkipTestIfLdapServerIsNotAvailableInterceptor.class)
+public class ImportDsmlRunnableTest
+{
+
+    @BeforeAll
+    public static void setCertificateHandler()
+    {
+        ConnectionCorePlugin.getDefault().setCertificateHandler( null );
+    }
+
+
+    /**
+     * Imports the same batch request with streaming and without. The streamed
+     * response file must be a valid DSML batch response with the same responses
+     * as the response file written at the end.
+     */
+    @ParameterizedTest
+    @LdapServersSource(only = LdapServerType.ApacheDS)
+    public void testStreamedResponse( TestLdapServer ldapServer ) throws Exception
+    {
+        // the entry is added and deleted again, so both imports get the same responses
+        Dn addDn = dn( "uid=user.dsml", USERS_DN );
+        Dn missingDn = dn( "uid=user.missing", USERS_DN );
+        String batchRequest = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<batchRequest xmlns=\"urn:oasis:names:tc:DSML:2:0:core\">\n"
+            + "  <addRequest dn=\"" + addDn.getName() + "\">\n"
+            + "    <attr name=\"objectClass\"><value>inetOrgPerson</value></attr>\n"
+            + "    <attr name=\"uid\"><value>user.dsml</value></attr>\n"
+            + "    <attr name=\"cn\"><value>dsml</value></attr>\n"
+            + "    <attr name=\"sn\"><value>dsml</value></attr>\n"
+            + "  </addRequest>\n"
+            + "  <compareRequest dn=\"" + USER1_DN.getName() + "\">\n"
+            + "    <assertion name=\"uid\"><value>" + USER1_DN.getRdn().getValue() + "</value></assertion>\n"
+            + "  </compareRequest>\n"
+            + "  <searchRequest dn=\"" + USER1_DN.getName() + "\" scope=\"baseObject\""
+            + " derefAliases=\"neverDerefAliases\">\n"
+            + "    <filter><present name=\"objectClass\"/></filter>\n"
+            + "  </searchRequest>\n"
+            + "  <delRequest dn=\"" + addDn.getName() + "\"/>\n"
+            + "  <delRequest dn=\"" + missingDn.getName() + "\"/>\n"
+            + "</batchRequest>\n";
+        File requestFile = File.createTempFile( "request", ".xml" );
+        requestFile.deleteOnExit();
+        Files.write( requestFile.toPath(), batchRequest.getBytes( StandardCharsets.UTF_8 ) );
+
+        StudioProgressMonitor monitor = new StudioProgressMonitor( new NullProgressMonitor() );
+        BrowserConnection browserConnection = createBrowserConnection( ldapServer, monitor );
+
+        File streamedFile = File.createTempFile( "streamed", ".xml" );
+        streamedFile.deleteOnExit();
+        new ImportDsmlRunnable( browserConnection, requestFile, streamedFile, true, 1 )
+            .run( new StudioProgressMonitor( new NullProgressMonitor() ) );
+
+        File bufferedFile = File.createTempFile( "buffered", ".xml" );
+        bufferedFile.deleteOnExit();
+        new ImportDsmlRunnable( browserConnection, requestFile, bufferedFile, false, 1 )
+            .run( new StudioProgressMonitor( new NullProgressMonitor() ) );
+
+        BatchResponseDsml streamed = parseResponse( streamedFile );
+        BatchResponseDsml buffered = parseResponse( bufferedFile );
+        assertFalse( buffered.getResponses().isEmpty() );
+        assertEquals( buffered.getResponses().size(), streamed.getResponses().size() );
+        assertEquals( buffered.toDsml(), streamed.toDsml() );
+
+        browserConnection.getConnection().getConnectionWrapper().disconnect();
+    }
+
+
+    private static BatchResponseDsml parseResponse( File responseFile ) throws Exception
+    {
+        try ( InputStream in = new FileInputStream( responseFile ) )
+        {
+            Dsmlv2ResponseParser parser = new Dsmlv2ResponseParser( LdapApiServiceFactory.getSingleton() );
+            parser.setInput( in, "UTF-8" );
+            parser.parseAllResponses();
+            return parser.getBatchResponse();
+        }
+    }
+
+
+    private static BrowserConnection createBrowserConnection( TestLdapServer ldapServer,
+        StudioProgressMonitor monitor )
+    {
+        ConnectionParameter connectionParameter = new ConnectionParameter( null, ldapServer.getHost(),
+            ldapServer.getPort(), EncryptionMethod.NONE, AuthenticationMethod.SIMPLE,
+            ldapServer.getAdminDn(), ldapServer.getAdminPassword(), null, false, null, 30000L );
+        BrowserConnection browserConnection = new BrowserConnection( new Connection( connectionParameter ) );
+        InitializeRootDSERunnable.loadRootDSE( browserConnection, monitor );
+        return browserConnection;
+    }
+
+}
@@ -0,0 +1,201 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.studio.test.integration.core;
+
+
+import static org.apache.directory.studio.test.integration.junit5.TestFixture.USER1_DN;
+import static org.apache.directory.studio.test.integration.junit5.TestFixture.USER2_DN;
+import static org.apache.directory.studio.test.integration.junit5.TestFixture.USERS_DN;
+import static org.apache.directory.studio.test.integration.junit5.TestFixture.dn;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.studio.common.core.jobs.StudioProgressMonitor;
+import org.apache.directory.studio.connection.core.Connection;
+import org.apache.directory.studio.connection.core.ConnectionCorePlugin;
+import org.apache.directory.studio.connection.core.ConnectionParameter;
+import org.apache.directory.studio.connection.core.ConnectionParameter.AuthenticationMethod;
+import org.apache.directory.studio.connection.core.ConnectionParameter.EncryptionMethod;
+import org.apache.directory.studio.connection.core.event.ConnectionEventRegistry;
+import org.apache.directory.studio.ldapbrowser.core.jobs.ImportLdifRunnable;
+import org.apache.directory.studio.ldapbrowser.core.jobs.InitializeRootDSERunnable;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.BrowserConnection;
+import org.apache.directory.studio.test.integration.junit5.LdapServerType;
+import org.apache.directory.studio.test.integration.junit5.LdapServersSource;
+import org.apache.directory.studio.test.integration.junit5.SkipTestIfLdapServerIsNotAvailableInterceptor;
+import org.apache.directory.studio.test.integration.junit5.TestLdapServer;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+
+
+/**
+ * Tests the pipelined import of the {@link ImportLdifRunnable}.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@ExtendWith(SkipTestIfLdapServerIsNotAvailableInterceptor.class)
+public class ImportLdifRunnableTest
+{
+
+    private static final String RESULT_OK = "#!RESULT OK";
+
+    private static final String RESULT_ERROR = "#!RESULT ERROR";
+
+    @BeforeAll
+    public static void setCertificateHandler()
+    {
+        ConnectionCorePlugin.getDefault().setCertificateHandler( null );
+    }
+
+
+    /**
+     * Tests that all responses of a pipelined batch are logged if a record in
+     * the middle of the batch fails, and that no further record is applied.
+     */
+    @ParameterizedTest
+    @LdapServersSource(only = LdapServerType.ApacheDS)
+    public void testFailureInPipelinedBatch( TestLdapServer ldapServer ) throws Exception
+    {
+        StudioProgressMonitor monitor = new StudioProgressMonitor( new NullProgressMonitor() );
+        String log = importLdif( ldapServer, false, monitor );
+
+        // the existing entry fails, the other entries of the batch are created and logged
+        assertTrue( monitor.errorsReported() );
+        assertEquals( 4, StringUtils.countMatches( log, RESULT_OK ) );
+        assertEquals( 1, StringUtils.countMatches( log, RESULT_ERROR ) );
+        for ( int i = 1; i <= 4; i++ )
+        {
+            Dn dn = getDn( i );
+            assertTrue( log.contains( "dn: " + dn.getName() ) );
+            assertTrue( ldapServer.withAdminConnectionAndGet( connection -> connection.exists( dn ) ) );
+        }
+
+        // the record after the batch isn't applied
+        assertFalse( log.contains( "dn: " + USER2_DN.getName() ) );
+        assertFalse( ldapServer.withAdminConnectionAndGet(
+            connection -> connection.lookup( USER2_DN ).contains( "description", "imported" ) ) );
+    }
+
+
+    /**
+     * Tests that all records are applied and logged if the import continues on error.
+     */
+    @ParameterizedTest
+    @LdapServersSource(only = LdapServerType.ApacheDS)
+    public void testFailureInPipelinedBatchContinueOnError( TestLdapServer ldapServer ) throws Exception
+    {
+        StudioProgressMonitor monitor = new StudioProgressMonitor( new NullProgressMonitor() );
+        String log = importLdif( ldapServer, true, monitor );
+
+        assertEquals( 5, StringUtils.countMatches( log, RESULT_OK ) );
+        assertEquals( 1, StringUtils.countMatches( log, RESULT_ERROR ) );
+        for ( int i = 1; i <= 4; i++ )
+        {
+            Dn dn = getDn( i );
+            assertTrue( ldapServer.withAdminConnectionAndGet( connection -> connection.exists( dn ) ) );
+        }
+        assertTrue( ldapServer.withAdminConnectionAndGet(
+            connection -> connection.lookup( USER2_DN ).contains( "description", "imported" ) ) );
+    }
+
+
+    /**
+     * Imports four new entries and the existing entry user.1 in one pipelined
+     * batch, followed by a modification of user.2.
+     */
+    private static String importLdif( TestLdapServer ldapServer, boolean continueOnError,
+        StudioProgressMonitor monitor ) throws Exception
+    {
+        StringBuilder ldif = new StringBuilder();
+        appendAdd( ldif, getDn( 1 ) );
+        appendAdd( ldif, getDn( 2 ) );
+        appendAdd( ldif, USER1_DN );
+        appendAdd( ldif, getDn( 3 ) );
+        appendAdd( ldif, getDn( 4 ) );
+        ldif.append( "dn: " ).append( USER2_DN.getName() ).append( "\n" );
+        ldif.append( "changetype: modify\n" );
+        ldif.append( "replace: description\n" );
+        ldif.append( "description: imported\n" );
+        ldif.append( "-\n" );
+
+        File ldifFile = File.createTempFile( "import", ".ldif" );
+        ldifFile.deleteOnExit();
+        Files.write( ldifFile.toPath(), ldif.toString().getBytes( StandardCharsets.UTF_8 ) );
+        File logFile = File.createTempFile( "import", ".log" );
+        logFile.deleteOnExit();
+
+        BrowserConnection browserConnection = createBrowserConnection( ldapServer, monitor );
+        ConnectionEventRegistry.suspendEventFiringInCurrentThread();
+        try
+        {
+            new ImportLdifRunnable( browserConnection, ldifFile, logFile, false, continueOnError, 8, false )
+                .run( monitor );
+        }
+        finally
+        {
+            ConnectionEventRegistry.resumeEventFiringInCurrentThread();
+            browserConnection.getConnection().getConnectionWrapper().disconnect();
+            ImportLdifRunnable.getCheckpointFile( ldifFile ).delete();
+        }
+
+        return new String( Files.readAllBytes( logFile.toPath() ), StandardCharsets.UTF_8 );
+    }
+
+
+    private static void appendAdd( StringBuilder ldif, Dn dn )
+    {
+        String uid = dn.getRdn().getValue();
+        ldif.append( "dn: " ).append( dn.getName() ).append( "\n" );
+        ldif.append( "changetype: add\n" );
+        ldif.append( "objectClass: inetOrgPerson\n" );
+        ldif.append( "uid: " ).append( uid ).append( "\n" );
+        ldif.append( "cn: " ).append( uid ).append( "\n" );
+        ldif.append( "sn: " ).append( uid ).append( "\n" );
+        ldif.append( "\n" );
+    }
+
+
+    private static Dn getDn( int i )
+    {
+        return dn( "uid=user.import" + i, USERS_DN );
+    }
+
+
+    private static BrowserConnection createBrowserConnection( TestLdapServer ldapServer,
+        StudioProgressMonitor monitor )
+    {
+        ConnectionParameter connectionParameter = new ConnectionParameter( null, ldapServer.getHost(),
+            ldapServer.getPort(), EncryptionMethod.NONE, AuthenticationMethod.SIMPLE,
+            ldapServer.getAdminDn(), ldapServer.getAdminPassword(), null, false, null, 30000L );
+        BrowserConnection browserConnection = new BrowserConnection( new Connection( connectionParameter ) );
+        InitializeRootDSERunnable.loadRootDSE( browserConnection, monitor );
+        return browserConnection;
+    }
+
+}
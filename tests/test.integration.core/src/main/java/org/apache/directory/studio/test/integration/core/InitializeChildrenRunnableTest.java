@@ -0,0 +1,321 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.studio.test.integration.core;
+
+
+import static org.apache.directory.studio.test.integration.junit5.TestFixture.ALIAS_DN;
+import static org.apache.directory.studio.test.integration.junit5.TestFixture.CONTEXT_DN;
+import static org.apache.directory.studio.test.integration.junit5.TestFixture.GROUPS_DN;
+import static org.apache.directory.studio.test.integration.junit5.TestFixture.MISC_DN;
+import static org.apache.directory.studio.test.integration.junit5.TestFixture.USER1_DN;
+import static org.apache.directory.studio.test.integration.junit5.TestFixture.USER2_DN;
+import static org.apache.directory.studio.test.integration.junit5.TestFixture.USER3_DN;
+import static org.apache.directory.studio.test.integration.junit5.TestFixture.USER4_DN;
+import static org.apache.directory.studio.test.integration.junit5.TestFixture.USERS_DN;
+import static org.apache.directory.studio.test.integration.junit5.TestFixture.dn;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.directory.api.ldap.model.cursor.SearchCursor;
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.entry.DefaultModification;
+import org.apache.directory.api.ldap.model.entry.ModificationOperation;
+import org.apache.directory.api.ldap.model.message.AliasDerefMode;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.SearchRequestImpl;
+import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.message.controls.ManageDsaITImpl;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.studio.common.core.jobs.StudioProgressMonitor;
+import org.apache.directory.studio.connection.core.Connection;
+import org.apache.directory.studio.connection.core.ConnectionCorePlugin;
+import org.apache.directory.studio.connection.core.ConnectionParameter;
+import org.apache.directory.studio.connection.core.ConnectionParameter.AuthenticationMethod;
+import org.apache.directory.studio.connection.core.ConnectionParameter.EncryptionMethod;
+import org.apache.directory.studio.connection.core.event.ConnectionEventRegistry;
+import org.apache.directory.studio.ldapbrowser.core.BrowserCoreConstants;
+import org.apache.directory.studio.ldapbrowser.core.BrowserCorePlugin;
+import org.apache.directory.studio.ldapbrowser.core.jobs.InitializeAttributesRunnable;
+import org.apache.directory.studio.ldapbrowser.core.jobs.InitializeChildrenRunnable;
+import org.apache.directory.studio.ldapbrowser.core.jobs.InitializeRootDSERunnable;
+import org.apache.directory.studio.ldapbrowser.core.model.IEntry;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.BrowserConnection;
+import org.apache.directory.studio.test.integration.junit5.LdapServerType;
+import org.apache.directory.studio.test.integration.junit5.LdapServersSource;
+import org.apache.directory.studio.test.integration.junit5.SkipTestIfLdapServerIsNotAvailableInterceptor;
+import org.apache.directory.studio.test.integration.junit5.TestLdapServer;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+
+
+/**
+ * Tests the {@link InitializeChildrenRunnable}.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@ExtendWith(SkipTestIfLdapServerIsNotAvailableInterceptor.class)
+public class InitializeChildrenRunnableTest
+{
+
+    private BrowserConnection browserConnection;
+
+    @BeforeAll
+    public static void setCertificateHandler()
+    {
+        ConnectionCorePlugin.getDefault().setCertificateHandler( null );
+    }
+
+
+    @AfterEach
+    public void tearDown() throws Exception
+    {
+        BrowserCorePlugin.getDefault().getPluginPreferences().setToDefault(
+            BrowserCoreConstants.PREFERENCE_SMART_REFRESH );
+        if ( browserConnection != null )
+        {
+            browserConnection.clearCaches();
+            browserConnection.getConnection().getConnectionWrapper().disconnect();
+        }
+    }
+
+
+    /**
+     * Tests that the smart refresh keeps the unchanged children, marks the
+     * modified children for reload, adds created children and removes
+     * deleted children.
+     */
+    @ParameterizedTest
+    @LdapServersSource(only = LdapServerType.ApacheDS)
+    public void testSmartRefresh( TestLdapServer ldapServer ) throws Exception
+    {
+        BrowserCorePlugin.getDefault().getPluginPreferences().setValue(
+            BrowserCoreConstants.PREFERENCE_SMART_REFRESH, true );
+        StudioProgressMonitor monitor = new StudioProgressMonitor( new NullProgressMonitor() );
+        browserConnection = createBrowserConnection( ldapServer, monitor );
+
+        // the timestamps have a resolution of seconds, move the sync timestamp past the unchanged children
+        Thread.sleep( 1100 );
+        modify( ldapServer, USER3_DN, "touched" );
+
+        IEntry users = initializeUsers( monitor );
+        assertNotNull( users.getChildrenSyncTimestamp() );
+        IEntry user1 = browserConnection.getEntryFromCache( USER1_DN );
+        IEntry user2 = browserConnection.getEntryFromCache( USER2_DN );
+        initializeAttributes( monitor, user1, user2 );
+        assertTrue( user1.isAttributesInitialized() );
+        assertTrue( user2.isAttributesInitialized() );
+        int childrenCount = users.getChildrenCount();
+
+        Dn createdDn = dn( "uid=user.smart", USERS_DN );
+        modify( ldapServer, USER2_DN, "modified" );
+        ldapServer.withAdminConnection( connection -> {
+            connection.delete( USER4_DN );
+            connection.add( new DefaultEntry( createdDn,
+                "objectClass: inetOrgPerson", "sn: smart", "cn: smart", "uid: user.smart" ) );
+        } );
+
+        initializeChildren( browserConnection, monitor, true, USERS_DN );
+        assertFalse( monitor.errorsReported() );
+
+        // unchanged children are kept with their attributes
+        assertSame( user1, browserConnection.getEntryFromCache( USER1_DN ) );
+        assertTrue( user1.isAttributesInitialized() );
+
+        // modified children are kept but their attributes are fetched again
+        assertSame( user2, browserConnection.getEntryFromCache( USER2_DN ) );
+        assertFalse( user2.isAttributesInitialized() );
+
+        // created children are added, deleted children are removed
+        assertNotNull( browserConnection.getEntryFromCache( createdDn ) );
+        assertNull( browserConnection.getEntryFromCache( USER4_DN ) );
+        assertTrue( Arrays.stream( users.getChildren() ).noneMatch( child -> child.getDn().equals( USER4_DN ) ) );
+        assertEquals( childrenCount, users.getChildrenCount() );
+    }
+
+
+    /**
+     * Tests that the children searches of several entries, including the
+     * sub-entries and alias searches, are sent at once and each entry gets
+     * its own children.
+     */
+    @ParameterizedTest
+    @LdapServersSource(only = LdapServerType.ApacheDS)
+    public void testPipelinedChildrenSearches( TestLdapServer ldapServer ) throws Exception
+    {
+        StudioProgressMonitor monitor = new StudioProgressMonitor( new NullProgressMonitor() );
+        browserConnection = createBrowserConnection( ldapServer, monitor );
+        initializeChildren( browserConnection, monitor, false, CONTEXT_DN );
+        IEntry misc = browserConnection.getEntryFromCache( MISC_DN );
+        misc.setFetchAliases( true );
+        misc.setFetchSubentries( true );
+
+        initializeChildren( browserConnection, monitor, false, USERS_DN, GROUPS_DN, MISC_DN );
+        assertFalse( monitor.errorsReported() );
+
+        assertChildren( ldapServer, USERS_DN );
+        assertChildren( ldapServer, GROUPS_DN );
+        IEntry alias = browserConnection.getEntryFromCache( ALIAS_DN );
+        assertNotNull( alias );
+        assertSame( misc, alias.getParententry() );
+        assertTrue( alias.isAlias() );
+    }
+
+
+    /**
+     * Tests that the pipelined children searches of several entries are
+     * continued page by page, each entry with its own cookie.
+     */
+    @ParameterizedTest
+    @LdapServersSource(only = LdapServerType.ApacheDS)
+    public void testPipelinedPagedChildrenSearches( TestLdapServer ldapServer ) throws Exception
+    {
+        StudioProgressMonitor monitor = new StudioProgressMonitor( new NullProgressMonitor() );
+        browserConnection = createBrowserConnection( ldapServer, monitor );
+        browserConnection.setPagedSearch( true );
+        browserConnection.setPagedSearchSize( 3 );
+        browserConnection.setPagedSearchScrollMode( false );
+        initializeChildren( browserConnection, monitor, false, CONTEXT_DN );
+
+        initializeChildren( browserConnection, monitor, false, USERS_DN, GROUPS_DN, MISC_DN );
+        assertFalse( monitor.errorsReported() );
+
+        assertChildren( ldapServer, USERS_DN );
+        assertChildren( ldapServer, GROUPS_DN );
+        assertTrue( browserConnection.getEntryFromCache( MISC_DN ).isChildrenInitialized() );
+    }
+
+
+    private void assertChildren( TestLdapServer ldapServer, Dn dn )
+    {
+        IEntry entry = browserConnection.getEntryFromCache( dn );
+        assertTrue( entry.isChildrenInitialized() );
+        Set<Dn> childrenDns = new HashSet<Dn>();
+        for ( IEntry child : entry.getChildren() )
+        {
+            assertSame( entry, child.getParententry() );
+            childrenDns.add( child.getDn() );
+        }
+        assertEquals( getChildrenDns( ldapServer, dn ), childrenDns );
+    }
+
+
+    private static Set<Dn> getChildrenDns( TestLdapServer ldapServer, Dn dn )
+    {
+        return ldapServer.withAdminConnectionAndGet( connection -> {
+            SearchRequest searchRequest = new SearchRequestImpl();
+            searchRequest.setBase( dn );
+            searchRequest.setFilter( "(objectClass=*)" );
+            searchRequest.setScope( SearchScope.ONELEVEL );
+            searchRequest.addAttributes( "1.1" );
+            searchRequest.setDerefAliases( AliasDerefMode.NEVER_DEREF_ALIASES );
+            searchRequest.addControl( new ManageDsaITImpl() );
+            Set<Dn> dns = new HashSet<Dn>();
+            try ( SearchCursor cursor = connection.search( searchRequest ) )
+            {
+                while ( cursor.next() )
+                {
+                    if ( cursor.isEntry() )
+                    {
+                        dns.add( cursor.getEntry().getDn() );
+                    }
+                }
+            }
+            return dns;
+        } );
+    }
+
+
+    private static void initializeChildren( BrowserConnection browserConnection, StudioProgressMonitor monitor,
+        boolean purgeAllCaches, Dn... dns )
+    {
+        IEntry[] entries = new IEntry[dns.length];
+        for ( int i = 0; i < dns.length; i++ )
+        {
+            entries[i] = browserConnection.getEntryFromCache( dns[i] );
+            assertNotNull( entries[i] );
+        }
+
+        ConnectionEventRegistry.suspendEventFiringInCurrentThread();
+        try
+        {
+            new InitializeChildrenRunnable( purgeAllCaches, entries ).run( monitor );
+        }
+        finally
+        {
+            ConnectionEventRegistry.resumeEventFiringInCurrentThread();
+        }
+    }
+
+
+    private IEntry initializeUsers( StudioProgressMonitor monitor )
+    {
+        initializeChildren( browserConnection, monitor, false, CONTEXT_DN );
+        initializeChildren( browserConnection, monitor, false, USERS_DN );
+        return browserConnection.getEntryFromCache( USERS_DN );
+    }
+
+
+    private static void initializeAttributes( StudioProgressMonitor monitor, IEntry... entries )
+    {
+        ConnectionEventRegistry.suspendEventFiringInCurrentThread();
+        try
+        {
+            for ( IEntry entry : entries )
+            {
+                InitializeAttributesRunnable.initializeAttributes( entry, monitor );
+            }
+        }
+        finally
+        {
+            ConnectionEventRegistry.resumeEventFiringInCurrentThread();
+        }
+    }
+
+
+    private static void modify( TestLdapServer ldapServer, Dn dn, String description )
+    {
+        ldapServer.withAdminConnection( connection -> connection.modify( dn,
+            new DefaultModification( ModificationOperation.REPLACE_ATTRIBUTE, "description", description ) ) );
+    }
+
+
+    private static BrowserConnection createBrowserConnection( TestLdapServer ldapServer,
+        StudioProgressMonitor monitor )
+    {
+        ConnectionParameter connectionParameter = new ConnectionParameter( null, ldapServer.getHost(),
+            ldapServer.getPort(), EncryptionMethod.NONE, AuthenticationMethod.SIMPLE,
+            ldapServer.getAdminDn(), ldapServer.getAdminPassword(), null, true, null, 30000L );
+        BrowserConnection browserConnection = new BrowserConnection( new Connection( connectionParameter ) );
+        InitializeRootDSERunnable.loadRootDSE( browserConnection, monitor );
+        return browserConnection;
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+
+package org.apache.directory.studio.test.integration.core;
+
+
+import static org.apache.directory.studio.test.integration.junit5.TestFixture.CONTEXT_DN;
+import static org.apache.directory.studio.test.integration.junit5.TestFixture.USERS_DN;
+import static org.apache.directory.studio.test.integration.junit5.TestFixture.dn;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.function.BooleanSupplier;
+
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.studio.common.core.jobs.StudioProgressMonitor;
+import org.apache.directory.studio.connection.core.Connection;
+import org.apache.directory.studio.connection.core.ConnectionCorePlugin;
+import org.apache.directory.studio.connection.core.ConnectionParameter;
+import org.apache.directory.studio.connection.core.ConnectionParameter.AuthenticationMethod;
+import org.apache.directory.studio.connection.core.ConnectionParameter.EncryptionMethod;
+import org.apache.directory.studio.connection.core.event.ConnectionEventRegistry;
+import org.apache.directory.studio.ldapbrowser.core.jobs.InitializeChildrenRunnable;
+import org.apache.directory.studio.ldapbrowser.core.jobs.InitializeRootDSERunnable;
+import org.apache.directory.studio.ldapbrowser.core.model.IEntry;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.BrowserConnection;
+import org.apache.directory.studio.test.integration.junit5.LdapServerType;
+import org.apache.directory.studio.test.integration.junit5.LdapServersSource;
+import org.apache.directory.studio.test.integration.junit5.SkipTestIfLdapServerIsNotAvailableInterceptor;
+import org.apache.directory.studio.test.integration.junit5.TestLdapServer;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+
+
+/**
+ * Tests the live cache maintenance of the {@link BrowserConnection}.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@ExtendWith(SkipTestIfLdapServerIsNotAvailableInterceptor.class)
+public class LiveCacheSynchronizerTest
+{
+
+    private BrowserConnection browserConnection;
+
+    @BeforeAll
+    public static void setCertificateHandler()
+    {
+        ConnectionCorePlugin.getDefault().setCertificateHandler( null );
+    }
+
+
+    @AfterEach
+    public void tearDown() throws Exception
+    {
+        if ( browserConnection != null )
+        {
+            browserConnection.clearCaches();
+            browserConnection.getConnection().getConnectionWrapper().disconnect();
+        }
+    }
+
+
+    /**
+     * Tests that added and deleted entries are applied to the cached children.
+     */
+    @ParameterizedTest
+    @LdapServersSource(only = LdapServerType.ApacheDS)
+    public void testAddAndDeleteAreApplied( TestLdapServer ldapServer ) throws Exception
+    {
+        StudioProgressMonitor monitor = new StudioProgressMonitor( new NullProgressMonitor() );
+        ConnectionParameter connectionParameter = new ConnectionParameter( null, ldapServer.getHost(),
+            ldapServer.getPort(), EncryptionMethod.NONE, AuthenticationMethod.SIMPLE,
+            ldapServer.getAdminDn(), ldapServer.getAdminPassword(), null, true, null, 30000L );
+        browserConnection = new BrowserConnection( new Connection( connectionParameter ) );
+        browserConnection.setLiveCacheSync( true );
+
+        ConnectionEventRegistry.suspendEventFiringInCurrentThread();
+        try
+        {
+            InitializeRootDSERunnable.loadRootDSE( browserConnection, monitor );
+            IEntry context = browserConnection.getEntryFromCache( CONTEXT_DN );
+            assertNotNull( context );
+            new InitializeChildrenRunnable( false, context ).run( monitor );
+            IEntry users = browserConnection.getEntryFromCache( USERS_DN );
+            assertNotNull( users );
+            new InitializeChildrenRunnable( false, users ).run( monitor );
+        }
+        finally
+        {
+            ConnectionEventRegistry.resumeEventFiringInCurrentThread();
+        }
+        assertTrue( browserConnection.getLiveCacheSynchronizer().getWatchedEntries().contains( USERS_DN ) );
+
+        IEntry users = browserConnection.getEntryFromCache( USERS_DN );
+        int childrenCount = users.getChildrenCount();
+        Dn dn = dn( "uid=user.live", USERS_DN );
+
+        ldapServer.withAdminConnection( connection -> connection.add( new DefaultEntry( dn,
+            "objectClass: inetOrgPerson", "sn: live", "cn: live", "uid: user.live" ) ) );
+        waitUntil( () -> browserConnection.getEntryFromCache( dn ) != null );
+        assertEquals( childrenCount + 1, users.getChildrenCount() );
+
+        ldapServer.withAdminConnection( connection -> connection.delete( dn ) );
+        waitUntil( () -> browserConnection.getEntryFromCache( dn ) == null );
+        assertNull( browserConnection.getEntryFromCache( dn ) );
+        assertEquals( childrenCount, users.getChildrenCount() );
+    }
+
+
+    private static void waitUntil( BooleanSupplier condition ) throws InterruptedException
+    {
+        long timeout = System.currentTimeMillis() + 10000L;
+        while ( !condition.getAsBoolean() && System.currentTimeMillis() < timeout )
+        {
+            Thread.sleep( 100 );
+        }
+        assertTrue( condition.getAsBoolean() );
+    }
+
+}
@@ -21,14 +21,37 @@
 package org.apache.directory.studio.test.integration.core;
 
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.Collection;
 
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
 import org.apache.directory.api.ldap.model.schema.AttributeType;
 import org.apache.directory.api.ldap.model.schema.ObjectClass;
+import org.apache.directory.studio.common.core.jobs.StudioProgressMonitor;
+import org.apache.directory.studio.connection.core.Connection;
+import org.apache.directory.studio.connection.core.ConnectionCorePlugin;
+import org.apache.directory.studio.connection.core.ConnectionManager;
+import org.apache.directory.studio.connection.core.ConnectionParameter;
+import org.apache.directory.studio.connection.core.ConnectionParameter.AuthenticationMethod;
+import org.apache.directory.studio.connection.core.ConnectionParameter.EncryptionMethod;
+import org.apache.directory.studio.ldapbrowser.core.BrowserConnectionListener;
+import org.apache.directory.studio.ldapbrowser.core.BrowserCorePlugin;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.BrowserConnection;
 import org.apache.directory.studio.ldapbrowser.core.model.schema.Schema;
+import org.apache.directory.studio.ldapbrowser.core.model.schema.SchemaRegistry;
+import org.apache.directory.studio.ldapbrowser.core.model.schema.SchemaUtils;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.junit.jupiter.api.Test;
 
 
@@ -66,4 +89,254 @@ public class SchemaTest
         assertNotNull( defaultSchema.getAttributeTypeDescription( "member" ) );
     }
 
+
+
+    /**
+     * Test that a schema saved as binary snapshot is loaded with all definitions.
+     */
+    @Test
+    public void testSnapshotRoundTrip() throws Exception
+    {
+        Schema defaultSchema = Schema.DEFAULT_SCHEMA;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        defaultSchema.saveToSnapshot( out );
+
+        Schema schema = new Schema();
+        schema.loadFromSnapshot( new ByteArrayInputStream( out.toByteArray() ) );
+
+        assertEquals( defaultSchema.getDn(), schema.getDn() );
+        assertEquals( defaultSchema.getObjectClassDescriptions().size(), schema.getObjectClassDescriptions().size() );
+        assertEquals( defaultSchema.getAttributeTypeDescriptions().size(),
+            schema.getAttributeTypeDescriptions().size() );
+        assertEquals( defaultSchema.getLdapSyntaxDescriptions().size(), schema.getLdapSyntaxDescriptions().size() );
+        assertNotNull( schema.getObjectClassDescription( "inetOrgPerson" ) );
+        assertEquals( "2.5.4.3", schema.getAttributeTypeDescription( "cn" ).getOid() );
+
+        // the LDIF export is rebuilt from the snapshot
+        assertEquals( defaultSchema.getSchemaRecord().getAttrVals().length,
+            schema.getSchemaRecord().getAttrVals().length );
+    }
+
+
+    /**
+     * Test that an invalid snapshot is rejected.
+     */
+    @Test
+    public void testInvalidSnapshot()
+    {
+        assertThrows( IOException.class, () -> new Schema().loadFromSnapshot( new ByteArrayInputStream( new byte[]
+            { 1, 2, 3, 4, 5, 6, 7, 8 } ) ) );
+    }
+
+
+
+    /**
+     * Test that a schema is loaded from a subschema entry.
+     */
+    @Test
+    public void testLoadFromEntry() throws Exception
+    {
+        Schema schema = new Schema();
+        schema.loadFromEntry( new DefaultEntry( "cn=schema",
+            "objectClass: subschema",
+            "attributeTypes: ( 1.2.3.4.1 NAME 'testAttribute' SYNTAX 1.3.6.1.4.1.1466.115.121.1.15 )",
+            "objectClasses: ( 1.2.3.4.2 NAME 'testObjectClass' SUP top STRUCTURAL MAY testAttribute )",
+            "attributeTypes: invalid",
+            "modifyTimestamp: 20240101000000Z" ) );
+
+        assertEquals( "cn=schema", schema.getDn().getName() );
+        assertEquals( "20240101000000Z", schema.getModifyTimestamp() );
+        assertEquals( "1.2.3.4.1", schema.getAttributeTypeDescription( "testAttribute" ).getOid() );
+        assertEquals( "1.2.3.4.2", schema.getObjectClassDescription( "testObjectClass" ).getOid() );
+        assertEquals( 1, schema.getObjectClassDescriptions().size() );
+        assertNotNull( schema.getSchemaRecord() );
+    }
+
+
+    /**
+     * Tests that the definitions are found by all names and the numeric
+     * OID, and that pseudo syntaxes and matching rules are created for the
+     * ones referenced by attribute types.
+     */
+    @Test
+    public void testDefinitionIndex() throws Exception
+    {
+        Schema schema = new Schema();
+        schema.loadFromEntry( new DefaultEntry( "cn=schema",
+            "objectClass: subschema",
+            "attributeTypes: ( 1.2.3.4.1 NAME ( 'testAttribute' 'testAlias' ) DESC 'NAME ( x )' "
+                + "EQUALITY 1.2.3.4.9 SYNTAX 1.2.3.4.8 )",
+            "objectClasses: ( 1.2.3.4.2 NAME 'extensibleObject' SUP top AUXILIARY )" ) );
+
+        assertTrue( schema.hasAttributeTypeDescription( "testalias" ) );
+        assertTrue( schema.hasAttributeTypeDescription( "1.2.3.4.1" ) );
+        assertFalse( schema.hasAttributeTypeDescription( "x" ) );
+        AttributeType atd = schema.getAttributeTypeDescription( "testAlias" );
+        assertEquals( "1.2.3.4.1", atd.getOid() );
+        assertSame( atd, schema.getAttributeTypeDescription( "testAttribute" ) );
+        assertNotNull( atd.getExtension( Schema.RAW_SCHEMA_DEFINITION_LDIF_VALUE ) );
+
+        assertTrue( schema.hasLdapSyntaxDescription( "1.2.3.4.8" ) );
+        assertTrue( schema.hasMatchingRuleDescription( "1.2.3.4.9" ) );
+        assertTrue( schema.getObjectClassDescription( "extensibleObject" ).getMayAttributeTypeOids()
+            .contains( "testAttribute" ) );
+    }
+
+
+    /**
+     * Tests that indexed definitions that can't be parsed don't exist.
+     */
+    @Test
+    public void testInvalidDefinition() throws Exception
+    {
+        Schema schema = new Schema();
+        schema.loadFromEntry( new DefaultEntry( "cn=schema",
+            "objectClass: subschema",
+            "attributeTypes: ( 1.2.3.4.1 NAME 'testAttribute' SYNTAX 1.3.6.1.4.1.1466.115.121.1.15 )",
+            "attributeTypes: ( 1.2.3.4.5 NAME 'brokenAttribute'" ) );
+
+        assertTrue( schema.hasAttributeTypeDescription( "testAttribute" ) );
+        assertFalse( schema.hasAttributeTypeDescription( "brokenAttribute" ) );
+        assertFalse( schema.hasAttributeTypeDescription( "1.2.3.4.5" ) );
+    }
+
+
+    /**
+     * Tests that identical schemas are shared and released when no longer used.
+     */
+    @Test
+    public void testSchemaRegistry() throws Exception
+    {
+        DefaultEntry schemaEntry = new DefaultEntry( "cn=schema",
+            "objectClass: subschema",
+            "attributeTypes: ( 1.2.3.4.1 NAME 'testAttribute' SYNTAX 1.3.6.1.4.1.1466.115.121.1.15 )" );
+        SchemaRegistry registry = new SchemaRegistry();
+
+        Schema schema = registry.getSchema( schemaEntry );
+        assertEquals( Schema.computeContentHash( schemaEntry ), schema.getContentHash() );
+
+        // a schema is only registered while it is retained
+        assertEquals( 0, registry.size() );
+        registry.retain( schema );
+        assertEquals( 1, registry.size() );
+        assertSame( schema, registry.getSchema( schemaEntry.clone() ) );
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        schema.saveToSnapshot( out );
+        Schema loaded = new Schema();
+        loaded.loadFromSnapshot( new ByteArrayInputStream( out.toByteArray() ) );
+        assertSame( schema, registry.getSchema( loaded ) );
+
+        registry.retain( schema );
+        registry.release( schema );
+        assertEquals( 1, registry.size() );
+        registry.release( schema );
+        assertEquals( 0, registry.size() );
+        assertNotSame( schema, registry.getSchema( schemaEntry ) );
+    }
+
+
+    /**
+     * Tests that a browser connection releases its shared schema when the connection
+     * is closed and shares it again when the connection is opened.
+     */
+    @Test
+    public void testSchemaReleasedWhenConnectionClosed() throws Exception
+    {
+        DefaultEntry schemaEntry = new DefaultEntry( "cn=schema",
+            "objectClass: subschema",
+            "attributeTypes: ( 1.2.3.4.2 NAME 'closedAttribute' SYNTAX 1.3.6.1.4.1.1466.115.121.1.15 )" );
+        SchemaRegistry registry = BrowserCorePlugin.getDefault().getSchemaRegistry();
+        ConnectionManager connectionManager = ConnectionCorePlugin.getDefault().getConnectionManager();
+        Connection connection = new Connection( new ConnectionParameter( "SchemaTest", "localhost", 389,
+            EncryptionMethod.NONE, AuthenticationMethod.NONE, null, null, null, true, null, 30000L ) );
+        connectionManager.addConnection( connection );
+        Schema other;
+        try
+        {
+            BrowserConnection browserConnection = ( BrowserConnection ) BrowserCorePlugin.getDefault()
+                .getConnectionManager().getBrowserConnection( connection );
+            Schema schema = registry.getSchema( schemaEntry );
+            browserConnection.setSchema( schema );
+            assertSame( schema, registry.getSchema( schemaEntry.clone() ) );
+
+            // closing the connection releases the schema but keeps using it
+            new BrowserConnectionListener().connectionClosed( connection,
+                new StudioProgressMonitor( new NullProgressMonitor() ) );
+            assertSame( schema, browserConnection.getSchema() );
+            other = registry.getSchema( schemaEntry.clone() );
+            assertNotSame( schema, other );
+
+            // releasing again doesn't release the schema retained by another connection
+            registry.retain( other );
+            browserConnection.releaseSchema();
+            assertSame( other, registry.getSchema( schemaEntry.clone() ) );
+
+            // opening the connection shares the registered schema
+            browserConnection.retainSchema();
+            assertSame( other, browserConnection.getSchema() );
+            registry.release( other );
+            assertSame( other, registry.getSchema( schemaEntry.clone() ) );
+        }
+        finally
+        {
+            connectionManager.removeConnection( connection );
+        }
+        assertNotSame( other, registry.getSchema( schemaEntry ) );
+    }
+
+
+    /**
+     * Tests that the content hash ignores the order of the values, the Dn and the timestamps.
+     */
+    @Test
+    public void testContentHashIsCanonical() throws Exception
+    {
+        DefaultEntry schemaEntry = new DefaultEntry( "cn=schema",
+            "objectClass: subschema",
+            "modifyTimestamp: 20200101000000Z",
+            "attributeTypes: ( 1.2.3.4.1 NAME 'testAttribute1' SYNTAX 1.3.6.1.4.1.1466.115.121.1.15 )",
+            "attributeTypes: ( 1.2.3.4.2 NAME 'testAttribute2' SYNTAX 1.3.6.1.4.1.1466.115.121.1.15 )",
+            "objectClasses: ( 1.2.3.4.3 NAME 'testClass' MAY testAttribute1 )" );
+        DefaultEntry reorderedEntry = new DefaultEntry( "cn=subschema",
+            "objectClass: subschema",
+            "objectClasses: ( 1.2.3.4.3 NAME 'testClass' MAY testAttribute1 )",
+            "modifyTimestamp: 20240101000000Z",
+            "createTimestamp: 20240101000000Z",
+            "attributeTypes: ( 1.2.3.4.2 NAME 'testAttribute2' SYNTAX 1.3.6.1.4.1.1466.115.121.1.15 )",
+            "attributeTypes: ( 1.2.3.4.1 NAME 'testAttribute1' SYNTAX 1.3.6.1.4.1.1466.115.121.1.15 )" );
+        assertEquals( Schema.computeContentHash( schemaEntry ), Schema.computeContentHash( reorderedEntry ) );
+
+        Schema schema = new Schema();
+        schema.loadFromEntry( reorderedEntry );
+        assertEquals( Schema.computeContentHash( schemaEntry ), schema.getContentHash() );
+
+        reorderedEntry.add( "attributeTypes",
+            "( 1.2.3.4.4 NAME 'testAttribute4' SYNTAX 1.3.6.1.4.1.1466.115.121.1.15 )" );
+        assertNotEquals( Schema.computeContentHash( schemaEntry ), Schema.computeContentHash( reorderedEntry ) );
+    }
+
+
+    /**
+     * Tests the transitive MUST and MAY attribute type names, also with
+     * a cyclic superclass chain.
+     */
+    @Test
+    public void testTransitiveAttributeTypeNames() throws Exception
+    {
+        Schema schema = new Schema();
+        schema.loadFromEntry( new DefaultEntry( "cn=schema",
+            "objectClass: subschema",
+            "objectClasses: ( 1.2.3.4.1 NAME 'testBase' SUP 1.2.3.4.2 MUST cn MAY description )",
+            "objectClasses: ( 1.2.3.4.2 NAME 'testSub' SUP testBase MUST sn MAY seeAlso )" ) );
+
+        ObjectClass ocd = schema.getObjectClassDescription( "testSub" );
+        Collection<String> musts = SchemaUtils.getMustAttributeTypeDescriptionNamesTransitive( ocd, schema );
+        assertEquals( 2, musts.size() );
+        assertTrue( musts.contains( "cn" ) );
+        assertTrue( musts.contains( "sn" ) );
+        assertSame( musts, SchemaUtils.getMustAttributeTypeDescriptionNamesTransitive( ocd, schema ) );
+        assertTrue( SchemaUtils.getMayAttributeTypeDescriptionNamesTransitive( ocd, schema ).contains( "description" ) );
+    }
+
 }
@@ -0,0 +1,166 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.studio.test.integration.core;
+
+
+import static org.apache.directory.studio.test.integration.junit5.TestFixture.CONTEXT_DN;
+import static org.apache.directory.studio.test.integration.junit5.TestFixture.USER1_DN;
+import static org.apache.directory.studio.test.integration.junit5.TestFixture.USERS_DN;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.studio.common.core.jobs.StudioProgressMonitor;
+import org.apache.directory.studio.connection.core.Connection;
+import org.apache.directory.studio.connection.core.ConnectionCorePlugin;
+import org.apache.directory.studio.connection.core.ConnectionParameter;
+import org.apache.directory.studio.connection.core.ConnectionParameter.AuthenticationMethod;
+import org.apache.directory.studio.connection.core.ConnectionParameter.EncryptionMethod;
+import org.apache.directory.studio.connection.core.event.ConnectionEventRegistry;
+import org.apache.directory.studio.ldapbrowser.core.jobs.InitializeRootDSERunnable;
+import org.apache.directory.studio.ldapbrowser.core.jobs.SearchRunnable;
+import org.apache.directory.studio.ldapbrowser.core.model.IEntry;
+import org.apache.directory.studio.ldapbrowser.core.model.ISearch;
+import org.apache.directory.studio.ldapbrowser.core.model.ISearchResult;
+import org.apache.directory.studio.ldapbrowser.core.model.SearchParameter;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.BaseDNEntry;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.BrowserConnection;
+import org.apache.directory.studio.ldapbrowser.core.model.impl.Search;
+import org.apache.directory.studio.test.integration.junit5.LdapServerType;
+import org.apache.directory.studio.test.integration.junit5.LdapServersSource;
+import org.apache.directory.studio.test.integration.junit5.SkipTestIfLdapServerIsNotAvailableInterceptor;
+import org.apache.directory.studio.test.integration.junit5.TestLdapServer;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+
+
+/**
+ * Tests the {@link SearchRunnable}.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@ExtendWith(SkipTestIfLdapServerIsNotAvailableInterceptor.class)
+public class SearchRunnableTest
+{
+
+    private BrowserConnection browserConnection;
+
+    @BeforeAll
+    public static void setCertificateHandler()
+    {
+        ConnectionCorePlugin.getDefault().setCertificateHandler( null );
+    }
+
+
+    @AfterEach
+    public void tearDown() throws Exception
+    {
+        if ( browserConnection != null )
+        {
+            browserConnection.clearCaches();
+            browserConnection.getConnection().getConnectionWrapper().disconnect();
+        }
+    }
+
+
+    /**
+     * Tests that the uncached ancestors of the search results are created,
+     * the existing base Dn below the root DSE and the entries in between,
+     * but no entries for ancestors of the base Dn that don't exist.
+     */
+    @ParameterizedTest
+    @LdapServersSource(only = LdapServerType.ApacheDS)
+    public void testResolveMissingAncestors( TestLdapServer ldapServer ) throws Exception
+    {
+        StudioProgressMonitor monitor = new StudioProgressMonitor( new NullProgressMonitor() );
+        browserConnection = createBrowserConnection( ldapServer, monitor );
+
+        // forget the context entry, it is resolved from the search results
+        IEntry context = browserConnection.getEntryFromCache( CONTEXT_DN );
+        assertNotNull( context );
+        browserConnection.getRootDSE().deleteChild( context );
+        browserConnection.uncacheEntryRecursive( context );
+        assertNull( browserConnection.getEntryFromCache( CONTEXT_DN ) );
+
+        ISearch search = search( USERS_DN, SearchScope.ONELEVEL, monitor );
+        assertFalse( monitor.errorsReported() );
+        assertTrue( search.getSearchResults().length > 0 );
+
+        // the existing base Dn is created below the root DSE, its parent isn't created
+        context = browserConnection.getEntryFromCache( CONTEXT_DN );
+        assertTrue( context instanceof BaseDNEntry );
+        assertSame( browserConnection.getRootDSE(), context.getParententry() );
+        assertNull( browserConnection.getEntryFromCache( CONTEXT_DN.getParent() ) );
+
+        // the ancestors in between are created as children of their parents
+        IEntry users = browserConnection.getEntryFromCache( USERS_DN );
+        assertNotNull( users );
+        assertSame( context, users.getParententry() );
+        for ( ISearchResult searchResult : search.getSearchResults() )
+        {
+            assertSame( users, searchResult.getEntry().getParententry() );
+        }
+        assertEquals( search.getSearchResults().length, users.getChildrenCount() );
+        assertNotNull( browserConnection.getEntryFromCache( USER1_DN ) );
+    }
+
+
+    private ISearch search( Dn base, SearchScope scope, StudioProgressMonitor monitor )
+    {
+        SearchParameter searchParameter = new SearchParameter();
+        searchParameter.setSearchBase( base );
+        searchParameter.setFilter( ISearch.FILTER_TRUE );
+        searchParameter.setScope( scope );
+        searchParameter.setReturningAttributes( ISearch.NO_ATTRIBUTES );
+        ISearch search = new Search( browserConnection, searchParameter );
+
+        ConnectionEventRegistry.suspendEventFiringInCurrentThread();
+        try
+        {
+            SearchRunnable.searchAndUpdateModel( browserConnection, search, monitor );
+        }
+        finally
+        {
+            ConnectionEventRegistry.resumeEventFiringInCurrentThread();
+        }
+        return search;
+    }
+
+
+    private static BrowserConnection createBrowserConnection( TestLdapServer ldapServer,
+        StudioProgressMonitor monitor )
+    {
+        ConnectionParameter connectionParameter = new ConnectionParameter( null, ldapServer.getHost(),
+            ldapServer.getPort(), EncryptionMethod.NONE, AuthenticationMethod.SIMPLE,
+            ldapServer.getAdminDn(), ldapServer.getAdminPassword(), null, true, null, 30000L );
+        BrowserConnection browserConnection = new BrowserConnection( new Connection( connectionParameter ) );
+        InitializeRootDSERunnable.loadRootDSE( browserConnection, monitor );
+        return browserConnection;
+    }
+
+}
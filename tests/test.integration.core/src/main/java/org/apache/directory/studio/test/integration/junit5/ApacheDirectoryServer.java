@@ -37,6 +37,7 @@ import org.apache.directory.server.ldap.handlers.extended.WhoAmIHandler;
 import org.apache.directory.server.ldap.handlers.sasl.SimpleMechanismHandler;
 import org.apache.directory.server.ldap.handlers.sasl.cramMD5.CramMd5MechanismHandler;
 import org.apache.directory.server.ldap.handlers.sasl.digestMD5.DigestMd5MechanismHandler;
+import org.apache.directory.server.ldap.replication.provider.SyncReplRequestHandler;
 import org.apache.directory.server.protocol.shared.transport.TcpTransport;
 import org.apache.directory.server.protocol.shared.transport.Transport;
 import org.apache.mina.util.AvailablePortFinder;
@@ -107,6 +108,9 @@ public class ApacheDirectoryServer extends TestLdapServer
             server.addExtendedOperationHandler( new PwdModifyHandler() );
             server.addExtendedOperationHandler( new WhoAmIHandler() );
 
+            // act as RFC 4533 sync provider
+            server.setReplicationReqHandler( new SyncReplRequestHandler() );
+
             defaultKeyStoreFile = CertificateUtil.createTempKeyStore( "testStore", "changeit".toCharArray() )
                 .getAbsolutePath();
             server.setKeystoreFile( defaultKeyStoreFile );